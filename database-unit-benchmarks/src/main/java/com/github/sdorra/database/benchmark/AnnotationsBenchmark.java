@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.benchmark;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.JDBC;
+import com.github.sdorra.database.internal.Annotations;
+
+import org.junit.runners.model.FrameworkMethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookup of the rule annotations on the test method and on the
+ * test class.
+ *
+ * @author Sebastian Sdorra
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnnotationsBenchmark
+{
+
+  /**
+   * Finds the annotation of the test class.
+   *
+   *
+   * @return annotation
+   */
+  @Benchmark
+  public JDBC findOnClass()
+  {
+    return Annotations.find(classMethod, target, JDBC.class);
+  }
+
+  /**
+   * Finds the annotation of the test method.
+   *
+   *
+   * @return annotation
+   */
+  @Benchmark
+  public JDBC findOnMethod()
+  {
+    return Annotations.find(annotatedMethod, target, JDBC.class);
+  }
+
+  /**
+   * Searches an annotation, which does not exist.
+   *
+   *
+   * @return {@code null}
+   */
+  @Benchmark
+  public JDBC notFound()
+  {
+    return Annotations.find(plainMethod, plainTarget, JDBC.class);
+  }
+
+  /**
+   * Resolves the test methods.
+   *
+   *
+   * @throws NoSuchMethodException
+   */
+  @Setup
+  public void setUp() throws NoSuchMethodException
+  {
+    annotatedMethod = new FrameworkMethod(Annotated.class.getMethod("method"));
+    classMethod = new FrameworkMethod(Annotated.class.getMethod("plain"));
+    plainMethod = new FrameworkMethod(Plain.class.getMethod("plain"));
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Test class with annotations.
+   */
+  @JDBC(sql = "/class.sql")
+  public static class Annotated
+  {
+
+    /**
+     * Annotated test method.
+     *
+     */
+    @JDBC(sql = "/method.sql")
+    public void method() {}
+
+    /**
+     * Test method without annotation.
+     *
+     */
+    public void plain() {}
+  }
+
+
+  /**
+   * Test class without annotations.
+   */
+  public static class Plain
+  {
+
+    /**
+     * Test method without annotation.
+     *
+     */
+    public void plain() {}
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** annotated method */
+  private FrameworkMethod annotatedMethod;
+
+  /** method of an annotated class */
+  private FrameworkMethod classMethod;
+
+  /** method without annotation */
+  private FrameworkMethod plainMethod;
+
+  /** test object without annotations */
+  private final Plain plainTarget = new Plain();
+
+  /** test object */
+  private final Annotated target = new Annotated();
+}
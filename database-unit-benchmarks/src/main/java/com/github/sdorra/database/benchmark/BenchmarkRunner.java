@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.benchmark;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks. The runner accepts the usual jmh command line options,
+ * but writes the results as json to {@code target/jmh-result.json} by
+ * default, so that the results can be compared between releases.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class BenchmarkRunner
+{
+
+  /** default result file */
+  private static final String RESULT = "target/jmh-result.json";
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private BenchmarkRunner() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Runs the benchmarks.
+   *
+   *
+   * @param args jmh command line options
+   *
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception
+  {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+
+    if (!cmd.getResultFormat().hasValue())
+    {
+      builder.resultFormat(ResultFormatType.JSON);
+    }
+
+    if (!cmd.getResult().hasValue())
+    {
+      builder.result(RESULT);
+    }
+
+    new Runner(builder.build()).run();
+  }
+}
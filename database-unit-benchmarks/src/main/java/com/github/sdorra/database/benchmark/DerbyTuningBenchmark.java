@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.benchmark;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseOptions;
+import com.github.sdorra.database.Durability;
+import com.github.sdorra.database.internal.Databases;
+import com.github.sdorra.database.internal.SQLScriptRunner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.StringReader;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the effect of each {@link DatabaseOptions} on derby. The
+ * {@code lifecycle} benchmark creates a database, runs the script and drops
+ * the database, which is the work of a single test with its own database. The
+ * {@code script} benchmark measures only the execution of the script.
+ *
+ * @author Sebastian Sdorra
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DerbyTuningBenchmark
+{
+
+  /** prefix for the database name */
+  private static final String PREFIX = "benchmark-tuning";
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Creates a database, runs the script and drops the database.
+   *
+   *
+   * @throws SQLException
+   */
+  @Benchmark
+  public void lifecycle() throws SQLException
+  {
+    Database database = Databases.create("derby", PREFIX, options);
+
+    database.start();
+
+    try
+    {
+      run(database);
+    }
+    finally
+    {
+      database.shutdown();
+    }
+  }
+
+  /**
+   * Runs the script on a database, which was started before the invocation.
+   *
+   *
+   * @param started started database
+   *
+   * @throws SQLException
+   */
+  @Benchmark
+  public void script(StartedDatabase started) throws SQLException
+  {
+    run(started.database);
+  }
+
+  /**
+   * Creates the options and the script.
+   *
+   */
+  @Setup
+  public void setUp()
+  {
+    script = Scripts.create(size);
+    options = options(option);
+  }
+
+  /**
+   * Returns the options for the name of the benchmark parameter.
+   *
+   *
+   * @param option name of the option
+   *
+   * @return database options
+   */
+  private static DatabaseOptions options(String option)
+  {
+    DatabaseOptions options;
+
+    if ("durability".equals(option))
+    {
+      options = DatabaseOptions.builder().durability(Durability.TEST).build();
+    }
+    else if ("pageCache".equals(option))
+    {
+      options = DatabaseOptions.builder().pageCacheSize(100).build();
+    }
+    else if ("statementCache".equals(option))
+    {
+      options = DatabaseOptions.builder().statementCacheSize(20).build();
+    }
+    else if ("lockTimeout".equals(option))
+    {
+      options = DatabaseOptions.builder().lockWaitTimeout(5).build();
+    }
+    else if ("preallocation".equals(option))
+    {
+      options = DatabaseOptions.builder().preallocatedPages(1).build();
+    }
+    else if ("asyncDrop".equals(option))
+    {
+      options = DatabaseOptions.builder().asynchronousDrop(true).build();
+    }
+    else if ("fastest".equals(option))
+    {
+      options = DatabaseOptions.FASTEST;
+    }
+    else
+    {
+      options = DatabaseOptions.DEFAULT;
+    }
+
+    return options;
+  }
+
+  /**
+   * Runs the script.
+   *
+   *
+   * @param database database
+   *
+   * @throws SQLException
+   */
+  private void run(Database database) throws SQLException
+  {
+    Connection connection = database.createConnection();
+
+    try
+    {
+      SQLScriptRunner runner = new SQLScriptRunner(connection, true);
+
+      runner.runScript(new StringReader(script));
+    }
+    finally
+    {
+      connection.close();
+    }
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Database which is started before and dropped after each invocation of
+   * the script benchmark.
+   */
+  @State(Scope.Thread)
+  public static class StartedDatabase
+  {
+
+    /**
+     * Starts a new database with the options of the benchmark.
+     *
+     *
+     * @param benchmark benchmark state
+     */
+    @Setup(Level.Invocation)
+    public void start(DerbyTuningBenchmark benchmark)
+    {
+      database = Databases.create("derby", PREFIX, benchmark.options);
+      database.start();
+    }
+
+    /**
+     * Drops the database.
+     *
+     */
+    @TearDown(Level.Invocation)
+    public void stop()
+    {
+      database.shutdown();
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** database of the current invocation */
+    private Database database;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** name of the tuning option */
+  @Param({
+    "default", "durability", "pageCache", "statementCache", "lockTimeout",
+    "preallocation", "asyncDrop", "fastest"
+  })
+  public String option;
+
+  /** size of the script */
+  @Param({ "small", "medium" })
+  public String size;
+
+  /** options of the benchmark */
+  private DatabaseOptions options;
+
+  /** sql script */
+  private String script;
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.benchmark;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.Reader;
+
+/**
+ * The line based parser, which was used by the SQLScriptRunner before the
+ * streaming lexer. The parser is kept as baseline for the
+ * {@link SQLScriptLexerBenchmark} and returns the statements one by one like
+ * the lexer, instead of collecting them in a list.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class LineParser
+{
+
+  /**
+   * Constructs a new line parser.
+   *
+   *
+   * @param reader reader for the sql script
+   * @param delimiter command delimiter
+   * @param fullLineDelimiter is the delimiter a full line delimiter
+   */
+  public LineParser(Reader reader, String delimiter,
+    boolean fullLineDelimiter)
+  {
+    this.reader = new LineNumberReader(reader);
+    this.delimiter = delimiter;
+    this.fullLineDelimiter = fullLineDelimiter;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns the next statement of the script or {@code null} if the end of
+   * the script was reached.
+   *
+   *
+   * @return next statement or {@code null}
+   *
+   * @throws IOException
+   */
+  public String next() throws IOException
+  {
+    StringBuilder buffer = null;
+    String line;
+
+    while ((line = reader.readLine()) != null)
+    {
+      if (buffer == null)
+      {
+        buffer = new StringBuilder();
+      }
+
+      String trimmedLine = line.trim();
+
+      if (trimmedLine.startsWith("--") || (trimmedLine.length() < 1)
+        || trimmedLine.startsWith("//"))
+      {
+
+        // do nothing
+      }
+      else if ((!fullLineDelimiter && trimmedLine.endsWith(delimiter))
+        || (fullLineDelimiter && trimmedLine.equals(delimiter)))
+      {
+        buffer.append(line.substring(0, line.lastIndexOf(delimiter)));
+        buffer.append(" ");
+
+        return buffer.toString();
+      }
+      else
+      {
+        buffer.append(line);
+        buffer.append(" ");
+      }
+    }
+
+    return null;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** command delimiter */
+  private final String delimiter;
+
+  /** is the delimiter a full line delimiter */
+  private final boolean fullLineDelimiter;
+
+  /** reader for the sql script */
+  private final LineNumberReader reader;
+}
@@ -0,0 +1,307 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.benchmark;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Isolation;
+import com.github.sdorra.database.JDBC;
+import com.github.sdorra.database.JDBCRule;
+import com.github.sdorra.database.JPA;
+import com.github.sdorra.database.JPARule;
+
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full {@code apply().evaluate()} cycle of the {@link JDBCRule} and
+ * the {@link JPARule}, as it is executed by junit for every test method.
+ *
+ * @author Sebastian Sdorra
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RuleBenchmark
+{
+
+  /** sql script of the benchmark */
+  private static final String SCRIPT =
+    "/com/github/sdorra/database/benchmark/benchmark.sql";
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Evaluates a test with the {@link JDBCRule}, which uses the default
+   * connection of the rule.
+   *
+   *
+   * @throws Throwable
+   */
+  @Benchmark
+  public void jdbcRule() throws Throwable
+  {
+    final JDBCRule rule = new JDBCRule();
+
+    rule.apply(new Statement()
+    {
+      @Override
+      public void evaluate() throws Throwable
+      {
+        rule.getConnection();
+      }
+    }, jdbcMethod, target).evaluate();
+  }
+
+  /**
+   * Evaluates a test with the {@link JDBCRule}, which does not use the
+   * database. The database is never created.
+   *
+   *
+   * @throws Throwable
+   */
+  @Benchmark
+  public void jdbcRuleUnused() throws Throwable
+  {
+    new JDBCRule().apply(new Statement()
+    {
+      @Override
+      public void evaluate() throws Throwable {}
+    }, jdbcMethod, target).evaluate();
+  }
+
+  /**
+   * Evaluates a test with the {@link JPARule}, which uses the default
+   * entity manager of the rule.
+   *
+   *
+   * @throws Throwable
+   */
+  @Benchmark
+  public void jpaRule() throws Throwable
+  {
+    final JPARule rule = new JPARule();
+
+    rule.apply(new Statement()
+    {
+      @Override
+      public void evaluate() throws Throwable
+      {
+        rule.getEntityManager();
+      }
+    }, jpaMethod, target).evaluate();
+  }
+
+  /**
+   * Evaluates a test with the {@link JPARule}, which only creates the
+   * entity manager factory.
+   *
+   *
+   * @throws Throwable
+   */
+  @Benchmark
+  public void jpaRuleEntityManagerFactory() throws Throwable
+  {
+    final JPARule rule = new JPARule();
+
+    rule.apply(new Statement()
+    {
+      @Override
+      public void evaluate() throws Throwable
+      {
+        rule.getEntityManagerFactory();
+      }
+    }, jpaFactoryMethod, target).evaluate();
+  }
+
+  /**
+   * Resolves the test methods for the mode.
+   *
+   *
+   * @throws NoSuchMethodException
+   */
+  @Setup
+  public void setUp() throws NoSuchMethodException
+  {
+    jdbcMethod = method("jdbc");
+    jpaMethod = method("jpa");
+    jpaFactoryMethod = method("factory");
+  }
+
+  /**
+   * Returns the method of the test class for the prefix and the mode.
+   *
+   *
+   * @param prefix prefix of the method name
+   *
+   * @return test method
+   *
+   * @throws NoSuchMethodException
+   */
+  private FrameworkMethod method(String prefix) throws NoSuchMethodException
+  {
+    String name = prefix.concat(Character.toUpperCase(mode.charAt(0))
+                    + mode.substring(1));
+
+    return new FrameworkMethod(Target.class.getMethod(name));
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Test class with the different modes of the rules.
+   */
+  public static class Target
+  {
+
+    /**
+     * Method description
+     *
+     */
+    @JPA(value = "benchmark", sql = SCRIPT, prepared = true)
+    public void factoryPrepared() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JPA(value = "benchmark", sql = SCRIPT, sharedEntityManagerFactory = true)
+    public void factoryShared() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JPA(value = "benchmark", sql = SCRIPT)
+    public void factorySimple() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JPA(value = "benchmark", sql = SCRIPT, template = true)
+    public void factoryTemplate() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JDBC(sql = SCRIPT, prepared = true)
+    public void jdbcPrepared() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JDBC(sql = SCRIPT, isolation = Isolation.TRANSACTION)
+    public void jdbcShared() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JDBC(sql = SCRIPT)
+    public void jdbcSimple() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JDBC(sql = SCRIPT, template = true)
+    public void jdbcTemplate() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JPA(value = "benchmark", sql = SCRIPT, prepared = true)
+    public void jpaPrepared() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JPA(value = "benchmark", sql = SCRIPT, sharedEntityManagerFactory = true)
+    public void jpaShared() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JPA(value = "benchmark", sql = SCRIPT)
+    public void jpaSimple() {}
+
+    /**
+     * Method description
+     *
+     */
+    @JPA(value = "benchmark", sql = SCRIPT, template = true)
+    public void jpaTemplate() {}
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /**
+   * mode of the rules, simple starts and seeds a new database, template uses
+   * a snapshot, shared uses a shared database or a shared entity manager
+   * factory and prepared uses a database of the pool
+   */
+  @Param({ "simple", "template", "shared", "prepared" })
+  public String mode;
+
+  /** method of the jdbc rule */
+  private FrameworkMethod jdbcMethod;
+
+  /** method of the jpa rule, which creates the entity manager factory */
+  private FrameworkMethod jpaFactoryMethod;
+
+  /** method of the jpa rule */
+  private FrameworkMethod jpaMethod;
+
+  /** test object */
+  private final Target target = new Target();
+}
@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.benchmark;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.internal.SQLScriptLexer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import java.nio.charset.Charset;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the {@link SQLScriptLexer} without database
+ * access and compares it with the former {@link LineParser}. The scripts are
+ * ascii encoded, the secondary metric {@code chars} reports the parsed
+ * characters per second and is therefore also the throughput in bytes per
+ * second. The huge script has about 260 MB.
+ *
+ * @author Sebastian Sdorra
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class SQLScriptLexerBenchmark
+{
+
+  /**
+   * Splits the script into statements with the streaming lexer.
+   *
+   *
+   * @param counters parsed characters
+   * @param blackhole consumes the statements
+   *
+   * @return number of statements
+   *
+   * @throws IOException
+   */
+  @Benchmark
+  public int lex(Counters counters, Blackhole blackhole) throws IOException
+  {
+    SQLScriptLexer lexer = new SQLScriptLexer(open(), ";", false);
+    int count = 0;
+    String statement;
+
+    while ((statement = lexer.next()) != null)
+    {
+      blackhole.consume(statement);
+      count++;
+    }
+
+    counters.chars += script.length;
+
+    return count;
+  }
+
+  /**
+   * Splits the script into statements with the former line based parser.
+   *
+   *
+   * @param counters parsed characters
+   * @param blackhole consumes the statements
+   *
+   * @return number of statements
+   *
+   * @throws IOException
+   */
+  @Benchmark
+  public int lineBased(Counters counters, Blackhole blackhole)
+    throws IOException
+  {
+    LineParser parser = new LineParser(open(), ";", false);
+    int count = 0;
+    String statement;
+
+    while ((statement = parser.next()) != null)
+    {
+      blackhole.consume(statement);
+      count++;
+    }
+
+    counters.chars += script.length;
+
+    return count;
+  }
+
+  /**
+   * Generates the script.
+   *
+   */
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    script = Scripts.generate(size);
+  }
+
+  /**
+   * Opens a reader for the generated script.
+   *
+   *
+   * @return reader for the script
+   */
+  private Reader open()
+  {
+    return new InputStreamReader(new ByteArrayInputStream(script),
+      Charset.forName("US-ASCII"));
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Counts the parsed characters.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters
+  {
+
+    /** parsed characters */
+    public long chars;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** size of the script */
+  @Param({ "small", "medium", "huge" })
+  public String size;
+
+  /** ascii encoded sql script */
+  private byte[] script;
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.benchmark;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseOptions;
+import com.github.sdorra.database.internal.Databases;
+import com.github.sdorra.database.internal.SQLScriptRunner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.StringReader;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parsing and the execution of synthetic sql scripts with the
+ * {@link SQLScriptRunner}. Every invocation runs the script on a new database.
+ * With a pipeline the script is parsed by a second thread, while the
+ * statements are executed.
+ *
+ * @author Sebastian Sdorra
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScriptRunnerBenchmark
+{
+
+  /**
+   * Runs the script.
+   *
+   */
+  @Benchmark
+  public void runScript()
+  {
+    SQLScriptRunner runner = new SQLScriptRunner(connection, true);
+
+    runner.setBatchSize(batchSize);
+    runner.setPipelineCapacity(pipeline);
+    runner.runScript(new StringReader(script));
+  }
+
+  /**
+   * Creates the script.
+   *
+   */
+  @Setup(Level.Trial)
+  public void setUpScript()
+  {
+    script = Scripts.create(size);
+  }
+
+  /**
+   * Starts a new database.
+   *
+   */
+  @Setup(Level.Invocation)
+  public void start()
+  {
+    database = Databases.create(engine, "benchmark-script",
+      DatabaseOptions.DEFAULT);
+    database.start();
+    connection = database.createConnection();
+  }
+
+  /**
+   * Drops the database.
+   *
+   *
+   * @throws SQLException
+   */
+  @TearDown(Level.Invocation)
+  public void stop() throws SQLException
+  {
+    connection.close();
+    database.shutdown();
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** maximum number of statements per batch */
+  @Param({ "0", "100" })
+  public int batchSize;
+
+  /** database engine */
+  @Param({ "derby", "h2", "hsqldb" })
+  public String engine;
+
+  /** capacity of the parser pipeline, 0 parses before the execution */
+  @Param({ "0", "1000" })
+  public int pipeline;
+
+  /** size of the script */
+  @Param({ "small", "medium", "large" })
+  public String size;
+
+  /** connection to the database */
+  private Connection connection;
+
+  /** database of the current invocation */
+  private Database database;
+
+  /** sql script */
+  private String script;
+}
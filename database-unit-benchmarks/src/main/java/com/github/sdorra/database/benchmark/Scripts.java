@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.benchmark;
+
+/**
+ * Util class to create synthetic sql scripts.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class Scripts
+{
+
+  /** header of each script */
+  private static final String HEADER =
+    "-- synthetic benchmark script\n"
+    + "CREATE TABLE bench_data (id INT NOT NULL, "
+    + "name VARCHAR(64) NOT NULL, amount DOUBLE, PRIMARY KEY (id));\n";
+
+  /** rows of a huge script, about 260 MB */
+  private static final int HUGE = 4000000;
+
+  /** rows of a large script */
+  private static final int LARGE = 20000;
+
+  /** rows of a medium script */
+  private static final int MEDIUM = 1000;
+
+  /** rows of a small script */
+  private static final int SMALL = 10;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private Scripts() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Creates a script with a table and an insert statement for each row. The
+   * script contains comments and string literals with delimiters, to cover
+   * the different paths of the parser.
+   *
+   *
+   * @param size small, medium, large or huge
+   *
+   * @return sql script
+   */
+  public static String create(String size)
+  {
+    int rows = rows(size);
+    StringBuilder script = new StringBuilder(HEADER);
+
+    for (int i = 0; i < rows; i++)
+    {
+      appendRow(script, i);
+    }
+
+    return script.toString();
+  }
+
+  /**
+   * Generates the same script as {@link #create(String)} as ascii bytes. The
+   * script is generated in two passes, to allocate the array only once with
+   * its final length. Huge scripts should be created with this method, a
+   * string would require twice the memory.
+   *
+   *
+   * @param size small, medium, large or huge
+   *
+   * @return ascii encoded sql script
+   */
+  public static byte[] generate(String size)
+  {
+    int rows = rows(size);
+    StringBuilder row = new StringBuilder();
+    long length = HEADER.length();
+
+    for (int i = 0; i < rows; i++)
+    {
+      row.setLength(0);
+      appendRow(row, i);
+      length += row.length();
+    }
+
+    if (length > Integer.MAX_VALUE)
+    {
+      throw new IllegalArgumentException("script is too large for an array");
+    }
+
+    byte[] script = new byte[(int) length];
+    int position = copy(HEADER, script, 0);
+
+    for (int i = 0; i < rows; i++)
+    {
+      row.setLength(0);
+      appendRow(row, i);
+      position = copy(row, script, position);
+    }
+
+    return script;
+  }
+
+  /**
+   * Appends the insert statement of the row and every 100 rows a block
+   * comment.
+   *
+   *
+   * @param script script buffer
+   * @param i number of the row
+   */
+  private static void appendRow(StringBuilder script, int i)
+  {
+    if ((i % 100) == 0)
+    {
+      script.append("/* block ").append(i / 100).append(" */\n");
+    }
+
+    script.append("INSERT INTO bench_data VALUES (").append(i);
+    script.append(", 'name;").append(i).append("', ").append(i * 0.5);
+    script.append(");\n");
+  }
+
+  /**
+   * Copies the ascii characters to the array.
+   *
+   *
+   * @param chars ascii characters
+   * @param script target array
+   * @param position first index in the target array
+   *
+   * @return index after the last copied character
+   */
+  private static int copy(CharSequence chars, byte[] script, int position)
+  {
+    int length = chars.length();
+
+    for (int i = 0; i < length; i++)
+    {
+      script[position++] = (byte) chars.charAt(i);
+    }
+
+    return position;
+  }
+
+  /**
+   * Returns the number of rows for the size.
+   *
+   *
+   * @param size small, medium, large or huge
+   *
+   * @return number of rows
+   */
+  private static int rows(String size)
+  {
+    int rows;
+
+    if ("small".equals(size))
+    {
+      rows = SMALL;
+    }
+    else if ("medium".equals(size))
+    {
+      rows = MEDIUM;
+    }
+    else if ("large".equals(size))
+    {
+      rows = LARGE;
+    }
+    else if ("huge".equals(size))
+    {
+      rows = HUGE;
+    }
+    else
+    {
+      throw new IllegalArgumentException("unknown script size ".concat(size));
+    }
+
+    return rows;
+  }
+}
@@ -0,0 +1,6 @@
+CREATE TABLE bench_user (username VARCHAR(255) NOT NULL, mail VARCHAR(255) NOT NULL, PRIMARY KEY (username));
+INSERT INTO bench_user VALUES ( 'tricia', 'tricia@hitchhiker.com' );
+INSERT INTO bench_user VALUES ( 'arthur', 'arthur@hitchhiker.com' );
+INSERT INTO bench_user VALUES ( 'ford', 'ford@hitchhiker.com' );
+INSERT INTO bench_user VALUES ( 'zaphod', 'zaphod@hitchhiker.com' );
+INSERT INTO bench_user VALUES ( 'marvin', 'marvin@hitchhiker.com' );
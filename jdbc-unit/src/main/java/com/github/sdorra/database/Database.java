@@ -28,8 +28,12 @@ package com.github.sdorra.database;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.File;
+
 import java.sql.Connection;
 
+import javax.sql.DataSource;
+
 /**
  * The database interface helps to interact with the started in-memory database.
  *
@@ -39,7 +43,8 @@ public interface Database
 {
 
   /**
-   * Create a new jdbc connection.
+   * Create a new jdbc connection. The connection is drawn from the connection
+   * pool of the database, closing the connection returns it to the pool.
    *
    *
    * @return new connection
@@ -56,6 +61,30 @@ public interface Database
    */
   public void execute(Object contextClass, String resource, String encoding);
 
+  /**
+   * Loads and executes an sql script from the classpath. Consecutive dml
+   * statements of the script are executed as jdbc batch.
+   *
+   *
+   * @param contextClass context object is used to obtain the class loader
+   * @param resource path to the sql script
+   * @param encoding encoding of the script
+   * @param batchSize maximum number of statements per batch, a value lower
+   *                  than 2 disables batching
+   */
+  public void execute(Object contextClass, String resource, String encoding,
+    int batchSize);
+
+  /**
+   * Stores a snapshot of the current state of the database in the given
+   * directory. The snapshot can be used to start a new database with
+   * {@link #start(java.io.File)}.
+   *
+   *
+   * @param directory target directory of the snapshot
+   */
+  public void snapshot(File directory);
+
   /**
    * Shutdown the in-memory database. This method is automatically invoked, 
    * after the execution of the unit test.
@@ -70,8 +99,25 @@ public interface Database
    */
   public void start();
 
+  /**
+   * Starts the in-memory database as a copy of a snapshot, which was
+   * previously created with {@link #snapshot(java.io.File)}.
+   *
+   *
+   * @param snapshot directory of the snapshot
+   */
+  public void start(File snapshot);
+
   //~--- get methods ----------------------------------------------------------
 
+  /**
+   * Returns a pooled {@link DataSource} for the in-memory database.
+   *
+   *
+   * @return pooled data source
+   */
+  public DataSource getDataSource();
+
   /**
    * Returns the jdbc driver class for the in-memory database connection.
    *
@@ -80,6 +126,14 @@ public interface Database
    */
   public String getDriver();
 
+  /**
+   * Returns the tuning options of the database.
+   *
+   *
+   * @return tuning options
+   */
+  public DatabaseOptions getOptions();
+
   /**
    * Returns the jdbc url for the in-memory database connection.
    *
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+/**
+ * A database engine creates in-memory databases. Engines are loaded with the
+ * {@link java.util.ServiceLoader}, custom engines can be registered in
+ * {@code META-INF/services/com.github.sdorra.database.DatabaseEngine}. The
+ * engine of a test is selected by its name with the {@link JDBC#engine()}
+ * attribute.
+ *
+ * @author Sebastian Sdorra
+ */
+public interface DatabaseEngine
+{
+
+  /**
+   * Creates a new in-memory database with the given name. The database is not
+   * started. Options which are not supported by the engine are ignored.
+   *
+   *
+   * @param name unique name of the database
+   * @param options tuning options
+   *
+   * @return new database
+   */
+  public Database createDatabase(String name, DatabaseOptions options);
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the class name of the hibernate dialect for the engine.
+   *
+   *
+   * @return hibernate dialect
+   */
+  public String getDialect();
+
+  /**
+   * Returns the name of the engine, e.g. derby.
+   *
+   *
+   * @return name of the engine
+   */
+  public String getName();
+}
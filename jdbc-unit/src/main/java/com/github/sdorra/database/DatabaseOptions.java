@@ -0,0 +1,411 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+/**
+ * Tuning options for the database engine. The options are immutable and are
+ * created with the {@link Builder}:
+ *
+ * <pre>
+ * DatabaseOptions options = DatabaseOptions.builder(DatabaseOptions.FASTEST)
+ *   .pageCacheSize(200)
+ *   .build();
+ * </pre>
+ *
+ * Options which are not supported by an engine are ignored. A value of
+ * {@link #ENGINE_DEFAULT} keeps the default of the engine.
+ *
+ * @author Sebastian Sdorra
+ * @see Tuning
+ */
+public final class DatabaseOptions
+{
+
+  /** value of an option, which uses the default of the engine */
+  public static final int ENGINE_DEFAULT = -1;
+
+  /** options with the defaults of the engine */
+  public static final DatabaseOptions DEFAULT = new Builder().build();
+
+  /**
+   * options for the fastest setup and drop of throwaway databases, the
+   * options may hide durability or locking problems
+   */
+  public static final DatabaseOptions FASTEST =
+    new Builder().durability(Durability.TEST).pageCacheSize(100)
+      .statementCacheSize(20).lockWaitTimeout(5).preallocatedPages(1)
+      .asynchronousDrop(true).build();
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs new options from the builder.
+   *
+   *
+   * @param builder builder
+   */
+  private DatabaseOptions(Builder builder)
+  {
+    this.durability = builder.durability;
+    this.pageCacheSize = builder.pageCacheSize;
+    this.statementCacheSize = builder.statementCacheSize;
+    this.lockWaitTimeout = builder.lockWaitTimeout;
+    this.preallocatedPages = builder.preallocatedPages;
+    this.asynchronousDrop = builder.asynchronousDrop;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns a new builder with the defaults of the engine.
+   *
+   *
+   * @return new builder
+   */
+  public static Builder builder()
+  {
+    return new Builder();
+  }
+
+  /**
+   * Returns a new builder, which is initialized with the given options.
+   *
+   *
+   * @param options initial options
+   *
+   * @return new builder
+   */
+  public static Builder builder(DatabaseOptions options)
+  {
+    return new Builder(options);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (this == obj)
+    {
+      return true;
+    }
+
+    if ((obj == null) || (getClass() != obj.getClass()))
+    {
+      return false;
+    }
+
+    final DatabaseOptions other = (DatabaseOptions) obj;
+
+    return (durability == other.durability)
+      && (pageCacheSize == other.pageCacheSize)
+      && (statementCacheSize == other.statementCacheSize)
+      && (lockWaitTimeout == other.lockWaitTimeout)
+      && (preallocatedPages == other.preallocatedPages)
+      && (asynchronousDrop == other.asynchronousDrop);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode()
+  {
+    int hash = durability.hashCode();
+
+    hash = (31 * hash) + pageCacheSize;
+    hash = (31 * hash) + statementCacheSize;
+    hash = (31 * hash) + lockWaitTimeout;
+    hash = (31 * hash) + preallocatedPages;
+    hash = (31 * hash) + (asynchronousDrop
+      ? 1
+      : 0);
+
+    return hash;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return "durability=" + durability + ",pageCacheSize=" + pageCacheSize
+      + ",statementCacheSize=" + statementCacheSize + ",lockWaitTimeout="
+      + lockWaitTimeout + ",preallocatedPages=" + preallocatedPages
+      + ",asynchronousDrop=" + asynchronousDrop;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the durability of the engine.
+   *
+   *
+   * @return durability
+   */
+  public Durability getDurability()
+  {
+    return durability;
+  }
+
+  /**
+   * Returns the number of seconds a transaction waits for a lock, before it
+   * fails.
+   *
+   *
+   * @return lock wait timeout in seconds or {@link #ENGINE_DEFAULT}
+   */
+  public int getLockWaitTimeout()
+  {
+    return lockWaitTimeout;
+  }
+
+  /**
+   * Returns the number of pages of the page cache.
+   *
+   *
+   * @return number of pages or {@link #ENGINE_DEFAULT}
+   */
+  public int getPageCacheSize()
+  {
+    return pageCacheSize;
+  }
+
+  /**
+   * Returns the number of pages, which are allocated when a table or an index
+   * is created.
+   *
+   *
+   * @return number of pages or {@link #ENGINE_DEFAULT}
+   */
+  public int getPreallocatedPages()
+  {
+    return preallocatedPages;
+  }
+
+  /**
+   * Returns the number of compiled statements, which are cached by the
+   * engine.
+   *
+   *
+   * @return size of the statement cache or {@link #ENGINE_DEFAULT}
+   */
+  public int getStatementCacheSize()
+  {
+    return statementCacheSize;
+  }
+
+  /**
+   * Returns {@code true} if the database is dropped by a background thread,
+   * after the database was shutdown. Apache derby waits half a second during
+   * the drop of an in-memory database.
+   *
+   *
+   * @return {@code true} if the drop is asynchronous
+   */
+  public boolean isAsynchronousDrop()
+  {
+    return asynchronousDrop;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Builder for {@link DatabaseOptions}.
+   */
+  public static final class Builder
+  {
+
+    /**
+     * Constructs a new builder with the defaults of the engine.
+     *
+     */
+    private Builder() {}
+
+    /**
+     * Constructs a new builder, which is initialized with the given options.
+     *
+     *
+     * @param options initial options
+     */
+    private Builder(DatabaseOptions options)
+    {
+      this.durability = options.durability;
+      this.pageCacheSize = options.pageCacheSize;
+      this.statementCacheSize = options.statementCacheSize;
+      this.lockWaitTimeout = options.lockWaitTimeout;
+      this.preallocatedPages = options.preallocatedPages;
+      this.asynchronousDrop = options.asynchronousDrop;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Drop the database with a background thread.
+     *
+     *
+     * @param asynchronousDrop {@code true} for an asynchronous drop
+     *
+     * @return {@code this}
+     */
+    public Builder asynchronousDrop(boolean asynchronousDrop)
+    {
+      this.asynchronousDrop = asynchronousDrop;
+
+      return this;
+    }
+
+    /**
+     * Creates the options.
+     *
+     *
+     * @return options
+     */
+    public DatabaseOptions build()
+    {
+      return new DatabaseOptions(this);
+    }
+
+    /**
+     * Sets the durability of the engine.
+     *
+     *
+     * @param durability durability
+     *
+     * @return {@code this}
+     */
+    public Builder durability(Durability durability)
+    {
+      this.durability = durability;
+
+      return this;
+    }
+
+    /**
+     * Sets the number of seconds a transaction waits for a lock.
+     *
+     *
+     * @param lockWaitTimeout lock wait timeout in seconds
+     *
+     * @return {@code this}
+     */
+    public Builder lockWaitTimeout(int lockWaitTimeout)
+    {
+      this.lockWaitTimeout = lockWaitTimeout;
+
+      return this;
+    }
+
+    /**
+     * Sets the number of pages of the page cache.
+     *
+     *
+     * @param pageCacheSize number of pages
+     *
+     * @return {@code this}
+     */
+    public Builder pageCacheSize(int pageCacheSize)
+    {
+      this.pageCacheSize = pageCacheSize;
+
+      return this;
+    }
+
+    /**
+     * Sets the number of pages, which are allocated for a new table or index.
+     *
+     *
+     * @param preallocatedPages number of pages
+     *
+     * @return {@code this}
+     */
+    public Builder preallocatedPages(int preallocatedPages)
+    {
+      this.preallocatedPages = preallocatedPages;
+
+      return this;
+    }
+
+    /**
+     * Sets the number of compiled statements, which are cached by the engine.
+     *
+     *
+     * @param statementCacheSize size of the statement cache
+     *
+     * @return {@code this}
+     */
+    public Builder statementCacheSize(int statementCacheSize)
+    {
+      this.statementCacheSize = statementCacheSize;
+
+      return this;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** asynchronous drop */
+    private boolean asynchronousDrop = false;
+
+    /** durability */
+    private Durability durability = Durability.DEFAULT;
+
+    /** lock wait timeout */
+    private int lockWaitTimeout = ENGINE_DEFAULT;
+
+    /** size of the page cache */
+    private int pageCacheSize = ENGINE_DEFAULT;
+
+    /** preallocated pages */
+    private int preallocatedPages = ENGINE_DEFAULT;
+
+    /** size of the statement cache */
+    private int statementCacheSize = ENGINE_DEFAULT;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** asynchronous drop */
+  private final boolean asynchronousDrop;
+
+  /** durability */
+  private final Durability durability;
+
+  /** lock wait timeout in seconds */
+  private final int lockWaitTimeout;
+
+  /** size of the page cache */
+  private final int pageCacheSize;
+
+  /** preallocated pages */
+  private final int preallocatedPages;
+
+  /** size of the statement cache */
+  private final int statementCacheSize;
+}
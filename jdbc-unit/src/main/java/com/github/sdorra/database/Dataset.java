@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A dataset is a csv or tsv file, which is loaded into a table after the sql
+ * script was executed. The first line of the file must contain the column
+ * names. Values can be quoted with double quotes, an empty unquoted value is
+ * loaded as {@code NULL}. The file is streamed and inserted with batched
+ * prepared statements, which is much faster than a sql script with one insert
+ * statement per row.
+ *
+ * <pre>
+ * &#64;JDBC(
+ *   sql = "/schema.sql",
+ *   datasets = {
+ *     &#64;Dataset(table = "users", value = "/users.csv"),
+ *     &#64;Dataset(table = "groups", value = "/groups.tsv", separator = '\t')
+ *   }
+ * )
+ * </pre>
+ *
+ * @author Sebastian Sdorra
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({})
+public @interface Dataset
+{
+
+  /**
+   * Path to the csv file in the classpath.
+   *
+   * @return path to csv file
+   */
+  String value();
+
+  /**
+   * Name of the table.
+   *
+   * @return table name
+   */
+  String table();
+
+  /**
+   * Separator of the values, use {@code '\t'} for tsv files.
+   *
+   * @return value separator
+   */
+  char separator() default ',';
+
+  /**
+   * Encoding of the csv file.
+   *
+   * @return encoding of csv file
+   */
+  String encoding() default "UTF-8";
+}
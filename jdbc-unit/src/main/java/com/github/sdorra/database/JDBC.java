@@ -41,12 +41,15 @@ import java.lang.annotation.Target;
 public @interface JDBC
 {
   /**
-   * Path to a sql file in the classpath. This sql file is loaded on database 
-   * start.
+   * Paths to sql files in the classpath. The sql files are loaded in the 
+   * given order on database start. In the template mode a snapshot is kept 
+   * for every prefix of the list, tests which share the first scripts 
+   * restore the snapshot of the shared scripts and execute only the 
+   * remaining ones.
    * 
-   * @return path to sql file
+   * @return paths to sql files
    */
-  String sql() default "";
+  String[] sql() default {};
   
   /**
    * Encoding of the sql file.
@@ -54,4 +57,67 @@ public @interface JDBC
    * @return encoding of sql file
    */
   String encoding() default "UTF-8";
+  
+  /**
+   * Set to {@code true} to execute the sql script only once. The result is 
+   * kept as snapshot and every test gets a fresh copy of the snapshot. The
+   * snapshots are stored in a disk cache below the target directory and are 
+   * reused by later builds and other surefire forks.
+   * 
+   * @return {@code true} if the template mode is enabled
+   */
+  boolean template() default false;
+  
+  /**
+   * Maximum number of consecutive dml statements of the sql file, which are 
+   * executed as one jdbc batch. Ddl statements and queries are always 
+   * executed one by one. A value lower than 2 disables batching.
+   * 
+   * @return maximum number of statements per batch
+   */
+  int batchSize() default 0;
+  
+  /**
+   * Isolation of the database between the tests. The default creates a new 
+   * database for every test.
+   * 
+   * @return isolation of the database
+   */
+  Isolation isolation() default Isolation.DATABASE;
+  
+  /**
+   * Set to {@code true} to take an already started and seeded database from 
+   * a pool, which is filled by background workers. The database is dropped 
+   * asynchronously after the test.
+   * 
+   * @return {@code true} if a prepared database should be used
+   */
+  boolean prepared() default false;
+  
+  /**
+   * Name of the in-memory database engine. The engines derby, h2 and hsqldb 
+   * are supported out of the box, the jdbc driver of the engine must be on 
+   * the classpath. Further engines can be registered as 
+   * {@link DatabaseEngine}.
+   * 
+   * @return name of the engine
+   */
+  String engine() default "derby";
+  
+  /**
+   * Csv or tsv datasets, which are loaded into tables after the sql script 
+   * was executed. With {@link Isolation#TRANSACTION} the datasets are loaded 
+   * with the connection of the test and they are rolled back after the test.
+   * 
+   * @return datasets
+   */
+  Dataset[] datasets() default {};
+
+  /**
+   * Tuning options for the in-memory database, e.g. relaxed durability or a
+   * smaller page cache. The options override the options of the rule.
+   *
+   * @return tuning options
+   */
+  Tuning tuning() default @Tuning;
 }
@@ -0,0 +1,281 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.internal.Closeables;
+import com.github.sdorra.database.internal.Databases;
+import com.github.sdorra.database.internal.Datasets;
+import com.github.sdorra.database.internal.DerbyDatabase;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.Connection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The JDBCClassRule starts an in-memory sql database (namely apache derby) 
+ * once for a whole test class or suite. The rule must be used as 
+ * {@link org.junit.ClassRule} and reads the {@link JDBC} annotation of the 
+ * test or suite class. The database can be reset after each test method with 
+ * a {@link ResetStrategy}, by adding the rule returned by {@link #reset()} as 
+ * {@link org.junit.Rule}:
+ * 
+ * <pre>
+ * &#64;ClassRule
+ * public static JDBCClassRule db = new JDBCClassRule(ResetStrategies.transaction());
+ * 
+ * &#64;Rule
+ * public TestRule reset = db.reset();
+ * </pre>
+ *
+ * @author Sebastian Sdorra
+ */
+public class JDBCClassRule implements TestRule
+{
+
+  /** prefix for the database name */
+  private static final String PREFIX = "jdbc-unit-class";
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new JDBCClassRule, which does not reset the database.
+   *
+   */
+  public JDBCClassRule()
+  {
+    this(ResetStrategies.none());
+  }
+
+  /**
+   * Constructs a new JDBCClassRule.
+   *
+   *
+   * @param resetStrategy strategy to reset the database after each test
+   */
+  public JDBCClassRule(ResetStrategy resetStrategy)
+  {
+    this.resetStrategy = resetStrategy;
+    this.database = new DerbyDatabase(Databases.createName(PREFIX));
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Statement apply(final Statement base, final Description description)
+  {
+    final JDBC jdbc = description.getAnnotation(JDBC.class);
+    final Object context = (description.getTestClass() != null)
+      ? description.getTestClass()
+      : this;
+
+    return new Statement()
+    {
+
+      @Override
+      public void evaluate() throws Throwable
+      {
+        if (jdbc != null)
+        {
+          database = Databases.create(jdbc.engine(), PREFIX,
+            Databases.options(jdbc.tuning(), DatabaseOptions.DEFAULT));
+
+          try
+          {
+            Databases.start(database, context,
+              Databases.getScripts(jdbc.sql()), jdbc.encoding(),
+              jdbc.batchSize(), jdbc.template());
+            Datasets.load(database, context, jdbc.datasets());
+          }
+          catch (RuntimeException ex)
+          {
+            if (database.isRunning())
+            {
+              database.shutdown();
+            }
+
+            throw ex;
+          }
+        }
+        else
+        {
+          database.start();
+        }
+
+        try
+        {
+          resetStrategy.prepare(database);
+          base.evaluate();
+        }
+        finally
+        {
+          try
+          {
+            closeConnections();
+            resetStrategy.release(database);
+          }
+          finally
+          {
+            database.shutdown();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Creates a new jdbc connection for the in-memory database. The connection
+   * is closed after the test method, if the rule of {@link #reset()} is used,
+   * or after the test class.
+   *
+   * @return jdbc connection
+   */
+  public Connection createConnection()
+  {
+    Connection connection =
+      resetStrategy.wrap(database.createConnection());
+
+    synchronized (connections)
+    {
+      connections.add(connection);
+    }
+
+    return connection;
+  }
+
+  /**
+   * Returns a rule which resets the database after each test method with the
+   * {@link ResetStrategy} of this rule. The returned rule must be used as
+   * {@link org.junit.Rule}.
+   *
+   *
+   * @return rule which resets the database
+   */
+  public TestRule reset()
+  {
+    return new TestRule()
+    {
+      @Override
+      public Statement apply(final Statement base, Description description)
+      {
+        return new Statement()
+        {
+          @Override
+          public void evaluate() throws Throwable
+          {
+            try
+            {
+              base.evaluate();
+            }
+            finally
+            {
+              closeConnections();
+              resetStrategy.reset(database);
+            }
+          }
+        };
+      }
+    };
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns a connection which is closed after the test method, if the rule
+   * of {@link #reset()} is used, or after the test class.
+   *
+   * @return jdbc connection
+   */
+  public Connection getConnection()
+  {
+    synchronized (connections)
+    {
+      if (connection == null)
+      {
+        connection = createConnection();
+      }
+
+      return connection;
+    }
+  }
+
+  /**
+   * Returns the in-memory database.
+   *
+   *
+   * @return in-memory database.
+   */
+  public Database getDatabase()
+  {
+    return database;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Closes all connections, which were handed out by the rule.
+   *
+   */
+  private void closeConnections()
+  {
+    synchronized (connections)
+    {
+      for (Connection c : connections)
+      {
+        Closeables.close(c);
+      }
+
+      connections.clear();
+      connection = null;
+    }
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** connections which were handed out by the rule */
+  private final List<Connection> connections = new ArrayList<Connection>();
+
+  /** database */
+  private Database database;
+
+  /** strategy to reset the database after each test */
+  private final ResetStrategy resetStrategy;
+
+  /** shared jdbc connection */
+  private Connection connection;
+}
@@ -29,7 +29,19 @@ package com.github.sdorra.database;
 //~--- non-JDK imports --------------------------------------------------------
 
 import com.github.sdorra.database.internal.Annotations;
+import com.github.sdorra.database.internal.Databases;
+import com.github.sdorra.database.internal.Datasets;
 import com.github.sdorra.database.internal.DerbyDatabase;
+import com.github.sdorra.database.internal.LatencyRecorder;
+import com.github.sdorra.database.internal.LazyStart;
+import com.github.sdorra.database.internal.LeakDetector;
+import com.github.sdorra.database.internal.Lifecycle;
+import com.github.sdorra.database.internal.PreparedDatabases;
+import com.github.sdorra.database.internal.QueryCounter;
+import com.github.sdorra.database.internal.SharedDatabases;
+import com.github.sdorra.database.internal.StatementListener;
+import com.github.sdorra.database.internal.StatementListeners;
+import com.github.sdorra.database.internal.TableAssertions;
 
 import org.junit.rules.MethodRule;
 import org.junit.runners.model.FrameworkMethod;
@@ -39,66 +51,237 @@ import org.junit.runners.model.Statement;
 
 import java.sql.Connection;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * The JDBCRule starts an in-memory sql database (namely apache derby). The
- * database is started before each test method is executed and the database is
- * shutdown after the method execution.
+ * database is started when a test method uses it for the first time and the
+ * database is shutdown after the method execution. Test methods which never
+ * use the database do not create it at all. With {@link Isolation#TRANSACTION}
+ * the database is created only once and each test method runs in a
+ * transaction, which is rolled back after the method execution.
  *
  * @author Sebastian Sdorra 
  */
 public class JDBCRule implements MethodRule
 {
 
+  /** prefix for the database name */
+  private static final String PREFIX = "jdbc-unit";
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Adds a listener, which receives the {@link LifecycleEvent}s of the tests
+   * executed by this rule. Listeners for all rules can be registered in
+   * {@code META-INF/services/com.github.sdorra.database.LifecycleListener}.
+   *
+   *
+   * @param listener lifecycle listener
+   *
+   * @return {@code this}
+   */
+  public JDBCRule addListener(LifecycleListener listener)
+  {
+    listeners.add(listener);
+
+    return this;
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
-  public Statement apply(final Statement base, final FrameworkMethod method,
+  public Statement apply(Statement base, final FrameworkMethod method,
     final Object target)
   {
     final JDBC jdbc = Annotations.find(method, target, JDBC.class);
-
-    return new Statement()
+    final MaxQueries maxQueries = Annotations.find(method, target,
+                                    MaxQueries.class);
+    final Statement test = Lifecycle.measure(base, method.getName());
+    Statement statement = new Statement()
     {
 
       @Override
       public void evaluate() throws Throwable
       {
-        database.start();
+        context = target;
+
+        String name = method.getName();
 
-        String sql = getSQLScript(jdbc);
+        leakDetector = new LeakDetector(leakDetection, name);
 
-        if (sql != null)
+        if (maxQueries != null)
         {
-          database.execute(target, sql, jdbc.encoding());
+          queryCounter = new QueryCounter(name);
         }
 
+        latencyRecorder = statementLatencies
+          ? new LatencyRecorder(target.getClass().getName().concat(".").concat(
+            name))
+          : null;
+        statementListener = StatementListeners.combine(queryCounter,
+          latencyRecorder);
+
         try
         {
-          base.evaluate();
+          if ((jdbc != null) && (jdbc.isolation() == Isolation.TRANSACTION))
+          {
+            evaluateInTransaction(test, name, jdbc, target);
+          }
+          else if ((jdbc != null) && jdbc.prepared())
+          {
+            evaluateWithPreparedDatabase(test, name, jdbc, target);
+          }
+          else
+          {
+            evaluateWithDatabase(test, name, jdbc, target);
+          }
+
+          // only reached, if the test itself has not failed
+          leakDetector.verify();
+
+          if (queryCounter != null)
+          {
+            queryCounter.verify(maxQueries);
+          }
         }
         finally
         {
-          database.shutdown();
-
-          if (connection != null)
+          if (latencyRecorder != null)
           {
-            connection.close();
+            latencyRecorder.report();
           }
+
+          leakDetector = null;
+          queryCounter = null;
+          statementListener = null;
+          instrumentedConnection = null;
         }
       }
     };
+
+    return Lifecycle.bind(statement, listeners);
+  }
+
+  /**
+   * Compares the result of the query with an expected dataset. The dataset is
+   * a csv or tsv file with the column labels in the first line or a sql file
+   * with a query, which returns the expected rows. The rows are compared as
+   * unordered set, both sides are streamed.
+   *
+   *
+   * @param query sql query
+   * @param expected classpath path of the expected dataset
+   *
+   * @throws AssertionError with the first mismatches
+   */
+  public void assertQuery(String query, String expected)
+  {
+    TableAssertions.assertQuery(ruleConnection(), context, query, expected);
   }
 
   /**
-   * Creates a new jdbc connection for the in-memory database. Note this
-   * connection is not closed atfer the method execution.
+   * Compares the content of the table with an expected dataset. The dataset
+   * is a csv or tsv file with the column names in the first line or a sql
+   * file with a query, which returns all columns of the table. The table is
+   * read in the order of its primary key. The memory usage is constant, if
+   * the dataset is sorted by the primary key too.
+   *
+   *
+   * @param table name of the table
+   * @param expected classpath path of the expected dataset
+   *
+   * @throws AssertionError with the first mismatches
+   */
+  public void assertTable(String table, String expected)
+  {
+    TableAssertions.assertTable(ruleConnection(), context, table, expected);
+  }
+
+  /**
+   * Creates a new jdbc connection for the in-memory database. The connection
+   * should be closed by the test, connections which are still open after the
+   * method execution are closed by the rule and reported according to the
+   * {@link LeakDetection} mode. With {@link Isolation#TRANSACTION} all
+   * connections of a test share the transaction of {@link #getConnection()},
+   * they see the changes of each other and are rolled back and closed after
+   * the method execution.
    *
    * @return jdbc connection
    */
   public Connection createConnection()
   {
-    return database.createConnection();
+    Connection c = openConnection();
+
+    if (statementListener != null)
+    {
+      c = StatementListeners.wrap(c, statementListener);
+    }
+
+    // connections of a transaction are closed by the reset strategy
+    if ((leakDetector != null) && (resetStrategy == null))
+    {
+      c = leakDetector.track(c, Connection.class);
+    }
+
+    return c;
+  }
+
+  /**
+   * Sets the handling of connections, which are not closed by a test. The
+   * default is read from the system property
+   * {@code database-unit.leak-detection}.
+   *
+   *
+   * @param leakDetection leak detection mode
+   *
+   * @return {@code this}
+   */
+  public JDBCRule withLeakDetection(LeakDetection leakDetection)
+  {
+    this.leakDetection = leakDetection;
+
+    return this;
+  }
+
+  /**
+   * Enables the recording of the execute and fetch latencies of the
+   * statements, which are executed with the connections of the rule. The
+   * latencies are available with {@link #getStatementLatencies()} and are
+   * written as json report, if the system property
+   * {@code database-unit.statement-latency.dir} is set. The default is read
+   * from the system property {@code database-unit.statement-latency}.
+   *
+   *
+   * @param statementLatencies {@code true} to record the latencies
+   *
+   * @return {@code this}
+   */
+  public JDBCRule withStatementLatencies(boolean statementLatencies)
+  {
+    this.statementLatencies = statementLatencies;
+
+    return this;
+  }
+
+  /**
+   * Sets the tuning options for the databases of this rule. The options can be
+   * overridden by the {@link JDBC#tuning()} attribute of a test.
+   *
+   *
+   * @param options tuning options
+   *
+   * @return {@code this}
+   */
+  public JDBCRule withOptions(DatabaseOptions options)
+  {
+    this.options = options;
+    this.database = new DerbyDatabase(Databases.createName(PREFIX), options);
+
+    return this;
   }
 
   //~--- get methods ----------------------------------------------------------
@@ -111,57 +294,334 @@ public class JDBCRule implements MethodRule
    */
   public Connection getConnection()
   {
-    if (connection == null)
+    Connection c = ruleConnection();
+
+    if (statementListener != null)
+    {
+      if (instrumentedConnection == null)
+      {
+        instrumentedConnection = StatementListeners.wrap(c, statementListener);
+      }
+
+      c = instrumentedConnection;
+    }
+
+    return c;
+  }
+
+  /**
+   * Returns the latencies of the statements of the current or of the last
+   * test, the statements with the longest execution come first. The list is
+   * empty, if the recording is not enabled with
+   * {@link #withStatementLatencies(boolean)}.
+   *
+   *
+   * @return latencies of the statements
+   */
+  public List<StatementLatency> getStatementLatencies()
+  {
+    List<StatementLatency> latencies;
+
+    if (latencyRecorder != null)
     {
-      connection = createConnection();
+      latencies = latencyRecorder.getLatencies();
+    }
+    else
+    {
+      latencies = Collections.emptyList();
     }
 
-    return connection;
+    return latencies;
   }
 
   /**
-   * Returns the in-memory database.
+   * Returns the in-memory database. The database is started and seeded on
+   * the first call during a test.
    *
    *
    * @return in-memory database.
    */
   public Database getDatabase()
   {
+    ensureStarted();
+
     return database;
   }
 
-  //~--- get methods ----------------------------------------------------------
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Starts the database of the current test, if it was not started before.
+   *
+   */
+  private void ensureStarted()
+  {
+    if (lazyStart != null)
+    {
+      lazyStart.ensureStarted();
+    }
+  }
+
+  /**
+   * Opens a new connection, which is not tracked by the leak detection.
+   *
+   *
+   * @return jdbc connection
+   */
+  private Connection openConnection()
+  {
+    Connection c = getDatabase().createConnection();
+
+    if (resetStrategy != null)
+    {
+      c = resetStrategy.wrap(c);
+    }
+
+    return c;
+  }
+
+  /**
+   * Returns the connection of the rule, without counting its statements. The
+   * connection is used for datasets and assertions.
+   *
+   *
+   * @return jdbc connection
+   */
+  private Connection ruleConnection()
+  {
+
+    // the start may open the connection of a transaction
+    ensureStarted();
+
+    if (connection == null)
+    {
+      connection = openConnection();
+    }
+
+    return connection;
+  }
+
+  /**
+   * Creates a new database, executes the sql script and evaluates the test.
+   * The database is created on first use and dropped after the test.
+   *
+   *
+   * @param base test statement
+   * @param name name of the test
+   * @param jdbc jdbc annotation or {@code null}
+   * @param target test object
+   *
+   * @throws Throwable
+   */
+  private void evaluateWithDatabase(Statement base, String name,
+    final JDBC jdbc, final Object target)
+    throws Throwable
+  {
+    Database local = database;
+
+    lazyStart = new LazyStart(name)
+    {
+      @Override
+      protected void start()
+      {
+        if (jdbc != null)
+        {
+          database = Databases.create(jdbc.engine(), PREFIX,
+            Databases.options(jdbc.tuning(), options));
+          Databases.start(database, target, Databases.getScripts(jdbc.sql()),
+            jdbc.encoding(), jdbc.batchSize(), jdbc.template());
+          Datasets.load(database, target, jdbc.datasets());
+        }
+        else
+        {
+          database.start();
+        }
+      }
+    };
+
+    try
+    {
+      base.evaluate();
+    }
+    finally
+    {
+      finish();
+
+      if (database.isRunning())
+      {
+        database.shutdown();
+      }
+
+      if (connection != null)
+      {
+        connection.close();
+      }
+
+      connection = null;
+      database = local;
+    }
+  }
+
+  /**
+   * Evaluates the test with a prepared database from the pool. The database
+   * is taken on first use and dropped asynchronously after the test.
+   *
+   *
+   * @param base test statement
+   * @param name name of the test
+   * @param jdbc jdbc annotation
+   * @param target test object
+   *
+   * @throws Throwable
+   */
+  private void evaluateWithPreparedDatabase(Statement base, String name,
+    final JDBC jdbc, final Object target)
+    throws Throwable
+  {
+    Database local = database;
+
+    lazyStart = new LazyStart(name)
+    {
+      @Override
+      protected void start()
+      {
+        database = PreparedDatabases.take(jdbc.engine(),
+          Databases.options(jdbc.tuning(), options), target,
+          Databases.getScripts(jdbc.sql()), jdbc.encoding(),
+          jdbc.batchSize(), jdbc.template());
+        Datasets.load(database, target, jdbc.datasets());
+      }
+    };
+
+    try
+    {
+      base.evaluate();
+    }
+    finally
+    {
+      finish();
+
+      if (connection != null)
+      {
+        connection.close();
+      }
+
+      if (database != local)
+      {
+        PreparedDatabases.release(database);
+      }
+
+      connection = null;
+      database = local;
+    }
+  }
 
   /**
-   * Method description
+   * Evaluates the test in a transaction on the shared database for the sql
+   * script. The transaction is started on first use and rolled back after
+   * the test.
    *
    *
-   * @param jdbc
+   * @param base test statement
+   * @param name name of the test
+   * @param jdbc jdbc annotation
+   * @param target test object
    *
-   * @return
+   * @throws Throwable
    */
-  private String getSQLScript(JDBC jdbc)
+  private void evaluateInTransaction(Statement base, String name,
+    final JDBC jdbc, final Object target)
+    throws Throwable
   {
-    String sql = null;
+    Database local = database;
+
+    lazyStart = new LazyStart(name)
+    {
+      @Override
+      protected void start()
+      {
+        database = SharedDatabases.get(jdbc.engine(),
+          Databases.options(jdbc.tuning(), options), target,
+          Databases.getScripts(jdbc.sql()), jdbc.encoding(),
+          jdbc.batchSize());
+        resetStrategy = ResetStrategies.transaction();
+        Datasets.load(ruleConnection(), target, jdbc.datasets());
+      }
+    };
 
-    if (jdbc != null)
+    try
     {
-      String script = jdbc.sql();
+      base.evaluate();
+    }
+    finally
+    {
+      finish();
 
-      if ((script != null) && (script.length() > 0))
+      if (resetStrategy != null)
       {
-        sql = script;
+        resetStrategy.reset(database);
       }
+
+      resetStrategy = null;
+      connection = null;
+      database = local;
     }
+  }
 
-    return sql;
+  /**
+   * Closes the leaked connections of the test, reports a test which has not
+   * used the database and removes the lazy start of the test.
+   *
+   */
+  private void finish()
+  {
+    leakDetector.reclaim();
+    lazyStart.finish();
+    lazyStart = null;
   }
 
   //~--- fields ---------------------------------------------------------------
 
+  /** test object, which is used to load datasets */
+  private Object context = this;
+
   /** database */
-  private final Database database = new DerbyDatabase("jdbc-unit");
+  private Database database = new DerbyDatabase(Databases.createName(PREFIX));
 
   /** jdbc database connection */
   private Connection connection;
+
+  /** connection of the rule, which reports its statements */
+  private Connection instrumentedConnection;
+
+  /** creates the database of the current test on first use */
+  private LazyStart lazyStart;
+
+  /** handling of leaked connections */
+  private LeakDetection leakDetection = LeakDetector.getDefaultMode();
+
+  /** tracks the connections of the current test */
+  private LeakDetector leakDetector;
+
+  /** records the statement latencies of the current or last test */
+  private LatencyRecorder latencyRecorder;
+
+  /** counts the statements of a test with a query budget */
+  private QueryCounter queryCounter;
+
+  /** record statement latencies */
+  private boolean statementLatencies = LatencyRecorder.isEnabledByDefault();
+
+  /** receives the statements of the current test or {@code null} */
+  private StatementListener statementListener;
+
+  /** lifecycle listeners of the rule */
+  private final List<LifecycleListener> listeners =
+    new ArrayList<LifecycleListener>();
+
+  /** tuning options of the rule */
+  private DatabaseOptions options = DatabaseOptions.DEFAULT;
+
+  /** reset strategy of the current test, if the test runs in a transaction */
+  private ResetStrategy resetStrategy;
 }
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event of a finished lifecycle phase.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class LifecycleEvent
+{
+
+  /**
+   * Constructs a new event.
+   *
+   *
+   * @param phase lifecycle phase
+   * @param timestamp start of the phase in milliseconds since the epoch
+   * @param duration duration of the phase in nanoseconds
+   * @param detail details of the phase, e.g. the statement or the script
+   * @param count number of statements or rows of the phase
+   */
+  public LifecycleEvent(LifecyclePhase phase, long timestamp, long duration,
+    String detail, int count)
+  {
+    this.phase = phase;
+    this.timestamp = timestamp;
+    this.duration = duration;
+    this.detail = detail;
+    this.count = count;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return phase + " " + detail + " (" + count + ") "
+      + TimeUnit.NANOSECONDS.toMicros(duration) + "us";
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of statements of the phase, e.g. the size of a batch
+   * or the number of statements of a script. The count of the dataset phase
+   * is the number of loaded rows. Phases without statements have a count of
+   * one.
+   *
+   *
+   * @return number of statements
+   */
+  public int getCount()
+  {
+    return count;
+  }
+
+  /**
+   * Returns details of the phase, e.g. the statement, the script or the name
+   * of the test method.
+   *
+   *
+   * @return details of the phase
+   */
+  public String getDetail()
+  {
+    return detail;
+  }
+
+  /**
+   * Returns the duration of the phase.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return duration of the phase
+   */
+  public long getDuration(TimeUnit unit)
+  {
+    return unit.convert(duration, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the lifecycle phase.
+   *
+   *
+   * @return lifecycle phase
+   */
+  public LifecyclePhase getPhase()
+  {
+    return phase;
+  }
+
+  /**
+   * Returns the start of the phase in milliseconds since the epoch.
+   *
+   *
+   * @return start of the phase
+   */
+  public long getTimestamp()
+  {
+    return timestamp;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** number of statements */
+  private final int count;
+
+  /** details of the phase */
+  private final String detail;
+
+  /** duration in nanoseconds */
+  private final long duration;
+
+  /** lifecycle phase */
+  private final LifecyclePhase phase;
+
+  /** start of the phase in milliseconds since the epoch */
+  private final long timestamp;
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+/**
+ * Phases of the lifecycle of a rule, which are reported to the
+ * {@link LifecycleListener}.
+ *
+ * @author Sebastian Sdorra
+ */
+public enum LifecyclePhase
+{
+
+  /**
+   * Creation of the first database of an engine, which includes the boot of
+   * the engine.
+   */
+  ENGINE_BOOT,
+
+  /**
+   * Creation of an empty database.
+   */
+  CREATE,
+
+  /**
+   * Creation of a database from a snapshot.
+   */
+  RESTORE,
+
+  /**
+   * Reading and parsing of a sql script.
+   */
+  SCRIPT_PARSE,
+
+  /**
+   * Execution of all statements of a sql script.
+   */
+  SCRIPT_EXECUTE,
+
+  /**
+   * Execution of a single statement or of a batch of statements.
+   */
+  STATEMENT,
+
+  /**
+   * Loading of a csv dataset into a table, the count of the event is the
+   * number of rows.
+   */
+  DATASET,
+
+  /**
+   * Creation of an {@code EntityManagerFactory} or the replay of the schema
+   * of a shared factory.
+   */
+  ENTITY_MANAGER_FACTORY,
+
+  /**
+   * Execution of the test method.
+   */
+  TEST,
+
+  /**
+   * A test which has not used its database, the creation of the database was
+   * skipped.
+   */
+  SKIP,
+
+  /**
+   * Drop of the database.
+   */
+  DROP
+}
@@ -0,0 +1,277 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.internal.LatencyHistogram;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener which aggregates the durations of the lifecycle phases. The
+ * statistics can be shared between rules and parallel tests. The durations
+ * of a phase are recorded in a {@link LatencyHistogram} with constant memory,
+ * the percentiles are accurate to 1/16 of their value.
+ *
+ * <pre>
+ * private static final LifecycleStatistics statistics =
+ *   new LifecycleStatistics();
+ *
+ * &#64;Rule
+ * public JDBCRule rule = new JDBCRule().addListener(statistics);
+ *
+ * &#64;AfterClass
+ * public static void report(){
+ *   System.out.println(statistics);
+ * }
+ * </pre>
+ *
+ * @author Sebastian Sdorra
+ */
+public class LifecycleStatistics implements LifecycleListener
+{
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void onEvent(LifecycleEvent event)
+  {
+    Durations durations = phases.get(event.getPhase());
+
+    if (durations == null)
+    {
+      durations = new Durations();
+      phases.put(event.getPhase(), durations);
+    }
+
+    durations.add(event.getDuration(TimeUnit.NANOSECONDS), event.getCount());
+  }
+
+  /**
+   * Returns a report with the statistics of all phases.
+   *
+   *
+   * @return report of all phases
+   */
+  @Override
+  public synchronized String toString()
+  {
+    StringBuilder report = new StringBuilder();
+
+    for (LifecyclePhase phase : phases.keySet())
+    {
+      report.append(String.format(
+        "%-24s count=%d total=%dms p50=%dus p99=%dus max=%dus rate=%.0f/s%n",
+        phase, getCount(phase), getTotal(phase, TimeUnit.MILLISECONDS),
+        getP50(phase, TimeUnit.MICROSECONDS),
+        getP99(phase, TimeUnit.MICROSECONDS),
+        getMax(phase, TimeUnit.MICROSECONDS), getThroughput(phase)));
+    }
+
+    return report.toString();
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of events of the phase.
+   *
+   *
+   * @param phase lifecycle phase
+   *
+   * @return number of events
+   */
+  public synchronized int getCount(LifecyclePhase phase)
+  {
+    Durations durations = phases.get(phase);
+
+    return (durations != null)
+      ? (int) durations.histogram.getCount()
+      : 0;
+  }
+
+  /**
+   * Returns the longest duration of the phase.
+   *
+   *
+   * @param phase lifecycle phase
+   * @param unit time unit of the result
+   *
+   * @return longest duration
+   */
+  public synchronized long getMax(LifecyclePhase phase, TimeUnit unit)
+  {
+    Durations durations = phases.get(phase);
+
+    return unit.convert((durations != null)
+      ? durations.histogram.getMax()
+      : 0, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the median duration of the phase.
+   *
+   *
+   * @param phase lifecycle phase
+   * @param unit time unit of the result
+   *
+   * @return median duration
+   */
+  public long getP50(LifecyclePhase phase, TimeUnit unit)
+  {
+    return getPercentile(phase, 50d, unit);
+  }
+
+  /**
+   * Returns the 99th percentile of the durations of the phase.
+   *
+   *
+   * @param phase lifecycle phase
+   * @param unit time unit of the result
+   *
+   * @return 99th percentile
+   */
+  public long getP99(LifecyclePhase phase, TimeUnit unit)
+  {
+    return getPercentile(phase, 99d, unit);
+  }
+
+  /**
+   * Returns the percentile of the durations of the phase, by using the
+   * nearest rank method on the buckets of the histogram.
+   *
+   *
+   * @param phase lifecycle phase
+   * @param percentile percentile between 0 and 100
+   * @param unit time unit of the result
+   *
+   * @return percentile or 0 if the phase has no events
+   */
+  public synchronized long getPercentile(LifecyclePhase phase,
+    double percentile, TimeUnit unit)
+  {
+    long result = 0;
+    Durations durations = phases.get(phase);
+
+    if (durations != null)
+    {
+      result = durations.histogram.getPercentile(percentile);
+    }
+
+    return unit.convert(result, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the number of statements or rows of the phase per second, e.g.
+   * the rows per second of the {@link LifecyclePhase#DATASET} phase.
+   *
+   *
+   * @param phase lifecycle phase
+   *
+   * @return statements or rows per second
+   */
+  public synchronized double getThroughput(LifecyclePhase phase)
+  {
+    double throughput = 0d;
+    Durations durations = phases.get(phase);
+
+    if ((durations != null) && (durations.total > 0))
+    {
+      throughput = (durations.items * (double) TimeUnit.SECONDS.toNanos(1))
+        / durations.total;
+    }
+
+    return throughput;
+  }
+
+  /**
+   * Returns the total duration of the phase.
+   *
+   *
+   * @param phase lifecycle phase
+   * @param unit time unit of the result
+   *
+   * @return total duration
+   */
+  public synchronized long getTotal(LifecyclePhase phase, TimeUnit unit)
+  {
+    Durations durations = phases.get(phase);
+
+    return unit.convert((durations != null)
+      ? durations.total
+      : 0, TimeUnit.NANOSECONDS);
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Durations of one phase.
+   */
+  private static class Durations
+  {
+
+    /**
+     * Adds a duration.
+     *
+     *
+     * @param duration duration in nanoseconds
+     * @param count number of statements or rows
+     */
+    private void add(long duration, int count)
+    {
+      histogram.record(duration);
+      total += duration;
+      items += count;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** durations in nanoseconds */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /** sum of the statements or rows */
+    private long items;
+
+    /** sum of all durations */
+    private long total;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** durations per phase */
+  private final Map<LifecyclePhase, Durations> phases =
+    new EnumMap<LifecyclePhase, Durations>(LifecyclePhase.class);
+}
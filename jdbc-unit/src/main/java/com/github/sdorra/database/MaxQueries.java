@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Query budget of a test. The statements which are executed with the
+ * connections of the rule or by the entity managers of the jpa rule are
+ * counted by type and by their normalized sql, literals are
+ * replaced with {@code ?}. The test fails, if the number of statements of a
+ * type exceeds its limit. The error lists the statement patterns of the type
+ * with their counts, which helps to find n+1 selects. A negative limit is
+ * unlimited. The statements of the sql scripts, datasets, assertions and
+ * schema generation are not counted and a batch of a prepared statement is
+ * counted as a single statement.
+ *
+ * <pre>
+ * &#64;Test
+ * &#64;MaxQueries(select = 2, insert = 1)
+ * public void testFindGroups(){
+ *   ...
+ * }
+ * </pre>
+ *
+ * @author Sebastian Sdorra
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface MaxQueries
+{
+
+  /**
+   * Maximum number of delete statements.
+   *
+   * @return maximum number of deletes
+   */
+  int delete() default -1;
+
+  /**
+   * Maximum number of insert statements.
+   *
+   * @return maximum number of inserts
+   */
+  int insert() default -1;
+
+  /**
+   * Maximum number of other statements, e.g. merge or call.
+   *
+   * @return maximum number of other statements
+   */
+  int other() default -1;
+
+  /**
+   * Maximum number of select statements, including queries with a with
+   * clause.
+   *
+   * @return maximum number of selects
+   */
+  int select() default -1;
+
+  /**
+   * Maximum number of statements of all types.
+   *
+   * @return maximum number of statements
+   */
+  int total() default -1;
+
+  /**
+   * Maximum number of update statements.
+   *
+   * @return maximum number of updates
+   */
+  int update() default -1;
+}
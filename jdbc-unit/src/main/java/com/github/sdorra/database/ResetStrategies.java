@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.internal.ChangeTrackingResetStrategy;
+import com.github.sdorra.database.internal.SnapshotResetStrategy;
+import com.github.sdorra.database.internal.TransactionResetStrategy;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.Connection;
+
+/**
+ * Factory methods for the built-in {@link ResetStrategy} implementations.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class ResetStrategies
+{
+
+  /**
+   * Constructs ...
+   *
+   */
+  private ResetStrategies() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns a strategy which tracks the tables, which are modified with the
+   * connections of the rule, and reloads only those tables and the tables
+   * which reference them after each test. The rows of all tables are copied
+   * when the database is prepared. Ddl and statements which could not be
+   * inspected lead to a reload of all tables.
+   *
+   *
+   * @return change tracking strategy
+   */
+  public static ResetStrategy changedTables()
+  {
+    return new ChangeTrackingResetStrategy();
+  }
+
+  /**
+   * Returns a strategy which does not reset the database. Changes of a test
+   * are visible for all following tests.
+   *
+   *
+   * @return strategy which does nothing
+   */
+  public static ResetStrategy none()
+  {
+    return new ResetStrategy()
+    {
+      @Override
+      public void prepare(Database database)
+      {
+
+        // do nothing
+      }
+
+      @Override
+      public void release(Database database)
+      {
+
+        // do nothing
+      }
+
+      @Override
+      public void reset(Database database)
+      {
+
+        // do nothing
+      }
+
+      @Override
+      public Connection wrap(Connection connection)
+      {
+        return connection;
+      }
+    };
+  }
+
+  /**
+   * Returns a strategy which stores a snapshot of the prepared database and
+   * restarts the database from that snapshot after each test.
+   *
+   *
+   * @return snapshot strategy
+   */
+  public static ResetStrategy snapshot()
+  {
+    return new SnapshotResetStrategy();
+  }
+
+  /**
+   * Returns a strategy which runs each test in a transaction and rolls the
+   * transaction back after the test. Commits are turned into savepoints.
+   *
+   *
+   * @return transaction strategy
+   */
+  public static ResetStrategy transaction()
+  {
+    return new TransactionResetStrategy();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.Connection;
+
+/**
+ * A reset strategy restores the state of a database, which is shared between
+ * multiple tests. The strategy is used by rules which keep the database for a
+ * whole class or suite, e.g. the {@link JDBCClassRule}. Implementations can
+ * keep state between {@link #prepare(Database)} and {@link #release(Database)}
+ * and must therefore not be shared between rules.
+ *
+ * @author Sebastian Sdorra
+ * @see ResetStrategies
+ */
+public interface ResetStrategy
+{
+
+  /**
+   * Prepares the database for the strategy. The method is called once, after
+   * the database was started and the sql script was executed.
+   *
+   *
+   * @param database database
+   */
+  public void prepare(Database database);
+
+  /**
+   * Releases all resources of the strategy. The method is called once, before
+   * the database is shutdown.
+   *
+   *
+   * @param database database
+   */
+  public void release(Database database);
+
+  /**
+   * Restores the prepared state of the database. The method is called after
+   * each test method. All connections which are handed out by the rule are
+   * closed before the method is called.
+   *
+   *
+   * @param database database
+   */
+  public void reset(Database database);
+
+  /**
+   * Wraps a connection, before it is handed out to a test. The strategy could
+   * return the given connection or a wrapper for the connection.
+   *
+   *
+   * @param connection jdbc connection
+   *
+   * @return jdbc connection for the test
+   */
+  public Connection wrap(Connection connection);
+}
@@ -0,0 +1,240 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies of all statements of a test with the same normalized sql. The
+ * execute latency is the duration of the execute call, the fetch latency is
+ * the time spent to read the rows of a result set.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class StatementLatency
+{
+
+  /**
+   * Constructs a new statement latency.
+   *
+   *
+   * @param sql normalized sql of the statements
+   * @param execute percentiles of the executions
+   * @param fetch percentiles of the fetches
+   */
+  public StatementLatency(String sql, Percentiles execute, Percentiles fetch)
+  {
+    this.sql = sql;
+    this.execute = execute;
+    this.fetch = fetch;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return sql + " execute[" + execute + "] fetch[" + fetch + "]";
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the percentiles of the executions.
+   *
+   *
+   * @return percentiles of the executions
+   */
+  public Percentiles getExecute()
+  {
+    return execute;
+  }
+
+  /**
+   * Returns the percentiles of the fetches. Statements without result set
+   * have no fetches.
+   *
+   *
+   * @return percentiles of the fetches
+   */
+  public Percentiles getFetch()
+  {
+    return fetch;
+  }
+
+  /**
+   * Returns the normalized sql of the statements.
+   *
+   *
+   * @return normalized sql
+   */
+  public String getSql()
+  {
+    return sql;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Percentiles of the durations of one kind of operation.
+   */
+  public static final class Percentiles
+  {
+
+    /**
+     * Constructs new percentiles.
+     *
+     *
+     * @param count number of durations
+     * @param p50 median in nanoseconds
+     * @param p95 95th percentile in nanoseconds
+     * @param p99 99th percentile in nanoseconds
+     * @param max longest duration in nanoseconds
+     */
+    public Percentiles(long count, long p50, long p95, long p99, long max)
+    {
+      this.count = count;
+      this.p50 = p50;
+      this.p95 = p95;
+      this.p99 = p99;
+      this.max = max;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+      return "count=" + count + " p50=" + TimeUnit.NANOSECONDS.toMicros(p50)
+        + "us p95=" + TimeUnit.NANOSECONDS.toMicros(p95) + "us p99="
+        + TimeUnit.NANOSECONDS.toMicros(p99) + "us max="
+        + TimeUnit.NANOSECONDS.toMicros(max) + "us";
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Returns the number of durations.
+     *
+     *
+     * @return number of durations
+     */
+    public long getCount()
+    {
+      return count;
+    }
+
+    /**
+     * Returns the longest duration.
+     *
+     *
+     * @param unit time unit of the result
+     *
+     * @return longest duration
+     */
+    public long getMax(TimeUnit unit)
+    {
+      return unit.convert(max, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the median duration.
+     *
+     *
+     * @param unit time unit of the result
+     *
+     * @return median duration
+     */
+    public long getP50(TimeUnit unit)
+    {
+      return unit.convert(p50, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the 95th percentile of the durations.
+     *
+     *
+     * @param unit time unit of the result
+     *
+     * @return 95th percentile
+     */
+    public long getP95(TimeUnit unit)
+    {
+      return unit.convert(p95, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the 99th percentile of the durations.
+     *
+     *
+     * @param unit time unit of the result
+     *
+     * @return 99th percentile
+     */
+    public long getP99(TimeUnit unit)
+    {
+      return unit.convert(p99, TimeUnit.NANOSECONDS);
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** number of durations */
+    private final long count;
+
+    /** longest duration in nanoseconds */
+    private final long max;
+
+    /** median in nanoseconds */
+    private final long p50;
+
+    /** 95th percentile in nanoseconds */
+    private final long p95;
+
+    /** 99th percentile in nanoseconds */
+    private final long p99;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** percentiles of the executions */
+  private final Percentiles execute;
+
+  /** percentiles of the fetches */
+  private final Percentiles fetch;
+
+  /** normalized sql */
+  private final String sql;
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation variant of the {@link DatabaseOptions}. The tuning starts with
+ * the options of the rule or with {@link DatabaseOptions#FASTEST}, if
+ * {@link #fastest()} is {@code true}. Every attribute which is set overrides
+ * the corresponding option.
+ *
+ * <pre>
+ * &#64;JDBC(sql = "/schema.sql", tuning = &#64;Tuning(fastest = true))
+ * </pre>
+ *
+ * @author Sebastian Sdorra
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({})
+public @interface Tuning
+{
+
+  /**
+   * Set to {@code true} to start with the {@link DatabaseOptions#FASTEST}
+   * options.
+   *
+   * @return {@code true} to use the fastest options
+   */
+  boolean fastest() default false;
+
+  /**
+   * Durability of the engine, {@link Durability#DEFAULT} keeps the
+   * durability of the base options.
+   *
+   * @return durability
+   */
+  Durability durability() default Durability.DEFAULT;
+
+  /**
+   * Number of pages of the page cache, a negative value keeps the value of
+   * the base options.
+   *
+   * @return size of the page cache
+   */
+  int pageCacheSize() default -1;
+
+  /**
+   * Number of cached statements, a negative value keeps the value of the
+   * base options.
+   *
+   * @return size of the statement cache
+   */
+  int statementCacheSize() default -1;
+
+  /**
+   * Lock wait timeout in seconds, a negative value keeps the value of the
+   * base options.
+   *
+   * @return lock wait timeout
+   */
+  int lockWaitTimeout() default -1;
+
+  /**
+   * Number of pages which are allocated for new tables, a negative value
+   * keeps the value of the base options.
+   *
+   * @return preallocated pages
+   */
+  int preallocatedPages() default -1;
+
+  /**
+   * Set to {@code true} to drop the database with a background thread.
+   *
+   * @return {@code true} for an asynchronous drop
+   */
+  boolean asynchronousDrop() default false;
+}
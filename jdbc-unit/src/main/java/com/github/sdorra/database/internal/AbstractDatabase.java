@@ -0,0 +1,498 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.DatabaseOptions;
+import com.github.sdorra.database.LifecyclePhase;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+
+import java.net.URL;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.sql.DataSource;
+
+/**
+ * Base class for in-memory databases. The class manages the connection pool
+ * and the running state, subclasses have to implement the engine specific
+ * creation, restore and drop of the database. The lifecycle methods are
+ * thread safe, databases with different names can be used in parallel.
+ *
+ * @author Sebastian Sdorra
+ */
+public abstract class AbstractDatabase implements Database
+{
+
+  /** drivers of the engines which have created at least one database */
+  private static final Set<String> booted =
+    Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /** background threads for asynchronous drops */
+  private static final ExecutorService droppers =
+    Executors.newCachedThreadPool(new ThreadFactory()
+  {
+    @Override
+    public Thread newThread(Runnable runnable)
+    {
+      Thread thread = new Thread(runnable, "database-unit-drop");
+
+      thread.setDaemon(true);
+
+      return thread;
+    }
+  });
+
+  /**
+   * the logger for AbstractDatabase
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(AbstractDatabase.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new database.
+   *
+   *
+   * @param driver class name of the jdbc driver
+   * @param url jdbc url of the database
+   * @param options tuning options
+   */
+  protected AbstractDatabase(String driver, String url,
+    DatabaseOptions options)
+  {
+    this.driver = driver;
+    this.url = url;
+    this.options = options;
+    this.pool = new ConnectionPool(driver, url);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Creates the empty database.
+   *
+   *
+   * @throws SQLException
+   */
+  protected abstract void create() throws SQLException;
+
+  /**
+   * Drops the database.
+   *
+   *
+   * @throws SQLException
+   */
+  protected abstract void drop() throws SQLException;
+
+  /**
+   * Creates the database as copy of the snapshot.
+   *
+   *
+   * @param snapshot directory of the snapshot
+   *
+   * @throws SQLException
+   */
+  protected abstract void restore(File snapshot) throws SQLException;
+
+  /**
+   * Stores the snapshot of the database in the directory.
+   *
+   *
+   * @param connection connection to the database
+   * @param directory target directory of the snapshot
+   *
+   * @throws SQLException
+   */
+  protected abstract void snapshot(Connection connection, File directory)
+    throws SQLException;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Connection createConnection()
+  {
+    try
+    {
+      return pool.getConnection();
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("could not create jdbc connection", ex);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(Object contextClass, String resource, String encoding)
+  {
+    execute(contextClass, resource, encoding, 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void execute(Object contextClass, String resource, String encoding,
+    int batchSize)
+  {
+    URL script = Databases.getResource(contextClass, resource);
+    Connection connection = null;
+
+    try
+    {
+      connection = createConnection();
+      SQLScriptRunner runner = new SQLScriptRunner(connection, true);
+
+      runner.setBatchSize(batchSize);
+      runner.runScript(script, encoding);
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void shutdown()
+  {
+    running = false;
+    pool.clear();
+
+    if (options.isAsynchronousDrop())
+    {
+      pendingDrop = droppers.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            dropAndFire();
+          }
+          catch (DatabaseException ex)
+          {
+            logger.warn("asynchronous drop failed", ex);
+          }
+        }
+      });
+    }
+    else
+    {
+      dropAndFire();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void snapshot(File directory)
+  {
+    Connection connection = null;
+
+    try
+    {
+      connection = createConnection();
+      snapshot(connection, directory);
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("could not create snapshot", ex);
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void start()
+  {
+    awaitDrop();
+
+    long begin = Lifecycle.start();
+
+    try
+    {
+      create();
+      running = true;
+
+      // the first database of an engine includes the boot of the engine
+      LifecyclePhase phase = booted.add(driver)
+        ? LifecyclePhase.ENGINE_BOOT
+        : LifecyclePhase.CREATE;
+
+      Lifecycle.fire(phase, begin, url, 1);
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("could not create database", ex);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void start(File snapshot)
+  {
+    awaitDrop();
+
+    long begin = Lifecycle.start();
+
+    try
+    {
+      restore(snapshot);
+      running = true;
+      booted.add(driver);
+      Lifecycle.fire(LifecyclePhase.RESTORE, begin, url, 1);
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("could not restore database", ex);
+    }
+  }
+
+  /**
+   * Opens a new connection, which is not managed by the pool. The method is
+   * used to create, restore and drop the database.
+   *
+   *
+   * @param connectionUrl jdbc url
+   *
+   * @return new connection
+   *
+   * @throws SQLException
+   */
+  protected Connection connect(String connectionUrl) throws SQLException
+  {
+    try
+    {
+      Class.forName(driver);
+    }
+    catch (ClassNotFoundException ex)
+    {
+      throw new DatabaseException("could not find jdbc driver", ex);
+    }
+
+    return DriverManager.getConnection(connectionUrl);
+  }
+
+  /**
+   * Executes a single sql statement with a new connection, which is not
+   * managed by the pool.
+   *
+   *
+   * @param sql sql statement
+   *
+   * @throws SQLException
+   */
+  protected void executeStatement(String sql) throws SQLException
+  {
+    Connection connection = connect(url);
+
+    try
+    {
+      executeStatement(connection, sql);
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
+  }
+
+  /**
+   * Executes a single sql statement with the given connection.
+   *
+   *
+   * @param connection jdbc connection
+   * @param sql sql statement
+   *
+   * @throws SQLException
+   */
+  protected void executeStatement(Connection connection, String sql)
+    throws SQLException
+  {
+    Statement statement = connection.createStatement();
+
+    try
+    {
+      statement.execute(sql);
+    }
+    finally
+    {
+      statement.close();
+    }
+  }
+
+  /**
+   * Waits until the asynchronous drop of the previous run has finished.
+   *
+   */
+  private void awaitDrop()
+  {
+    if (pendingDrop != null)
+    {
+      try
+      {
+        pendingDrop.get();
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+
+        throw new DatabaseException("interrupted while waiting for drop", ex);
+      }
+      catch (ExecutionException ex)
+      {
+        throw new DatabaseException("database drop failed", ex.getCause());
+      }
+      finally
+      {
+        pendingDrop = null;
+      }
+    }
+  }
+
+  /**
+   * Drops the database and sends the lifecycle event.
+   *
+   */
+  private void dropAndFire()
+  {
+    long begin = Lifecycle.start();
+
+    try
+    {
+      drop();
+      Lifecycle.fire(LifecyclePhase.DROP, begin, url, 1);
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("database shutdown failed", ex);
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DataSource getDataSource()
+  {
+    return pool;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getDriver()
+  {
+    return driver;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DatabaseOptions getOptions()
+  {
+    return options;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getUrl()
+  {
+    return url;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isRunning()
+  {
+    return running;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** class name of the jdbc driver */
+  private final String driver;
+
+  /** tuning options */
+  private final DatabaseOptions options;
+
+  /** connection pool */
+  private final ConnectionPool pool;
+
+  /** jdbc url */
+  private final String url;
+
+  /** asynchronous drop of the previous run, guarded by this */
+  private Future<?> pendingDrop;
+
+  /** is the database running? */
+  private volatile boolean running = false;
+}
@@ -0,0 +1,253 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseException;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for csv and tsv files. The reader reads the file character
+ * by character through a reusable buffer and returns one record at a time, so
+ * that large files are never materialized. Values can be quoted with double
+ * quotes, a double quote in a quoted value is escaped by a second double
+ * quote. An empty unquoted value is returned as {@code null}.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class CSVReader implements Closeable
+{
+
+  /** size of the read buffer */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** end of stream */
+  private static final int EOF = -1;
+
+  /** quote character */
+  private static final char QUOTE = '"';
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new reader.
+   *
+   *
+   * @param reader reader for the csv file
+   * @param separator value separator
+   */
+  public CSVReader(Reader reader, char separator)
+  {
+    this.reader = reader;
+    this.separator = separator;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Closes the underlying reader.
+   *
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException
+  {
+    reader.close();
+  }
+
+  /**
+   * Returns the values of the next record or {@code null} if the end of the
+   * file is reached. Blank lines are skipped.
+   *
+   *
+   * @return values of the next record or {@code null}
+   *
+   * @throws IOException
+   */
+  public String[] next() throws IOException
+  {
+    List<String> values = new ArrayList<String>();
+    int c = read();
+
+    // skip blank lines
+    while ((c == '\r') || (c == '\n'))
+    {
+      c = read();
+    }
+
+    if (c == EOF)
+    {
+      return null;
+    }
+
+    while (true)
+    {
+      value.setLength(0);
+
+      boolean quoted = false;
+
+      if (c == QUOTE)
+      {
+        quoted = true;
+        c = readQuoted();
+      }
+      else
+      {
+        while ((c != EOF) && (c != separator) && (c != '\r') && (c != '\n'))
+        {
+          value.append((char) c);
+          c = read();
+        }
+      }
+
+      values.add((quoted || (value.length() > 0))
+        ? value.toString()
+        : null);
+
+      if (c == separator)
+      {
+        c = read();
+      }
+      else
+      {
+        if (c == '\r')
+        {
+          c = read();
+
+          if ((c != '\n') && (c != EOF))
+          {
+            pushback = c;
+          }
+        }
+
+        break;
+      }
+    }
+
+    return values.toArray(new String[values.size()]);
+  }
+
+  /**
+   * Returns the next character.
+   *
+   *
+   * @return next character or {@link #EOF}
+   *
+   * @throws IOException
+   */
+  private int read() throws IOException
+  {
+    if (pushback != EOF)
+    {
+      int c = pushback;
+
+      pushback = EOF;
+
+      return c;
+    }
+
+    if (position >= limit)
+    {
+      limit = reader.read(buffer, 0, buffer.length);
+      position = 0;
+
+      if (limit <= 0)
+      {
+        limit = 0;
+
+        return EOF;
+      }
+    }
+
+    return buffer[position++];
+  }
+
+  /**
+   * Reads a quoted value into the value buffer.
+   *
+   *
+   * @return first character after the closing quote
+   *
+   * @throws IOException
+   */
+  private int readQuoted() throws IOException
+  {
+    while (true)
+    {
+      int c = read();
+
+      if (c == EOF)
+      {
+        throw new DatabaseException("unterminated quoted value in csv file");
+      }
+      else if (c == QUOTE)
+      {
+        c = read();
+
+        if (c != QUOTE)
+        {
+          return c;
+        }
+      }
+
+      value.append((char) c);
+    }
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** read buffer */
+  private final char[] buffer = new char[BUFFER_SIZE];
+
+  /** underlying reader */
+  private final Reader reader;
+
+  /** value separator */
+  private final char separator;
+
+  /** buffer for the current value */
+  private final StringBuilder value = new StringBuilder();
+
+  /** number of characters in the read buffer */
+  private int limit;
+
+  /** character which was read ahead */
+  private int pushback = EOF;
+
+  /** position in the read buffer */
+  private int position;
+}
@@ -0,0 +1,1018 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.ResetStrategy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reset strategy which resets only the tables, which were modified by a test.
+ * The strategy keeps a copy of the rows of every table after the database
+ * was prepared. The connections of the rule are wrapped and the sql of every
+ * statement is inspected. On reset the modified tables and the tables which
+ * reference them with foreign keys are emptied and reloaded with their seed
+ * rows, identity columns are restarted after the highest seed value. The cost
+ * of a reset depends on the modified tables and not on the size of the
+ * schema. Statements which could modify the schema or which could not be
+ * inspected, e.g. ddl or procedure calls, and statements with updatable
+ * result sets lead to a reset of all tables.
+ * Tables with a {@code GENERATED ALWAYS} identity column can not be reloaded
+ * with their seed identity values, if the schema contains such a table, a
+ * snapshot of the database is stored and a reset of such a table restarts
+ * the whole database from the snapshot.
+ * Changes which are made with connections which are not handed out by the
+ * rule or by triggers on other tables are not detected.
+ *
+ * @author Sebastian Sdorra
+ */
+public class ChangeTrackingResetStrategy implements ResetStrategy
+{
+
+  /** derby query for identity columns, which are generated always */
+  private static final String DERBY_GENERATED_ALWAYS =
+    "SELECT t.TABLENAME FROM SYS.SYSCOLUMNS c, SYS.SYSTABLES t "
+    + "WHERE c.REFERENCEID = t.TABLEID AND c.AUTOINCREMENTINC IS NOT NULL "
+    + "AND c.COLUMNDEFAULT IS NULL";
+
+  /** sql standard query for identity columns, which are generated always */
+  private static final String STANDARD_GENERATED_ALWAYS =
+    "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.COLUMNS "
+    + "WHERE IDENTITY_GENERATION = 'ALWAYS'";
+
+  /** number of rows per batch */
+  private static final int BATCH_SIZE = 1000;
+
+  /** statements which do not modify tables */
+  private static final Set<String> READ_KEYWORDS =
+    new HashSet<String>(Arrays.asList("SELECT", "VALUES", "WITH",
+      "COMMIT", "ROLLBACK", "SAVEPOINT", "RELEASE", "SET", "EXPLAIN"));
+
+  /**
+   * the logger for ChangeTrackingResetStrategy
+   */
+  private static final Logger logger =
+    LoggerFactory.getLogger(ChangeTrackingResetStrategy.class);
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void prepare(Database database)
+  {
+    Connection connection = database.createConnection();
+    boolean generatedAlways;
+
+    try
+    {
+      DatabaseMetaData metaData = connection.getMetaData();
+      String quote = metaData.getIdentifierQuoteString().trim();
+
+      readTables(metaData, quote);
+
+      for (Table table : tables.values())
+      {
+        readReferences(metaData, table);
+        readSeed(connection, table);
+      }
+
+      generatedAlways = readGeneratedAlways(connection,
+        metaData.getDatabaseProductName());
+      order();
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("could not read seed of the database", ex);
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
+
+    if (generatedAlways)
+    {
+      fallback = new SnapshotResetStrategy();
+      fallback.prepare(database);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void release(Database database)
+  {
+    if (fallback != null)
+    {
+      fallback.release(database);
+      fallback = null;
+    }
+
+    tables.clear();
+    ordered.clear();
+
+    synchronized (this)
+    {
+      touched.clear();
+      resetAll = false;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset(Database database)
+  {
+    Set<Table> changed = new HashSet<Table>();
+
+    synchronized (this)
+    {
+      if (resetAll)
+      {
+        changed.addAll(tables.values());
+      }
+      else
+      {
+        for (String name : touched)
+        {
+          addWithReferences(changed, tables.get(name));
+        }
+      }
+
+      touched.clear();
+      resetAll = false;
+    }
+
+    List<Table> reset = new ArrayList<Table>();
+    Table generatedAlways = null;
+
+    for (Table table : ordered)
+    {
+      if (changed.contains(table))
+      {
+        reset.add(table);
+
+        if (table.generatedAlways)
+        {
+          generatedAlways = table;
+        }
+      }
+    }
+
+    if (generatedAlways != null)
+    {
+      logger.debug("restart database from snapshot, {} has an identity "
+        + "column which is generated always", generatedAlways);
+      fallback.reset(database);
+      reset = new ArrayList<Table>(ordered);
+    }
+    else if (!reset.isEmpty())
+    {
+      reset(database, reset);
+    }
+
+    lastReset = reset;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Connection wrap(Connection connection)
+  {
+    return new TrackingConnection(connection, this).getConnection();
+  }
+
+  /**
+   * Inspects the sql of a statement and marks the modified table. Unknown
+   * statements mark all tables.
+   *
+   *
+   * @param sql sql of the statement
+   */
+  void track(String sql)
+  {
+    List<String> tokens = tokens(sql, 3);
+    String table = null;
+    boolean known = false;
+
+    if (!tokens.isEmpty())
+    {
+      String keyword = tokens.get(0).toUpperCase(Locale.ENGLISH);
+
+      if (READ_KEYWORDS.contains(keyword))
+      {
+        known = true;
+      }
+      else if ("UPDATE".equals(keyword))
+      {
+        table = token(tokens, 1);
+      }
+      else if (("INSERT".equals(keyword) || "MERGE".equals(keyword))
+        && "INTO".equalsIgnoreCase(token(tokens, 1)))
+      {
+        table = token(tokens, 2);
+      }
+      else if ("DELETE".equals(keyword)
+        && "FROM".equalsIgnoreCase(token(tokens, 1)))
+      {
+        table = token(tokens, 2);
+      }
+      else if ("TRUNCATE".equals(keyword)
+        && "TABLE".equalsIgnoreCase(token(tokens, 1)))
+      {
+        table = token(tokens, 2);
+      }
+    }
+
+    if (table != null)
+    {
+      table = find(table);
+      known = table != null;
+    }
+
+    synchronized (this)
+    {
+      if (table != null)
+      {
+        touched.add(table);
+      }
+      else if (!known)
+      {
+        logger.debug("could not inspect statement, reset all tables: {}",
+          sql);
+        resetAll = true;
+      }
+    }
+  }
+
+  /**
+   * Marks all tables as modified, e.g. for statements with updatable result
+   * sets.
+   *
+   *
+   * @param reason reason for the reset of all tables
+   */
+  void trackAll(String reason)
+  {
+    logger.debug("reset all tables: {}", reason);
+
+    synchronized (this)
+    {
+      resetAll = true;
+    }
+  }
+
+  /**
+   * Adds the table and all tables which reference the table.
+   *
+   *
+   * @param changed changed tables
+   * @param table table
+   */
+  private void addWithReferences(Set<Table> changed, Table table)
+  {
+    if ((table != null) && changed.add(table))
+    {
+      for (String child : table.children)
+      {
+        addWithReferences(changed, tables.get(child));
+      }
+    }
+  }
+
+  /**
+   * Returns the key of the table for the name of a statement.
+   *
+   *
+   * @param name table name of a statement, could be qualified and quoted
+   *
+   * @return key of the table or {@code null}
+   */
+  private String find(String name)
+  {
+    boolean quoted = false;
+
+    // remove the schema, dots in quoted identifiers are part of the name
+    for (int i = name.length() - 1; i >= 0; i--)
+    {
+      char c = name.charAt(i);
+
+      if (c == '"')
+      {
+        quoted = !quoted;
+      }
+      else if ((c == '.') &&!quoted)
+      {
+        name = name.substring(i + 1);
+
+        break;
+      }
+    }
+
+    String key;
+
+    if (name.startsWith("\"") && name.endsWith("\"") && (name.length() > 1))
+    {
+      key = name.substring(1, name.length() - 1);
+    }
+    else
+    {
+      key = name.toUpperCase(Locale.ENGLISH);
+
+      if (!tables.containsKey(key))
+      {
+        for (String candidate : tables.keySet())
+        {
+          if (candidate.equalsIgnoreCase(name))
+          {
+            key = candidate;
+          }
+        }
+      }
+    }
+
+    return tables.containsKey(key)
+      ? key
+      : null;
+  }
+
+  /**
+   * Orders the tables, so that referenced tables are placed before the tables
+   * which reference them.
+   *
+   */
+  private void order()
+  {
+    Set<Table> visited = new HashSet<Table>();
+
+    for (Table table : tables.values())
+    {
+      order(table, visited);
+    }
+  }
+
+  /**
+   * Places the parents of the table and the table itself.
+   *
+   *
+   * @param table table
+   * @param visited visited tables
+   */
+  private void order(Table table, Set<Table> visited)
+  {
+    if ((table != null) && visited.add(table))
+    {
+      for (String parent : table.parents)
+      {
+        order(tables.get(parent), visited);
+      }
+
+      ordered.add(table);
+    }
+  }
+
+  /**
+   * Marks the tables with an identity column, which is generated always. The
+   * seed rows of those tables can not be inserted with their identity values.
+   *
+   *
+   * @param connection jdbc connection
+   * @param product name of the database product
+   *
+   * @return {@code true} if at least one table was marked
+   */
+  private boolean readGeneratedAlways(Connection connection, String product)
+  {
+    boolean found = false;
+    String sql = "Apache Derby".equals(product)
+      ? DERBY_GENERATED_ALWAYS
+      : STANDARD_GENERATED_ALWAYS;
+
+    try
+    {
+      Statement statement = connection.createStatement();
+
+      try
+      {
+        ResultSet result = statement.executeQuery(sql);
+
+        while (result.next())
+        {
+          Table table = tables.get(result.getString(1));
+
+          if (table != null)
+          {
+            table.generatedAlways = true;
+            found = true;
+          }
+        }
+
+        result.close();
+      }
+      finally
+      {
+        statement.close();
+      }
+    }
+    catch (SQLException ex)
+    {
+
+      // the engine does not support generated always identity columns
+      logger.debug("could not read identity generation of columns", ex);
+    }
+
+    return found;
+  }
+
+  /**
+   * Reads the foreign key references of the table.
+   *
+   *
+   * @param metaData database meta data
+   * @param table table
+   *
+   * @throws SQLException
+   */
+  private void readReferences(DatabaseMetaData metaData, Table table)
+    throws SQLException
+  {
+    ResultSet result = metaData.getImportedKeys(null, table.schema,
+                         table.name);
+
+    try
+    {
+      while (result.next())
+      {
+        String parent = result.getString("PKTABLE_NAME");
+
+        if (!parent.equals(table.name) && tables.containsKey(parent))
+        {
+          table.parents.add(parent);
+          tables.get(parent).children.add(table.name);
+        }
+      }
+    }
+    finally
+    {
+      result.close();
+    }
+  }
+
+  /**
+   * Reads the seed rows and the identity restart value of the table.
+   *
+   *
+   * @param connection jdbc connection
+   * @param table table
+   *
+   * @throws SQLException
+   */
+  private void readSeed(Connection connection, Table table)
+    throws SQLException
+  {
+    Statement statement = connection.createStatement();
+
+    try
+    {
+      ResultSet result = statement.executeQuery("SELECT * FROM ".concat(
+                           table.qualified));
+      ResultSetMetaData metaData = result.getMetaData();
+      int count = metaData.getColumnCount();
+
+      table.types = new int[count];
+
+      for (int i = 0; i < count; i++)
+      {
+        table.types[i] = metaData.getColumnType(i + 1);
+        table.columns.add(table.quote(metaData.getColumnName(i + 1)));
+
+        if (metaData.isAutoIncrement(i + 1))
+        {
+          table.identity = i;
+        }
+      }
+
+      long max = 0;
+
+      while (result.next())
+      {
+        Object[] row = new Object[count];
+
+        for (int i = 0; i < count; i++)
+        {
+          row[i] = value(result, i + 1, table.types[i]);
+        }
+
+        if ((table.identity >= 0) && (row[table.identity] instanceof Number))
+        {
+          max = Math.max(max, ((Number) row[table.identity]).longValue());
+        }
+
+        table.seed.add(row);
+      }
+
+      result.close();
+      table.restart = max + 1;
+    }
+    finally
+    {
+      statement.close();
+    }
+  }
+
+  /**
+   * Reads the user tables of the database.
+   *
+   *
+   * @param metaData database meta data
+   * @param quote identifier quote string
+   *
+   * @throws SQLException
+   */
+  private void readTables(DatabaseMetaData metaData, String quote)
+    throws SQLException
+  {
+    ResultSet result = metaData.getTables(null, null, "%",
+                         new String[] { "TABLE" });
+
+    try
+    {
+      while (result.next())
+      {
+        String schema = result.getString("TABLE_SCHEM");
+
+        if ((schema == null) ||!isSystemSchema(schema))
+        {
+          Table table = new Table(schema, result.getString("TABLE_NAME"),
+                          quote);
+
+          tables.put(table.name, table);
+        }
+      }
+    }
+    finally
+    {
+      result.close();
+    }
+  }
+
+  /**
+   * Empties the tables and reloads their seed rows.
+   *
+   *
+   * @param database database
+   * @param reset tables ordered from parents to children
+   */
+  private void reset(Database database, List<Table> reset)
+  {
+    long start = System.nanoTime();
+    Connection connection = database.createConnection();
+    Table current = null;
+
+    try
+    {
+      connection.setAutoCommit(false);
+
+      Statement statement = connection.createStatement();
+
+      try
+      {
+        for (int i = reset.size() - 1; i >= 0; i--)
+        {
+          current = reset.get(i);
+          statement.executeUpdate("DELETE FROM ".concat(current.qualified));
+        }
+
+        for (Table table : reset)
+        {
+          current = table;
+          insert(connection, table);
+
+          if (table.identity >= 0)
+          {
+            statement.executeUpdate(
+              String.format(
+                "ALTER TABLE %s ALTER COLUMN %s RESTART WITH %d",
+                table.qualified, table.columns.get(table.identity),
+                table.restart));
+          }
+        }
+      }
+      finally
+      {
+        statement.close();
+      }
+
+      connection.commit();
+      logger.debug("reset {} of {} tables in {} ms", new Object[] {
+        reset.size(),
+        tables.size(), (System.nanoTime() - start) / 1000000 });
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException(
+        "could not reset table ".concat(String.valueOf(current)), ex);
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
+  }
+
+  /**
+   * Inserts the seed rows of the table with batched prepared statements.
+   *
+   *
+   * @param connection jdbc connection
+   * @param table table
+   *
+   * @throws SQLException
+   */
+  private static void insert(Connection connection, Table table)
+    throws SQLException
+  {
+    if (table.seed.isEmpty())
+    {
+      return;
+    }
+
+    StringBuilder sql = new StringBuilder("INSERT INTO ");
+    StringBuilder values = new StringBuilder();
+
+    sql.append(table.qualified).append(" (");
+
+    for (int i = 0; i < table.columns.size(); i++)
+    {
+      if (i > 0)
+      {
+        sql.append(", ");
+        values.append(", ");
+      }
+
+      sql.append(table.columns.get(i));
+      values.append('?');
+    }
+
+    sql.append(") VALUES (").append(values).append(')');
+
+    PreparedStatement statement = connection.prepareStatement(sql.toString());
+
+    try
+    {
+      int pending = 0;
+
+      for (Object[] row : table.seed)
+      {
+        for (int i = 0; i < row.length; i++)
+        {
+          if (row[i] == null)
+          {
+            statement.setNull(i + 1, table.types[i]);
+          }
+          else
+          {
+            statement.setObject(i + 1, row[i], table.types[i]);
+          }
+        }
+
+        statement.addBatch();
+
+        if (++pending >= BATCH_SIZE)
+        {
+          statement.executeBatch();
+          pending = 0;
+        }
+      }
+
+      if (pending > 0)
+      {
+        statement.executeBatch();
+      }
+    }
+    finally
+    {
+      statement.close();
+    }
+  }
+
+  /**
+   * Returns the first identifiers of the statement. Comments are skipped.
+   *
+   *
+   * @param sql sql of the statement
+   * @param max maximum number of tokens
+   *
+   * @return identifiers of the statement
+   */
+  private static List<String> tokens(String sql, int max)
+  {
+    List<String> tokens = new ArrayList<String>(max);
+    int length = sql.length();
+    int i = 0;
+
+    while ((i < length) && (tokens.size() < max))
+    {
+      char c = sql.charAt(i);
+
+      if (Character.isWhitespace(c) || (c == '(') || (c == ','))
+      {
+        i++;
+      }
+      else if (sql.startsWith("--", i))
+      {
+        int end = sql.indexOf('\n', i);
+
+        i = (end < 0)
+          ? length
+          : end + 1;
+      }
+      else if (sql.startsWith("/*", i))
+      {
+        int end = sql.indexOf("*/", i + 2);
+
+        i = (end < 0)
+          ? length
+          : end + 2;
+      }
+      else
+      {
+        int start = i;
+        boolean quoted = false;
+
+        while (i < length)
+        {
+          c = sql.charAt(i);
+
+          if (c == '"')
+          {
+            quoted = !quoted;
+          }
+          else if (!quoted
+            && (Character.isWhitespace(c) || (c == '(') || (c == ',')
+              || (c == ';')))
+          {
+            break;
+          }
+
+          i++;
+        }
+
+        tokens.add(sql.substring(start, i));
+      }
+    }
+
+    return tokens;
+  }
+
+  /**
+   * Reads a value of the seed. Lobs are copied, because they are only valid
+   * for the lifetime of the result.
+   *
+   *
+   * @param result query result
+   * @param index column index
+   * @param type jdbc type of the column
+   *
+   * @return value
+   *
+   * @throws SQLException
+   */
+  private static Object value(ResultSet result, int index, int type)
+    throws SQLException
+  {
+    Object value;
+
+    if ((type == Types.BLOB) || (type == Types.LONGVARBINARY))
+    {
+      value = result.getBytes(index);
+    }
+    else if ((type == Types.CLOB) || (type == Types.LONGVARCHAR))
+    {
+      value = result.getString(index);
+    }
+    else
+    {
+      value = result.getObject(index);
+    }
+
+    return value;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the names of the tables of the last reset in the order of the
+   * reload.
+   *
+   *
+   * @return names of the reset tables
+   */
+  List<String> getLastReset()
+  {
+    List<String> names = new ArrayList<String>();
+
+    for (Table table : lastReset)
+    {
+      names.add(table.name);
+    }
+
+    return names;
+  }
+
+  /**
+   * Returns {@code true} for schemas of the database engine.
+   *
+   *
+   * @param schema name of the schema
+   *
+   * @return {@code true} for system schemas
+   */
+  private static boolean isSystemSchema(String schema)
+  {
+    String upper = schema.toUpperCase(Locale.ENGLISH);
+
+    return upper.startsWith("SYS") || upper.equals("INFORMATION_SCHEMA");
+  }
+
+  /**
+   * Returns the token at the given index or {@code null}.
+   *
+   *
+   * @param tokens tokens
+   * @param index index
+   *
+   * @return token or {@code null}
+   */
+  private static String token(List<String> tokens, int index)
+  {
+    return (index < tokens.size())
+      ? tokens.get(index)
+      : null;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Meta data and seed rows of a table.
+   */
+  private static class Table
+  {
+
+    /**
+     * Constructs a new table.
+     *
+     *
+     * @param schema schema of the table
+     * @param name name of the table
+     * @param quote identifier quote string
+     */
+    public Table(String schema, String name, String quote)
+    {
+      this.schema = schema;
+      this.name = name;
+      this.quote = quote;
+      this.qualified = (schema != null)
+        ? quote(schema).concat(".").concat(quote(name))
+        : quote(name);
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Quotes the identifier.
+     *
+     *
+     * @param identifier identifier
+     *
+     * @return quoted identifier
+     */
+    public String quote(String identifier)
+    {
+      return quote.concat(identifier).concat(quote);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+      return qualified;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** tables which reference this table */
+    private final Set<String> children = new LinkedHashSet<String>();
+
+    /** quoted column names */
+    private final List<String> columns = new ArrayList<String>();
+
+    /** the identity column is generated always */
+    private boolean generatedAlways;
+
+    /** index of the identity column or -1 */
+    private int identity = -1;
+
+    /** name of the table */
+    private final String name;
+
+    /** tables which are referenced by this table */
+    private final Set<String> parents = new LinkedHashSet<String>();
+
+    /** quoted and qualified name of the table */
+    private final String qualified;
+
+    /** identifier quote string */
+    private final String quote;
+
+    /** restart value of the identity column */
+    private long restart;
+
+    /** schema of the table */
+    private final String schema;
+
+    /** seed rows */
+    private final List<Object[]> seed = new ArrayList<Object[]>();
+
+    /** jdbc types of the columns */
+    private int[] types;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** restarts the database, if a table can not be reloaded */
+  private SnapshotResetStrategy fallback;
+
+  /** tables of the last reset */
+  private volatile List<Table> lastReset = Collections.emptyList();
+
+  /** tables ordered from parents to children */
+  private final List<Table> ordered = new ArrayList<Table>();
+
+  /** a statement could have modified any table */
+  private boolean resetAll;
+
+  /** tables of the database by name */
+  private final Map<String, Table> tables =
+    new LinkedHashMap<String, Table>();
+
+  /** names of the modified tables */
+  private final Set<String> touched = new HashSet<String>();
+}
@@ -0,0 +1,858 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.PrintWriter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * Lightweight connection pool for in-memory databases. The pool creates its
+ * connections directly with the jdbc driver and bypasses the
+ * {@link java.sql.DriverManager}. Closed connections are returned to the pool
+ * and are reused by the next caller. Transactions and statements which are
+ * still open are rolled back and closed on return. Connections whose
+ * isolation, read only mode, holdability, catalog or schema were changed are
+ * not reused. The pool can be configured with the following system
+ * properties:
+ *
+ * <ul>
+ *   <li>{@code database-unit.pool.size} maximum number of idle connections
+ *   (default 8)</li>
+ *   <li>{@code database-unit.pool.validate} validate idle connections before
+ *   they are handed out (default false)</li>
+ *   <li>{@code database-unit.pool.idle-timeout} milliseconds after which an
+ *   idle connection is closed (default 60000)</li>
+ * </ul>
+ *
+ * @author Sebastian Sdorra
+ */
+public final class ConnectionPool implements DataSource
+{
+
+  /** default maximum number of idle connections */
+  private static final int DEFAULT_SIZE = 8;
+
+  /** default idle timeout in milliseconds */
+  private static final long DEFAULT_IDLE_TIMEOUT = 60000l;
+
+  /** system property for the idle timeout */
+  private static final String PROPERTY_IDLE_TIMEOUT =
+    "database-unit.pool.idle-timeout";
+
+  /** system property for the maximum number of idle connections */
+  private static final String PROPERTY_SIZE = "database-unit.pool.size";
+
+  /** system property to enable validation */
+  private static final String PROPERTY_VALIDATE = "database-unit.pool.validate";
+
+  /** timeout for the validation in seconds */
+  private static final int VALIDATION_TIMEOUT = 1;
+
+  /** Connection.getSchema of jdbc 4.1 or {@code null} */
+  private static final Method GET_SCHEMA = schemaMethod();
+
+  /** logger */
+  private static final Logger logger =
+    LoggerFactory.getLogger(ConnectionPool.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new connection pool, which is configured by system
+   * properties.
+   *
+   *
+   * @param driver class name of the jdbc driver
+   * @param url jdbc url
+   */
+  public ConnectionPool(String driver, String url)
+  {
+    this(driver, url, Integer.getInteger(PROPERTY_SIZE, DEFAULT_SIZE),
+      Boolean.getBoolean(PROPERTY_VALIDATE),
+      Long.getLong(PROPERTY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT));
+  }
+
+  /**
+   * Constructs a new connection pool.
+   *
+   *
+   * @param driver class name of the jdbc driver
+   * @param url jdbc url
+   * @param maxIdle maximum number of idle connections
+   * @param validate validate idle connections before they are handed out
+   * @param idleTimeout milliseconds after which an idle connection is closed
+   */
+  public ConnectionPool(String driver, String url, int maxIdle,
+    boolean validate, long idleTimeout)
+  {
+    this.driverClass = driver;
+    this.url = url;
+    this.maxIdle = maxIdle;
+    this.validate = validate;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Closes all idle connections. Connections which are currently in use are
+   * closed, when they are returned to the pool. The method must be called
+   * before the database is dropped.
+   *
+   */
+  public void clear()
+  {
+    generation.incrementAndGet();
+
+    PooledConnection pooled;
+
+    while ((pooled = idle.poll()) != null)
+    {
+      idleCount.decrementAndGet();
+      pooled.closePhysical();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException
+  {
+    if (iface.isInstance(this))
+    {
+      return iface.cast(this);
+    }
+
+    throw new SQLException("data source is not a wrapper for ".concat(
+      iface.getName()));
+  }
+
+  /**
+   * Closes the idle connections, which have exceeded the idle timeout.
+   *
+   */
+  private void evictIdle()
+  {
+    long now = System.nanoTime();
+    PooledConnection pooled;
+
+    while (((pooled = idle.peek()) != null) && pooled.isExpired(now))
+    {
+      if (idle.remove(pooled))
+      {
+        idleCount.decrementAndGet();
+        pooled.closePhysical();
+      }
+    }
+  }
+
+  /**
+   * Returns a connection to the pool.
+   *
+   *
+   * @param pooled pooled connection
+   */
+  private void release(PooledConnection pooled)
+  {
+    boolean reuse = (pooled.generation == generation.get()) && pooled.reset();
+
+    if (reuse && (idleCount.incrementAndGet() > maxIdle))
+    {
+      idleCount.decrementAndGet();
+      reuse = false;
+    }
+
+    if (reuse)
+    {
+      pooled.lastUsed = System.nanoTime();
+      idle.offer(pooled);
+    }
+    else
+    {
+      pooled.closePhysical();
+    }
+
+    evictIdle();
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of connections which were handed out.
+   *
+   *
+   * @return number of handed out connections
+   */
+  public long getAcquireCount()
+  {
+    return acquireCount.get();
+  }
+
+  /**
+   * Returns the average time which was needed to acquire a connection.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return average acquisition time
+   */
+  public long getAverageAcquireTime(TimeUnit unit)
+  {
+    long count = acquireCount.get();
+    long average = 0;
+
+    if (count > 0)
+    {
+      average = acquireNanos.get() / count;
+    }
+
+    return unit.convert(average, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Connection getConnection() throws SQLException
+  {
+    long start = System.nanoTime();
+    PooledConnection pooled = null;
+
+    while ((pooled == null) && ((pooled = idle.poll()) != null))
+    {
+      idleCount.decrementAndGet();
+
+      if (pooled.isExpired(start) || (validate &&!pooled.isValid()))
+      {
+        pooled.closePhysical();
+        pooled = null;
+      }
+    }
+
+    if (pooled == null)
+    {
+      pooled = new PooledConnection(createPhysical(), generation.get());
+      pooled.record();
+      createCount.incrementAndGet();
+    }
+
+    long nanos = System.nanoTime() - start;
+
+    acquireCount.incrementAndGet();
+    acquireNanos.addAndGet(nanos);
+    updateMax(nanos);
+
+    return pooled.open();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Connection getConnection(String username, String password)
+    throws SQLException
+  {
+    return getConnection();
+  }
+
+  /**
+   * Returns the number of physical connections which were created.
+   *
+   *
+   * @return number of created connections
+   */
+  public long getCreateCount()
+  {
+    return createCount.get();
+  }
+
+  /**
+   * Returns the number of idle connections.
+   *
+   *
+   * @return number of idle connections
+   */
+  public int getIdleCount()
+  {
+    return Math.max(idleCount.get(), 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PrintWriter getLogWriter() throws SQLException
+  {
+    return logWriter;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getLoginTimeout() throws SQLException
+  {
+    return 0;
+  }
+
+  /**
+   * Returns the longest time which was needed to acquire a connection.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return maximum acquisition time
+   */
+  public long getMaxAcquireTime(TimeUnit unit)
+  {
+    return unit.convert(maxAcquireNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Method is required by jdbc 4.1, but logging is not supported.
+   *
+   *
+   * @return never
+   *
+   * @throws SQLFeatureNotSupportedException
+   */
+  public java.util.logging.Logger getParentLogger()
+    throws SQLFeatureNotSupportedException
+  {
+    throw new SQLFeatureNotSupportedException("logging is not supported");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException
+  {
+    return iface.isInstance(this);
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException
+  {
+    this.logWriter = out;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException
+  {
+
+    // login timeout is not supported
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Creates a new physical connection with the jdbc driver.
+   *
+   *
+   * @return physical connection
+   *
+   * @throws SQLException
+   */
+  private Connection createPhysical() throws SQLException
+  {
+    Connection connection = getDriver().connect(url, new Properties());
+
+    if (connection == null)
+    {
+      throw new SQLException("driver does not accept url ".concat(url));
+    }
+
+    return connection;
+  }
+
+  /**
+   * Updates the maximum acquisition time.
+   *
+   *
+   * @param nanos acquisition time
+   */
+  private void updateMax(long nanos)
+  {
+    long max;
+
+    do
+    {
+      max = maxAcquireNanos.get();
+    }
+    while ((nanos > max) &&!maxAcquireNanos.compareAndSet(max, nanos));
+  }
+
+  /**
+   * Returns {@code true} if both values are {@code null} or equal.
+   *
+   *
+   * @param left first value
+   * @param right second value
+   *
+   * @return {@code true} if the values are equal
+   */
+  private static boolean equal(Object left, Object right)
+  {
+    return (left == null)
+      ? right == null
+      : left.equals(right);
+  }
+
+  /**
+   * Returns the getSchema method of jdbc 4.1, which is not available on
+   * java 6.
+   *
+   *
+   * @return method or {@code null}
+   */
+  private static Method schemaMethod()
+  {
+    Method method = null;
+
+    try
+    {
+      method = Connection.class.getMethod("getSchema");
+    }
+    catch (NoSuchMethodException ex)
+    {
+      logger.trace("jdbc 4.1 is not available", ex);
+    }
+
+    return method;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the jdbc driver, the driver is loaded on first access.
+   *
+   *
+   * @return jdbc driver
+   */
+  private Driver getDriver()
+  {
+    if (driver == null)
+    {
+      try
+      {
+        driver = (Driver) Class.forName(
+          driverClass).getDeclaredConstructor().newInstance();
+      }
+      catch (Exception ex)
+      {
+        throw new DatabaseException("could not load jdbc driver", ex);
+      }
+    }
+
+    return driver;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Physical connection of the pool and handler for the connection proxies,
+   * which are handed out to the callers.
+   */
+  private class PooledConnection implements InvocationHandler
+  {
+
+    /**
+     * Constructs a new pooled connection.
+     *
+     *
+     * @param connection physical connection
+     * @param generation generation of the pool
+     */
+    private PooledConnection(Connection connection, int generation)
+    {
+      this.connection = connection;
+      this.generation = generation;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable
+    {
+      String name = method.getName();
+      Object result;
+
+      // object methods are answered by the proxy itself, even if it is closed
+      if ("equals".equals(name) && (args != null) && (args.length == 1))
+      {
+        result = proxy == args[0];
+      }
+      else if ("hashCode".equals(name) && (args == null))
+      {
+        result = System.identityHashCode(proxy);
+      }
+      else if ("toString".equals(name) && (args == null))
+      {
+        result = "pooled connection ".concat((proxy == current)
+          ? connection.toString()
+          : "(closed)");
+      }
+      else if ("close".equals(name))
+      {
+        if (proxy == current)
+        {
+          current = null;
+          release(this);
+        }
+
+        result = null;
+      }
+      else if ("isClosed".equals(name))
+      {
+        result = proxy != current;
+      }
+      else if (proxy != current)
+      {
+        throw new SQLException("connection is closed");
+      }
+      else
+      {
+        try
+        {
+          result = method.invoke(connection, args);
+        }
+        catch (InvocationTargetException ex)
+        {
+          throw ex.getCause();
+        }
+
+        if (result instanceof Statement)
+        {
+          statements.add((Statement) result);
+        }
+      }
+
+      return result;
+    }
+
+    /**
+     * Closes the physical connection.
+     *
+     */
+    private void closePhysical()
+    {
+      Closeables.close(connection);
+    }
+
+    /**
+     * Creates a new proxy for the physical connection.
+     *
+     *
+     * @return connection proxy
+     */
+    private Connection open()
+    {
+      current = (Connection) Proxy.newProxyInstance(
+        ConnectionPool.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, this);
+
+      return current;
+    }
+
+    /**
+     * Records the initial settings of the physical connection.
+     *
+     *
+     * @throws SQLException
+     */
+    private void record() throws SQLException
+    {
+      isolation = connection.getTransactionIsolation();
+      readOnly = connection.isReadOnly();
+      holdability = connection.getHoldability();
+      catalog = connection.getCatalog();
+      schema = getSchema();
+    }
+
+    /**
+     * Resets the state of the physical connection, before it is returned to
+     * the pool. Open statements are closed and the transaction is rolled
+     * back.
+     *
+     *
+     * @return {@code true} if the connection could be reset and its settings
+     *   are unchanged
+     */
+    private boolean reset()
+    {
+      boolean success = false;
+
+      try
+      {
+        for (Statement statement : statements)
+        {
+          statement.close();
+        }
+
+        statements.clear();
+
+        if (!connection.getAutoCommit())
+        {
+          connection.rollback();
+          connection.setAutoCommit(true);
+        }
+
+        connection.clearWarnings();
+        success = isUnchanged();
+      }
+      catch (SQLException ex)
+      {
+        logger.trace("could not reset pooled connection", ex);
+      }
+
+      return success;
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Returns {@code true} if the connection has exceeded the idle timeout.
+     *
+     *
+     * @param now current time in nanoseconds
+     *
+     * @return {@code true} if the connection has exceeded the idle timeout
+     */
+    private boolean isExpired(long now)
+    {
+      return (now - lastUsed) > idleTimeoutNanos;
+    }
+
+    /**
+     * Returns the current schema of the physical connection or {@code null},
+     * if the driver does not implement jdbc 4.1.
+     *
+     *
+     * @return current schema or {@code null}
+     *
+     * @throws SQLException
+     */
+    private String getSchema() throws SQLException
+    {
+      String current = null;
+
+      if (GET_SCHEMA != null)
+      {
+        try
+        {
+          current = (String) GET_SCHEMA.invoke(connection);
+        }
+        catch (InvocationTargetException ex)
+        {
+          if (ex.getCause() instanceof SQLException)
+          {
+            throw (SQLException) ex.getCause();
+          }
+
+          // AbstractMethodError of a jdbc 4.0 driver
+          logger.trace("driver does not support the schema", ex);
+        }
+        catch (IllegalAccessException ex)
+        {
+          logger.trace("could not read the schema", ex);
+        }
+      }
+
+      return current;
+    }
+
+    /**
+     * Returns {@code true} if the settings of the physical connection are the
+     * same as after its creation.
+     *
+     *
+     * @return {@code true} if the settings are unchanged
+     *
+     * @throws SQLException
+     */
+    private boolean isUnchanged() throws SQLException
+    {
+      boolean unchanged =
+        (connection.getTransactionIsolation() == isolation)
+        && (connection.isReadOnly() == readOnly)
+        && (connection.getHoldability() == holdability)
+        && equal(connection.getCatalog(), catalog)
+        && equal(getSchema(), schema);
+
+      if (!unchanged)
+      {
+        logger.trace("settings of pooled connection were changed");
+      }
+
+      return unchanged;
+    }
+
+    /**
+     * Returns {@code true} if the physical connection is still valid.
+     *
+     *
+     * @return {@code true} if the connection is valid
+     */
+    private boolean isValid()
+    {
+      boolean valid = false;
+
+      try
+      {
+        valid = connection.isValid(VALIDATION_TIMEOUT);
+      }
+      catch (SQLException ex)
+      {
+        logger.trace("connection validation failed", ex);
+      }
+
+      return valid;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** physical connection */
+    private final Connection connection;
+
+    /** generation of the pool */
+    private final int generation;
+
+    /** statements of the current proxy */
+    private final List<Statement> statements = new ArrayList<Statement>();
+
+    /** initial catalog */
+    private String catalog;
+
+    /** initial holdability */
+    private int holdability;
+
+    /** initial transaction isolation */
+    private int isolation;
+
+    /** initial read only mode */
+    private boolean readOnly;
+
+    /** initial schema or {@code null} */
+    private String schema;
+
+    /** proxy which is currently handed out */
+    private volatile Connection current;
+
+    /** last usage of the connection */
+    private volatile long lastUsed = System.nanoTime();
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** number of handed out connections */
+  private final AtomicLong acquireCount = new AtomicLong();
+
+  /** time which was needed to acquire connections */
+  private final AtomicLong acquireNanos = new AtomicLong();
+
+  /** number of created physical connections */
+  private final AtomicLong createCount = new AtomicLong();
+
+  /** class name of the jdbc driver */
+  private final String driverClass;
+
+  /** generation of the pool, is incremented on clear */
+  private final AtomicInteger generation = new AtomicInteger();
+
+  /** idle connections */
+  private final Queue<PooledConnection> idle =
+    new ConcurrentLinkedQueue<PooledConnection>();
+
+  /** number of idle connections */
+  private final AtomicInteger idleCount = new AtomicInteger();
+
+  /** idle timeout in nanoseconds */
+  private final long idleTimeoutNanos;
+
+  /** longest acquisition time */
+  private final AtomicLong maxAcquireNanos = new AtomicLong();
+
+  /** maximum number of idle connections */
+  private final int maxIdle;
+
+  /** jdbc url */
+  private final String url;
+
+  /** validate idle connections */
+  private final boolean validate;
+
+  /** jdbc driver */
+  private volatile Driver driver;
+
+  /** log writer */
+  private volatile PrintWriter logWriter;
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseEngine;
+import com.github.sdorra.database.DatabaseException;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Util class to find the {@link DatabaseEngine} implementations, which are
+ * registered with the {@link ServiceLoader}.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class DatabaseEngines
+{
+
+  /** name of the default engine */
+  public static final String DEFAULT = DerbyEngine.NAME;
+
+  /** registered engines */
+  private static volatile Map<String, DatabaseEngine> engines;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private DatabaseEngines() {}
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the engine with the given name.
+   *
+   *
+   * @param name name of the engine
+   *
+   * @return engine
+   */
+  public static DatabaseEngine get(String name)
+  {
+    DatabaseEngine engine = getEngines().get(name.toLowerCase(Locale.ENGLISH));
+
+    if (engine == null)
+    {
+      throw new DatabaseException("unknown database engine ".concat(name));
+    }
+
+    return engine;
+  }
+
+  /**
+   * Returns all registered engines, the engines are loaded on first access.
+   *
+   *
+   * @return registered engines
+   */
+  private static Map<String, DatabaseEngine> getEngines()
+  {
+    if (engines == null)
+    {
+      Map<String, DatabaseEngine> loaded = new HashMap<String,
+                                             DatabaseEngine>();
+
+      for (DatabaseEngine engine : ServiceLoader.load(DatabaseEngine.class,
+        DatabaseEngines.class.getClassLoader()))
+      {
+        loaded.put(engine.getName().toLowerCase(Locale.ENGLISH), engine);
+      }
+
+      engines = Collections.unmodifiableMap(loaded);
+    }
+
+    return engines;
+  }
+}
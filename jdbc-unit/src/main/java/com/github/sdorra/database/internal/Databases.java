@@ -0,0 +1,260 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.DatabaseOptions;
+import com.github.sdorra.database.Durability;
+import com.github.sdorra.database.Tuning;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.net.URL;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Util class to start and seed databases.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class Databases
+{
+
+  /** counter for database names */
+  private static final AtomicLong counter = new AtomicLong();
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private Databases() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Creates a new database with the given engine and a unique name.
+   *
+   *
+   * @param engine name of the engine
+   * @param prefix prefix of the database name
+   * @param options tuning options
+   *
+   * @return new database
+   */
+  public static Database create(String engine, String prefix,
+    DatabaseOptions options)
+  {
+    return DatabaseEngines.get(engine).createDatabase(createName(prefix),
+      options);
+  }
+
+  /**
+   * Creates a database name, which is unique in the current jvm. Every rule
+   * instance gets its own database, which allows the parallel execution of
+   * tests.
+   *
+   *
+   * @param prefix prefix of the database name
+   *
+   * @return unique database name
+   */
+  public static String createName(String prefix)
+  {
+    return prefix.concat("-").concat(String.valueOf(counter.incrementAndGet()));
+  }
+
+  /**
+   * Creates a key for the sql scripts, which can be used to share databases
+   * between tests with the same scripts.
+   *
+   *
+   * @param contextClass context object is used to obtain the class loader
+   * @param resources paths to the sql scripts
+   * @param encoding encoding of the scripts
+   *
+   * @return key for the scripts
+   */
+  public static String key(Object contextClass, String[] resources,
+    String encoding)
+  {
+    String key = "";
+
+    if (resources.length > 0)
+    {
+      key = Templates.keys(contextClass, resources,
+        encoding)[resources.length - 1];
+    }
+
+    return key;
+  }
+
+  /**
+   * Creates the options for the tuning annotation. The options of the
+   * annotation override the given base options.
+   *
+   *
+   * @param tuning tuning annotation
+   * @param base options of the rule
+   *
+   * @return database options
+   */
+  public static DatabaseOptions options(Tuning tuning, DatabaseOptions base)
+  {
+    DatabaseOptions.Builder builder = DatabaseOptions.builder(tuning.fastest()
+                                        ? DatabaseOptions.FASTEST
+                                        : base);
+
+    if (tuning.durability() != Durability.DEFAULT)
+    {
+      builder.durability(tuning.durability());
+    }
+
+    if (tuning.pageCacheSize() >= 0)
+    {
+      builder.pageCacheSize(tuning.pageCacheSize());
+    }
+
+    if (tuning.statementCacheSize() >= 0)
+    {
+      builder.statementCacheSize(tuning.statementCacheSize());
+    }
+
+    if (tuning.lockWaitTimeout() >= 0)
+    {
+      builder.lockWaitTimeout(tuning.lockWaitTimeout());
+    }
+
+    if (tuning.preallocatedPages() >= 0)
+    {
+      builder.preallocatedPages(tuning.preallocatedPages());
+    }
+
+    if (tuning.asynchronousDrop())
+    {
+      builder.asynchronousDrop(true);
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Starts the database and executes the sql scripts in the given order.
+   *
+   *
+   * @param database database
+   * @param contextClass context object is used to obtain the class loader
+   * @param resources paths to the sql scripts
+   * @param encoding encoding of the scripts
+   * @param batchSize maximum number of statements per batch
+   * @param template {@code true} to start the database from a template
+   */
+  public static void start(Database database, Object contextClass,
+    String[] resources, String encoding, int batchSize, boolean template)
+  {
+    if ((resources.length > 0) && template)
+    {
+      Templates.start(database, contextClass, resources, encoding, batchSize);
+    }
+    else
+    {
+      database.start();
+
+      for (String resource : resources)
+      {
+        database.execute(contextClass, resource, encoding, batchSize);
+      }
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the url of the resource. The resource is resolved relative to the
+   * context object or relative to the context class, if the context object is
+   * a class.
+   *
+   *
+   * @param contextClass context object or class
+   * @param resource path to the resource
+   *
+   * @return url of the resource
+   */
+  public static URL getResource(Object contextClass, String resource)
+  {
+    Class<?> type;
+
+    if (contextClass instanceof Class)
+    {
+      type = (Class<?>) contextClass;
+    }
+    else
+    {
+      type = contextClass.getClass();
+    }
+
+    URL url = type.getResource(resource);
+
+    if (url == null)
+    {
+      throw new DatabaseException(
+        "could not find sql script ".concat(resource));
+    }
+
+    return url;
+  }
+
+  /**
+   * Returns the paths of the sql scripts without empty paths.
+   *
+   *
+   * @param sql paths of the sql scripts
+   *
+   * @return paths of the sql scripts
+   */
+  public static String[] getScripts(String[] sql)
+  {
+    List<String> scripts = new ArrayList<String>();
+
+    for (String script : sql)
+    {
+      if ((script != null) && (script.trim().length() > 0))
+      {
+        scripts.add(script);
+      }
+    }
+
+    return scripts.toArray(new String[scripts.size()]);
+  }
+}
@@ -0,0 +1,495 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.Dataset;
+import com.github.sdorra.database.LifecyclePhase;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import java.net.URL;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Util class to load csv and tsv datasets into the tables of a database. The
+ * files are streamed and inserted with batched prepared statements. The
+ * datasets are loaded in the order of the annotation, the system property
+ * {@code database-unit.dataset.threads} enables the parallel loading of
+ * multiple datasets. Parallel loading should only be used for tables without
+ * foreign keys between them.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class Datasets
+{
+
+  /** number of rows per batch */
+  private static final int BATCH_SIZE = 1000;
+
+  /** system property for the number of threads */
+  private static final String PROPERTY_THREADS =
+    "database-unit.dataset.threads";
+
+  /** number of threads for the parallel loading of datasets */
+  private static final int threads =
+    Math.max(Integer.getInteger(PROPERTY_THREADS, 1), 1);
+
+  /** logger */
+  private static final Logger logger = LoggerFactory.getLogger(Datasets.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private Datasets() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Loads the datasets into the database. Every dataset is loaded with its
+   * own connection and the rows are committed.
+   *
+   *
+   * @param database database
+   * @param contextClass context object is used to obtain the class loader
+   * @param datasets datasets
+   */
+  public static void load(Database database, Object contextClass,
+    Dataset[] datasets)
+  {
+    if ((threads > 1) && (datasets.length > 1))
+    {
+      loadParallel(database, contextClass, datasets);
+    }
+    else
+    {
+      for (Dataset dataset : datasets)
+      {
+        Connection connection = database.createConnection();
+
+        try
+        {
+          fire(load(connection, contextClass, dataset));
+        }
+        finally
+        {
+          Closeables.close(connection);
+        }
+      }
+    }
+  }
+
+  /**
+   * Loads the datasets with the given connection. The connection is not
+   * closed.
+   *
+   *
+   * @param connection jdbc connection
+   * @param contextClass context object is used to obtain the class loader
+   * @param datasets datasets
+   */
+  public static void load(Connection connection, Object contextClass,
+    Dataset[] datasets)
+  {
+    for (Dataset dataset : datasets)
+    {
+      fire(load(connection, contextClass, dataset));
+    }
+  }
+
+  /**
+   * Loads a single dataset.
+   *
+   *
+   * @param connection jdbc connection
+   * @param contextClass context object is used to obtain the class loader
+   * @param dataset dataset
+   *
+   * @return result of the load
+   */
+  static Result load(Connection connection, Object contextClass,
+    Dataset dataset)
+  {
+    URL url = Databases.getResource(contextClass, dataset.value());
+    Result result = new Result(dataset.table());
+    CSVReader reader = null;
+
+    try
+    {
+      reader = new CSVReader(new InputStreamReader(url.openStream(),
+        dataset.encoding()), dataset.separator());
+
+      String[] columns = reader.next();
+
+      if (columns != null)
+      {
+        boolean autoCommit = connection.getAutoCommit();
+
+        connection.setAutoCommit(false);
+
+        try
+        {
+          insert(connection, reader, dataset, columns, result);
+        }
+        finally
+        {
+          connection.setAutoCommit(autoCommit);
+        }
+      }
+    }
+    catch (IOException ex)
+    {
+      throw new DatabaseException(
+        "could not read dataset ".concat(dataset.value()), ex);
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException(
+        "could not load dataset ".concat(dataset.value()), ex);
+    }
+    finally
+    {
+      Closeables.close(reader);
+    }
+
+    result.end = System.nanoTime();
+    logger.debug("loaded {} rows into {} ({} rows/s)",
+      new Object[] { result.rows,
+      result.table, Math.round(result.getRowsPerSecond()) });
+
+    return result;
+  }
+
+  /**
+   * Sends the lifecycle event for a loaded dataset.
+   *
+   *
+   * @param result result of the load
+   */
+  private static void fire(Result result)
+  {
+    Lifecycle.fire(LifecyclePhase.DATASET, result.start, result.end,
+      result.table, (int) result.rows);
+  }
+
+  /**
+   * Inserts the records of the reader in batches.
+   *
+   *
+   * @param connection jdbc connection
+   * @param reader csv reader
+   * @param dataset dataset
+   * @param columns column names from the header of the file
+   * @param result result of the load
+   *
+   * @throws IOException
+   * @throws SQLException
+   */
+  private static void insert(Connection connection, CSVReader reader,
+    Dataset dataset, String[] columns, Result result)
+    throws IOException, SQLException
+  {
+    String columnList = join(columns);
+    int[] types = types(connection, dataset.table(), columnList,
+                    columns.length);
+    StringBuilder sql = new StringBuilder("INSERT INTO ");
+
+    sql.append(dataset.table()).append(" (").append(columnList);
+    sql.append(") VALUES (");
+
+    for (int i = 0; i < columns.length; i++)
+    {
+      sql.append((i == 0)
+        ? "?"
+        : ", ?");
+    }
+
+    sql.append(")");
+
+    PreparedStatement statement = connection.prepareStatement(sql.toString());
+
+    try
+    {
+      int pending = 0;
+      String[] values;
+
+      while ((values = reader.next()) != null)
+      {
+        if (values.length != columns.length)
+        {
+          throw new DatabaseException(
+            String.format(
+              "row %d of dataset %s has %d values, but %d columns are defined",
+              result.rows + 1, dataset.value(), values.length,
+              columns.length));
+        }
+
+        for (int i = 0; i < values.length; i++)
+        {
+          if (values[i] == null)
+          {
+            statement.setNull(i + 1, types[i]);
+          }
+          else
+          {
+            statement.setString(i + 1, values[i]);
+          }
+        }
+
+        statement.addBatch();
+        result.rows++;
+
+        if (++pending >= BATCH_SIZE)
+        {
+          statement.executeBatch();
+          connection.commit();
+          pending = 0;
+        }
+      }
+
+      if (pending > 0)
+      {
+        statement.executeBatch();
+      }
+
+      connection.commit();
+    }
+    finally
+    {
+      statement.close();
+    }
+  }
+
+  /**
+   * Joins the column names.
+   *
+   *
+   * @param columns column names
+   *
+   * @return comma separated column names
+   */
+  private static String join(String[] columns)
+  {
+    StringBuilder buffer = new StringBuilder();
+
+    for (int i = 0; i < columns.length; i++)
+    {
+      if (i > 0)
+      {
+        buffer.append(", ");
+      }
+
+      buffer.append(columns[i].trim());
+    }
+
+    return buffer.toString();
+  }
+
+  /**
+   * Loads the datasets in parallel, each dataset with its own connection.
+   *
+   *
+   * @param database database
+   * @param contextClass context object is used to obtain the class loader
+   * @param datasets datasets
+   */
+  private static void loadParallel(final Database database,
+    final Object contextClass, Dataset[] datasets)
+  {
+    ExecutorService executor =
+      Executors.newFixedThreadPool(Math.min(threads, datasets.length));
+
+    try
+    {
+      List<Future<Result>> futures = new ArrayList<Future<Result>>();
+
+      for (final Dataset dataset : datasets)
+      {
+        futures.add(executor.submit(new Callable<Result>()
+        {
+          @Override
+          public Result call()
+          {
+            Connection connection = database.createConnection();
+
+            try
+            {
+              return load(connection, contextClass, dataset);
+            }
+            finally
+            {
+              Closeables.close(connection);
+            }
+          }
+        }));
+      }
+
+      // events are fired on the calling thread, to reach the rule listeners
+      for (Future<Result> future : futures)
+      {
+        fire(future.get());
+      }
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+
+      throw new DatabaseException("interrupted while loading datasets", ex);
+    }
+    catch (ExecutionException ex)
+    {
+      if (ex.getCause() instanceof DatabaseException)
+      {
+        throw(DatabaseException) ex.getCause();
+      }
+
+      throw new DatabaseException("could not load datasets", ex.getCause());
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the sql types of the columns.
+   *
+   *
+   * @param connection jdbc connection
+   * @param table table name
+   * @param columnList comma separated column names
+   * @param count number of columns
+   *
+   * @return sql types
+   *
+   * @throws SQLException
+   */
+  private static int[] types(Connection connection, String table,
+    String columnList, int count)
+    throws SQLException
+  {
+    int[] types = new int[count];
+    Statement statement = connection.createStatement();
+
+    try
+    {
+      ResultSet rs = statement.executeQuery("SELECT ".concat(
+                       columnList).concat(" FROM ").concat(table).concat(
+                       " WHERE 1 = 0"));
+      ResultSetMetaData md = rs.getMetaData();
+
+      for (int i = 0; i < count; i++)
+      {
+        types[i] = md.getColumnType(i + 1);
+      }
+
+      rs.close();
+    }
+    finally
+    {
+      statement.close();
+    }
+
+    return types;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Result of the load of a single dataset.
+   */
+  static class Result
+  {
+
+    /**
+     * Constructs a new result.
+     *
+     *
+     * @param table table name
+     */
+    private Result(String table)
+    {
+      this.table = table;
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Returns the number of inserted rows per second.
+     *
+     *
+     * @return rows per second
+     */
+    double getRowsPerSecond()
+    {
+      long nanos = Math.max(end - start, 1);
+
+      return (rows * (double) TimeUnit.SECONDS.toNanos(1)) / nanos;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** table name */
+    private final String table;
+
+    /** start of the load */
+    private final long start = System.nanoTime();
+
+    /** end of the load */
+    private long end;
+
+    /** number of inserted rows */
+    private long rows;
+  }
+}
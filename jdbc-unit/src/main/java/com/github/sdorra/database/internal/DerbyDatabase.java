@@ -28,27 +28,38 @@ package com.github.sdorra.database.internal;
 
 //~--- non-JDK imports --------------------------------------------------------
 
-import com.github.sdorra.database.Database;
 import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.DatabaseOptions;
+import com.github.sdorra.database.Durability;
 
 //~--- JDK imports ------------------------------------------------------------
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.File;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
- * This implementation of {@link Database} uses apache derby as in-memory 
- * database.
+ * This implementation of {@link com.github.sdorra.database.Database} uses 
+ * apache derby as in-memory database. The lifecycle methods are thread safe, 
+ * databases with different names can be used in parallel. Derby reads the
+ * durability, the page cache size and the statement cache size from system
+ * properties during the boot of a database. The properties are set only for
+ * the boot of a tuned database, other databases can not boot at the same
+ * time. Lock timeouts and preallocated pages are stored as database
+ * properties.
  *
  * @author Sebastian Sdorra 
  */
-public class DerbyDatabase implements Database
+public class DerbyDatabase extends AbstractDatabase
 {
 
   /** jdbc driver */
@@ -57,15 +68,32 @@ public class DerbyDatabase implements Database
   /** jdbc connection template */
   private static final String JDBC_URL = "jdbc:derby:memory:%s";
 
-  /** jdbc start connection template */
-  private static final String JDBC_START_URL = JDBC_URL.concat(";create=true");
+  /** jdbc start connection attribute */
+  private static final String JDBC_START = ";create=true";
+
+  /** jdbc connection attribute to create a database from a backup */
+  private static final String JDBC_RESTORE = ";createFrom=";
+
+  /** procedure to create a backup of the database */
+  private static final String PROCEDURE_BACKUP =
+    "CALL SYSCS_UTIL.SYSCS_BACKUP_DATABASE(?)";
+
+  /** jdbc shutdown connection attribute */
+  private static final String JDBC_SHUTDOWN = ";drop=true";
 
-  /** jdbc shutdown connection template */
-  private static final String JDBC_SHUTDOWN_URL = JDBC_URL.concat(";drop=true");
+  /** procedure to set a database property */
+  private static final String PROCEDURE_SET_PROPERTY =
+    "CALL SYSCS_UTIL.SYSCS_SET_DATABASE_PROPERTY(?, ?)";
 
   /** shutdown success error code */
   private static final int STOP_SUCCESS = 45000;
 
+  /** shutdown success sql state */
+  private static final String STOP_SUCCESS_STATE = "08006";
+
+  /** guards the system properties, which are read during the boot */
+  private static final ReadWriteLock bootLock = new ReentrantReadWriteLock();
+
   //~--- constructors ---------------------------------------------------------
 
   /**
@@ -76,58 +104,66 @@ public class DerbyDatabase implements Database
    */
   public DerbyDatabase(String databaseName)
   {
-    this.databaseName = databaseName;
+    this(databaseName, DatabaseOptions.DEFAULT);
   }
 
-  //~--- methods --------------------------------------------------------------
+  /**
+   * Constructs a new tuned derby database.
+   *
+   *
+   * @param databaseName name of the database
+   * @param options tuning options
+   */
+  public DerbyDatabase(String databaseName, DatabaseOptions options)
+  {
+    this(DRIVER, String.format(JDBC_URL, databaseName), options);
+  }
 
   /**
-   * {@inheritDoc}
+   * Constructs a new derby database, which is accessed with another driver,
+   * e.g. the client driver of the network server.
+   *
+   *
+   * @param driver class name of the jdbc driver
+   * @param url jdbc url of the database without attributes
+   * @param options tuning options
    */
-  @Override
-  public Connection createConnection()
+  protected DerbyDatabase(String driver, String url, DatabaseOptions options)
   {
-    try
-    {
-      return DriverManager.getConnection(url(JDBC_URL));
-    }
-    catch (SQLException ex)
-    {
-      throw new DatabaseException("could not create jdbc connection", ex);
-    }
+    super(driver, url, options);
   }
 
+  //~--- methods --------------------------------------------------------------
+
   /**
    * {@inheritDoc}
    */
   @Override
-  public void execute(Object contextClass, String resource, String encoding)
+  protected void create() throws SQLException
   {
-    InputStream stream = contextClass.getClass().getResourceAsStream(resource);
-
-    if (stream == null)
-    {
-      throw new DatabaseException(
-        "could not find sql script ".concat(resource));
-    }
+    boot(url(JDBC_START));
 
-    Reader reader = null;
-    Connection connection = null;
+    DatabaseOptions options = getOptions();
+    Map<String, String> properties = new LinkedHashMap<String, String>();
 
-    try
+    if (options.getLockWaitTimeout() >= 0)
     {
-      reader = new InputStreamReader(stream, encoding);
-      connection = createConnection();
-      new SQLScriptRunner(connection, true).runScript(reader);
+      String timeout = String.valueOf(options.getLockWaitTimeout());
+
+      // the deadlock detection must not start after the wait timeout
+      properties.put("derby.locks.deadlockTimeout", timeout);
+      properties.put("derby.locks.waitTimeout", timeout);
     }
-    catch (IOException ex)
+
+    if (options.getPreallocatedPages() >= 0)
     {
-      throw new DatabaseException("could not load sql script", ex);
+      properties.put("derby.storage.initialPages",
+        String.valueOf(options.getPreallocatedPages()));
     }
-    finally
+
+    if (!properties.isEmpty())
     {
-      Closeables.close(reader);
-      Closeables.close(connection);
+      setDatabaseProperties(properties);
     }
   }
 
@@ -135,18 +171,19 @@ public class DerbyDatabase implements Database
    * {@inheritDoc}
    */
   @Override
-  public void shutdown()
+  protected void drop() throws SQLException
   {
     try
     {
-      running = false;
-      DriverManager.getConnection(url(JDBC_SHUTDOWN_URL)).close();
+      connect(url(JDBC_SHUTDOWN)).close();
     }
     catch (SQLException ex)
     {
-      if (ex.getErrorCode() != STOP_SUCCESS)
+      // the client driver reports only the sql state
+      if ((ex.getErrorCode() != STOP_SUCCESS)
+        &&!STOP_SUCCESS_STATE.equals(ex.getSQLState()))
       {
-        throw new DatabaseException("database shutdown failed");
+        throw ex;
       }
 
       // Shutdown success
@@ -157,77 +194,175 @@ public class DerbyDatabase implements Database
    * {@inheritDoc}
    */
   @Override
-  public void start()
+  protected void restore(File snapshot) throws SQLException
   {
-    try
-    {
-      Class.forName(DRIVER);
-    }
-    catch (ClassNotFoundException ex)
+    // derby stores the backup in a sub directory named like the database
+    File[] children = snapshot.listFiles();
+
+    if ((children == null) || (children.length != 1))
     {
-      throw new DatabaseException("could not find jdbc driver", ex);
+      throw new DatabaseException(
+        "could not find database backup in ".concat(snapshot.getPath()));
     }
 
+    // database properties are part of the backup
+    boot(url(JDBC_RESTORE.concat(children[0].getAbsolutePath())));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void snapshot(Connection connection, File directory)
+    throws SQLException
+  {
+    CallableStatement statement = connection.prepareCall(PROCEDURE_BACKUP);
+
     try
     {
-      DriverManager.getConnection(url(JDBC_START_URL)).close();
-      running = true;
+      statement.setString(1, directory.getAbsolutePath());
+      statement.execute();
     }
-    catch (SQLException ex)
+    finally
     {
-      throw new DatabaseException("could not create database", ex);
+      statement.close();
     }
   }
 
-  //~--- get methods ----------------------------------------------------------
-
   /**
-   * {@inheritDoc}
+   * Boots the database with the system properties of the options.
+   *
+   *
+   * @param connectionUrl jdbc url which boots the database
+   *
+   * @throws SQLException
    */
-  @Override
-  public String getDriver()
+  private void boot(String connectionUrl) throws SQLException
   {
-    return DRIVER;
+    Map<String, String> properties = getBootProperties();
+    Lock lock = properties.isEmpty()
+      ? bootLock.readLock()
+      : bootLock.writeLock();
+
+    lock.lock();
+
+    try
+    {
+      Map<String, String> previous = new LinkedHashMap<String, String>();
+
+      for (Entry<String, String> e : properties.entrySet())
+      {
+        previous.put(e.getKey(), System.getProperty(e.getKey()));
+        System.setProperty(e.getKey(), e.getValue());
+      }
+
+      try
+      {
+        connect(connectionUrl).close();
+      }
+      finally
+      {
+        for (Entry<String, String> e : previous.entrySet())
+        {
+          if (e.getValue() == null)
+          {
+            System.clearProperty(e.getKey());
+          }
+          else
+          {
+            System.setProperty(e.getKey(), e.getValue());
+          }
+        }
+      }
+    }
+    finally
+    {
+      lock.unlock();
+    }
   }
 
   /**
-   * {@inheritDoc}
+   * Stores the properties as database properties.
+   *
+   *
+   * @param properties database properties
+   *
+   * @throws SQLException
    */
-  @Override
-  public String getUrl()
+  private void setDatabaseProperties(Map<String, String> properties)
+    throws SQLException
   {
-    return url(JDBC_URL);
+    Connection connection = connect(getUrl());
+
+    try
+    {
+      CallableStatement statement =
+        connection.prepareCall(PROCEDURE_SET_PROPERTY);
+
+      try
+      {
+        for (Entry<String, String> e : properties.entrySet())
+        {
+          statement.setString(1, e.getKey());
+          statement.setString(2, e.getValue());
+          statement.execute();
+        }
+      }
+      finally
+      {
+        statement.close();
+      }
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
   }
 
   /**
-   * {@inheritDoc}
+   * Build a url of the database with the given attributes.
+   *
+   *
+   * @param attributes jdbc url attributes
+   *
+   * @return url
    */
-  @Override
-  public boolean isRunning()
+  private String url(String attributes)
   {
-    return running;
+    return getUrl().concat(attributes);
   }
 
-  //~--- methods --------------------------------------------------------------
+  //~--- get methods ----------------------------------------------------------
 
   /**
-   * Build a url of the given template and the database name.
+   * Returns the system properties, which must be set during the boot of the
+   * database.
    *
    *
-   * @param template url template
-   *
-   * @return url
+   * @return boot properties
    */
-  private String url(String template)
+  protected Map<String, String> getBootProperties()
   {
-    return String.format(template, databaseName);
-  }
+    DatabaseOptions options = getOptions();
+    Map<String, String> properties = new LinkedHashMap<String, String>();
 
-  //~--- fields ---------------------------------------------------------------
+    if (options.getDurability() == Durability.TEST)
+    {
+      properties.put("derby.system.durability", "test");
+    }
 
-  /** name of the database */
-  private final String databaseName;
+    if (options.getPageCacheSize() >= 0)
+    {
+      properties.put("derby.storage.pageCacheSize",
+        String.valueOf(options.getPageCacheSize()));
+    }
+
+    if (options.getStatementCacheSize() >= 0)
+    {
+      properties.put("derby.language.statementCacheSize",
+        String.valueOf(options.getStatementCacheSize()));
+    }
 
-  /** is the database running? */
-  private boolean running = false;
+    return properties;
+  }
 }
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseOptions;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+
+import java.sql.SQLException;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Derby in-memory database on the shared {@link DerbyNetworkServer}. The jvm
+ * does not boot an embedded derby engine, the database is created by the
+ * server and accessed with the derby client driver. The system properties of
+ * the options are ignored, because they must be set in the jvm of the server.
+ *
+ * @author Sebastian Sdorra
+ */
+public class DerbyNetworkDatabase extends DerbyDatabase
+{
+
+  /** jdbc driver */
+  private static final String DRIVER = "org.apache.derby.jdbc.ClientDriver";
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new derby database on the network server.
+   *
+   *
+   * @param databaseName name of the database
+   * @param options tuning options
+   */
+  public DerbyNetworkDatabase(String databaseName, DatabaseOptions options)
+  {
+    super(DRIVER, DerbyNetworkServer.getUrl(databaseName), options);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void create() throws SQLException
+  {
+    DerbyNetworkServer.start();
+    super.create();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void restore(File snapshot) throws SQLException
+  {
+    // the server reads the snapshot from the local file system
+    DerbyNetworkServer.start();
+    super.restore(snapshot);
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Map<String, String> getBootProperties()
+  {
+    return Collections.emptyMap();
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.apache.derby.drda.NetworkServerControl;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+
+import java.net.InetAddress;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * Main class of the process which runs the shared derby network server. The
+ * process is started by the {@link DerbyNetworkServer} of the first jvm,
+ * which needs the server. Every jvm which uses the server holds a shared lock
+ * on the clients file. The server is stopped, if no jvm has held the lock
+ * for the idle timeout. The class must not use other libraries than derby,
+ * because only derby is on the classpath of the process.
+ *
+ * Arguments: port, idle timeout in milliseconds, clients file and log file.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class DerbyNetworkLauncher
+{
+
+  /** interval to check the clients file */
+  private static final long INTERVAL = 1000;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private DerbyNetworkLauncher() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Starts the network server and waits until it is idle.
+   *
+   *
+   * @param args port, idle timeout, clients file and log file
+   *
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception
+  {
+    int port = Integer.parseInt(args[0]);
+    long idleTimeout = Long.parseLong(args[1]);
+    File clients = new File(args[2]);
+    PrintWriter log = new PrintWriter(new FileWriter(args[3], true), true);
+    NetworkServerControl server =
+      new NetworkServerControl(InetAddress.getByName(DerbyNetworkServer.HOST),
+        port);
+
+    server.start(log);
+
+    RandomAccessFile file = new RandomAccessFile(clients, "rw");
+
+    try
+    {
+      awaitIdle(file.getChannel(), idleTimeout);
+    }
+    finally
+    {
+      file.close();
+      log.println("stop derby network server, no client for "
+        + idleTimeout + " ms");
+      server.shutdown();
+      log.close();
+    }
+  }
+
+  /**
+   * Waits until no client holds a lock on the clients file for the given
+   * time.
+   *
+   *
+   * @param channel channel of the clients file
+   * @param idleTimeout idle timeout in milliseconds
+   *
+   * @throws Exception
+   */
+  private static void awaitIdle(FileChannel channel, long idleTimeout)
+    throws Exception
+  {
+    long idleSince = System.currentTimeMillis();
+
+    while (true)
+    {
+      Thread.sleep(INTERVAL);
+
+      long now = System.currentTimeMillis();
+      FileLock lock = channel.tryLock();
+
+      if (lock == null)
+      {
+        idleSince = now;
+      }
+      else
+      {
+        lock.release();
+
+        if ((now - idleSince) > idleTimeout)
+        {
+          break;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,486 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseException;
+
+import org.apache.derby.drda.NetworkServerControl;
+import org.apache.derby.tools.sysinfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.net.InetAddress;
+import java.net.URISyntaxException;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+import java.security.CodeSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Shares a single derby network server between all jvms of a build, e.g. the
+ * forks of surefire. The first jvm which needs the server starts it as
+ * separate process with the {@link DerbyNetworkLauncher}, the launch is
+ * guarded by a lock file. Every jvm holds a shared lock on a clients file
+ * until it exits, the server stops itself if no jvm has used it for the idle
+ * timeout. The server can be configured with the following system
+ * properties:
+ *
+ * <ul>
+ *   <li>{@code database-unit.network.port} port of the server (default
+ *   1528)</li>
+ *   <li>{@code database-unit.network.dir} directory of the lock files and of
+ *   the log (default is the temporary directory)</li>
+ *   <li>{@code database-unit.network.idle-timeout} idle timeout in seconds
+ *   (default 30)</li>
+ * </ul>
+ *
+ * @author Sebastian Sdorra
+ */
+public final class DerbyNetworkServer
+{
+
+  /**
+   * host of the server, the server is bound to the loopback address and
+   * accepts only local connections
+   */
+  static final String HOST = "127.0.0.1";
+
+  /** default idle timeout in seconds */
+  private static final long DEFAULT_IDLE_TIMEOUT = 30;
+
+  /** default port, derby uses 1527 */
+  private static final int DEFAULT_PORT = 1528;
+
+  /** jdbc url template of a database on the server */
+  private static final String JDBC_URL = "jdbc:derby://%s:%d/memory:%s";
+
+  /** prefix of the lock and log files */
+  private static final String PREFIX = "database-unit-network-";
+
+  /** system property for the directory of the lock files */
+  private static final String PROPERTY_DIRECTORY = "database-unit.network.dir";
+
+  /** system property for the idle timeout */
+  private static final String PROPERTY_IDLE_TIMEOUT =
+    "database-unit.network.idle-timeout";
+
+  /** system property for the port */
+  private static final String PROPERTY_PORT = "database-unit.network.port";
+
+  /** maximum time to wait for the start of the server */
+  private static final long START_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+  /** version of the server in the output of sysinfo */
+  private static final Pattern VERSION =
+    Pattern.compile("Version: [^/\\s]+/(\\S+)");
+
+  /** the logger for DerbyNetworkServer */
+  private static final Logger logger =
+    LoggerFactory.getLogger(DerbyNetworkServer.class);
+
+  /** port of the server */
+  private static final int port = Integer.getInteger(PROPERTY_PORT,
+                                    DEFAULT_PORT);
+
+  /** shared lock on the clients file, held until the jvm exits */
+  private static FileLock clientLock;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private DerbyNetworkServer() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Registers the jvm as client of the server and starts the server, if it
+   * is not running.
+   *
+   */
+  public static synchronized void start()
+  {
+    if (clientLock == null)
+    {
+      File directory = directory();
+
+      if (!directory.isDirectory() &&!directory.mkdirs())
+      {
+        throw new DatabaseException(
+          "could not create directory ".concat(directory.getPath()));
+      }
+
+      try
+      {
+
+        // register before the launch, to keep the server from idling out
+        FileLock lock = channel(file(directory, ".clients")).lock(0,
+                          Long.MAX_VALUE, true);
+
+        if (!ping())
+        {
+          launch(directory);
+        }
+
+        // the server could be started by a build with another derby version
+        checkVersion();
+        clientLock = lock;
+      }
+      catch (IOException ex)
+      {
+        throw new DatabaseException("could not lock derby network server",
+          ex);
+      }
+    }
+  }
+
+  /**
+   * Waits until the server is available.
+   *
+   *
+   * @param log log file of the server
+   */
+  private static void await(File log)
+  {
+    long deadline = System.currentTimeMillis() + START_TIMEOUT;
+
+    while (!ping())
+    {
+      if (System.currentTimeMillis() > deadline)
+      {
+        throw new DatabaseException(
+          "derby network server did not start, see ".concat(log.getPath()));
+      }
+
+      try
+      {
+        Thread.sleep(100);
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+
+        throw new DatabaseException(
+          "interrupted while waiting for derby network server", ex);
+      }
+    }
+  }
+
+  /**
+   * Compares the derby version of the running server with the version of the
+   * client.
+   *
+   *
+   * @throws DatabaseException if the versions are different
+   */
+  private static void checkVersion()
+  {
+    String sysinfo;
+
+    try
+    {
+      sysinfo = new NetworkServerControl(InetAddress.getByName(HOST),
+        port).getSysinfo();
+    }
+    catch (Exception ex)
+    {
+      throw new DatabaseException(
+        "could not read version of derby network server", ex);
+    }
+
+    String client = clientVersion();
+    String server = serverVersion(sysinfo);
+
+    if (!client.equals(server))
+    {
+      StringBuilder msg = new StringBuilder("derby network server on port ");
+
+      msg.append(port).append(" has version ").append(server);
+      msg.append(", but the client has version ").append(client);
+      msg.append(", stop the server or use another port with the system ");
+      msg.append("property ").append(PROPERTY_PORT);
+
+      throw new DatabaseException(msg.toString());
+    }
+  }
+
+  /**
+   * Returns the file channel of the file. The channel is closed on jvm
+   * shutdown.
+   *
+   *
+   * @param file file
+   *
+   * @return file channel
+   *
+   * @throws IOException
+   */
+  private static FileChannel channel(File file) throws IOException
+  {
+    return new RandomAccessFile(file, "rw").getChannel();
+  }
+
+  /**
+   * Returns the classpath entry of the class.
+   *
+   *
+   * @param type class
+   *
+   * @return classpath entry
+   */
+  private static String classpath(Class<?> type)
+  {
+    CodeSource source = type.getProtectionDomain().getCodeSource();
+
+    if ((source == null) || (source.getLocation() == null))
+    {
+      throw new DatabaseException("could not find classpath of ".concat(
+        type.getName()));
+    }
+
+    try
+    {
+      return new File(source.getLocation().toURI()).getPath();
+    }
+    catch (URISyntaxException ex)
+    {
+      throw new DatabaseException("could not find classpath of ".concat(
+        type.getName()), ex);
+    }
+  }
+
+  /**
+   * Returns the directory of the lock files.
+   *
+   *
+   * @return directory of the lock files
+   */
+  private static File directory()
+  {
+    // all modules of a build must use the same files for the same port
+    String path = System.getProperty(PROPERTY_DIRECTORY,
+                    System.getProperty("java.io.tmpdir"));
+
+    return new File(path).getAbsoluteFile();
+  }
+
+  /**
+   * Returns a lock or log file of the server.
+   *
+   *
+   * @param directory directory of the lock files
+   * @param suffix suffix of the file
+   *
+   * @return file
+   */
+  private static File file(File directory, String suffix)
+  {
+    return new File(directory, PREFIX + port + suffix);
+  }
+
+  /**
+   * Starts the server process, if no other jvm has started it in the
+   * meantime, and waits until the server is available.
+   *
+   *
+   * @param directory directory of the lock files
+   *
+   * @throws IOException
+   */
+  private static void launch(File directory) throws IOException
+  {
+    FileChannel channel = channel(file(directory, ".lock"));
+
+    try
+    {
+      FileLock lock = channel.lock();
+
+      try
+      {
+        if (!ping())
+        {
+          File log = file(directory, ".log");
+
+          spawn(directory, log);
+          await(log);
+        }
+      }
+      finally
+      {
+        lock.release();
+      }
+    }
+    finally
+    {
+      channel.close();
+    }
+  }
+
+  /**
+   * Returns {@code true} if the server is running.
+   *
+   *
+   * @return {@code true} if the server is running
+   */
+  private static boolean ping()
+  {
+    try
+    {
+      new NetworkServerControl(InetAddress.getByName(HOST), port).ping();
+
+      return true;
+    }
+    catch (Exception ex)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the version of the server from the output of sysinfo, e.g.
+   * {@code 10.7.1.1} of {@code Version: CSS10070/10.7.1.1 - (1040133)}.
+   *
+   *
+   * @param sysinfo output of sysinfo of the server
+   *
+   * @return version of the server or {@code unknown}
+   */
+  static String serverVersion(String sysinfo)
+  {
+    Matcher matcher = VERSION.matcher(sysinfo);
+
+    return matcher.find()
+      ? matcher.group(1)
+      : "unknown";
+  }
+
+  /**
+   * Starts the process of the server.
+   *
+   *
+   * @param directory working directory of the server
+   * @param log log file of the server
+   *
+   * @throws IOException
+   */
+  private static void spawn(File directory, File log) throws IOException
+  {
+    String java = new File(new File(System.getProperty("java.home"), "bin"),
+                    "java").getPath();
+    String classpath = classpath(DerbyNetworkLauncher.class).concat(
+                         File.pathSeparator).concat(
+                         classpath(NetworkServerControl.class)).concat(
+                         File.pathSeparator).concat(
+                         classpath(org.apache.derby.jdbc.EmbeddedDriver.class));
+    long idleTimeout = TimeUnit.SECONDS.toMillis(Long.getLong(
+                         PROPERTY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT));
+    List<String> command = new ArrayList<String>();
+
+    command.add(java);
+    command.add("-cp");
+    command.add(classpath);
+    command.add(DerbyNetworkLauncher.class.getName());
+    command.add(String.valueOf(port));
+    command.add(String.valueOf(idleTimeout));
+    command.add(file(directory, ".clients").getPath());
+    command.add(log.getPath());
+
+    logger.info("start derby network server on port {}", port);
+
+    ProcessBuilder builder = new ProcessBuilder(command);
+
+    builder.directory(directory);
+    builder.redirectErrorStream(true);
+
+    Process process = builder.start();
+
+    // the server writes to its log file, the pipes are not needed
+    process.getOutputStream().close();
+    process.getInputStream().close();
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the derby version of the client, e.g. {@code 10.7.1.1}.
+   *
+   *
+   * @return version of the client
+   */
+  static String clientVersion()
+  {
+    String version = sysinfo.getVersionString();
+    int index = version.indexOf(' ');
+
+    return (index > 0)
+      ? version.substring(0, index)
+      : version;
+  }
+
+  /**
+   * Returns the port of the server.
+   *
+   *
+   * @return port
+   */
+  public static int getPort()
+  {
+    return port;
+  }
+
+  /**
+   * Returns the jdbc url of the in-memory database with the given name on
+   * the server.
+   *
+   *
+   * @param databaseName name of the database
+   *
+   * @return jdbc url
+   */
+  public static String getUrl(String databaseName)
+  {
+    return String.format(JDBC_URL, HOST, port, databaseName);
+  }
+}
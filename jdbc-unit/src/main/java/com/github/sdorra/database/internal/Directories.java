@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Util class to handle temporary directories.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class Directories
+{
+
+  /** logger */
+  private static final Logger logger =
+    LoggerFactory.getLogger(Directories.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private Directories() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Creates a new temporary directory.
+   *
+   *
+   * @param prefix prefix of the directory name
+   *
+   * @return temporary directory
+   */
+  public static File createTemporary(String prefix)
+  {
+    try
+    {
+      File directory = File.createTempFile(prefix, "");
+
+      if (!directory.delete() ||!directory.mkdirs())
+      {
+        throw new DatabaseException(
+          "could not create directory ".concat(directory.getPath()));
+      }
+
+      return directory;
+    }
+    catch (IOException ex)
+    {
+      throw new DatabaseException("could not create directory", ex);
+    }
+  }
+
+  /**
+   * Deletes the file or directory recursive.
+   *
+   *
+   * @param file file or directory
+   */
+  public static void delete(File file)
+  {
+    File[] children = file.listFiles();
+
+    if (children != null)
+    {
+      for (File child : children)
+      {
+        delete(child);
+      }
+    }
+
+    if (!file.delete())
+    {
+      logger.warn("could not delete {}", file);
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the size of the file or the size of all files of the directory.
+   *
+   *
+   * @param file file or directory
+   *
+   * @return size in bytes
+   */
+  public static long size(File file)
+  {
+    long size = 0;
+    File[] children = file.listFiles();
+
+    if (children != null)
+    {
+      for (File child : children)
+      {
+        size += size(child);
+      }
+    }
+    else
+    {
+      size = file.length();
+    }
+
+    return size;
+  }
+}
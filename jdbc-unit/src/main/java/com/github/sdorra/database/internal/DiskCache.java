@@ -0,0 +1,665 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.URL;
+
+import java.nio.charset.Charset;
+
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.sql.Driver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the snapshots of the {@link Templates} on disk, to share them between
+ * jvms, e.g. surefire forks or subsequent builds. An entry is keyed by a hash
+ * of the content of the sql scripts, the encoding, the jdbc driver and its
+ * version and the options of the database. The entry is therefore invalidated
+ * automatically, if one of the inputs changes.
+ *
+ * The cache is stored in the directory of the system property
+ * {@code database-unit.disk-cache.dir}. Without the property the directory
+ * {@code target/database-unit-cache} is used, if the working directory
+ * contains a target directory, otherwise the cache is disabled. The cache can
+ * be disabled explicitly by setting the property to an empty value. The size
+ * of the cache is limited by the system property
+ * {@code database-unit.disk-cache.max-size} in megabytes (default 512), the
+ * least recently used entries are deleted if the limit is exceeded.
+ *
+ * @author Sebastian Sdorra
+ */
+final class DiskCache
+{
+
+  /** default directory of the cache, if the working directory has a target */
+  private static final String DEFAULT_DIRECTORY =
+    "target/database-unit-cache";
+
+  /** default maximum size of the cache in megabytes */
+  private static final long DEFAULT_MAX_SIZE = 512;
+
+  /** name of the file with the metadata of an entry */
+  private static final String ENTRY = "entry.properties";
+
+  /**
+   * version of the layout of the cache, must be changed if the layout or the
+   * content of the key changes
+   */
+  private static final String FORMAT = "1";
+
+  /** entries which were used recently are not deleted by other jvms */
+  private static final long GRACE_PERIOD = TimeUnit.MINUTES.toMillis(10);
+
+  /** system property for the directory of the cache */
+  private static final String PROPERTY_DIRECTORY =
+    "database-unit.disk-cache.dir";
+
+  /** system property for the maximum size of the cache */
+  private static final String PROPERTY_MAX_SIZE =
+    "database-unit.disk-cache.max-size";
+
+  /** property of the entry for the setup time */
+  private static final String PROPERTY_SETUP_NANOS = "setup-nanos";
+
+  /** name of the snapshot directory of an entry */
+  private static final String SNAPSHOT = "snapshot";
+
+  /** marks entries which are currently written */
+  private static final String TEMPORARY = ".tmp-";
+
+  /** number of snapshots which were loaded from the cache */
+  private static final AtomicLong hitCount = new AtomicLong();
+
+  /** logger */
+  private static final Logger logger = LoggerFactory.getLogger(DiskCache.class);
+
+  /** number of snapshots which were stored in the cache */
+  private static final AtomicLong storeCount = new AtomicLong();
+
+  /** directory of the cache or {@code null} if the cache is disabled */
+  private static volatile File directory = defaultDirectory();
+
+  /** maximum size of the cache in bytes */
+  private static volatile long maxSize = Long.getLong(PROPERTY_MAX_SIZE,
+                                           DEFAULT_MAX_SIZE) * 1024l * 1024l;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private DiskCache() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns the snapshot directory of the entry with the given key and marks
+   * the entry as recently used.
+   *
+   *
+   * @param key key of the entry
+   *
+   * @return snapshot directory or {@code null} if the cache has no entry
+   */
+  static File get(String key)
+  {
+    File cache = directory;
+
+    if (cache == null)
+    {
+      return null;
+    }
+
+    File entry = new File(cache, key);
+    File snapshot = new File(entry, SNAPSHOT);
+
+    if (!snapshot.isDirectory())
+    {
+      return null;
+    }
+
+    if (!entry.setLastModified(System.currentTimeMillis()))
+    {
+      logger.debug("could not mark {} as recently used", entry);
+    }
+
+    hitCount.incrementAndGet();
+    logger.debug("found snapshot {} in disk cache", key);
+
+    return snapshot;
+  }
+
+  /**
+   * Creates the key of an entry. The key is a hash of the content of the
+   * first scripts, the encoding, the jdbc driver and the options of the
+   * database.
+   *
+   *
+   * @param database database
+   * @param contextClass context object is used to obtain the class loader
+   * @param resources paths to the sql scripts
+   * @param layer number of scripts which are part of the key
+   * @param encoding encoding of the scripts
+   *
+   * @return key of the entry
+   */
+  static String key(Database database, Object contextClass,
+    String[] resources, int layer, String encoding)
+  {
+    MessageDigest digest = digest();
+
+    update(digest, FORMAT);
+    update(digest, database.getDriver());
+    update(digest, version(database.getDriver()));
+    update(digest, database.getOptions().toString());
+    update(digest, encoding);
+
+    for (int i = 0; i < layer; i++)
+    {
+      update(digest, Databases.getResource(contextClass, resources[i]));
+    }
+
+    return hex(digest.digest());
+  }
+
+  /**
+   * Stores a snapshot of the database under the given key and returns the
+   * snapshot directory. The snapshot is written to a temporary directory,
+   * which is renamed afterwards. If another jvm has stored the same entry in
+   * the meantime, the entry of the other jvm is used.
+   *
+   *
+   * @param key key of the entry
+   * @param database database
+   * @param setupNanos time which was needed to create the database
+   *
+   * @return snapshot directory
+   */
+  static File store(String key, Database database, long setupNanos)
+  {
+    File cache = directory;
+    File temporary = new File(cache,
+                       key.concat(TEMPORARY).concat(UUID.randomUUID().toString()));
+    File snapshot = new File(temporary, SNAPSHOT);
+
+    if (!snapshot.mkdirs())
+    {
+      throw new DatabaseException(
+        "could not create directory ".concat(snapshot.getPath()));
+    }
+
+    try
+    {
+      database.snapshot(snapshot);
+
+      Properties properties = new Properties();
+
+      properties.setProperty(PROPERTY_SETUP_NANOS, String.valueOf(setupNanos));
+      write(new File(temporary, ENTRY), properties);
+    }
+    catch (RuntimeException ex)
+    {
+      Directories.delete(temporary);
+
+      throw ex;
+    }
+
+    File entry = new File(cache, key);
+
+    if (!temporary.renameTo(entry))
+    {
+      // another jvm was faster
+      Directories.delete(temporary);
+
+      if (!entry.isDirectory())
+      {
+        throw new DatabaseException(
+          "could not store snapshot in ".concat(entry.getPath()));
+      }
+    }
+    else
+    {
+      storeCount.incrementAndGet();
+      logger.debug("stored snapshot {} in disk cache", key);
+    }
+
+    trim(maxSize, GRACE_PERIOD);
+
+    return new File(entry, SNAPSHOT);
+  }
+
+  /**
+   * Deletes the temporary directories of aborted stores and the least
+   * recently used entries, until the size of the cache is below the limit.
+   * Entries and temporary directories which were used within the grace
+   * period are skipped, because they could be in use by another jvm.
+   *
+   *
+   * @param limit maximum size of the cache in bytes
+   * @param grace grace period in milliseconds
+   */
+  static void trim(long limit, long grace)
+  {
+    File cache = directory;
+    File[] children = (cache != null)
+      ? cache.listFiles()
+      : null;
+
+    if (children == null)
+    {
+      return;
+    }
+
+    long size = Directories.size(cache);
+    long deadline = System.currentTimeMillis() - grace;
+    List<File> entries = new ArrayList<File>(children.length);
+
+    for (File child : children)
+    {
+      if (!child.getName().contains(TEMPORARY))
+      {
+        entries.add(child);
+      }
+      else if (child.lastModified() < deadline)
+      {
+
+        // left behind by a jvm which has died during the store
+        size -= delete(child);
+      }
+    }
+
+    Collections.sort(entries, new Comparator<File>()
+    {
+      @Override
+      public int compare(File left, File right)
+      {
+        long l = left.lastModified();
+        long r = right.lastModified();
+
+        return (l < r)
+          ? -1
+          : ((l == r)
+             ? 0
+             : 1);
+      }
+    });
+
+    for (File entry : entries)
+    {
+      if (size <= limit)
+      {
+        break;
+      }
+
+      if (entry.lastModified() < deadline)
+      {
+        size -= delete(entry);
+      }
+    }
+  }
+
+  /**
+   * Deletes the entry or temporary directory from the cache.
+   *
+   *
+   * @param entry entry or temporary directory
+   *
+   * @return size of the deleted directory in bytes
+   */
+  private static long delete(File entry)
+  {
+    long size = Directories.size(entry);
+
+    Directories.delete(entry);
+    logger.debug("deleted {} from disk cache", entry.getName());
+
+    return size;
+  }
+
+  /**
+   * Returns the directory of the system property or the default directory,
+   * if the working directory contains a target directory.
+   *
+   *
+   * @return directory or {@code null} if the cache is disabled
+   */
+  private static File defaultDirectory()
+  {
+    String path = System.getProperty(PROPERTY_DIRECTORY);
+    File cache = null;
+
+    if (path == null)
+    {
+      if (new File("target").isDirectory())
+      {
+        cache = new File(DEFAULT_DIRECTORY);
+      }
+    }
+    else if (path.trim().length() > 0)
+    {
+      cache = new File(path);
+    }
+
+    return cache;
+  }
+
+  /**
+   * Creates a new sha-1 digest.
+   *
+   *
+   * @return message digest
+   */
+  private static MessageDigest digest()
+  {
+    try
+    {
+      return MessageDigest.getInstance("SHA-1");
+    }
+    catch (NoSuchAlgorithmException ex)
+    {
+      throw new DatabaseException("sha-1 is not available", ex);
+    }
+  }
+
+  /**
+   * Converts the bytes to a hex string.
+   *
+   *
+   * @param bytes bytes
+   *
+   * @return hex string
+   */
+  private static String hex(byte[] bytes)
+  {
+    StringBuilder buffer = new StringBuilder(bytes.length * 2);
+
+    for (byte b : bytes)
+    {
+      buffer.append(Character.forDigit((b >> 4) & 0xF, 16));
+      buffer.append(Character.forDigit(b & 0xF, 16));
+    }
+
+    return buffer.toString();
+  }
+
+  /**
+   * Reads the properties file.
+   *
+   *
+   * @param file properties file
+   *
+   * @return properties
+   */
+  private static Properties read(File file)
+  {
+    Properties properties = new Properties();
+    InputStream stream = null;
+
+    try
+    {
+      stream = new FileInputStream(file);
+      properties.load(stream);
+    }
+    catch (IOException ex)
+    {
+      logger.debug("could not read ".concat(file.getPath()), ex);
+    }
+    finally
+    {
+      Closeables.close(stream);
+    }
+
+    return properties;
+  }
+
+  /**
+   * Adds the value and its length to the digest.
+   *
+   *
+   * @param digest message digest
+   * @param value value
+   */
+  private static void update(MessageDigest digest, String value)
+  {
+    byte[] bytes = value.getBytes(Charset.forName("UTF-8"));
+
+    digest.update(String.valueOf(bytes.length).concat(":").getBytes(
+      Charset.forName("UTF-8")));
+    digest.update(bytes);
+  }
+
+  /**
+   * Adds the content of the script to the digest.
+   *
+   *
+   * @param digest message digest
+   * @param script url of the sql script
+   */
+  private static void update(MessageDigest digest, URL script)
+  {
+    InputStream stream = null;
+
+    try
+    {
+      stream = script.openStream();
+
+      byte[] buffer = new byte[8192];
+      long length = 0;
+      int read;
+
+      while ((read = stream.read(buffer)) > 0)
+      {
+        digest.update(buffer, 0, read);
+        length += read;
+      }
+
+      update(digest, String.valueOf(length));
+    }
+    catch (IOException ex)
+    {
+      throw new DatabaseException(
+        "could not read script ".concat(script.toExternalForm()), ex);
+    }
+    finally
+    {
+      Closeables.close(stream);
+    }
+  }
+
+  /**
+   * Returns the version and the location of the jdbc driver.
+   *
+   *
+   * @param driverClass class name of the jdbc driver
+   *
+   * @return version of the driver
+   */
+  private static String version(String driverClass)
+  {
+    try
+    {
+      Class<?> type = Class.forName(driverClass);
+      Driver driver = (Driver) type.getDeclaredConstructor().newInstance();
+      CodeSource source = type.getProtectionDomain().getCodeSource();
+      StringBuilder version = new StringBuilder();
+
+      version.append(driver.getMajorVersion()).append('.');
+      version.append(driver.getMinorVersion());
+
+      // the location contains the full version, e.g. of a maven artifact
+      if ((source != null) && (source.getLocation() != null))
+      {
+        version.append('@').append(source.getLocation().toExternalForm());
+      }
+
+      return version.toString();
+    }
+    catch (Exception ex)
+    {
+      throw new DatabaseException(
+        "could not determine version of driver ".concat(driverClass), ex);
+    }
+  }
+
+  /**
+   * Writes the properties file.
+   *
+   *
+   * @param file properties file
+   * @param properties properties
+   */
+  private static void write(File file, Properties properties)
+  {
+    OutputStream stream = null;
+
+    try
+    {
+      stream = new FileOutputStream(file);
+      properties.store(stream, "database-unit disk cache entry");
+    }
+    catch (IOException ex)
+    {
+      throw new DatabaseException("could not write ".concat(file.getPath()),
+        ex);
+    }
+    finally
+    {
+      Closeables.close(stream);
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the directory of the cache.
+   *
+   *
+   * @return directory or {@code null} if the cache is disabled
+   */
+  static File getDirectory()
+  {
+    return directory;
+  }
+
+  /**
+   * Returns the number of snapshots which were loaded from the cache.
+   *
+   *
+   * @return number of cache hits
+   */
+  static long getHitCount()
+  {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the time which was needed to create the database of the
+   * snapshot, in the jvm which has stored the entry.
+   *
+   *
+   * @param snapshot snapshot directory of an entry
+   *
+   * @return setup time in nanoseconds
+   */
+  static long getSetupNanos(File snapshot)
+  {
+    Properties properties = read(new File(snapshot.getParentFile(), ENTRY));
+
+    try
+    {
+      return Long.parseLong(properties.getProperty(PROPERTY_SETUP_NANOS, "0"));
+    }
+    catch (NumberFormatException ex)
+    {
+      return 0;
+    }
+  }
+
+  /**
+   * Returns the number of snapshots which were stored in the cache.
+   *
+   *
+   * @return number of stored snapshots
+   */
+  static long getStoreCount()
+  {
+    return storeCount.get();
+  }
+
+  /**
+   * Returns {@code true} if the cache is enabled.
+   *
+   *
+   * @return {@code true} if the cache is enabled
+   */
+  static boolean isEnabled()
+  {
+    return directory != null;
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Sets the directory of the cache.
+   *
+   *
+   * @param cache directory or {@code null} to disable the cache
+   */
+  static void setDirectory(File cache)
+  {
+    directory = cache;
+  }
+}
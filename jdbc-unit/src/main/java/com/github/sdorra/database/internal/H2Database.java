@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseOptions;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This implementation of {@link com.github.sdorra.database.Database} uses h2
+ * as in-memory database. Snapshots are stored as sql script, which is created
+ * with the h2 {@code SCRIPT} command.
+ *
+ * @author Sebastian Sdorra
+ */
+public class H2Database extends AbstractDatabase
+{
+
+  /** jdbc driver */
+  private static final String DRIVER = "org.h2.Driver";
+
+  /** jdbc connection template, the database is kept until it is dropped */
+  private static final String JDBC_URL = "jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1";
+
+  /** file name of the snapshot script */
+  private static final String SNAPSHOT = "snapshot.sql";
+
+  /** size of a page in kilobytes, h2 configures the cache in kilobytes */
+  private static final int PAGE_SIZE_KB = 4;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new h2 database.
+   *
+   *
+   * @param databaseName name of the database
+   */
+  public H2Database(String databaseName)
+  {
+    this(databaseName, DatabaseOptions.DEFAULT);
+  }
+
+  /**
+   * Constructs a new tuned h2 database. The lock wait timeout, the page cache
+   * size and the statement cache size are passed as settings in the jdbc url.
+   * The durability and the preallocated pages are ignored.
+   *
+   *
+   * @param databaseName name of the database
+   * @param options tuning options
+   */
+  public H2Database(String databaseName, DatabaseOptions options)
+  {
+    super(DRIVER, url(databaseName, options), options);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void create() throws SQLException
+  {
+    connect(getUrl()).close();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void drop() throws SQLException
+  {
+    executeStatement("SHUTDOWN");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void restore(File snapshot) throws SQLException
+  {
+    executeStatement("RUNSCRIPT FROM ".concat(quote(new File(snapshot,
+      SNAPSHOT))));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void snapshot(Connection connection, File directory)
+    throws SQLException
+  {
+    executeStatement(connection,
+      "SCRIPT TO ".concat(quote(new File(directory, SNAPSHOT))));
+  }
+
+  /**
+   * Returns the path of the file as sql string literal.
+   *
+   *
+   * @param file file
+   *
+   * @return quoted path
+   */
+  static String quote(File file)
+  {
+    return "'".concat(file.getAbsolutePath().replace("'", "''")).concat("'");
+  }
+
+  /**
+   * Creates the jdbc url with the settings of the options.
+   *
+   *
+   * @param databaseName name of the database
+   * @param options tuning options
+   *
+   * @return jdbc url
+   */
+  private static String url(String databaseName, DatabaseOptions options)
+  {
+    StringBuilder url = new StringBuilder(String.format(JDBC_URL,
+                          databaseName));
+
+    if (options.getLockWaitTimeout() >= 0)
+    {
+      url.append(";LOCK_TIMEOUT=").append(
+        TimeUnit.SECONDS.toMillis(options.getLockWaitTimeout()));
+    }
+
+    if (options.getPageCacheSize() >= 0)
+    {
+      url.append(";CACHE_SIZE=").append(options.getPageCacheSize()
+        * PAGE_SIZE_KB);
+    }
+
+    if (options.getStatementCacheSize() >= 0)
+    {
+      url.append(";QUERY_CACHE_SIZE=").append(
+        options.getStatementCacheSize());
+    }
+
+    return url.toString();
+  }
+}
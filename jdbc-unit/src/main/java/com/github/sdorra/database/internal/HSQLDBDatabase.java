@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.DatabaseOptions;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * This implementation of {@link com.github.sdorra.database.Database} uses
+ * hsqldb as in-memory database. Snapshots are stored with the hsqldb
+ * {@code SCRIPT} command. The script contains the settings and the system
+ * objects of the source database, these statements are skipped on restore,
+ * because every new database already contains them. Users and grants are not
+ * restored.
+ *
+ * @author Sebastian Sdorra
+ */
+public class HSQLDBDatabase extends AbstractDatabase
+{
+
+  /** jdbc driver */
+  private static final String DRIVER = "org.hsqldb.jdbc.JDBCDriver";
+
+  /** encoding of the snapshot script */
+  private static final String ENCODING = "UTF-8";
+
+  /** jdbc connection template */
+  private static final String JDBC_URL = "jdbc:hsqldb:mem:%s";
+
+  /** statement which switches the current schema */
+  private static final String SET_SCHEMA = "SET SCHEMA ";
+
+  /** file name of the snapshot script */
+  private static final String SNAPSHOT = "snapshot.script";
+
+  /** schema of the lob store */
+  private static final String SYSTEM_SCHEMA = "SYSTEM_LOBS";
+
+  /** statements of the script, which are part of every new database */
+  private static final String[] SYSTEM_STATEMENTS = new String[]
+  {
+    "SET DATABASE ", "SET FILES ", "CREATE USER ", "ALTER USER ",
+    "CREATE SCHEMA PUBLIC ", "GRANT ", "ALTER SEQUENCE SYSTEM_LOBS."
+  };
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new hsqldb database.
+   *
+   *
+   * @param databaseName name of the database
+   */
+  public HSQLDBDatabase(String databaseName)
+  {
+    this(databaseName, DatabaseOptions.DEFAULT);
+  }
+
+  /**
+   * Constructs a new tuned hsqldb database. Only the asynchronous drop is
+   * supported, all other options are ignored.
+   *
+   *
+   * @param databaseName name of the database
+   * @param options tuning options
+   */
+  public HSQLDBDatabase(String databaseName, DatabaseOptions options)
+  {
+    super(DRIVER, String.format(JDBC_URL, databaseName), options);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void create() throws SQLException
+  {
+    connect(getUrl()).close();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void drop() throws SQLException
+  {
+    executeStatement("SHUTDOWN");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void restore(File snapshot) throws SQLException
+  {
+    Connection connection = connect(getUrl());
+    BufferedReader reader = null;
+
+    try
+    {
+      reader = new BufferedReader(
+        new InputStreamReader(
+          new FileInputStream(new File(snapshot, SNAPSHOT)), ENCODING));
+
+      boolean system = false;
+      String line;
+
+      while ((line = reader.readLine()) != null)
+      {
+        if (line.startsWith(SET_SCHEMA))
+        {
+          system = line.endsWith(SYSTEM_SCHEMA);
+        }
+
+        if (!system && (line.length() > 0) &&!isSystemStatement(line))
+        {
+          executeStatement(connection, line);
+        }
+      }
+    }
+    catch (IOException ex)
+    {
+      throw new DatabaseException("could not read snapshot", ex);
+    }
+    finally
+    {
+      Closeables.close(reader);
+      Closeables.close(connection);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void snapshot(Connection connection, File directory)
+    throws SQLException
+  {
+    executeStatement(connection,
+      "SCRIPT ".concat(H2Database.quote(new File(directory, SNAPSHOT))));
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns {@code true} if the statement is part of every new database.
+   *
+   *
+   * @param line statement of the script
+   *
+   * @return {@code true} if the statement is part of every new database
+   */
+  private boolean isSystemStatement(String line)
+  {
+    boolean result = false;
+
+    for (String prefix : SYSTEM_STATEMENTS)
+    {
+      if (line.startsWith(prefix))
+      {
+        result = true;
+
+        break;
+      }
+    }
+
+    return result;
+  }
+}
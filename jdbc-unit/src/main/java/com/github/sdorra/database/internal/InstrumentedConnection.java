@@ -0,0 +1,414 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps a jdbc connection and reports every statement, which is executed with
+ * the connection, to a {@link StatementListener}. The execution is timed and
+ * the result sets of the statements are wrapped, to time the fetch of the
+ * rows. The sql of a prepared statement is normalized once and the statement
+ * is reported on execution, not on preparation. A batch of a prepared
+ * statement is reported once, the statements of a plain batch are reported
+ * with an equal share of the batch duration.
+ *
+ * @author Sebastian Sdorra
+ */
+final class InstrumentedConnection implements InvocationHandler
+{
+
+  /**
+   * Constructs a new instrumented connection.
+   *
+   *
+   * @param connection jdbc connection
+   * @param listener listener which receives the statements
+   */
+  InstrumentedConnection(Connection connection, StatementListener listener)
+  {
+    this.connection = connection;
+    this.listener = listener;
+    this.proxy = (Connection) Proxy.newProxyInstance(
+      InstrumentedConnection.class.getClassLoader(),
+      new Class<?>[] { Connection.class }, this);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Invokes the method on the target and unwraps invocation exceptions.
+   *
+   *
+   * @param target target object
+   * @param method method
+   * @param args arguments of the method
+   *
+   * @return result of the method
+   *
+   * @throws Throwable
+   */
+  static Object delegate(Object target, Method method, Object[] args)
+    throws Throwable
+  {
+    try
+    {
+      return method.invoke(target, args);
+    }
+    catch (InvocationTargetException ex)
+    {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args)
+    throws Throwable
+  {
+    Object result = delegate(connection, method, args);
+
+    if (result instanceof Statement)
+    {
+      String shape = null;
+
+      // the sql of a prepared statement is reported on execution
+      if ((args != null) && (args.length > 0) && (args[0] instanceof String))
+      {
+        shape = QueryCounter.normalize((String) args[0]);
+      }
+
+      result = wrap((Statement) result, shape);
+    }
+
+    return result;
+  }
+
+  /**
+   * Wraps the statement, to time execute and executeBatch calls.
+   *
+   *
+   * @param statement jdbc statement
+   * @param prepared normalized sql of a prepared statement or {@code null}
+   *
+   * @return wrapped statement
+   */
+  private Statement wrap(Statement statement, String prepared)
+  {
+    Class<?> type = Statement.class;
+
+    if (statement instanceof CallableStatement)
+    {
+      type = CallableStatement.class;
+    }
+    else if (statement instanceof PreparedStatement)
+    {
+      type = PreparedStatement.class;
+    }
+
+    return (Statement) Proxy.newProxyInstance(
+      InstrumentedConnection.class.getClassLoader(), new Class<?>[] { type },
+      new InstrumentedStatement(statement, prepared));
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the wrapped connection.
+   *
+   *
+   * @return wrapped connection
+   */
+  Connection getConnection()
+  {
+    return proxy;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Proxy handler of a result set, which sums the time of the next calls.
+   */
+  private class InstrumentedResultSet implements InvocationHandler
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param resultSet jdbc result set
+     * @param shape normalized sql of the statement
+     */
+    private InstrumentedResultSet(ResultSet resultSet, String shape)
+    {
+      this.resultSet = resultSet;
+      this.shape = shape;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable
+    {
+      String name = method.getName();
+      Object result;
+
+      if ("next".equals(name))
+      {
+        long start = System.nanoTime();
+
+        result = delegate(resultSet, method, args);
+        nanos += System.nanoTime() - start;
+
+        if (Boolean.FALSE.equals(result))
+        {
+          report();
+        }
+      }
+      else
+      {
+        if ("close".equals(name))
+        {
+          report();
+        }
+
+        result = delegate(resultSet, method, args);
+      }
+
+      return result;
+    }
+
+    /**
+     * Reports the fetch time once.
+     *
+     */
+    private void report()
+    {
+      if (!reported)
+      {
+        reported = true;
+        listener.fetched(shape, nanos);
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** time of the next calls in nanoseconds */
+    private long nanos;
+
+    /** fetch time was reported */
+    private boolean reported;
+
+    /** jdbc result set */
+    private final ResultSet resultSet;
+
+    /** normalized sql of the statement */
+    private final String shape;
+  }
+
+
+  /**
+   * Proxy handler of a statement, which times the executions.
+   */
+  private class InstrumentedStatement implements InvocationHandler
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param statement jdbc statement
+     * @param prepared normalized sql of a prepared statement or {@code null}
+     */
+    private InstrumentedStatement(Statement statement, String prepared)
+    {
+      this.statement = statement;
+      this.prepared = prepared;
+      this.shape = prepared;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable
+    {
+      String name = method.getName();
+      Object result;
+
+      if ("getConnection".equals(name))
+      {
+        result = InstrumentedConnection.this.proxy;
+      }
+      else if (name.startsWith("execute"))
+      {
+        result = execute(method, args);
+      }
+      else
+      {
+        if ((args != null) && (args.length == 1) && (args[0] instanceof String)
+          && "addBatch".equals(name))
+        {
+          batch.add(QueryCounter.normalize((String) args[0]));
+        }
+        else if ("clearBatch".equals(name))
+        {
+          batch.clear();
+        }
+
+        result = delegate(statement, method, args);
+
+        if ("getResultSet".equals(name))
+        {
+          result = wrap(result);
+        }
+      }
+
+      return result;
+    }
+
+    /**
+     * Times an execute call and reports the executed statements.
+     *
+     *
+     * @param method execute method
+     * @param args arguments of the method
+     *
+     * @return result of the method
+     *
+     * @throws Throwable
+     */
+    private Object execute(Method method, Object[] args) throws Throwable
+    {
+      List<String> shapes = new ArrayList<String>(1);
+
+      if ((args != null) && (args.length > 0) && (args[0] instanceof String))
+      {
+        shape = QueryCounter.normalize((String) args[0]);
+        shapes.add(shape);
+      }
+      else if (method.getName().contains("Batch") && (prepared == null))
+      {
+        shapes.addAll(batch);
+        batch.clear();
+      }
+      else if (prepared != null)
+      {
+        shapes.add(prepared);
+      }
+
+      long start = System.nanoTime();
+
+      try
+      {
+        return wrap(delegate(statement, method, args));
+      }
+      finally
+      {
+        if (!shapes.isEmpty())
+        {
+          long nanos = (System.nanoTime() - start) / shapes.size();
+
+          for (String s : shapes)
+          {
+            listener.executed(s, nanos);
+          }
+        }
+      }
+    }
+
+    /**
+     * Wraps the result, if it is a result set.
+     *
+     *
+     * @param result result of a statement method
+     *
+     * @return result or wrapped result set
+     */
+    private Object wrap(Object result)
+    {
+      if ((result instanceof ResultSet) && (shape != null))
+      {
+        result = Proxy.newProxyInstance(
+          InstrumentedConnection.class.getClassLoader(),
+          new Class<?>[] { ResultSet.class },
+          new InstrumentedResultSet((ResultSet) result, shape));
+      }
+
+      return result;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** normalized sql of the pending batch statements */
+    private final List<String> batch = new ArrayList<String>();
+
+    /** normalized sql of a prepared statement or {@code null} */
+    private final String prepared;
+
+    /** normalized sql of the last execution */
+    private String shape;
+
+    /** jdbc statement */
+    private final Statement statement;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** jdbc connection */
+  private final Connection connection;
+
+  /** listener which receives the statements */
+  private final StatementListener listener;
+
+  /** wrapped connection */
+  private final Connection proxy;
+}
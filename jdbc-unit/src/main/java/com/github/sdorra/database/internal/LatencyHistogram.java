@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with constant memory and lock free recording. The
+ * buckets are log-linear: every power of two is divided into 16 sub buckets,
+ * which limits the error of a percentile to 1/16 of the value. Durations
+ * up to about 73 minutes are recorded, longer durations are recorded in the
+ * last bucket. The maximum is recorded exactly.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class LatencyHistogram
+{
+
+  /** number of bits of the sub buckets */
+  private static final int SUB_BUCKET_BITS = 4;
+
+  /** number of sub buckets per power of two */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** largest exponent of a recorded duration */
+  private static final int MAX_EXPONENT = 41;
+
+  /** largest recorded duration, longer durations are clamped */
+  private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+  /** number of buckets */
+  private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Records a duration.
+   *
+   *
+   * @param nanos duration in nanoseconds
+   */
+  public void record(long nanos)
+  {
+    long value = Math.max(0, nanos);
+
+    buckets.incrementAndGet(index(Math.min(value, MAX_VALUE)));
+    count.incrementAndGet();
+
+    long current = max.get();
+
+    while ((value > current) &&!max.compareAndSet(current, value))
+    {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Returns the bucket index of the value.
+   *
+   *
+   * @param value value between 0 and {@link #MAX_VALUE}
+   *
+   * @return bucket index
+   */
+  private static int index(long value)
+  {
+    int index = (int) value;
+
+    if (value >= SUB_BUCKETS)
+    {
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int shift = exponent - SUB_BUCKET_BITS;
+      int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+
+      index = ((shift + 1) * SUB_BUCKETS) + sub;
+    }
+
+    return index;
+  }
+
+  /**
+   * Returns the highest value of the bucket.
+   *
+   *
+   * @param index bucket index
+   *
+   * @return highest value of the bucket
+   */
+  private static long upperBound(int index)
+  {
+    long bound = index;
+
+    if (index >= SUB_BUCKETS)
+    {
+      int shift = (index / SUB_BUCKETS) - 1;
+      long sub = SUB_BUCKETS + (index % SUB_BUCKETS);
+
+      bound = ((sub + 1) << shift) - 1;
+    }
+
+    return bound;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of recorded durations.
+   *
+   *
+   * @return number of durations
+   */
+  public long getCount()
+  {
+    return count.get();
+  }
+
+  /**
+   * Returns the longest recorded duration.
+   *
+   *
+   * @return longest duration in nanoseconds
+   */
+  public long getMax()
+  {
+    return max.get();
+  }
+
+  /**
+   * Returns the percentile of the recorded durations, by using the nearest
+   * rank method. The result is the upper bound of the bucket of the rank,
+   * but never more than the maximum.
+   *
+   *
+   * @param percentile percentile between 0 and 100
+   *
+   * @return percentile in nanoseconds or 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile)
+  {
+    long result = 0;
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+
+    // buckets may change during the read, the total is taken from the copy
+    for (int i = 0; i < BUCKETS; i++)
+    {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+
+    if (total > 0)
+    {
+      long rank = Math.max(1, (long) Math.ceil((percentile / 100d) * total));
+      long seen = 0;
+      int i = 0;
+
+      while ((seen += snapshot[i]) < rank)
+      {
+        i++;
+      }
+
+      // the last bucket contains the clamped durations
+      result = (i < (BUCKETS - 1))
+        ? Math.min(upperBound(i), max.get())
+        : max.get();
+    }
+
+    return result;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** number of durations per bucket */
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+  /** number of durations */
+  private final AtomicLong count = new AtomicLong();
+
+  /** longest duration */
+  private final AtomicLong max = new AtomicLong();
+}
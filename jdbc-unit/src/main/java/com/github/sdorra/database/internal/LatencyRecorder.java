@@ -0,0 +1,418 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.StatementLatency;
+import com.github.sdorra.database.StatementLatency.Percentiles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the execute and fetch latencies of the statements of a test in a
+ * {@link LatencyHistogram} per normalized sql. The recording is lock free
+ * and the memory is constant, the number of distinct statements is limited,
+ * further statements are recorded together. The recorder is enabled with the
+ * system property {@code database-unit.statement-latency}. If the system
+ * property {@code database-unit.statement-latency.dir} is set, a json report
+ * is written for every test method to this directory.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class LatencyRecorder implements StatementListener
+{
+
+  /** maximum number of distinct statements per test */
+  static final int MAX_STATEMENTS = 256;
+
+  /** statement of the latencies above the maximum of distinct statements */
+  static final String OVERFLOW = "(other statements)";
+
+  /** system property for the directory of the json reports */
+  private static final String PROPERTY_DIRECTORY =
+    "database-unit.statement-latency.dir";
+
+  /** system property to enable the recording for all rules */
+  private static final String PROPERTY_ENABLED =
+    "database-unit.statement-latency";
+
+  /** logger */
+  private static final Logger logger =
+    LoggerFactory.getLogger(LatencyRecorder.class);
+
+  /** directory of the json reports or {@code null} */
+  private static volatile File directory;
+
+  static
+  {
+    String path = System.getProperty(PROPERTY_DIRECTORY);
+
+    if ((path != null) && (path.trim().length() > 0))
+    {
+      directory = new File(path);
+    }
+  }
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new recorder for a single test.
+   *
+   *
+   * @param test name of the test class and method
+   */
+  public LatencyRecorder(String test)
+  {
+    this.test = test;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void executed(String shape, long nanos)
+  {
+    histograms(shape).execute.record(nanos);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void fetched(String shape, long nanos)
+  {
+    histograms(shape).fetch.record(nanos);
+  }
+
+  /**
+   * Logs the latencies at debug level and writes the json report, if a
+   * report directory is configured. Must be called at the end of the test.
+   *
+   */
+  public void report()
+  {
+    List<StatementLatency> latencies = getLatencies();
+
+    if (logger.isDebugEnabled())
+    {
+      for (StatementLatency latency : latencies)
+      {
+        logger.debug("{}: {}", test, latency);
+      }
+    }
+
+    File dir = directory;
+
+    if ((dir != null) &&!latencies.isEmpty())
+    {
+      write(new File(dir, test.replaceAll("[^\\w.\\-]",
+        "_").concat(".json")), latencies);
+    }
+  }
+
+  /**
+   * Appends the string as json string.
+   *
+   *
+   * @param json json buffer
+   * @param value string
+   */
+  private static void appendString(StringBuilder json, String value)
+  {
+    json.append('"');
+
+    for (int i = 0; i < value.length(); i++)
+    {
+      char c = value.charAt(i);
+
+      if ((c == '"') || (c == '\\'))
+      {
+        json.append('\\').append(c);
+      }
+      else if (c < 0x20)
+      {
+        json.append(String.format("\\u%04x", (int) c));
+      }
+      else
+      {
+        json.append(c);
+      }
+    }
+
+    json.append('"');
+  }
+
+  /**
+   * Appends the percentiles as json object.
+   *
+   *
+   * @param json json buffer
+   * @param name name of the object
+   * @param percentiles percentiles
+   */
+  private static void appendPercentiles(StringBuilder json, String name,
+    Percentiles percentiles)
+  {
+    TimeUnit unit = TimeUnit.NANOSECONDS;
+
+    json.append("      \"").append(name).append("\": {\"count\": ");
+    json.append(percentiles.getCount());
+    json.append(", \"p50\": ").append(percentiles.getP50(unit));
+    json.append(", \"p95\": ").append(percentiles.getP95(unit));
+    json.append(", \"p99\": ").append(percentiles.getP99(unit));
+    json.append(", \"max\": ").append(percentiles.getMax(unit)).append('}');
+  }
+
+  /**
+   * Returns the histograms of the statement.
+   *
+   *
+   * @param shape normalized sql of the statement
+   *
+   * @return histograms
+   */
+  private Histograms histograms(String shape)
+  {
+    Histograms histograms = statements.get(shape);
+
+    if (histograms == null)
+    {
+      String key = shape;
+
+      // the size is only an estimate, but keeps the memory bounded
+      if (statements.size() >= MAX_STATEMENTS)
+      {
+        key = OVERFLOW;
+      }
+
+      Histograms created = new Histograms();
+
+      histograms = statements.putIfAbsent(key, created);
+
+      if (histograms == null)
+      {
+        histograms = created;
+      }
+    }
+
+    return histograms;
+  }
+
+  /**
+   * Returns the percentiles of the histogram.
+   *
+   *
+   * @param histogram histogram
+   *
+   * @return percentiles
+   */
+  private static Percentiles percentiles(LatencyHistogram histogram)
+  {
+    return new Percentiles(histogram.getCount(),
+      histogram.getPercentile(50d), histogram.getPercentile(95d),
+      histogram.getPercentile(99d), histogram.getMax());
+  }
+
+  /**
+   * Writes the json report.
+   *
+   *
+   * @param file report file
+   * @param latencies latencies of the test
+   */
+  private void write(File file, List<StatementLatency> latencies)
+  {
+    StringBuilder json = new StringBuilder();
+
+    json.append("{\n  \"test\": ");
+    appendString(json, test);
+    json.append(",\n  \"unit\": \"ns\",\n  \"statements\": [");
+
+    for (int i = 0; i < latencies.size(); i++)
+    {
+      StatementLatency latency = latencies.get(i);
+
+      json.append((i > 0)
+        ? ",\n"
+        : "\n");
+      json.append("    {\n      \"sql\": ");
+      appendString(json, latency.getSql());
+      json.append(",\n");
+      appendPercentiles(json, "execute", latency.getExecute());
+      json.append(",\n");
+      appendPercentiles(json, "fetch", latency.getFetch());
+      json.append("\n    }");
+    }
+
+    json.append("\n  ]\n}\n");
+
+    Writer writer = null;
+
+    try
+    {
+      if (!file.getParentFile().isDirectory())
+      {
+        file.getParentFile().mkdirs();
+      }
+
+      writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      writer.write(json.toString());
+    }
+    catch (IOException ex)
+    {
+
+      // the report must not fail the test
+      logger.warn("could not write latency report ".concat(file.getPath()),
+        ex);
+    }
+    finally
+    {
+      Closeables.close(writer);
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the directory of the json reports.
+   *
+   *
+   * @return report directory or {@code null}
+   */
+  public static File getDirectory()
+  {
+    return directory;
+  }
+
+  /**
+   * Returns the latencies of the recorded statements, the statements with
+   * the longest execution come first.
+   *
+   *
+   * @return latencies of the statements
+   */
+  public List<StatementLatency> getLatencies()
+  {
+    List<StatementLatency> latencies = new ArrayList<StatementLatency>();
+
+    for (Entry<String, Histograms> e : statements.entrySet())
+    {
+      latencies.add(new StatementLatency(e.getKey(),
+        percentiles(e.getValue().execute), percentiles(e.getValue().fetch)));
+    }
+
+    Collections.sort(latencies, new Comparator<StatementLatency>()
+    {
+      @Override
+      public int compare(StatementLatency left, StatementLatency right)
+      {
+        long l = left.getExecute().getMax(TimeUnit.NANOSECONDS);
+        long r = right.getExecute().getMax(TimeUnit.NANOSECONDS);
+
+        return (l < r)
+          ? 1
+          : ((l == r)
+            ? 0
+            : -1);
+      }
+    });
+
+    return latencies;
+  }
+
+  /**
+   * Returns {@code true} if the recording is enabled for all rules by a
+   * system property.
+   *
+   *
+   * @return {@code true} if the recording is enabled by default
+   */
+  public static boolean isEnabledByDefault()
+  {
+    return Boolean.getBoolean(PROPERTY_ENABLED) || (directory != null);
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Sets the directory of the json reports, {@code null} disables the
+   * reports.
+   *
+   *
+   * @param directory report directory or {@code null}
+   */
+  public static void setDirectory(File directory)
+  {
+    LatencyRecorder.directory = directory;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Histograms of one statement.
+   */
+  private static class Histograms
+  {
+
+    /** execute latencies */
+    private final LatencyHistogram execute = new LatencyHistogram();
+
+    /** fetch latencies */
+    private final LatencyHistogram fetch = new LatencyHistogram();
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** histograms by normalized sql */
+  private final ConcurrentMap<String, Histograms> statements =
+    new ConcurrentHashMap<String, Histograms>();
+
+  /** name of the test class and method */
+  private final String test;
+}
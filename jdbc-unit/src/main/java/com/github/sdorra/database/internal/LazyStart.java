@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.LifecyclePhase;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Defers the creation of the database of a test until the test uses the
+ * database for the first time. Tests which never use the database do not pay
+ * for its creation, they are reported as {@link LifecyclePhase#SKIP} and are
+ * counted for the whole jvm.
+ *
+ * @author Sebastian Sdorra
+ */
+public abstract class LazyStart
+{
+
+  /** number of test executions which have used a database */
+  private static final AtomicLong startCount = new AtomicLong();
+
+  /** number of test executions which have not used a database */
+  private static final AtomicLong skipCount = new AtomicLong();
+
+  /** logger */
+  private static final Logger logger = LoggerFactory.getLogger(LazyStart.class);
+
+  static
+  {
+    Runtime.getRuntime().addShutdownHook(new Thread("database-unit-lazy-start")
+    {
+      @Override
+      public void run()
+      {
+        report();
+      }
+    });
+  }
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new lazy start.
+   *
+   *
+   * @param detail name of the test
+   */
+  protected LazyStart(String detail)
+  {
+    this.detail = detail;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Starts the database, if it was not started before. A failed start is not
+   * repeated.
+   *
+   */
+  public final void ensureStarted()
+  {
+    if (!started)
+    {
+
+      // set before the start, the start may use the database itself
+      started = true;
+      startCount.incrementAndGet();
+      start();
+    }
+  }
+
+  /**
+   * Must be called after the test. Reports the test as skipped, if it has
+   * not used the database.
+   *
+   */
+  public final void finish()
+  {
+    if (!started)
+    {
+      skipCount.incrementAndGet();
+      Lifecycle.fire(LifecyclePhase.SKIP, Lifecycle.start(), detail, 1);
+    }
+  }
+
+  /**
+   * Creates, starts and seeds the database.
+   *
+   */
+  protected abstract void start();
+
+  /**
+   * Logs the number of test executions which have not used a database.
+   *
+   */
+  private static void report()
+  {
+    long skipped = skipCount.get();
+
+    if (skipped > 0)
+    {
+      logger.info("{} of {} test executions did not use a database, "
+        + "their database was not created", skipped,
+        skipped + startCount.get());
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of test executions which have not used a database.
+   *
+   *
+   * @return number of skipped databases
+   */
+  public static long getSkipCount()
+  {
+    return skipCount.get();
+  }
+
+  /**
+   * Returns the number of test executions which have used a database.
+   *
+   *
+   * @return number of started databases
+   */
+  public static long getStartCount()
+  {
+    return startCount.get();
+  }
+
+  /**
+   * Returns {@code true} if the start of the database was requested.
+   *
+   *
+   * @return {@code true} if the database was requested
+   */
+  public final boolean isStarted()
+  {
+    return started;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** name of the test */
+  private final String detail;
+
+  /** start was requested */
+  private boolean started;
+}
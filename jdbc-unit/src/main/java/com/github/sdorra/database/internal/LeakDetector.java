@@ -0,0 +1,582 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.LeakDetection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the connections and entity managers, which are handed out by a rule
+ * during a test. The resources are wrapped by a proxy, which removes the
+ * resource from the detector when it is closed. Resources which are still
+ * open at the end of the test are closed by {@link #reclaim()} and reported
+ * according to the {@link LeakDetection} mode. The stack trace of the
+ * creation is only recorded for the modes which report it.
+ *
+ * The default mode is read from the system property
+ * {@code database-unit.leak-detection} (close, warn or fail, default close).
+ * The heap which is retained by leaked resources is measured with a full gc
+ * before the leaked resources are closed and after the detector has dropped
+ * its references to them, if the system property
+ * {@code database-unit.leak-detection.heap} is {@code true}. The counts are
+ * logged at jvm shutdown.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class LeakDetector
+{
+
+  /** system property for the default mode */
+  private static final String PROPERTY_MODE = "database-unit.leak-detection";
+
+  /** system property to enable the heap measurement */
+  private static final String PROPERTY_HEAP =
+    "database-unit.leak-detection.heap";
+
+  /** number of leaked resources by type */
+  private static final ConcurrentMap<String, AtomicLong> leaks =
+    new ConcurrentHashMap<String, AtomicLong>();
+
+  /** logger */
+  private static final Logger logger =
+    LoggerFactory.getLogger(LeakDetector.class);
+
+  /** heap in bytes, which was released by closing leaked resources */
+  private static final AtomicLong retainedHeap = new AtomicLong();
+
+  /** number of tracked resources */
+  private static final AtomicLong trackCount = new AtomicLong();
+
+  /** measure the heap which is retained by leaked resources */
+  private static final boolean measureHeap = Boolean.getBoolean(PROPERTY_HEAP);
+
+  static
+  {
+    Runtime.getRuntime().addShutdownHook(new Thread("database-unit-leaks")
+    {
+      @Override
+      public void run()
+      {
+        if (getLeakCount() > 0)
+        {
+          logger.warn(getReport());
+        }
+      }
+    });
+  }
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new leak detector for a single test.
+   *
+   *
+   * @param mode leak detection mode
+   * @param test name of the test
+   */
+  public LeakDetector(LeakDetection mode, String test)
+  {
+    this.mode = mode;
+    this.test = test;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Closes all resources which are still open and reports them according to
+   * the mode. The method must be called at the end of the test, before the
+   * database is dropped.
+   *
+   */
+  public void reclaim()
+  {
+    List<Tracked> open;
+
+    synchronized (this)
+    {
+      open = new ArrayList<Tracked>(tracked);
+      tracked.clear();
+    }
+
+    if (!open.isEmpty())
+    {
+      long before = usedHeap();
+
+      for (Tracked resource : open)
+      {
+        leak(resource);
+        resource.close();
+      }
+
+      // the leaked handlers have dropped their resources, the heap is
+      // measured after the last reference of the detector is gone
+      open.clear();
+
+      if (measureHeap)
+      {
+        retainedHeap.addAndGet(Math.max(0, before - usedHeap()));
+      }
+    }
+  }
+
+  /**
+   * Wraps the resource and tracks it until it is closed.
+   *
+   *
+   * @param resource connection or entity manager
+   * @param type interface of the resource, which has a close method
+   * @param <T> type of the resource
+   *
+   * @return wrapped resource
+   */
+  public <T> T track(T resource, Class<T> type)
+  {
+    Throwable allocation = null;
+
+    if (mode != LeakDetection.CLOSE)
+    {
+      allocation = new Throwable(type.getSimpleName().concat(
+        " was created here"));
+    }
+
+    Tracked handler = new Tracked(resource, type, allocation);
+
+    synchronized (this)
+    {
+      tracked.add(handler);
+    }
+
+    trackCount.incrementAndGet();
+
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+      new Class<?>[] { type }, handler));
+  }
+
+  /**
+   * Fails with an {@link AssertionError} if the mode is
+   * {@link LeakDetection#FAIL} and the test has leaked resources. The error
+   * contains the stack trace of the creation of the first leak.
+   *
+   */
+  public void verify()
+  {
+    if ((mode == LeakDetection.FAIL) &&!leaked.isEmpty())
+    {
+      Tracked first = leaked.get(0);
+      StringBuilder msg = new StringBuilder();
+
+      msg.append(test).append(" has leaked ").append(leaked.size());
+      msg.append(" resources, which were closed by the rule: ");
+
+      for (int i = 0; i < leaked.size(); i++)
+      {
+        if (i > 0)
+        {
+          msg.append(", ");
+        }
+
+        msg.append(leaked.get(i).type.getSimpleName());
+      }
+
+      AssertionError error = new AssertionError(msg.toString());
+
+      error.initCause(first.allocation);
+
+      throw error;
+    }
+  }
+
+  /**
+   * Removes the resource from the tracked resources.
+   *
+   *
+   * @param resource closed resource
+   */
+  private synchronized void closed(Tracked resource)
+  {
+    tracked.remove(resource);
+  }
+
+  /**
+   * Records and reports a leaked resource.
+   *
+   *
+   * @param resource leaked resource
+   */
+  private void leak(Tracked resource)
+  {
+    String type = resource.type.getSimpleName();
+    AtomicLong counter = leaks.get(type);
+
+    if (counter == null)
+    {
+      AtomicLong created = new AtomicLong();
+
+      counter = leaks.putIfAbsent(type, created);
+
+      if (counter == null)
+      {
+        counter = created;
+      }
+    }
+
+    counter.incrementAndGet();
+    leaked.add(resource);
+
+    if (mode == LeakDetection.WARN)
+    {
+      logger.warn("{} has leaked a {}, which is closed by the rule",
+        new Object[] { test,
+        type, resource.allocation });
+    }
+  }
+
+  /**
+   * Returns the used heap after a full gc, if the heap measurement is
+   * enabled.
+   *
+   *
+   * @return used heap in bytes or 0
+   */
+  private long usedHeap()
+  {
+    long used = 0;
+
+    if (measureHeap)
+    {
+      Runtime runtime = Runtime.getRuntime();
+
+      System.gc();
+      used = runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    return used;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the default mode of the system property
+   * {@code database-unit.leak-detection}.
+   *
+   *
+   * @return default mode
+   *
+   * @throws DatabaseException if the value of the property is invalid
+   */
+  public static LeakDetection getDefaultMode()
+  {
+    String mode = System.getProperty(PROPERTY_MODE);
+    LeakDetection detection = LeakDetection.CLOSE;
+
+    if (mode != null)
+    {
+      try
+      {
+        detection = LeakDetection.valueOf(
+          mode.trim().toUpperCase(Locale.ENGLISH));
+      }
+      catch (IllegalArgumentException ex)
+      {
+        StringBuilder msg = new StringBuilder("invalid value ");
+
+        msg.append(mode).append(" of system property ").append(PROPERTY_MODE);
+        msg.append(", expected one of ");
+        msg.append(Arrays.toString(LeakDetection.values()));
+
+        throw new DatabaseException(msg.toString(), ex);
+      }
+    }
+
+    return detection;
+  }
+
+  /**
+   * Returns the number of leaked resources of all tests.
+   *
+   *
+   * @return number of leaks
+   */
+  public static long getLeakCount()
+  {
+    long count = 0;
+
+    for (AtomicLong counter : leaks.values())
+    {
+      count += counter.get();
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns the number of leaked resources by the simple name of their type.
+   *
+   *
+   * @return number of leaks by type
+   */
+  public static Map<String, Long> getLeakCounts()
+  {
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+
+    for (Entry<String, AtomicLong> e : leaks.entrySet())
+    {
+      counts.put(e.getKey(), e.getValue().get());
+    }
+
+    return Collections.unmodifiableMap(counts);
+  }
+
+  /**
+   * Returns a report with the number of tracked and leaked resources and the
+   * heap which was retained by the leaked resources.
+   *
+   *
+   * @return leak report
+   */
+  public static String getReport()
+  {
+    StringBuilder report = new StringBuilder();
+
+    report.append(getLeakCount()).append(" of ").append(trackCount.get());
+    report.append(" connections and entity managers were leaked by tests and ");
+    report.append("closed by the rules ").append(getLeakCounts());
+
+    if (measureHeap)
+    {
+      report.append(", the leaks have retained ");
+      report.append(retainedHeap.get() / 1024).append(" kb of heap");
+    }
+
+    return report.toString();
+  }
+
+  /**
+   * Returns the heap which was released by closing leaked resources. The
+   * value is only measured, if the system property
+   * {@code database-unit.leak-detection.heap} is {@code true}.
+   *
+   *
+   * @return retained heap in bytes
+   */
+  public static long getRetainedHeap()
+  {
+    return retainedHeap.get();
+  }
+
+  /**
+   * Returns the number of tracked resources of all tests.
+   *
+   *
+   * @return number of tracked resources
+   */
+  public static long getTrackCount()
+  {
+    return trackCount.get();
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Proxy handler of a tracked resource.
+   */
+  private class Tracked implements InvocationHandler
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param resource tracked resource
+     * @param type interface of the resource
+     * @param allocation stack trace of the creation or {@code null}
+     */
+    private Tracked(Object resource, Class<?> type, Throwable allocation)
+    {
+      this.resource = resource;
+      this.type = type;
+      this.allocation = allocation;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable
+    {
+      String name = method.getName();
+      boolean close = "close".equals(name) && (args == null);
+      Object current = resource;
+
+      if (current == null)
+      {
+        return invokeReclaimed(proxy, name, args);
+      }
+
+      if (close)
+      {
+        closed(this);
+      }
+
+      try
+      {
+        return method.invoke(current, args);
+      }
+      catch (InvocationTargetException ex)
+      {
+        throw ex.getCause();
+      }
+    }
+
+    /**
+     * Answers the methods of a resource, which was leaked and closed by
+     * {@link #reclaim()}. The resource is no longer referenced, only the close
+     * state and the object methods are available.
+     *
+     *
+     * @param proxy proxy of the resource
+     * @param name name of the method
+     * @param args arguments of the method
+     *
+     * @return result of the method
+     */
+    private Object invokeReclaimed(Object proxy, String name, Object[] args)
+    {
+      Object result = null;
+
+      if ("isClosed".equals(name))
+      {
+        result = Boolean.TRUE;
+      }
+      else if ("isOpen".equals(name))
+      {
+        result = Boolean.FALSE;
+      }
+      else if ("equals".equals(name) && (args != null) && (args.length == 1))
+      {
+        result = proxy == args[0];
+      }
+      else if ("hashCode".equals(name))
+      {
+        result = System.identityHashCode(proxy);
+      }
+      else if ("toString".equals(name))
+      {
+        result = "leaked ".concat(type.getSimpleName());
+      }
+      else if (!"close".equals(name))
+      {
+        throw new IllegalStateException(type.getSimpleName().concat(
+          " was leaked and closed by the rule"));
+      }
+
+      return result;
+    }
+
+    /**
+     * Closes the leaked resource and drops the reference to it, failures are
+     * logged.
+     *
+     */
+    private void close()
+    {
+      Object closed = resource;
+
+      resource = null;
+
+      try
+      {
+        type.getMethod("close").invoke(closed);
+      }
+      catch (InvocationTargetException ex)
+      {
+        logger.warn("could not close leaked ".concat(type.getSimpleName()),
+          ex.getCause());
+      }
+      catch (Exception ex)
+      {
+        logger.warn("could not close leaked ".concat(type.getSimpleName()),
+          ex);
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** stack trace of the creation or {@code null} */
+    private final Throwable allocation;
+
+    /** tracked resource, {@code null} after it was closed as leak */
+    private volatile Object resource;
+
+    /** interface of the resource */
+    private final Class<?> type;
+  }
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** leaked resources of the test */
+  private final List<Tracked> leaked = new ArrayList<Tracked>();
+
+  /** leak detection mode */
+  private final LeakDetection mode;
+
+  /** name of the test */
+  private final String test;
+
+  /** open resources of the test */
+  private final Set<Tracked> tracked = new LinkedHashSet<Tracked>();
+}
@@ -0,0 +1,269 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.LifecycleEvent;
+import com.github.sdorra.database.LifecycleListener;
+import com.github.sdorra.database.LifecyclePhase;
+
+import org.junit.runners.model.Statement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Dispatches the {@link LifecycleEvent}s to the registered listeners. Global
+ * listeners are loaded with the {@link ServiceLoader}, the listeners of a rule
+ * are bound to the thread of the test. Events are only created, if at least
+ * one listener is registered.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class Lifecycle
+{
+
+  /** global listeners, registered with the service loader */
+  private static final List<LifecycleListener> globals = load();
+
+  /** listeners of the rule which is executed by the current thread */
+  private static final ThreadLocal<List<LifecycleListener>> bound =
+    new ThreadLocal<List<LifecycleListener>>();
+
+  /**
+   * the logger for Lifecycle
+   */
+  private static final Logger logger = LoggerFactory.getLogger(Lifecycle.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private Lifecycle() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Wraps the statement of a rule, in order to bind the listeners of the rule
+   * to the thread which evaluates the statement.
+   *
+   *
+   * @param base statement of the rule
+   * @param listeners listeners of the rule
+   *
+   * @return wrapped statement
+   */
+  public static Statement bind(final Statement base,
+    final List<LifecycleListener> listeners)
+  {
+    return new Statement()
+    {
+      @Override
+      public void evaluate() throws Throwable
+      {
+        List<LifecycleListener> previous = bound.get();
+
+        bound.set(listeners);
+
+        try
+        {
+          base.evaluate();
+        }
+        finally
+        {
+          if (previous == null)
+          {
+            bound.remove();
+          }
+          else
+          {
+            bound.set(previous);
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Sends an event to all global and all bound listeners. Exceptions of the
+   * listeners are logged and do not affect the test.
+   *
+   *
+   * @param phase lifecycle phase
+   * @param start start of the phase from {@link #start()}
+   * @param detail details of the phase
+   * @param count number of statements
+   */
+  public static void fire(LifecyclePhase phase, long start, String detail,
+    int count)
+  {
+    fire(phase, start, System.nanoTime(), detail, count);
+  }
+
+  /**
+   * Sends an event for a phase, which has finished before. The method is
+   * used for phases which are executed on other threads.
+   *
+   *
+   * @param phase lifecycle phase
+   * @param start start of the phase from {@link #start()}
+   * @param end end of the phase from {@link System#nanoTime()}
+   * @param detail details of the phase
+   * @param count number of statements
+   */
+  public static void fire(LifecyclePhase phase, long start, long end,
+    String detail, int count)
+  {
+    if (isEnabled())
+    {
+      long duration = end - start;
+      LifecycleEvent event = new LifecycleEvent(phase,
+                               System.currentTimeMillis()
+                               - (duration / 1000000l), duration, detail,
+                                 count);
+
+      fire(globals, event);
+
+      List<LifecycleListener> listeners = bound.get();
+
+      if (listeners != null)
+      {
+        fire(listeners, event);
+      }
+    }
+  }
+
+  /**
+   * Wraps the test, in order to measure the {@link LifecyclePhase#TEST} phase.
+   *
+   *
+   * @param base test statement
+   * @param detail name of the test
+   *
+   * @return wrapped statement
+   */
+  public static Statement measure(final Statement base, final String detail)
+  {
+    return new Statement()
+    {
+      @Override
+      public void evaluate() throws Throwable
+      {
+        long start = start();
+
+        try
+        {
+          base.evaluate();
+        }
+        finally
+        {
+          fire(LifecyclePhase.TEST, start, detail, 1);
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns the start timestamp of a phase in nanoseconds.
+   *
+   *
+   * @return start timestamp
+   */
+  public static long start()
+  {
+    return System.nanoTime();
+  }
+
+  /**
+   * Sends the event to the listeners.
+   *
+   *
+   * @param listeners listeners
+   * @param event event
+   */
+  private static void fire(List<LifecycleListener> listeners,
+    LifecycleEvent event)
+  {
+    for (LifecycleListener listener : listeners)
+    {
+      try
+      {
+        listener.onEvent(event);
+      }
+      catch (RuntimeException ex)
+      {
+        logger.warn("lifecycle listener failed", ex);
+      }
+    }
+  }
+
+  /**
+   * Loads the global listeners from the service loader.
+   *
+   *
+   * @return global listeners
+   */
+  private static List<LifecycleListener> load()
+  {
+    List<LifecycleListener> listeners = new ArrayList<LifecycleListener>();
+
+    for (LifecycleListener listener :
+      ServiceLoader.load(LifecycleListener.class,
+        Lifecycle.class.getClassLoader()))
+    {
+      listeners.add(listener);
+    }
+
+    return Collections.unmodifiableList(listeners);
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns {@code true} if at least one listener is registered for the
+   * current thread.
+   *
+   *
+   * @return {@code true} if events are delivered
+   */
+  public static boolean isEnabled()
+  {
+    List<LifecycleListener> listeners = bound.get();
+
+    return !globals.isEmpty() || ((listeners != null) &&!listeners.isEmpty());
+  }
+}
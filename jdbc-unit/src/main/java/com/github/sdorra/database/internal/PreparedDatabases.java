@@ -0,0 +1,781 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseEngine;
+import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.DatabaseOptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepared databases are started and seeded by background workers ahead of
+ * demand. A test takes a ready database and the dirty database is dropped
+ * asynchronously after the test. The pool can be configured with the
+ * following system properties:
+ *
+ * <ul>
+ *   <li>{@code database-unit.prepared.depth} number of databases which are
+ *   prepared ahead for each sql script (default 2)</li>
+ *   <li>{@code database-unit.prepared.workers} number of worker threads
+ *   (default half of the available processors)</li>
+ *   <li>{@code database-unit.prepared.max-queues} number of sql scripts for
+ *   which databases are kept ready, the ready databases of the least
+ *   recently used script are dropped if the limit is exceeded (default 8)
+ *   </li>
+ *   <li>{@code database-unit.prepared.idle-timeout} seconds after which the
+ *   ready databases of an unused script are dropped (default 60)</li>
+ * </ul>
+ *
+ * The databases are dropped by a separate thread, so that drops do not delay
+ * the preparation of new databases.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class PreparedDatabases
+{
+
+  /** default number of prepared databases per script */
+  private static final int DEFAULT_DEPTH = 2;
+
+  /** default idle timeout of a queue in seconds */
+  private static final long DEFAULT_IDLE_TIMEOUT = 60;
+
+  /** default maximum number of queues */
+  private static final int DEFAULT_MAX_QUEUES = 8;
+
+  /** prefix for the names of prepared databases */
+  private static final String PREFIX = "database-unit-prepared";
+
+  /** marker for a failed preparation */
+  private static final Database FAILED = new DerbyDatabase(PREFIX);
+
+  /** system property for the number of prepared databases per script */
+  private static final String PROPERTY_DEPTH = "database-unit.prepared.depth";
+
+  /** system property for the idle timeout of a queue */
+  private static final String PROPERTY_IDLE_TIMEOUT =
+    "database-unit.prepared.idle-timeout";
+
+  /** system property for the maximum number of queues */
+  private static final String PROPERTY_MAX_QUEUES =
+    "database-unit.prepared.max-queues";
+
+  /** system property for the number of worker threads */
+  private static final String PROPERTY_WORKERS =
+    "database-unit.prepared.workers";
+
+  /** number of databases which are prepared ahead for each script */
+  private static final int depth = Math.max(Integer.getInteger(PROPERTY_DEPTH,
+                                     DEFAULT_DEPTH), 1);
+
+  /** idle timeout of a queue in milliseconds */
+  private static final long idleTimeout =
+    TimeUnit.SECONDS.toMillis(Math.max(Long.getLong(PROPERTY_IDLE_TIMEOUT,
+      DEFAULT_IDLE_TIMEOUT), 1));
+
+  /** queues of ready databases in the order of their last use */
+  private static final Map<String, Queue> queues = new LinkedHashMap<String,
+                                                     Queue>(16, 0.75f, true);
+
+  /** number of databases which were handed out */
+  private static final AtomicLong takeCount = new AtomicLong();
+
+  /** time tests have waited for a database */
+  private static final AtomicLong waitNanos = new AtomicLong();
+
+  /** longest time a test has waited for a database */
+  private static final AtomicLong maxWaitNanos = new AtomicLong();
+
+  /** logger */
+  private static final Logger logger =
+    LoggerFactory.getLogger(PreparedDatabases.class);
+
+  /** background workers */
+  private static final ExecutorService workers =
+    Executors.newFixedThreadPool(Integer.getInteger(PROPERTY_WORKERS,
+      Math.max(Runtime.getRuntime().availableProcessors() / 2, 1)),
+      new WorkerThreadFactory("database-unit-worker-"));
+
+  /** drops databases and closes idle queues */
+  private static final ScheduledExecutorService droppers =
+    Executors.newSingleThreadScheduledExecutor(
+      new WorkerThreadFactory("database-unit-dropper-"));
+
+  /** maximum number of queues */
+  private static volatile int maxQueues =
+    Math.max(Integer.getInteger(PROPERTY_MAX_QUEUES, DEFAULT_MAX_QUEUES), 1);
+
+  static
+  {
+    droppers.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        closeIdle(idleTimeout);
+      }
+    }, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+
+    Runtime.getRuntime().addShutdownHook(new Thread("database-unit-prepared")
+    {
+      @Override
+      public void run()
+      {
+        report();
+        shutdown();
+      }
+    });
+  }
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private PreparedDatabases() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Drops the database asynchronously.
+   *
+   *
+   * @param database database which was taken from the pool
+   */
+  public static void release(Database database)
+  {
+    drop(database);
+  }
+
+  /**
+   * Takes a ready database for the given sql script from the pool. The
+   * method waits until a database is prepared, if no ready database is
+   * available. A new database is scheduled for every taken one. The
+   * database must be returned with {@link #release(Database)}.
+   *
+   *
+   * @param engine name of the database engine
+   * @param options tuning options
+   * @param contextClass context object is used to obtain the class loader
+   * @param resources paths to the sql scripts
+   * @param encoding encoding of the scripts
+   * @param batchSize maximum number of statements per batch
+   * @param template {@code true} to prepare the database from a template
+   *
+   * @return started and seeded database
+   */
+  public static Database take(String engine, DatabaseOptions options,
+    Object contextClass, String[] resources, String encoding, int batchSize,
+    boolean template)
+  {
+    String key = engine.concat("#").concat(options.toString()).concat(
+                   "#").concat(Databases.key(contextClass, resources,
+                     encoding));
+
+    Queue queue;
+    boolean created = false;
+
+    synchronized (queues)
+    {
+      queue = queues.get(key);
+
+      if (queue == null)
+      {
+        queue = new Queue(DatabaseEngines.get(engine), options, contextClass,
+          resources, encoding, batchSize, template);
+        queues.put(key, queue);
+        created = true;
+        evict();
+      }
+
+      queue.lastUsed = System.currentTimeMillis();
+
+      // registered under the lock, a closed queue keeps a database for us
+      queue.await();
+    }
+
+    if (created)
+    {
+      for (int i = 0; i < depth; i++)
+      {
+        queue.schedule();
+      }
+    }
+
+    // schedule the replacement first, a failed preparation must not shrink
+    // the pool
+    queue.schedule();
+
+    long start = System.nanoTime();
+    Database database = queue.take();
+    long nanos = System.nanoTime() - start;
+
+    takeCount.incrementAndGet();
+    waitNanos.addAndGet(nanos);
+    updateMax(nanos);
+
+    return database;
+  }
+
+  /**
+   * Closes the queues which were not used within the idle time.
+   *
+   *
+   * @param idle idle time in milliseconds
+   */
+  static void closeIdle(long idle)
+  {
+    long deadline = System.currentTimeMillis() - idle;
+
+    synchronized (queues)
+    {
+      Iterator<Queue> it = queues.values().iterator();
+
+      while (it.hasNext())
+      {
+        Queue queue = it.next();
+
+        // the map is ordered by the last use
+        if (queue.lastUsed > deadline)
+        {
+          break;
+        }
+
+        it.remove();
+        queue.close();
+      }
+    }
+  }
+
+  /**
+   * Drops the database with the drop thread.
+   *
+   *
+   * @param database database
+   */
+  private static void drop(final Database database)
+  {
+    if (database == FAILED)
+    {
+      return;
+    }
+
+    droppers.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          database.shutdown();
+        }
+        catch (DatabaseException ex)
+        {
+          logger.warn("could not drop prepared database", ex);
+        }
+      }
+    });
+  }
+
+  /**
+   * Closes the least recently used queues, until the number of queues is
+   * within the limit. The method is called with the monitor of the queues.
+   *
+   */
+  private static void evict()
+  {
+    Iterator<Queue> it = queues.values().iterator();
+
+    while ((queues.size() > maxQueues) && it.hasNext())
+    {
+      Queue queue = it.next();
+
+      it.remove();
+      queue.close();
+      logger.debug("closed least recently used queue of prepared databases");
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the average time tests have waited for a prepared database.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return average wait time
+   */
+  public static long getAverageWaitTime(TimeUnit unit)
+  {
+    long count = takeCount.get();
+    long average = 0;
+
+    if (count > 0)
+    {
+      average = waitNanos.get() / count;
+    }
+
+    return unit.convert(average, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the longest time a test has waited for a prepared database.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return maximum wait time
+   */
+  public static long getMaxWaitTime(TimeUnit unit)
+  {
+    return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the number of databases which were taken from the pool.
+   *
+   *
+   * @return number of taken databases
+   */
+  public static long getTakeCount()
+  {
+    return takeCount.get();
+  }
+
+  /**
+   * Returns the maximum number of queues.
+   *
+   *
+   * @return maximum number of queues
+   */
+  static int getMaxQueues()
+  {
+    return maxQueues;
+  }
+
+  /**
+   * Returns the number of sql scripts for which databases are prepared.
+   *
+   *
+   * @return number of queues
+   */
+  static int getQueueCount()
+  {
+    synchronized (queues)
+    {
+      return queues.size();
+    }
+  }
+
+  /**
+   * Returns the time tests have waited for a prepared database.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return total wait time
+   */
+  public static long getWaitTime(TimeUnit unit)
+  {
+    return unit.convert(waitNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Sets the maximum number of queues.
+   *
+   *
+   * @param max maximum number of queues
+   */
+  static void setMaxQueues(int max)
+  {
+    maxQueues = Math.max(max, 1);
+
+    synchronized (queues)
+    {
+      evict();
+    }
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Logs the time tests have waited for prepared databases.
+   *
+   */
+  private static void report()
+  {
+    long count = takeCount.get();
+
+    if (count > 0)
+    {
+      logger.info("{} prepared databases were used, tests have waited {} ms "
+        + "(max {} ms) for a database", new Object[] { count,
+        getWaitTime(TimeUnit.MILLISECONDS),
+        getMaxWaitTime(TimeUnit.MILLISECONDS) });
+    }
+  }
+
+  /**
+   * Stops the workers and drops all ready databases.
+   *
+   */
+  private static void shutdown()
+  {
+    workers.shutdownNow();
+    droppers.shutdownNow();
+
+    synchronized (queues)
+    {
+      for (Queue queue : queues.values())
+      {
+        Database database;
+
+        while ((database = queue.ready.poll()) != null)
+        {
+          if (database == FAILED)
+          {
+            continue;
+          }
+
+          try
+          {
+            database.shutdown();
+          }
+          catch (DatabaseException ex)
+          {
+            logger.warn("could not drop prepared database", ex);
+          }
+        }
+      }
+
+      queues.clear();
+    }
+  }
+
+  /**
+   * Updates the maximum wait time.
+   *
+   *
+   * @param nanos wait time
+   */
+  private static void updateMax(long nanos)
+  {
+    long max;
+
+    do
+    {
+      max = maxWaitNanos.get();
+    }
+    while ((nanos > max) &&!maxWaitNanos.compareAndSet(max, nanos));
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Ready databases of one sql script. A closed queue drops its databases,
+   * except those which are required by tests which are already waiting.
+   */
+  private static class Queue
+  {
+
+    /**
+     * Constructs a new queue.
+     *
+     *
+     * @param engine database engine
+     * @param options tuning options
+     * @param contextClass context object is used to obtain the class loader
+     * @param resources paths to the sql scripts
+     * @param encoding encoding of the script
+     * @param batchSize maximum number of statements per batch
+     * @param template {@code true} to prepare the database from a template
+     */
+    private Queue(DatabaseEngine engine, DatabaseOptions options,
+      Object contextClass, String[] resources, String encoding,
+      int batchSize, boolean template)
+    {
+      this.engine = engine;
+      this.options = options;
+
+      // the queue outlives the test, it must not keep the test instance
+      this.contextClass = (contextClass instanceof Class)
+        ? (Class<?>) contextClass
+        : contextClass.getClass();
+      this.resources = resources;
+      this.encoding = encoding;
+      this.batchSize = batchSize;
+      this.template = template;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Registers a test, which is going to take a database.
+     *
+     */
+    private synchronized void await()
+    {
+      waiting++;
+    }
+
+    /**
+     * Closes the queue and drops the ready databases, which are not required
+     * by waiting tests.
+     *
+     */
+    private synchronized void close()
+    {
+      closed = true;
+      dropUnused();
+    }
+
+    /**
+     * Drops the ready databases, which are not required by waiting tests.
+     * The method is called with the monitor of the queue.
+     *
+     */
+    private void dropUnused()
+    {
+      while (ready.size() > waiting)
+      {
+        drop(ready.poll());
+      }
+    }
+
+    /**
+     * Hands the database to the waiting tests or drops it, if the queue was
+     * closed and no test is waiting.
+     *
+     *
+     * @param database prepared database or failure marker
+     */
+    private synchronized void offer(Database database)
+    {
+      if (!closed || (waiting > ready.size()))
+      {
+        ready.offer(database);
+      }
+      else
+      {
+        drop(database);
+      }
+    }
+
+    /**
+     * Schedules the preparation of a new database.
+     *
+     */
+    private void schedule()
+    {
+      workers.execute(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          prepare();
+        }
+      });
+    }
+
+    /**
+     * Waits for a ready database.
+     *
+     *
+     * @return ready database
+     */
+    private Database take()
+    {
+      Database database;
+
+      try
+      {
+        database = ready.take();
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+
+        throw new DatabaseException("interrupted while waiting for database",
+          ex);
+      }
+      finally
+      {
+        synchronized (this)
+        {
+          waiting--;
+
+          if (closed)
+          {
+            dropUnused();
+          }
+        }
+      }
+
+      if (database == FAILED)
+      {
+        throw new DatabaseException(
+          "could not prepare database, see log for details");
+      }
+
+      return database;
+    }
+
+    /**
+     * Starts and seeds a new database.
+     *
+     */
+    private void prepare()
+    {
+      Database database =
+        engine.createDatabase(Databases.createName(PREFIX), options);
+
+      try
+      {
+        Databases.start(database, contextClass, resources, encoding,
+          batchSize, template);
+        offer(database);
+      }
+      catch (RuntimeException ex)
+      {
+        logger.error("could not prepare database", ex);
+
+        if (database.isRunning())
+        {
+          database.shutdown();
+        }
+
+        // wake up the waiting test
+        offer(FAILED);
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** ready databases */
+    private final BlockingQueue<Database> ready =
+      new LinkedBlockingQueue<Database>();
+
+    /** time of the last use, guarded by the monitor of the queues */
+    private long lastUsed;
+
+    /** queue was closed */
+    private boolean closed;
+
+    /** number of tests which are going to take a database */
+    private int waiting;
+
+    /** maximum number of statements per batch */
+    private final int batchSize;
+
+    /** context class is used to obtain the class loader */
+    private final Class<?> contextClass;
+
+    /** encoding of the script */
+    private final String encoding;
+
+    /** database engine */
+    private final DatabaseEngine engine;
+
+    /** tuning options */
+    private final DatabaseOptions options;
+
+    /** paths to the sql scripts */
+    private final String[] resources;
+
+    /** prepare the database from a template */
+    private final boolean template;
+  }
+
+
+  /**
+   * Creates daemon threads for the workers.
+   */
+  private static class WorkerThreadFactory implements ThreadFactory
+  {
+
+    /**
+     * Constructs a new thread factory.
+     *
+     *
+     * @param prefix prefix of the thread names
+     */
+    private WorkerThreadFactory(String prefix)
+    {
+      this.prefix = prefix;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable runnable)
+    {
+      Thread thread = new Thread(runnable,
+                        prefix.concat(
+                          String.valueOf(counter.incrementAndGet())));
+
+      thread.setDaemon(true);
+
+      return thread;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** counter for thread names */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /** prefix of the thread names */
+    private final String prefix;
+  }
+
+}
@@ -0,0 +1,499 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.MaxQueries;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the statements, which are executed during a test, by type and by
+ * their normalized sql and verifies them against the limits of a
+ * {@link MaxQueries} annotation. Schema statements (create, alter and drop)
+ * are not counted. The counter is thread safe.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class QueryCounter implements StatementListener
+{
+
+  /** list of parameters, e.g. of an in clause */
+  private static final Pattern PARAMETER_LIST =
+    Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+  /** replacement of a parameter list */
+  private static final String PARAMETER_LIST_REPLACEMENT = "(?, ...)";
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new query counter for a single test.
+   *
+   *
+   * @param test name of the test
+   */
+  public QueryCounter(String test)
+  {
+    this.test = test;
+
+    for (int i = 0; i < counts.length; i++)
+    {
+      counts[i] = new AtomicLong();
+    }
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Normalizes the sql of a statement. Comments are removed, string and
+   * numeric literals are replaced with {@code ?}, lists of parameters are
+   * collapsed and whitespace is reduced to a single blank.
+   *
+   *
+   * @param sql sql of the statement
+   *
+   * @return normalized sql
+   */
+  public static String normalize(String sql)
+  {
+    int length = sql.length();
+    StringBuilder buffer = new StringBuilder(length);
+    int i = 0;
+
+    while (i < length)
+    {
+      char c = sql.charAt(i);
+      char next = ((i + 1) < length)
+        ? sql.charAt(i + 1)
+        : 0;
+
+      if ((c == '\'') || (c == '"'))
+      {
+        int end = endOfQuote(sql, i, c);
+
+        if (c == '\'')
+        {
+          buffer.append('?');
+        }
+        else
+        {
+
+          // quoted identifiers are part of the shape
+          buffer.append(sql, i, end);
+        }
+
+        i = end;
+      }
+      else if ((c == '-') && (next == '-'))
+      {
+        int end = sql.indexOf('\n', i);
+
+        i = (end < 0)
+          ? length
+          : end;
+      }
+      else if ((c == '/') && (next == '*'))
+      {
+        int end = sql.indexOf("*/", i + 2);
+
+        i = (end < 0)
+          ? length
+          : end + 2;
+        space(buffer);
+      }
+      else if (Character.isDigit(c) &&!isIdentifier(buffer))
+      {
+        while ((i < length)
+          && (Character.isDigit(sql.charAt(i)) || (sql.charAt(i) == '.')))
+        {
+          i++;
+        }
+
+        buffer.append('?');
+      }
+      else if (Character.isWhitespace(c))
+      {
+        space(buffer);
+        i++;
+      }
+      else
+      {
+        buffer.append(c);
+        i++;
+      }
+    }
+
+    return PARAMETER_LIST.matcher(buffer.toString().trim()).replaceAll(
+      PARAMETER_LIST_REPLACEMENT);
+  }
+
+  /**
+   * Counts an executed statement.
+   *
+   *
+   * @param sql sql of the statement
+   */
+  public void count(String sql)
+  {
+    executed(normalize(sql), 0);
+  }
+
+  /**
+   * Counts an executed statement.
+   *
+   *
+   * @param shape normalized sql of the statement
+   * @param nanos duration of the execution, which is not used
+   */
+  @Override
+  public void executed(String shape, long nanos)
+  {
+    Type type = Type.of(shape);
+
+    if (type != null)
+    {
+      counts[type.ordinal()].incrementAndGet();
+
+      AtomicLong counter = patterns.get(shape);
+
+      if (counter == null)
+      {
+        AtomicLong created = new AtomicLong();
+
+        counter = patterns.putIfAbsent(shape, created);
+
+        if (counter == null)
+        {
+          counter = created;
+        }
+      }
+
+      counter.incrementAndGet();
+    }
+  }
+
+  /**
+   * Fetches are not counted.
+   *
+   *
+   * @param shape normalized sql of the statement
+   * @param nanos time spent to fetch the rows
+   */
+  @Override
+  public void fetched(String shape, long nanos)
+  {
+
+    // only executions are counted
+  }
+
+  /**
+   * Fails with an {@link AssertionError}, if the number of statements of a
+   * type exceeds its limit. The error lists the statement patterns of every
+   * exceeded type.
+   *
+   *
+   * @param limits query budget of the test
+   */
+  public void verify(MaxQueries limits)
+  {
+    StringBuilder msg = new StringBuilder();
+
+    verify(msg, Type.SELECT, limits.select());
+    verify(msg, Type.INSERT, limits.insert());
+    verify(msg, Type.UPDATE, limits.update());
+    verify(msg, Type.DELETE, limits.delete());
+    verify(msg, Type.OTHER, limits.other());
+    verify(msg, null, limits.total());
+
+    if (msg.length() > 0)
+    {
+      throw new AssertionError(test.concat(" has exceeded its query budget")
+        .concat(msg.toString()));
+    }
+  }
+
+  /**
+   * Returns the index after the closing quote. Doubled quotes are escaped
+   * quotes.
+   *
+   *
+   * @param sql sql of the statement
+   * @param start index of the opening quote
+   * @param quote quote character
+   *
+   * @return index after the closing quote
+   */
+  private static int endOfQuote(String sql, int start, char quote)
+  {
+    int i = start + 1;
+
+    while (i < sql.length())
+    {
+      if (sql.charAt(i) == quote)
+      {
+        if (((i + 1) < sql.length()) && (sql.charAt(i + 1) == quote))
+        {
+          i++;
+        }
+        else
+        {
+          break;
+        }
+      }
+
+      i++;
+    }
+
+    return Math.min(i + 1, sql.length());
+  }
+
+  /**
+   * Appends a single blank, if the buffer does not end with a blank.
+   *
+   *
+   * @param buffer buffer
+   */
+  private static void space(StringBuilder buffer)
+  {
+    if ((buffer.length() > 0) && (buffer.charAt(buffer.length() - 1) != ' '))
+    {
+      buffer.append(' ');
+    }
+  }
+
+  /**
+   * Appends the count and the patterns of the type to the message, if the
+   * count exceeds the limit.
+   *
+   *
+   * @param msg message
+   * @param type type or {@code null} for all statements
+   * @param limit maximum number of statements, negative for no limit
+   */
+  private void verify(StringBuilder msg, Type type, int limit)
+  {
+    long count = getCount(type);
+
+    if ((limit >= 0) && (count > limit))
+    {
+      String name = (type != null)
+        ? type.name().toLowerCase(Locale.ENGLISH)
+        : "total";
+
+      msg.append("\n  ").append(name).append(": ").append(count);
+      msg.append(" statements, at most ").append(limit);
+      msg.append(" are allowed");
+
+      for (Entry<String, Long> e : getPatterns(type))
+      {
+        msg.append("\n    ").append(e.getValue()).append("x ");
+        msg.append(e.getKey());
+      }
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of counted statements of the given type.
+   *
+   *
+   * @param type type or {@code null} for all statements
+   *
+   * @return number of statements
+   */
+  private long getCount(Type type)
+  {
+    long count = 0;
+
+    if (type != null)
+    {
+      count = counts[type.ordinal()].get();
+    }
+    else
+    {
+      for (AtomicLong c : counts)
+      {
+        count += c.get();
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns {@code true} if the buffer ends with a part of an identifier,
+   * e.g. {@code user0_}.
+   *
+   *
+   * @param buffer buffer
+   *
+   * @return {@code true} if the buffer ends with an identifier
+   */
+  private static boolean isIdentifier(StringBuilder buffer)
+  {
+    boolean identifier = false;
+
+    if (buffer.length() > 0)
+    {
+      char c = buffer.charAt(buffer.length() - 1);
+
+      identifier = Character.isLetterOrDigit(c) || (c == '_') || (c == '$');
+    }
+
+    return identifier;
+  }
+
+  /**
+   * Returns the statement patterns of the type, sorted by their count.
+   *
+   *
+   * @param type type or {@code null} for all statements
+   *
+   * @return patterns with their count
+   */
+  private List<Entry<String, Long>> getPatterns(Type type)
+  {
+    List<Entry<String, Long>> result = new ArrayList<Entry<String, Long>>();
+
+    for (Entry<String, AtomicLong> e : patterns.entrySet())
+    {
+      if ((type == null) || (type == Type.of(e.getKey())))
+      {
+        result.add(new SimpleImmutableEntry<String, Long>(e.getKey(),
+          e.getValue().get()));
+      }
+    }
+
+    Collections.sort(result, new Comparator<Entry<String, Long>>()
+    {
+      @Override
+      public int compare(Entry<String, Long> left, Entry<String, Long> right)
+      {
+        return right.getValue().compareTo(left.getValue());
+      }
+    });
+
+    return result;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Type of a statement.
+   */
+  private static enum Type
+  {
+    SELECT, INSERT, UPDATE, DELETE, OTHER;
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Returns the type of the normalized statement or {@code null} for schema
+     * statements.
+     *
+     *
+     * @param normalized normalized sql
+     *
+     * @return type or {@code null}
+     */
+    private static Type of(String normalized)
+    {
+      int start = 0;
+
+      // queries can be wrapped in parentheses
+      while ((start < normalized.length())
+        && ((normalized.charAt(start) == '(')
+          || (normalized.charAt(start) == ' ')))
+      {
+        start++;
+      }
+
+      int end = start;
+
+      while ((end < normalized.length())
+        && Character.isLetter(normalized.charAt(end)))
+      {
+        end++;
+      }
+
+      String keyword = normalized.substring(start,
+                         end).toUpperCase(Locale.ENGLISH);
+      Type type = OTHER;
+
+      if ("SELECT".equals(keyword) || "WITH".equals(keyword))
+      {
+        type = SELECT;
+      }
+      else if ("INSERT".equals(keyword))
+      {
+        type = INSERT;
+      }
+      else if ("UPDATE".equals(keyword))
+      {
+        type = UPDATE;
+      }
+      else if ("DELETE".equals(keyword))
+      {
+        type = DELETE;
+      }
+      else if ("CREATE".equals(keyword) || "ALTER".equals(keyword)
+        || "DROP".equals(keyword))
+      {
+        type = null;
+      }
+
+      return type;
+    }
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** number of statements by type */
+  private final AtomicLong[] counts = new AtomicLong[Type.values().length];
+
+  /** number of statements by normalized sql */
+  private final ConcurrentMap<String, AtomicLong> patterns =
+    new ConcurrentHashMap<String, AtomicLong>();
+
+  /** name of the test */
+  private final String test;
+}
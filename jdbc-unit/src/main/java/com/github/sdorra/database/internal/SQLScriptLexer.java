@@ -0,0 +1,456 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming lexer, which splits a sql script into single statements. The
+ * lexer reads the script character by character through a reusable buffer
+ * and understands single and double quoted literals, line comments
+ * ({@code --} and {@code //} at the start of a line), block comments and
+ * custom delimiters. Comments are removed from the emitted statements.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class SQLScriptLexer
+{
+
+  /** default size of the read buffer */
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /** end of stream */
+  private static final int EOF = -1;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new lexer.
+   *
+   *
+   * @param reader reader for the sql script
+   * @param delimiter statement delimiter
+   * @param fullLineDelimiter {@code true} if the delimiter must be on its own
+   *                          line
+   */
+  public SQLScriptLexer(Reader reader, String delimiter,
+    boolean fullLineDelimiter)
+  {
+    this(reader, delimiter, fullLineDelimiter, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Constructs a new lexer.
+   *
+   *
+   * @param reader reader for the sql script
+   * @param delimiter statement delimiter
+   * @param fullLineDelimiter {@code true} if the delimiter must be on its own
+   *                          line
+   * @param bufferSize size of the read buffer
+   */
+  SQLScriptLexer(Reader reader, String delimiter, boolean fullLineDelimiter,
+    int bufferSize)
+  {
+    this.reader = reader;
+    this.delimiter = delimiter;
+    this.fullLineDelimiter = fullLineDelimiter;
+    this.buffer = new char[Math.max(bufferSize, 2)];
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns the next statement of the script without its delimiter or
+   * {@code null} if the end of the script is reached.
+   *
+   *
+   * @return next statement or {@code null}
+   *
+   * @throws IOException
+   */
+  public String next() throws IOException
+  {
+    statement.setLength(0);
+    lineStart = 0;
+    normalStart = 0;
+    onlyWhitespace = true;
+
+    int c;
+
+    while ((c = read()) != EOF)
+    {
+      if ((c == '\'') || (c == '"'))
+      {
+        readQuoted((char) c);
+      }
+      else if ((c == '-') && (peek() == '-'))
+      {
+        skipLine();
+      }
+      else if ((c == '/') && (peek() == '/') && isLineStart())
+      {
+        skipLine();
+      }
+      else if ((c == '/') && (peek() == '*'))
+      {
+        skipBlockComment();
+      }
+      else if (c == '\n')
+      {
+        if (fullLineDelimiter && isDelimiterLine())
+        {
+          statement.setLength(lineStart);
+
+          String command = emit();
+
+          if (command != null)
+          {
+            return command;
+          }
+        }
+        else
+        {
+          statement.append('\n');
+          lineStart = statement.length();
+          onlyWhitespace = true;
+        }
+      }
+      else
+      {
+        statement.append((char) c);
+
+        if (!Character.isWhitespace(c))
+        {
+          onlyWhitespace = false;
+        }
+
+        if (!fullLineDelimiter && endsWithDelimiter())
+        {
+          statement.setLength(statement.length() - delimiter.length());
+
+          String command = emit();
+
+          if (command != null)
+          {
+            return command;
+          }
+        }
+      }
+    }
+
+    if (fullLineDelimiter && isDelimiterLine())
+    {
+      statement.setLength(lineStart);
+    }
+
+    String command = emit();
+
+    statement.setLength(0);
+
+    return command;
+  }
+
+  /**
+   * Returns the trimmed statement or {@code null} if the statement is empty
+   * and resets the state of the lexer for the next statement.
+   *
+   *
+   * @return trimmed statement or {@code null}
+   */
+  private String emit()
+  {
+    int start = 0;
+    int end = statement.length();
+
+    while ((start < end) && Character.isWhitespace(statement.charAt(start)))
+    {
+      start++;
+    }
+
+    while ((end > start) && Character.isWhitespace(statement.charAt(end - 1)))
+    {
+      end--;
+    }
+
+    String command = null;
+
+    if (start < end)
+    {
+      command = statement.substring(start, end);
+    }
+
+    statement.setLength(0);
+    lineStart = 0;
+    normalStart = 0;
+    onlyWhitespace = true;
+
+    return command;
+  }
+
+  /**
+   * Fills the buffer. Characters which are not consumed are moved to the
+   * start of the buffer.
+   *
+   *
+   * @return {@code false} if the end of stream is reached
+   *
+   * @throws IOException
+   */
+  private boolean fill() throws IOException
+  {
+    int remaining = limit - position;
+
+    if (remaining > 0)
+    {
+      System.arraycopy(buffer, position, buffer, 0, remaining);
+    }
+
+    position = 0;
+    limit = remaining;
+
+    int read = reader.read(buffer, limit, buffer.length - limit);
+
+    if (read > 0)
+    {
+      limit += read;
+    }
+
+    return read > 0;
+  }
+
+  /**
+   * Returns the next character without consuming it.
+   *
+   *
+   * @return next character or {@link #EOF}
+   *
+   * @throws IOException
+   */
+  private int peek() throws IOException
+  {
+    if ((position >= limit) &&!fill())
+    {
+      return EOF;
+    }
+
+    return buffer[position];
+  }
+
+  /**
+   * Reads the next character.
+   *
+   *
+   * @return next character or {@link #EOF}
+   *
+   * @throws IOException
+   */
+  private int read() throws IOException
+  {
+    if ((position >= limit) &&!fill())
+    {
+      return EOF;
+    }
+
+    return buffer[position++];
+  }
+
+  /**
+   * Reads a quoted literal or identifier. The quotes are part of the
+   * statement, doubled quotes are treated as escaped quote.
+   *
+   *
+   * @param quote quote character
+   *
+   * @throws IOException
+   */
+  private void readQuoted(char quote) throws IOException
+  {
+    statement.append(quote);
+    onlyWhitespace = false;
+
+    int c;
+
+    while ((c = read()) != EOF)
+    {
+      statement.append((char) c);
+
+      if (c == quote)
+      {
+        break;
+      }
+    }
+
+    normalStart = statement.length();
+  }
+
+  /**
+   * Skips a block comment.
+   *
+   *
+   * @throws IOException
+   */
+  private void skipBlockComment() throws IOException
+  {
+    // consume the asterisk of the comment start
+    read();
+
+    int previous = EOF;
+    int c;
+
+    while ((c = read()) != EOF)
+    {
+      if ((previous == '*') && (c == '/'))
+      {
+        break;
+      }
+
+      previous = c;
+    }
+
+    // keep tokens around the comment separated
+    statement.append(' ');
+    normalStart = statement.length();
+  }
+
+  /**
+   * Skips the rest of the current line, the line break is kept.
+   *
+   *
+   * @throws IOException
+   */
+  private void skipLine() throws IOException
+  {
+    int c;
+
+    while (((c = peek()) != EOF) && (c != '\n'))
+    {
+      read();
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns {@code true} if the current line contains only the delimiter.
+   *
+   *
+   * @return {@code true} if the current line is a delimiter line
+   */
+  private boolean isDelimiterLine()
+  {
+    int start = lineStart;
+    int end = statement.length();
+
+    while ((start < end) && Character.isWhitespace(statement.charAt(start)))
+    {
+      start++;
+    }
+
+    while ((end > start) && Character.isWhitespace(statement.charAt(end - 1)))
+    {
+      end--;
+    }
+
+    return ((end - start) == delimiter.length())
+      && statement.substring(start, end).equals(delimiter);
+  }
+
+  /**
+   * Returns {@code true} if the statement ends with the delimiter and the
+   * delimiter is not part of a literal or a comment.
+   *
+   *
+   * @return {@code true} if the statement ends with the delimiter
+   */
+  private boolean endsWithDelimiter()
+  {
+    int length = delimiter.length();
+    int start = statement.length() - length;
+
+    if (start < normalStart)
+    {
+      return false;
+    }
+
+    for (int i = 0; i < length; i++)
+    {
+      if (statement.charAt(start + i) != delimiter.charAt(i))
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if the current line contains only whitespace.
+   *
+   *
+   * @return {@code true} if the current position is the start of a line
+   */
+  private boolean isLineStart()
+  {
+    return onlyWhitespace;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** reusable read buffer */
+  private final char[] buffer;
+
+  /** statement delimiter */
+  private final String delimiter;
+
+  /** delimiter must be on its own line */
+  private final boolean fullLineDelimiter;
+
+  /** reader of the script */
+  private final Reader reader;
+
+  /** reusable statement buffer */
+  private final StringBuilder statement = new StringBuilder();
+
+  /** end of the valid characters in the read buffer */
+  private int limit = 0;
+
+  /** start of the current line in the statement buffer */
+  private int lineStart = 0;
+
+  /** start of the characters, which are not part of a literal or comment */
+  private int normalStart = 0;
+
+  /** current line contains only whitespace */
+  private boolean onlyWhitespace = true;
+
+  /** current position in the read buffer */
+  private int position = 0;
+}
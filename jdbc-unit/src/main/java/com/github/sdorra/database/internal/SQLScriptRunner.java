@@ -25,6 +25,7 @@ package com.github.sdorra.database.internal;
 //~--- non-JDK imports --------------------------------------------------------
 
 import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.LifecyclePhase;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,15 +33,22 @@ import org.slf4j.LoggerFactory;
 //~--- JDK imports ------------------------------------------------------------
 
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.io.InputStreamReader;
 import java.io.Reader;
 
+import java.net.URL;
+
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Execute sql scripts on the given database.
  */
@@ -50,6 +58,14 @@ public class SQLScriptRunner
   /** Field description */
   private static final String DEFAULT_DELIMITER = ";";
 
+  /** dml statements, which could be executed as batch */
+  private static final String[] BATCHABLE_KEYWORDS = { "INSERT", "UPDATE",
+    "DELETE", "MERGE" };
+
+  /** system property for the capacity of the pipeline */
+  private static final String PROPERTY_PIPELINE =
+    "database-unit.script.pipeline";
+
   /** Field description */
   private static final Logger logger =
     LoggerFactory.getLogger(SQLScriptRunner.class);
@@ -71,42 +87,132 @@ public class SQLScriptRunner
   //~--- methods --------------------------------------------------------------
 
   /**
-   * Reads and executes the sql script from the given reader.
+   * Reads the sql script from the given reader and splits it into single
+   * statements, by using the configured delimiter.
+   *
    *
    * @param reader reader for the sql script
+   *
+   * @return list of statements
    */
-  public void runScript(Reader reader)
+  public List<String> parseScript(Reader reader)
   {
+    long start = Lifecycle.start();
+
     try
     {
-      boolean originalAutoCommit = connection.getAutoCommit();
+      List<String> statements = parse(reader);
 
-      try
-      {
-        if (originalAutoCommit != this.autoCommit)
-        {
-          connection.setAutoCommit(this.autoCommit);
-        }
+      Lifecycle.fire(LifecyclePhase.SCRIPT_PARSE, start, null,
+        statements.size());
 
-        runScript(connection, reader);
-      }
-      finally
-      {
-        connection.setAutoCommit(originalAutoCommit);
-      }
+      return statements;
     }
     catch (IOException ex)
     {
-      throw new DatabaseException("failed to run sql script", ex);
+      throw new DatabaseException("failed to parse sql script", ex);
     }
-    catch (SQLException ex)
+  }
+
+  /**
+   * Reads and executes the sql script from the given reader. If the pipeline
+   * is enabled, the script is parsed by a background thread while the
+   * statements are executed.
+   *
+   * @param reader reader for the sql script
+   */
+  public void runScript(Reader reader)
+  {
+    if (isPipelineEnabled())
     {
-      throw new DatabaseException("failed to run sql script", ex);
+      runPipelined(reader, null);
+    }
+    else
+    {
+      runStatements(parseScript(reader));
+    }
+  }
+
+  /**
+   * Reads and executes the sql script from the given url. The parsed
+   * statements are stored in the {@link StatementCache}, so that repeated
+   * executions of the same script do not have to read and parse the script
+   * again. If the pipeline is enabled, the script is streamed through the
+   * pipeline and it is not cached, to keep the heap usage independent of the
+   * size of the script.
+   *
+   *
+   * @param script url of the sql script
+   * @param encoding encoding of the script
+   */
+  public void runScript(URL script, String encoding)
+  {
+    if (isPipelineEnabled())
+    {
+      runPipelined(script, encoding);
+
+      return;
+    }
+
+    StatementCache cache = StatementCache.getInstance();
+    String key = script.toExternalForm().concat("#").concat(encoding).concat(
+                   "#").concat(delimiter).concat("#").concat(
+                   String.valueOf(fullLineDelimiter));
+    List<String> statements = cache.get(key);
+
+    if (statements == null)
+    {
+      Reader reader = null;
+      long start = Lifecycle.start();
+
+      try
+      {
+        reader = new InputStreamReader(script.openStream(), encoding);
+        statements = cache.put(key, parse(reader));
+        Lifecycle.fire(LifecyclePhase.SCRIPT_PARSE, start,
+          script.toExternalForm(), statements.size());
+      }
+      catch (IOException ex)
+      {
+        throw new DatabaseException("could not load sql script", ex);
+      }
+      finally
+      {
+        Closeables.close(reader);
+      }
     }
+
+    runStatements(statements);
+  }
+
+  /**
+   * Executes the given statements, which were previously parsed with
+   * {@link #parseScript(java.io.Reader)}.
+   *
+   *
+   * @param statements list of statements
+   */
+  public void runStatements(List<String> statements)
+  {
+    run(statements.iterator(), null);
   }
 
   //~--- set methods ----------------------------------------------------------
 
+  /**
+   * Sets the maximum number of consecutive dml statements (insert, update,
+   * delete and merge), which are executed together as one jdbc batch. Ddl
+   * statements and queries are always executed one by one. A batch size
+   * lower than 2 disables batching.
+   *
+   *
+   * @param batchSize maximum number of statements per batch
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
   /**
    * Sets the delimiter for the execution.
    *
@@ -120,141 +226,433 @@ public class SQLScriptRunner
     this.fullLineDelimiter = fullLineDelimiter;
   }
 
+  /**
+   * Sets the capacity of the pipeline. With a capacity greater than 0 the
+   * script is parsed by a background thread, which passes the statements
+   * through a bounded queue to the executing thread. The parser waits if the
+   * queue is full. The default capacity is read from the system property
+   * {@code database-unit.script.pipeline}, a capacity lower than 1 disables
+   * the pipeline.
+   *
+   *
+   * @param pipelineCapacity maximum number of parsed statements in the queue
+   */
+  public void setPipelineCapacity(int pipelineCapacity)
+  {
+    this.pipelineCapacity = pipelineCapacity;
+  }
+
   //~--- methods --------------------------------------------------------------
 
   /**
-   * Method description
+   * Executes the statements with the given connection. Consecutive dml
+   * statements are grouped to jdbc batches, if batching is enabled.
    *
    *
-   * @param conn
-   * @param reader
+   * @param conn jdbc connection
+   * @param statements statements
+   *
+   * @return number of executed statements
    *
-   * @throws IOException
    * @throws SQLException
    */
-  private void runScript(Connection conn, Reader reader)
-    throws IOException, SQLException
+  private int execute(Connection conn, Iterator<String> statements)
+    throws SQLException
   {
-    StringBuilder buffer = null;
+    Statement batch = null;
+    String batchCommand = null;
+    int batchCount = 0;
+    int count = 0;
 
     try
     {
-      LineNumberReader lineReader = new LineNumberReader(reader);
-      String line;
-
-      while ((line = lineReader.readLine()) != null)
+      while (statements.hasNext())
       {
-        if (buffer == null)
-        {
-          buffer = new StringBuilder();
-        }
+        String command = statements.next();
 
-        String trimmedLine = line.trim();
+        count++;
 
-        if (trimmedLine.startsWith("--"))
-        {
-          logger.trace(trimmedLine);
-        }
-        else if ((trimmedLine.length() < 1) || trimmedLine.startsWith("//"))
+        if (isBatchEnabled() && isBatchable(command))
         {
+          if (batch == null)
+          {
+            batch = conn.createStatement();
+            batchCommand = command;
+          }
 
-          // do nothing
-        }
-        else if ((trimmedLine.length() < 1) || trimmedLine.startsWith("--"))
-        {
+          logger.trace(command);
+          batch.addBatch(command);
+          batchCount++;
 
-          // do nothing
+          if (batchCount >= batchSize)
+          {
+            executeBatch(conn, batch, batchCommand, batchCount);
+            batch = null;
+            batchCount = 0;
+          }
         }
-        else if ((!fullLineDelimiter && trimmedLine.endsWith(getDelimiter()))
-          || (fullLineDelimiter && trimmedLine.equals(getDelimiter())))
+        else
         {
-          buffer.append(line.substring(0, line.lastIndexOf(getDelimiter())));
-          buffer.append(" ");
+          if (batch != null)
+          {
+            executeBatch(conn, batch, batchCommand, batchCount);
+            batch = null;
+            batchCount = 0;
+          }
 
-          Statement statement = conn.createStatement();
+          execute(conn, command);
+        }
+      }
 
-          String command = buffer.toString();
+      if (batch != null)
+      {
+        executeBatch(conn, batch, batchCommand, batchCount);
+        batch = null;
+      }
 
-          logger.trace(command);
+      if (!autoCommit)
+      {
+        conn.commit();
+      }
 
-          boolean hasResults = statement.execute(command);
+      return count;
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("error durring script execution", ex);
+    }
+    finally
+    {
+      if (batch != null)
+      {
+        close(batch);
+      }
 
-          if (autoCommit &&!conn.getAutoCommit())
-          {
-            conn.commit();
-          }
+      conn.rollback();
+    }
+  }
 
-          ResultSet rs = statement.getResultSet();
+  /**
+   * Executes a single statement.
+   *
+   *
+   * @param conn jdbc connection
+   * @param command sql statement
+   *
+   * @throws SQLException
+   */
+  private void execute(Connection conn, String command) throws SQLException
+  {
+    long start = Lifecycle.start();
+    Statement statement = conn.createStatement();
 
-          if (hasResults && (rs != null))
-          {
-            StringBuilder secBuffer = new StringBuilder();
-            ResultSetMetaData md = rs.getMetaData();
-            int cols = md.getColumnCount();
+    try
+    {
+      logger.trace(command);
 
-            for (int i = 0; i < cols; i++)
-            {
-              String name = md.getColumnLabel(i);
+      boolean hasResults = statement.execute(command);
 
-              secBuffer.append(name).append("\t");
-            }
+      if (autoCommit &&!conn.getAutoCommit())
+      {
+        conn.commit();
+      }
 
-            logger.trace(secBuffer.toString());
-            secBuffer = new StringBuilder();
+      ResultSet rs = statement.getResultSet();
 
-            while (rs.next())
-            {
-              for (int i = 0; i < cols; i++)
-              {
-                String value = rs.getString(i);
+      if (hasResults && (rs != null))
+      {
+        StringBuilder secBuffer = new StringBuilder();
+        ResultSetMetaData md = rs.getMetaData();
+        int cols = md.getColumnCount();
 
-                secBuffer.append(value).append("\t");
-              }
+        for (int i = 1; i <= cols; i++)
+        {
+          String name = md.getColumnLabel(i);
 
-              logger.trace(secBuffer.toString());
-            }
-          }
+          secBuffer.append(name).append("\t");
+        }
 
-          buffer = null;
+        logger.trace(secBuffer.toString());
+        secBuffer = new StringBuilder();
 
-          try
-          {
-            statement.close();
-          }
-          catch (Exception e)
+        while (rs.next())
+        {
+          for (int i = 1; i <= cols; i++)
           {
+            String value = rs.getString(i);
 
-            // Ignore to workaround a bug in Jakarta DBCP
+            secBuffer.append(value).append("\t");
           }
-        }
-        else
-        {
-          buffer.append(line);
-          buffer.append(" ");
+
+          logger.trace(secBuffer.toString());
         }
       }
 
-      if (!autoCommit)
+      Lifecycle.fire(LifecyclePhase.STATEMENT, start, command, 1);
+    }
+    finally
+    {
+      close(statement);
+    }
+  }
+
+  /**
+   * Executes the batch and closes the statement afterwards.
+   *
+   *
+   * @param conn jdbc connection
+   * @param batch statement with pending batch
+   * @param command first statement of the batch
+   * @param count number of statements in the batch
+   *
+   * @throws SQLException
+   */
+  private void executeBatch(Connection conn, Statement batch, String command,
+    int count)
+    throws SQLException
+  {
+    long start = Lifecycle.start();
+
+    try
+    {
+      batch.executeBatch();
+
+      if (autoCommit &&!conn.getAutoCommit())
       {
         conn.commit();
       }
+
+      Lifecycle.fire(LifecyclePhase.STATEMENT, start, command, count);
+    }
+    finally
+    {
+      close(batch);
+    }
+  }
+
+  /**
+   * Executes the statements with the connection of the runner. The auto
+   * commit mode of the connection is restored afterwards.
+   *
+   *
+   * @param statements statements
+   * @param detail detail of the lifecycle event
+   *
+   * @return number of executed statements
+   */
+  private int run(Iterator<String> statements, String detail)
+  {
+    long start = Lifecycle.start();
+
+    try
+    {
+      int count;
+      boolean originalAutoCommit = connection.getAutoCommit();
+
+      try
+      {
+        // batches are committed explicitly
+        boolean requiredAutoCommit = this.autoCommit &&!isBatchEnabled();
+
+        if (originalAutoCommit != requiredAutoCommit)
+        {
+          connection.setAutoCommit(requiredAutoCommit);
+        }
+
+        count = execute(connection, statements);
+      }
+      finally
+      {
+        connection.setAutoCommit(originalAutoCommit);
+      }
+
+      Lifecycle.fire(LifecyclePhase.SCRIPT_EXECUTE, start, detail, count);
+
+      return count;
     }
     catch (SQLException ex)
     {
-      throw new DatabaseException("error durring script execution", ex);
+      throw new DatabaseException("failed to run sql script", ex);
+    }
+  }
+
+  /**
+   * Streams the script from the url through the pipeline.
+   *
+   *
+   * @param script url of the sql script
+   * @param encoding encoding of the script
+   */
+  private void runPipelined(URL script, String encoding)
+  {
+    Reader reader = null;
+
+    try
+    {
+      reader = new InputStreamReader(script.openStream(), encoding);
+      runPipelined(reader, script.toExternalForm());
     }
     catch (IOException ex)
     {
-      throw new DatabaseException("error durring script execution", ex);
+      throw new DatabaseException("could not load sql script", ex);
     }
     finally
     {
-      conn.rollback();
+      Closeables.close(reader);
+    }
+  }
+
+  /**
+   * Parses the script with a background thread and executes the statements
+   * with the current thread. The throughput of the pipeline is logged at the
+   * debug level, the wait times show whether the parser or the database is
+   * the bottleneck.
+   *
+   *
+   * @param reader reader for the sql script
+   * @param detail detail of the lifecycle events
+   */
+  private void runPipelined(Reader reader, String detail)
+  {
+    long start = Lifecycle.start();
+    ScriptPipeline pipeline =
+      new ScriptPipeline(new SQLScriptLexer(reader, getDelimiter(),
+        fullLineDelimiter), pipelineCapacity);
+
+    pipeline.start();
+
+    try
+    {
+      run(pipeline, detail);
+    }
+    finally
+    {
+      pipeline.close();
+    }
+
+    long end = System.nanoTime();
+    int count = pipeline.getStatementCount();
+
+    Lifecycle.fire(LifecyclePhase.SCRIPT_PARSE, start,
+      start + pipeline.getParseTime(), detail, count);
+
+    if (logger.isDebugEnabled())
+    {
+      long millis = TimeUnit.NANOSECONDS.toMillis(end - start);
+
+      logger.debug(
+        "executed {} statements in {} ms ({} statements/s), parser: {} ms, "
+        + "parser waited for database: {} ms, "
+        + "database waited for parser: {} ms",
+        new Object[] { count, millis,
+          (count * TimeUnit.SECONDS.toNanos(1)) / Math.max(end - start, 1),
+          TimeUnit.NANOSECONDS.toMillis(pipeline.getParseTime()),
+          TimeUnit.NANOSECONDS.toMillis(pipeline.getParserWaitTime()),
+          TimeUnit.NANOSECONDS.toMillis(pipeline.getConsumerWaitTime()) });
+    }
+  }
+
+  /**
+   * Closes the statement and ignores all errors.
+   *
+   *
+   * @param statement statement
+   */
+  private void close(Statement statement)
+  {
+    try
+    {
+      statement.close();
+    }
+    catch (Exception e)
+    {
+
+      // Ignore to workaround a bug in Jakarta DBCP
+    }
+  }
+
+  /**
+   * Splits the script into single statements.
+   *
+   *
+   * @param reader reader for the sql script
+   *
+   * @return list of statements
+   *
+   * @throws IOException
+   */
+  private List<String> parse(Reader reader) throws IOException
+  {
+    List<String> statements = new ArrayList<String>();
+    SQLScriptLexer lexer = new SQLScriptLexer(reader, getDelimiter(),
+                             fullLineDelimiter);
+    String command;
+
+    while ((command = lexer.next()) != null)
+    {
+      statements.add(command);
     }
+
+    return statements;
   }
 
   //~--- get methods ----------------------------------------------------------
 
+  /**
+   * Returns {@code true} if the statement is a dml statement, which could be
+   * part of a jdbc batch.
+   *
+   *
+   * @param command sql statement
+   *
+   * @return {@code true} if the statement could be batched
+   */
+  private static boolean isBatchable(String command)
+  {
+    int length = command.length();
+    int start = 0;
+
+    while ((start < length) && Character.isWhitespace(command.charAt(start)))
+    {
+      start++;
+    }
+
+    for (String keyword : BATCHABLE_KEYWORDS)
+    {
+      int end = start + keyword.length();
+
+      if (command.regionMatches(true, start, keyword, 0, keyword.length())
+        && (end < length) && Character.isWhitespace(command.charAt(end)))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if batching is enabled.
+   *
+   *
+   * @return {@code true} if batching is enabled
+   */
+  private boolean isBatchEnabled()
+  {
+    return batchSize > 1;
+  }
+
+  /**
+   * Returns {@code true} if the pipeline is enabled.
+   *
+   *
+   * @return {@code true} if the pipeline is enabled
+   */
+  private boolean isPipelineEnabled()
+  {
+    return pipelineCapacity > 0;
+  }
+
   /**
    * Method description
    *
@@ -271,6 +669,9 @@ public class SQLScriptRunner
   /** Field description */
   private final boolean autoCommit;
 
+  /** maximum number of statements per batch */
+  private int batchSize = 0;
+
   /** Field description */
   private final Connection connection;
 
@@ -279,4 +680,7 @@ public class SQLScriptRunner
 
   /** Field description */
   private boolean fullLineDelimiter = false;
+
+  /** maximum number of parsed statements in the queue of the pipeline */
+  private int pipelineCapacity = Integer.getInteger(PROPERTY_PIPELINE, 0);
 }
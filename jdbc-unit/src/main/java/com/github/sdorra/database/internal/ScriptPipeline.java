@@ -0,0 +1,348 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseException;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a sql script with a background thread, while the statements are
+ * executed by the consumer of the iterator. The parsed statements are passed
+ * through a bounded queue, the parser waits if the queue is full. The heap
+ * usage is therefore limited by the capacity of the queue and not by the
+ * size of the script. The pipeline must be closed after use, to stop the
+ * parser if the consumer fails.
+ *
+ * @author Sebastian Sdorra
+ */
+final class ScriptPipeline implements Iterator<String>
+{
+
+  /** marks the end of the script, compared by identity */
+  private static final String END = new String("<end of script>");
+
+  /** interval to check if the pipeline was closed */
+  private static final long OFFER_TIMEOUT = 100;
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new pipeline.
+   *
+   *
+   * @param lexer lexer for the sql script
+   * @param capacity maximum number of parsed statements in the queue
+   */
+  ScriptPipeline(SQLScriptLexer lexer, int capacity)
+  {
+    this.lexer = lexer;
+    this.queue = new ArrayBlockingQueue<String>(Math.max(capacity, 1));
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Stops the parser and discards the remaining statements.
+   *
+   */
+  public void close()
+  {
+    closed = true;
+    queue.clear();
+
+    if (parser != null)
+    {
+      try
+      {
+        parser.join();
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean hasNext()
+  {
+    if ((current == null) &&!finished)
+    {
+      current = take();
+
+      if (current == END)
+      {
+        current = null;
+        finished = true;
+
+        if (failure instanceof Error)
+        {
+          throw (Error) failure;
+        }
+        else if (failure != null)
+        {
+          throw new DatabaseException("failed to parse sql script", failure);
+        }
+      }
+    }
+
+    return current != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String next()
+  {
+    if (!hasNext())
+    {
+      throw new NoSuchElementException();
+    }
+
+    String command = current;
+
+    current = null;
+    taken++;
+
+    return command;
+  }
+
+  /**
+   * Always throws an {@link UnsupportedOperationException}.
+   *
+   */
+  @Override
+  public void remove()
+  {
+    throw new UnsupportedOperationException("remove is not supported");
+  }
+
+  /**
+   * Starts the parser thread.
+   *
+   */
+  public void start()
+  {
+    parser = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        parse();
+      }
+    }, "database-unit-script-parser");
+    parser.setDaemon(true);
+    parser.start();
+  }
+
+  /**
+   * Parses the script and puts every statement into the queue.
+   *
+   */
+  private void parse()
+  {
+    long start = System.nanoTime();
+
+    try
+    {
+      String command;
+
+      while (!closed && ((command = lexer.next()) != null))
+      {
+        put(command);
+      }
+    }
+    catch (Throwable ex)
+    {
+
+      // errors must not look like the end of the script
+      failure = ex;
+    }
+    finally
+    {
+      parseTime = System.nanoTime() - start - parserWaitTime;
+      put(END);
+    }
+  }
+
+  /**
+   * Puts the item into the queue and waits until space becomes available or
+   * the pipeline is closed.
+   *
+   *
+   * @param item statement or end marker
+   */
+  private void put(String item)
+  {
+    long start = System.nanoTime();
+
+    try
+    {
+      while (!closed
+        &&!queue.offer(item, OFFER_TIMEOUT, TimeUnit.MILLISECONDS))
+      {
+
+        // the consumer is busy, keep trying
+      }
+    }
+    catch (InterruptedException ex)
+    {
+      closed = true;
+      Thread.currentThread().interrupt();
+    }
+    finally
+    {
+      parserWaitTime += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Takes the next item from the queue and waits until one is available.
+   *
+   *
+   * @return statement or end marker
+   */
+  private String take()
+  {
+    long start = System.nanoTime();
+
+    try
+    {
+      return queue.take();
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+
+      throw new DatabaseException("interrupted while waiting for the parser",
+        ex);
+    }
+    finally
+    {
+      consumerWaitTime += System.nanoTime() - start;
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the time in nanoseconds, which the consumer has waited for the
+   * parser.
+   *
+   *
+   * @return wait time of the consumer
+   */
+  public long getConsumerWaitTime()
+  {
+    return consumerWaitTime;
+  }
+
+  /**
+   * Returns the time in nanoseconds, which the parser has spent with reading
+   * and splitting the script. The value is available after the end of the
+   * script was reached.
+   *
+   *
+   * @return parse time
+   */
+  public long getParseTime()
+  {
+    return parseTime;
+  }
+
+  /**
+   * Returns the time in nanoseconds, which the parser has waited for free
+   * space in the queue. The value is available after the end of the script
+   * was reached.
+   *
+   *
+   * @return wait time of the parser
+   */
+  public long getParserWaitTime()
+  {
+    return parserWaitTime;
+  }
+
+  /**
+   * Returns the number of statements, which were taken by the consumer.
+   *
+   *
+   * @return number of statements
+   */
+  public int getStatementCount()
+  {
+    return taken;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** pipeline was closed */
+  private volatile boolean closed;
+
+  /** wait time of the consumer */
+  private long consumerWaitTime;
+
+  /** next statement for the consumer */
+  private String current;
+
+  /** error of the parser, published by the end marker */
+  private Throwable failure;
+
+  /** end of the script was reached */
+  private boolean finished;
+
+  /** lexer for the sql script */
+  private final SQLScriptLexer lexer;
+
+  /** parse time, published by the end marker */
+  private long parseTime;
+
+  /** parser thread */
+  private Thread parser;
+
+  /** wait time of the parser, published by the end marker */
+  private long parserWaitTime;
+
+  /** bounded queue between parser and consumer */
+  private final BlockingQueue<String> queue;
+
+  /** number of statements taken by the consumer */
+  private int taken;
+}
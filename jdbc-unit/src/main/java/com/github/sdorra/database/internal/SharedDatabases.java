@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.DatabaseOptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared databases are created and seeded once and are used by all tests
+ * which are using the same sql script. The shared databases are dropped on
+ * jvm shutdown.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class SharedDatabases
+{
+
+  /** prefix for the names of shared databases */
+  private static final String PREFIX = "database-unit-shared-";
+
+  /** counter for database names */
+  private static final AtomicInteger counter = new AtomicInteger();
+
+  /** map of shared databases */
+  private static final ConcurrentMap<String, Database> databases =
+    new ConcurrentHashMap<String, Database>();
+
+  /** logger */
+  private static final Logger logger =
+    LoggerFactory.getLogger(SharedDatabases.class);
+
+  static
+  {
+    Runtime.getRuntime().addShutdownHook(new Thread("database-unit-shared")
+    {
+      @Override
+      public void run()
+      {
+        shutdown();
+      }
+    });
+  }
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private SharedDatabases() {}
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the shared database for the given sql scripts. If the database
+   * does not exist, it is created and the scripts are executed.
+   *
+   *
+   * @param engine name of the database engine
+   * @param options tuning options
+   * @param contextClass context object is used to obtain the class loader
+   * @param resources paths to the sql scripts
+   * @param encoding encoding of the scripts
+   * @param batchSize maximum number of statements per batch
+   *
+   * @return shared database
+   */
+  public static Database get(String engine, DatabaseOptions options,
+    Object contextClass, String[] resources, String encoding, int batchSize)
+  {
+    String key = engine.concat("#").concat(options.toString()).concat(
+                   "#").concat(Databases.key(contextClass, resources,
+                     encoding));
+
+    Database database = databases.get(key);
+
+    if (database == null)
+    {
+      String name = PREFIX.concat(String.valueOf(counter.incrementAndGet()));
+      Database created = DatabaseEngines.get(engine).createDatabase(name,
+                           options);
+
+      database = databases.putIfAbsent(key, created);
+
+      if (database == null)
+      {
+        database = created;
+      }
+    }
+
+    synchronized (database)
+    {
+      if (!database.isRunning())
+      {
+        database.start();
+
+        try
+        {
+          for (String resource : resources)
+          {
+            database.execute(contextClass, resource, encoding, batchSize);
+          }
+        }
+        catch (DatabaseException ex)
+        {
+
+          // do not share a partially seeded database
+          database.shutdown();
+
+          throw ex;
+        }
+      }
+    }
+
+    return database;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Drops all shared databases.
+   *
+   */
+  private static void shutdown()
+  {
+    for (Database database : databases.values())
+    {
+      synchronized (database)
+      {
+        if (database.isRunning())
+        {
+          try
+          {
+            database.shutdown();
+          }
+          catch (DatabaseException ex)
+          {
+            logger.warn("could not shutdown shared database", ex);
+          }
+        }
+      }
+    }
+
+    databases.clear();
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.ResetStrategy;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+
+import java.sql.Connection;
+
+/**
+ * Reset strategy which stores a snapshot of the prepared database and
+ * restarts the database from the snapshot on reset.
+ *
+ * @author Sebastian Sdorra
+ */
+public class SnapshotResetStrategy implements ResetStrategy
+{
+
+  /** prefix for snapshot directories */
+  private static final String PREFIX = "database-unit-reset";
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void prepare(Database database)
+  {
+    directory = Directories.createTemporary(PREFIX);
+    database.snapshot(directory);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void release(Database database)
+  {
+    if (directory != null)
+    {
+      Directories.delete(directory);
+      directory = null;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset(Database database)
+  {
+    database.shutdown();
+    database.start(directory);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Connection wrap(Connection connection)
+  {
+    return connection;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** snapshot directory */
+  private File directory;
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Jvm wide cache for parsed sql scripts. The cache keeps the statements of
+ * the most recently used scripts, the least recently used script is evicted
+ * if the cache is full. The size of the cache can be configured with the
+ * system property {@code database-unit.statement-cache.size}.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class StatementCache
+{
+
+  /** default maximum number of cached scripts */
+  private static final int DEFAULT_SIZE = 64;
+
+  /** system property for the maximum number of cached scripts */
+  private static final String PROPERTY_SIZE =
+    "database-unit.statement-cache.size";
+
+  /** shared instance */
+  private static final StatementCache instance =
+    new StatementCache(Integer.getInteger(PROPERTY_SIZE, DEFAULT_SIZE));
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new statement cache.
+   *
+   *
+   * @param maxSize maximum number of cached scripts
+   */
+  StatementCache(final int maxSize)
+  {
+    this.cache = new LinkedHashMap<String, List<String>>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = -2469458417066337283L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String,
+        List<String>> eldest)
+      {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Removes all scripts from the cache.
+   *
+   */
+  public synchronized void clear()
+  {
+    cache.clear();
+  }
+
+  /**
+   * Stores the parsed statements of a script.
+   *
+   *
+   * @param key key of the script
+   * @param statements parsed statements
+   *
+   * @return unmodifiable list of the statements
+   */
+  public List<String> put(String key, List<String> statements)
+  {
+    List<String> unmodifiable = Collections.unmodifiableList(statements);
+
+    synchronized (this)
+    {
+      cache.put(key, unmodifiable);
+    }
+
+    return unmodifiable;
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the shared jvm wide instance of the cache.
+   *
+   *
+   * @return shared instance
+   */
+  public static StatementCache getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * Returns the parsed statements of the script or {@code null} if the script
+   * is not cached.
+   *
+   *
+   * @param key key of the script
+   *
+   * @return parsed statements or {@code null}
+   */
+  public List<String> get(String key)
+  {
+    List<String> statements;
+
+    synchronized (this)
+    {
+      statements = cache.get(key);
+    }
+
+    if (statements != null)
+    {
+      hits.incrementAndGet();
+    }
+    else
+    {
+      misses.incrementAndGet();
+    }
+
+    return statements;
+  }
+
+  /**
+   * Returns the number of cache hits.
+   *
+   *
+   * @return number of cache hits
+   */
+  public long getHitCount()
+  {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of cache misses.
+   *
+   *
+   * @return number of cache misses
+   */
+  public long getMissCount()
+  {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of cached scripts.
+   *
+   *
+   * @return number of cached scripts
+   */
+  public synchronized int getSize()
+  {
+    return cache.size();
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** cached statements */
+  private final Map<String, List<String>> cache;
+
+  /** cache hits */
+  private final AtomicLong hits = new AtomicLong();
+
+  /** cache misses */
+  private final AtomicLong misses = new AtomicLong();
+}
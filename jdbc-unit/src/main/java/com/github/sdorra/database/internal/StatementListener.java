@@ -0,0 +1,58 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+/**
+ * Receives the statements, which are executed with an instrumented
+ * connection. The statements are identified by their normalized sql, see
+ * {@link QueryCounter#normalize(String)}. Implementations must be thread
+ * safe and fast, they are called for every statement.
+ *
+ * @author Sebastian Sdorra
+ */
+public interface StatementListener
+{
+
+  /**
+   * Called after a statement was executed.
+   *
+   *
+   * @param shape normalized sql of the statement
+   * @param nanos duration of the execution in nanoseconds
+   */
+  public void executed(String shape, long nanos);
+
+  /**
+   * Called after the result set of a statement was read completely or was
+   * closed.
+   *
+   *
+   * @param shape normalized sql of the statement
+   * @param nanos time spent to fetch the rows in nanoseconds
+   */
+  public void fetched(String shape, long nanos);
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.Connection;
+
+import javax.sql.DataSource;
+
+/**
+ * Util methods to instrument connections and data sources with
+ * {@link StatementListener}s.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class StatementListeners
+{
+
+  /**
+   * Constructs ...
+   *
+   */
+  private StatementListeners() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Combines two listeners, each listener may be {@code null}.
+   *
+   *
+   * @param first first listener or {@code null}
+   * @param second second listener or {@code null}
+   *
+   * @return combined listener or {@code null} if both are {@code null}
+   */
+  public static StatementListener combine(final StatementListener first,
+    final StatementListener second)
+  {
+    StatementListener result;
+
+    if (first == null)
+    {
+      result = second;
+    }
+    else if (second == null)
+    {
+      result = first;
+    }
+    else
+    {
+      result = new StatementListener()
+      {
+        @Override
+        public void executed(String shape, long nanos)
+        {
+          first.executed(shape, nanos);
+          second.executed(shape, nanos);
+        }
+
+        @Override
+        public void fetched(String shape, long nanos)
+        {
+          first.fetched(shape, nanos);
+          second.fetched(shape, nanos);
+        }
+      };
+    }
+
+    return result;
+  }
+
+  /**
+   * Wraps the connection, to report the statements which are executed with
+   * the connection.
+   *
+   *
+   * @param connection jdbc connection
+   * @param listener listener which receives the statements
+   *
+   * @return wrapped connection
+   */
+  public static Connection wrap(Connection connection,
+    StatementListener listener)
+  {
+    return new InstrumentedConnection(connection, listener).getConnection();
+  }
+
+  /**
+   * Wraps the data source, to report the statements which are executed with
+   * the connections of the data source.
+   *
+   *
+   * @param dataSource data source
+   * @param listener listener which receives the statements
+   *
+   * @return wrapped data source
+   */
+  public static DataSource wrap(final DataSource dataSource,
+    final StatementListener listener)
+  {
+    return (DataSource) Proxy.newProxyInstance(
+      StatementListeners.class.getClassLoader(),
+      new Class<?>[] { DataSource.class }, new InvocationHandler()
+    {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable
+      {
+        Object result = InstrumentedConnection.delegate(dataSource, method,
+                          args);
+
+        if (result instanceof Connection)
+        {
+          result = wrap((Connection) result, listener);
+        }
+
+        return result;
+      }
+    });
+  }
+}
@@ -0,0 +1,1080 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseException;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import java.math.BigDecimal;
+
+import java.net.URL;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Util class to compare the content of a table or the result of a query with
+ * an expected dataset. The expected dataset is a csv file, a tsv file or a
+ * sql query. Both sides are streamed and merged with a hash map of the rows,
+ * which have not found their counterpart yet. Tables are read in the order of
+ * their primary key and rows with the same primary key are compared column by
+ * column. If the expected dataset is sorted by the primary key too, the map
+ * stays small and the memory usage is independent of the size of the table.
+ * Queries and tables without primary key are compared as unordered multiset
+ * of rows. The number of reported mismatches can be configured with the
+ * system property {@code database-unit.assert.max-mismatches}.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class TableAssertions
+{
+
+  /** default maximum number of reported mismatches */
+  private static final int DEFAULT_MAX_MISMATCHES = 10;
+
+  /** encoding of expected datasets */
+  private static final String ENCODING = "UTF-8";
+
+  /** system property for the maximum number of reported mismatches */
+  private static final String PROPERTY_MAX_MISMATCHES =
+    "database-unit.assert.max-mismatches";
+
+  /** maximum number of reported mismatches */
+  private static final int maxMismatches =
+    Math.max(Integer.getInteger(PROPERTY_MAX_MISMATCHES,
+      DEFAULT_MAX_MISMATCHES), 1);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Private constructor for util class.
+   *
+   */
+  private TableAssertions() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Compares the result of the query with the expected dataset. The rows are
+   * compared as unordered multiset. The columns of a csv or tsv dataset are
+   * matched by the column labels of the query, the columns of a sql dataset
+   * are matched by position.
+   *
+   *
+   * @param connection jdbc connection
+   * @param contextClass context object is used to load the dataset
+   * @param query sql query
+   * @param expected path to the expected dataset
+   *
+   * @throws AssertionError if the result does not match
+   */
+  public static void assertQuery(Connection connection, Object contextClass,
+    String query, String expected)
+  {
+    Rows expectedRows = null;
+    Rows actualRows = null;
+
+    try
+    {
+      if (isQuery(expected))
+      {
+        expectedRows = new ResultSetRows(connection,
+          read(contextClass, expected), null);
+        actualRows = new ResultSetRows(connection, query, null);
+      }
+      else
+      {
+        expectedRows = new CSVRows(contextClass, expected);
+        actualRows = new ResultSetRows(connection, query,
+          expectedRows.getColumns());
+      }
+
+      compare(query, expected, expectedRows, actualRows, null);
+    }
+    catch (IOException ex)
+    {
+      throw new DatabaseException("could not read dataset ".concat(expected),
+        ex);
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("could not execute query ".concat(query),
+        ex);
+    }
+    finally
+    {
+      close(expectedRows);
+      close(actualRows);
+    }
+  }
+
+  /**
+   * Compares the content of the table with the expected dataset. The table is
+   * read in the order of its primary key, rows with the same primary key are
+   * compared column by column. The expected dataset should be sorted by the
+   * primary key to keep the memory usage low. A csv or tsv dataset defines
+   * the compared columns, a sql dataset must return all columns of the table
+   * in the order of the table.
+   *
+   *
+   * @param connection jdbc connection
+   * @param contextClass context object is used to load the dataset
+   * @param table name of the table
+   * @param expected path to the expected dataset
+   *
+   * @throws AssertionError if the table does not match
+   */
+  public static void assertTable(Connection connection, Object contextClass,
+    String table, String expected)
+  {
+    Rows expectedRows = null;
+    Rows actualRows = null;
+
+    try
+    {
+      String columns = "*";
+
+      if (isQuery(expected))
+      {
+        expectedRows = new ResultSetRows(connection,
+          read(contextClass, expected), null);
+      }
+      else
+      {
+        expectedRows = new CSVRows(contextClass, expected);
+        columns = join(expectedRows.getColumns());
+      }
+
+      List<String> primaryKey = getPrimaryKey(connection, table);
+      StringBuilder query = new StringBuilder("SELECT ");
+
+      query.append(columns).append(" FROM ").append(table);
+
+      if (!primaryKey.isEmpty())
+      {
+        query.append(" ORDER BY ").append(join(primaryKey));
+      }
+
+      actualRows = new ResultSetRows(connection, query.toString(), null);
+
+      compare("table ".concat(table), expected, expectedRows, actualRows,
+        keys(actualRows.getColumns(), primaryKey));
+    }
+    catch (IOException ex)
+    {
+      throw new DatabaseException("could not read dataset ".concat(expected),
+        ex);
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("could not read table ".concat(table), ex);
+    }
+    finally
+    {
+      close(expectedRows);
+      close(actualRows);
+    }
+  }
+
+  /**
+   * Closes the rows and ignores all errors.
+   *
+   *
+   * @param rows rows or {@code null}
+   */
+  private static void close(Rows rows)
+  {
+    if (rows != null)
+    {
+      try
+      {
+        rows.close();
+      }
+      catch (Exception ex)
+      {
+
+        // ignore errors during close
+      }
+    }
+  }
+
+  /**
+   * Merges both sides and throws an {@link AssertionError} with the first
+   * mismatches, if the sides do not match.
+   *
+   *
+   * @param actualName name of the actual side
+   * @param expectedName name of the expected side
+   * @param expected expected rows
+   * @param actual actual rows
+   * @param keys indexes of the key columns or {@code null} to use the whole
+   *             row as key
+   *
+   * @throws IOException
+   * @throws SQLException
+   */
+  private static void compare(String actualName, String expectedName,
+    Rows expected, Rows actual, int[] keys)
+    throws IOException, SQLException
+  {
+    if (expected.getColumns().size() != actual.getColumns().size())
+    {
+      throw new AssertionError(
+        String.format(
+          "%s has %d columns, but the expected dataset %s has %d columns",
+          actualName, actual.getColumns().size(), expectedName,
+          expected.getColumns().size()));
+    }
+
+    int[] types = actual.getTypes();
+    Diff diff = new Diff(actual.getColumns(), keys);
+    Map<List<String>, LinkedList<List<String>>> pendingExpected =
+      new HashMap<List<String>, LinkedList<List<String>>>();
+    Map<List<String>, LinkedList<List<String>>> pendingActual =
+      new HashMap<List<String>, LinkedList<List<String>>>();
+    boolean moreExpected = true;
+    boolean moreActual = true;
+
+    while (moreExpected || moreActual)
+    {
+      if (moreExpected)
+      {
+        List<String> row = normalize(expected.next(), types);
+
+        if (row == null)
+        {
+          moreExpected = false;
+        }
+        else
+        {
+          diff.rows++;
+          merge(row, keys, pendingExpected, pendingActual, diff, true);
+        }
+      }
+
+      if (moreActual)
+      {
+        List<String> row = normalize(actual.next(), types);
+
+        if (row == null)
+        {
+          moreActual = false;
+        }
+        else
+        {
+          merge(row, keys, pendingActual, pendingExpected, diff, false);
+        }
+      }
+    }
+
+    for (LinkedList<List<String>> rows : pendingExpected.values())
+    {
+      for (List<String> row : rows)
+      {
+        diff.add("missing    ", row);
+      }
+    }
+
+    for (LinkedList<List<String>> rows : pendingActual.values())
+    {
+      for (List<String> row : rows)
+      {
+        diff.add("unexpected ", row);
+      }
+    }
+
+    if (diff.count > 0)
+    {
+      throw new AssertionError(diff.format(actualName, expectedName));
+    }
+  }
+
+  /**
+   * Returns the indexes of the primary key columns or {@code null}, if the
+   * table has no primary key or not all primary key columns are selected.
+   *
+   *
+   * @param columns selected columns
+   * @param primaryKey primary key columns
+   *
+   * @return indexes of the primary key columns or {@code null}
+   */
+  private static int[] keys(List<String> columns, List<String> primaryKey)
+  {
+    if (primaryKey.isEmpty())
+    {
+      return null;
+    }
+
+    int[] keys = new int[primaryKey.size()];
+
+    for (int i = 0; i < keys.length; i++)
+    {
+      keys[i] = -1;
+
+      for (int j = 0; j < columns.size(); j++)
+      {
+        if (primaryKey.get(i).equalsIgnoreCase(columns.get(j)))
+        {
+          keys[i] = j;
+        }
+      }
+
+      if (keys[i] < 0)
+      {
+        return null;
+      }
+    }
+
+    return keys;
+  }
+
+  /**
+   * Joins the column names.
+   *
+   *
+   * @param columns column names
+   *
+   * @return comma separated column names
+   */
+  private static String join(List<String> columns)
+  {
+    StringBuilder buffer = new StringBuilder();
+
+    for (String column : columns)
+    {
+      if (buffer.length() > 0)
+      {
+        buffer.append(", ");
+      }
+
+      buffer.append(column);
+    }
+
+    return buffer.toString();
+  }
+
+  /**
+   * Matches the row with a pending row of the other side. The row is added
+   * to the pending rows of its own side, if the other side has no row with
+   * the same key.
+   *
+   *
+   * @param row row
+   * @param keys indexes of the key columns or {@code null}
+   * @param own pending rows of the side of the row
+   * @param other pending rows of the other side
+   * @param diff differences
+   * @param expected {@code true} if the row is an expected row
+   */
+  private static void merge(List<String> row, int[] keys,
+    Map<List<String>, LinkedList<List<String>>> own,
+    Map<List<String>, LinkedList<List<String>>> other, Diff diff,
+    boolean expected)
+  {
+    List<String> key = row;
+
+    if (keys != null)
+    {
+      key = new ArrayList<String>(keys.length);
+
+      for (int index : keys)
+      {
+        key.add(row.get(index));
+      }
+    }
+
+    LinkedList<List<String>> candidates = other.get(key);
+
+    if (candidates != null)
+    {
+      List<String> counterpart = candidates.removeFirst();
+
+      if (candidates.isEmpty())
+      {
+        other.remove(key);
+      }
+
+      if (!row.equals(counterpart))
+      {
+        if (expected)
+        {
+          diff.changed(row, counterpart);
+        }
+        else
+        {
+          diff.changed(counterpart, row);
+        }
+      }
+    }
+    else
+    {
+      LinkedList<List<String>> rows = own.get(key);
+
+      if (rows == null)
+      {
+        rows = new LinkedList<List<String>>();
+        own.put(key, rows);
+      }
+
+      rows.add(row);
+    }
+  }
+
+  /**
+   * Normalizes numeric values, to compare e.g. {@code 1.50} and {@code 1.5}
+   * as equal values.
+   *
+   *
+   * @param values values of the row or {@code null}
+   * @param types jdbc types of the columns
+   *
+   * @return normalized row or {@code null}
+   */
+  private static List<String> normalize(String[] values, int[] types)
+  {
+    if (values == null)
+    {
+      return null;
+    }
+
+    for (int i = 0; i < values.length; i++)
+    {
+      if ((values[i] != null) && isNumeric(types[i]))
+      {
+        try
+        {
+          BigDecimal number = new BigDecimal(values[i].trim());
+
+          values[i] = (number.signum() == 0)
+            ? "0"
+            : number.stripTrailingZeros().toPlainString();
+        }
+        catch (NumberFormatException ex)
+        {
+
+          // compare the value as it is
+        }
+      }
+    }
+
+    return Arrays.asList(values);
+  }
+
+  /**
+   * Reads the query of a sql dataset.
+   *
+   *
+   * @param contextClass context object is used to load the dataset
+   * @param resource path to the sql dataset
+   *
+   * @return sql query
+   *
+   * @throws IOException
+   */
+  private static String read(Object contextClass, String resource)
+    throws IOException
+  {
+    URL url = Databases.getResource(contextClass, resource);
+    Reader reader = new InputStreamReader(url.openStream(), ENCODING);
+
+    try
+    {
+      String query = new SQLScriptLexer(reader, ";", false).next();
+
+      if (query == null)
+      {
+        throw new DatabaseException("dataset contains no query: ".concat(
+          resource));
+      }
+
+      return query;
+    }
+    finally
+    {
+      Closeables.close(reader);
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the primary key columns of the table in the order of the key.
+   *
+   *
+   * @param connection jdbc connection
+   * @param table name of the table
+   *
+   * @return primary key columns or an empty list
+   *
+   * @throws SQLException
+   */
+  private static List<String> getPrimaryKey(Connection connection,
+    String table)
+    throws SQLException
+  {
+    DatabaseMetaData metaData = connection.getMetaData();
+    List<String> columns = new ArrayList<String>();
+
+    // unquoted identifiers are stored upper or lower case
+    String[] names = { table, table.toUpperCase(Locale.ENGLISH),
+      table.toLowerCase(Locale.ENGLISH) };
+
+    for (int i = 0; (i < names.length) && columns.isEmpty(); i++)
+    {
+      Map<Short, String> sequence = new HashMap<Short, String>();
+      ResultSet result = metaData.getPrimaryKeys(null, null, names[i]);
+
+      try
+      {
+        while (result.next())
+        {
+          sequence.put(result.getShort("KEY_SEQ"),
+            result.getString("COLUMN_NAME"));
+        }
+      }
+      finally
+      {
+        result.close();
+      }
+
+      for (short s = 1; s <= sequence.size(); s++)
+      {
+        columns.add(sequence.get(s));
+      }
+    }
+
+    return columns;
+  }
+
+  /**
+   * Returns {@code true} if the jdbc type is a numeric type.
+   *
+   *
+   * @param type jdbc type
+   *
+   * @return {@code true} for numeric types
+   */
+  private static boolean isNumeric(int type)
+  {
+    switch (type)
+    {
+      case Types.BIGINT :
+      case Types.DECIMAL :
+      case Types.DOUBLE :
+      case Types.FLOAT :
+      case Types.INTEGER :
+      case Types.NUMERIC :
+      case Types.REAL :
+      case Types.SMALLINT :
+      case Types.TINYINT :
+        return true;
+
+      default :
+        return false;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the dataset is a sql query.
+   *
+   *
+   * @param resource path to the dataset
+   *
+   * @return {@code true} for a sql dataset
+   */
+  private static boolean isQuery(String resource)
+  {
+    return resource.toLowerCase(Locale.ENGLISH).endsWith(".sql");
+  }
+
+  //~--- inner interfaces -----------------------------------------------------
+
+  /**
+   * Stream of rows.
+   */
+  private static interface Rows
+  {
+
+    /**
+     * Closes the stream.
+     *
+     *
+     * @throws Exception
+     */
+    public void close() throws Exception;
+
+    /**
+     * Returns the next row or {@code null}.
+     *
+     *
+     * @return next row or {@code null}
+     *
+     * @throws IOException
+     * @throws SQLException
+     */
+    public String[] next() throws IOException, SQLException;
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * Returns the column names.
+     *
+     *
+     * @return column names
+     */
+    public List<String> getColumns();
+
+    /**
+     * Returns the jdbc types of the columns.
+     *
+     *
+     * @return jdbc types
+     */
+    public int[] getTypes();
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Rows of a csv or tsv file. The first line contains the column names.
+   */
+  private static class CSVRows implements Rows
+  {
+
+    /**
+     * Opens the csv or tsv file.
+     *
+     *
+     * @param contextClass context object is used to load the file
+     * @param resource path to the file
+     *
+     * @throws IOException
+     */
+    public CSVRows(Object contextClass, String resource) throws IOException
+    {
+      URL url = Databases.getResource(contextClass, resource);
+      char separator = resource.toLowerCase(Locale.ENGLISH).endsWith(".tsv")
+        ? '\t'
+        : ',';
+
+      this.resource = resource;
+      this.reader = new CSVReader(new InputStreamReader(url.openStream(),
+        ENCODING), separator);
+
+      String[] header = reader.next();
+
+      if (header == null)
+      {
+        throw new DatabaseException("dataset is empty: ".concat(resource));
+      }
+
+      this.columns = Arrays.asList(header);
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+      reader.close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] next() throws IOException
+    {
+      String[] values = reader.next();
+
+      if (values != null)
+      {
+        row++;
+
+        if (values.length != columns.size())
+        {
+          throw new DatabaseException(
+            String.format(
+              "row %d of dataset %s has %d values, but %d columns are defined",
+              row, resource, values.length, columns.size()));
+        }
+      }
+
+      return values;
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getColumns()
+    {
+      return columns;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getTypes()
+    {
+      return new int[columns.size()];
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** column names */
+    private final List<String> columns;
+
+    /** csv reader */
+    private final CSVReader reader;
+
+    /** path to the file */
+    private final String resource;
+
+    /** number of read rows */
+    private int row;
+  }
+
+
+  /**
+   * Rows of a query result.
+   */
+  private static class ResultSetRows implements Rows
+  {
+
+    /**
+     * Executes the query.
+     *
+     *
+     * @param connection jdbc connection
+     * @param query sql query
+     * @param columns column labels in the order of the rows or {@code null}
+     *                to use the order of the query
+     *
+     * @throws SQLException
+     */
+    public ResultSetRows(Connection connection, String query,
+      List<String> columns)
+      throws SQLException
+    {
+      this.statement = connection.createStatement();
+      this.result = statement.executeQuery(query);
+
+      ResultSetMetaData metaData = result.getMetaData();
+      int count = metaData.getColumnCount();
+
+      this.columns = new ArrayList<String>(count);
+      this.indexes = new int[(columns != null)
+                             ? columns.size()
+                             : count];
+      this.types = new int[indexes.length];
+
+      for (int i = 0; i < indexes.length; i++)
+      {
+        indexes[i] = (columns != null)
+          ? index(metaData, columns.get(i), query)
+          : i + 1;
+        this.columns.add(metaData.getColumnLabel(indexes[i]));
+        types[i] = metaData.getColumnType(indexes[i]);
+      }
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws SQLException
+    {
+      try
+      {
+        result.close();
+      }
+      finally
+      {
+        statement.close();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] next() throws SQLException
+    {
+      String[] values = null;
+
+      if (result.next())
+      {
+        values = new String[indexes.length];
+
+        for (int i = 0; i < indexes.length; i++)
+        {
+          values[i] = result.getString(indexes[i]);
+        }
+      }
+
+      return values;
+    }
+
+    /**
+     * Returns the index of the column with the given label.
+     *
+     *
+     * @param metaData meta data of the result
+     * @param column column label
+     * @param query sql query
+     *
+     * @return index of the column
+     *
+     * @throws SQLException
+     */
+    private static int index(ResultSetMetaData metaData, String column,
+      String query)
+      throws SQLException
+    {
+      for (int i = 1; i <= metaData.getColumnCount(); i++)
+      {
+        if (column.equalsIgnoreCase(metaData.getColumnLabel(i)))
+        {
+          return i;
+        }
+      }
+
+      throw new DatabaseException(
+        String.format("query %s returns no column %s", query, column));
+    }
+
+    //~--- get methods --------------------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getColumns()
+    {
+      return columns;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getTypes()
+    {
+      return types;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** column labels */
+    private final List<String> columns;
+
+    /** column indexes in the order of the rows */
+    private final int[] indexes;
+
+    /** query result */
+    private final ResultSet result;
+
+    /** jdbc statement */
+    private final Statement statement;
+
+    /** jdbc types of the columns */
+    private final int[] types;
+  }
+
+
+  /**
+   * Collects the first mismatches and counts all mismatches.
+   */
+  private static class Diff
+  {
+
+    /**
+     * Constructs a new diff.
+     *
+     *
+     * @param columns column names
+     * @param keys indexes of the key columns or {@code null}
+     */
+    public Diff(List<String> columns, int[] keys)
+    {
+      this.columns = columns;
+      this.keys = keys;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Adds a missing or unexpected row.
+     *
+     *
+     * @param type type of the mismatch
+     * @param row row
+     */
+    public void add(String type, List<String> row)
+    {
+      if (++count <= maxMismatches)
+      {
+        lines.add(type.concat(row.toString()));
+      }
+    }
+
+    /**
+     * Adds a row with the same key, but different values.
+     *
+     *
+     * @param expected expected row
+     * @param actual actual row
+     */
+    public void changed(List<String> expected, List<String> actual)
+    {
+      if (++count <= maxMismatches)
+      {
+        StringBuilder line = new StringBuilder("changed    [");
+
+        for (int i = 0; i < keys.length; i++)
+        {
+          if (i > 0)
+          {
+            line.append(", ");
+          }
+
+          line.append(columns.get(keys[i])).append('=').append(
+            expected.get(keys[i]));
+        }
+
+        line.append(']');
+
+        for (int i = 0; i < expected.size(); i++)
+        {
+          if (!equals(expected.get(i), actual.get(i)))
+          {
+            line.append(' ').append(columns.get(i)).append(": expected <");
+            line.append(expected.get(i)).append("> but was <");
+            line.append(actual.get(i)).append('>');
+          }
+        }
+
+        lines.add(line.toString());
+      }
+    }
+
+    /**
+     * Formats the mismatches.
+     *
+     *
+     * @param actualName name of the actual side
+     * @param expectedName name of the expected side
+     *
+     * @return formatted mismatches
+     */
+    public String format(String actualName, String expectedName)
+    {
+      StringBuilder buffer = new StringBuilder();
+
+      buffer.append(actualName).append(" does not match ").append(
+        expectedName).append(", ").append(count).append(" mismatches in ");
+      buffer.append(rows).append(" expected rows");
+
+      if (count > lines.size())
+      {
+        buffer.append(" (first ").append(lines.size()).append(" shown)");
+      }
+
+      buffer.append(", columns ").append(columns).append(':');
+
+      for (String line : lines)
+      {
+        buffer.append("\n  ").append(line);
+      }
+
+      return buffer.toString();
+    }
+
+    /**
+     * Compares two values, which could be {@code null}.
+     *
+     *
+     * @param expected expected value
+     * @param actual actual value
+     *
+     * @return {@code true} if the values are equal
+     */
+    private static boolean equals(String expected, String actual)
+    {
+      return (expected == null)
+        ? actual == null
+        : expected.equals(actual);
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** column names */
+    private final List<String> columns;
+
+    /** number of mismatches */
+    private int count;
+
+    /** indexes of the key columns */
+    private final int[] keys;
+
+    /** formatted first mismatches */
+    private final List<String> lines = new ArrayList<String>();
+
+    /** number of expected rows */
+    private int rows;
+  }
+}
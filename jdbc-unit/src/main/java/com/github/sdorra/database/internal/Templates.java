@@ -0,0 +1,676 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+
+import java.net.URL;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Templates keep the result of sql scripts as snapshot. The scripts are only
+ * executed for the first test, every following test gets a fresh copy of the
+ * snapshot. A snapshot is stored for every prefix of the list of scripts, a
+ * test which uses the scripts [schema, data, scenario] restores the snapshot
+ * of [schema, data] and executes only the scenario script, if another test
+ * has already used the same schema and data scripts.
+ *
+ * The size of all snapshots is limited by the system property
+ * {@code database-unit.template.max-size} in megabytes (default 256). The
+ * least recently used snapshots are deleted, if the limit is exceeded. The
+ * templates are kept until the jvm is shutdown.
+ *
+ * If the {@link DiskCache} is enabled, the snapshots are stored on disk and
+ * are reused by other jvms with the same scripts, engine and options. These
+ * snapshots are not part of the size limit of the templates.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class Templates
+{
+
+  /** default maximum size of all snapshots in megabytes */
+  private static final long DEFAULT_MAX_SIZE = 256;
+
+  /** prefix for template directories */
+  private static final String PREFIX = "database-unit-template";
+
+  /** system property for the maximum size of all snapshots */
+  private static final String PROPERTY_MAX_SIZE =
+    "database-unit.template.max-size";
+
+
+  /** map of templates */
+  private static final ConcurrentMap<String, Template> templates =
+    new ConcurrentHashMap<String, Template>();
+
+  /** templates with snapshot in the order of their last usage */
+  private static final Map<String, Template> snapshots =
+    new LinkedHashMap<String, Template>(16, 0.75f, true);
+
+  /** number of databases which are started from a template */
+  private static final AtomicLong restoreCount = new AtomicLong();
+
+  /** setup time which was saved by the usage of templates */
+  private static final AtomicLong savedNanos = new AtomicLong();
+
+  /** number of snapshots which were evicted */
+  private static final AtomicLong evictionCount = new AtomicLong();
+
+  /** logger */
+  private static final Logger logger = LoggerFactory.getLogger(Templates.class);
+
+  /** maximum size of all snapshots in bytes */
+  private static volatile long maxSize = Long.getLong(PROPERTY_MAX_SIZE,
+                                           DEFAULT_MAX_SIZE) * 1024l * 1024l;
+
+  /** size of all snapshots in bytes, guarded by snapshots */
+  private static long size = 0;
+
+  static
+  {
+    Runtime.getRuntime().addShutdownHook(new Thread("database-unit-templates")
+    {
+      @Override
+      public void run()
+      {
+        report();
+        clear();
+      }
+    });
+  }
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private Templates() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Starts the database as copy of the template for the given sql scripts.
+   * The snapshot of the longest prefix of the scripts is restored and only
+   * the remaining scripts are executed. The result of every executed script
+   * is stored as new template.
+   *
+   *
+   * @param database database
+   * @param contextClass context object is used to obtain the class loader
+   * @param resources paths to the sql scripts
+   * @param encoding encoding of the scripts
+   * @param batchSize maximum number of statements per batch
+   */
+  public static void start(Database database, Object contextClass,
+    String[] resources, String encoding, int batchSize)
+  {
+    // snapshots are engine specific and contain the database properties
+    String[] keys = keys(contextClass, resources, encoding);
+    String suffix = "#".concat(database.getDriver()).concat("#").concat(
+                      database.getOptions().toString());
+
+    for (int i = 0; i < keys.length; i++)
+    {
+      keys[i] = keys[i].concat(suffix);
+    }
+
+    start(new Layers(contextClass, resources, keys, encoding, batchSize),
+      database, resources.length);
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of snapshots which were deleted, because the size
+   * limit was exceeded.
+   *
+   *
+   * @return number of evicted snapshots
+   */
+  public static long getEvictionCount()
+  {
+    return evictionCount.get();
+  }
+
+  /**
+   * Returns the number of databases which were started from a template.
+   *
+   *
+   * @return number of restored databases
+   */
+  public static long getRestoreCount()
+  {
+    return restoreCount.get();
+  }
+
+  /**
+   * Returns the setup time, which was saved by the usage of templates.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return saved setup time
+   */
+  public static long getSavedTime(TimeUnit unit)
+  {
+    return unit.convert(savedNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the size of all snapshots.
+   *
+   *
+   * @return size in bytes
+   */
+  public static long getSize()
+  {
+    synchronized (snapshots)
+    {
+      return size;
+    }
+  }
+
+  /**
+   * Returns the time which was needed to create the database of the
+   * template, including the time of its parent templates.
+   *
+   *
+   * @param key key of the template
+   *
+   * @return setup time in nanoseconds or 0 if the template does not exist
+   */
+  static long getSetupNanos(String key)
+  {
+    Template template = templates.get(key);
+
+    return (template != null)
+      ? template.setupNanos
+      : 0;
+  }
+
+  /**
+   * Returns the maximum size of all snapshots.
+   *
+   *
+   * @return maximum size in bytes
+   */
+  static long getMaxSize()
+  {
+    return maxSize;
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * Sets the maximum size of all snapshots.
+   *
+   *
+   * @param bytes maximum size in bytes
+   */
+  static void setMaxSize(long bytes)
+  {
+    maxSize = bytes;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Removes all templates and deletes their snapshots.
+   *
+   */
+  static void clear()
+  {
+    for (Template template : templates.values())
+    {
+      template.lock.writeLock().lock();
+
+      try
+      {
+
+        // snapshots of the disk cache are kept for other jvms
+        if ((template.directory != null) &&!template.persistent)
+        {
+          Directories.delete(template.directory);
+        }
+
+        template.directory = null;
+      }
+      finally
+      {
+        template.lock.writeLock().unlock();
+      }
+    }
+
+    synchronized (snapshots)
+    {
+      snapshots.clear();
+      size = 0;
+    }
+
+    templates.clear();
+  }
+
+  /**
+   * Creates the keys for every prefix of the sql scripts.
+   *
+   *
+   * @param contextClass context object is used to obtain the class loader
+   * @param resources paths to the sql scripts
+   * @param encoding encoding of the scripts
+   *
+   * @return template keys, the key at index i covers the first i+1 scripts
+   */
+  static String[] keys(Object contextClass, String[] resources,
+    String encoding)
+  {
+    String[] keys = new String[resources.length];
+    StringBuilder key = new StringBuilder();
+
+    for (int i = 0; i < resources.length; i++)
+    {
+      URL url = Databases.getResource(contextClass, resources[i]);
+
+      if (i > 0)
+      {
+        key.append('|');
+      }
+
+      key.append(url.toExternalForm());
+      keys[i] = key.toString().concat("#").concat(encoding);
+    }
+
+    return keys;
+  }
+
+  /**
+   * Starts the database, executes the script of the layer and stores the
+   * result as snapshot. The method is called with the monitor of the
+   * template.
+   *
+   *
+   * @param layers scripts and keys
+   * @param template template of the layer
+   * @param database database
+   * @param layer number of scripts of the template
+   */
+  private static void create(Layers layers, Template template,
+    Database database, int layer)
+  {
+    long parentNanos;
+    long start = System.nanoTime();
+
+    start(layers, database, layer - 1);
+
+    // the parent template is created by the start call, if it was missing
+    if (layer > 1)
+    {
+      parentNanos = template(layers.keys[layer - 2]).setupNanos;
+    }
+    else
+    {
+      parentNanos = System.nanoTime() - start;
+    }
+
+    start = System.nanoTime();
+    database.execute(layers.contextClass, layers.resources[layer - 1],
+      layers.encoding, layers.batchSize);
+    template.setupNanos = parentNanos + (System.nanoTime() - start);
+
+    logger.debug("created template for {} in {} ms",
+      layers.resources[layer - 1],
+      TimeUnit.NANOSECONDS.toMillis(template.setupNanos));
+
+    if (DiskCache.isEnabled())
+    {
+      template.directory = DiskCache.store(DiskCache.key(database,
+        layers.contextClass, layers.resources, layer, layers.encoding), database,
+          template.setupNanos);
+      template.persistent = true;
+
+      return;
+    }
+
+    File directory = Directories.createTemporary(PREFIX);
+
+    database.snapshot(directory);
+    template.size = Directories.size(directory);
+    template.directory = directory;
+
+    synchronized (snapshots)
+    {
+      snapshots.put(layers.keys[layer - 1], template);
+      size += template.size;
+      evict(template);
+    }
+  }
+
+  /**
+   * Deletes the least recently used snapshots until the size of all snapshots
+   * is below the limit. Snapshots which are currently restored are skipped.
+   * The method is called with the monitor of the snapshots.
+   *
+   *
+   * @param current template which was just created and must not be evicted
+   */
+  private static void evict(Template current)
+  {
+    Iterator<Template> it = snapshots.values().iterator();
+
+    while ((size > maxSize) && it.hasNext())
+    {
+      Template template = it.next();
+
+      if ((template != current) && template.lock.writeLock().tryLock())
+      {
+        try
+        {
+          Directories.delete(template.directory);
+          template.directory = null;
+          size -= template.size;
+          it.remove();
+          evictionCount.incrementAndGet();
+        }
+        finally
+        {
+          template.lock.writeLock().unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Uses the snapshot of the disk cache for the template, if the cache
+   * contains an entry for the layer. The method is called with the monitor of
+   * the template.
+   *
+   *
+   * @param layers scripts and keys
+   * @param template template of the layer
+   * @param database database
+   * @param layer number of scripts of the template
+   *
+   * @return {@code true} if the snapshot was found in the disk cache
+   */
+  private static boolean load(Layers layers, Template template,
+    Database database, int layer)
+  {
+    if (!DiskCache.isEnabled())
+    {
+      return false;
+    }
+
+    File directory = DiskCache.get(DiskCache.key(database, layers.contextClass,
+                       layers.resources, layer, layers.encoding));
+
+    if (directory == null)
+    {
+      return false;
+    }
+
+    template.setupNanos = DiskCache.getSetupNanos(directory);
+    template.persistent = true;
+    template.directory = directory;
+
+    return true;
+  }
+
+  /**
+   * Logs the setup time, which was saved by the usage of templates.
+   *
+   */
+  private static void report()
+  {
+    long count = restoreCount.get();
+
+    if (count > 0)
+    {
+      logger.info("{} databases were started from {} templates, "
+        + "which saved {} ms of setup time, {} snapshots were evicted, "
+        + "{} snapshots were loaded from and {} stored in the disk cache",
+        new Object[] { count,
+        templates.size(), getSavedTime(TimeUnit.MILLISECONDS),
+        evictionCount.get(), DiskCache.getHitCount(),
+        DiskCache.getStoreCount() });
+    }
+  }
+
+  /**
+   * Starts the database from the snapshot of the template.
+   *
+   *
+   * @param key template key
+   * @param template template
+   * @param database database
+   *
+   * @return {@code false} if the template has no snapshot
+   */
+  private static boolean restore(String key, Template template,
+    Database database)
+  {
+    template.lock.readLock().lock();
+
+    try
+    {
+      File directory = template.directory;
+
+      if (directory == null)
+      {
+        return false;
+      }
+
+      synchronized (snapshots)
+      {
+        // mark as recently used
+        snapshots.get(key);
+      }
+
+      long start = System.nanoTime();
+
+      try
+      {
+        database.start(directory);
+      }
+      catch (DatabaseException ex)
+      {
+
+        // the entry of the disk cache could be trimmed by another jvm
+        if (template.persistent &&!directory.exists())
+        {
+          logger.debug("snapshot {} was removed from disk cache", directory);
+          template.directory = null;
+
+          return false;
+        }
+
+        throw ex;
+      }
+
+      long restoreNanos = System.nanoTime() - start;
+
+      restoreCount.incrementAndGet();
+      savedNanos.addAndGet(template.setupNanos - restoreNanos);
+
+      return true;
+    }
+    finally
+    {
+      template.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Starts the database with the first scripts of the layers.
+   *
+   *
+   * @param layers scripts and keys
+   * @param database database
+   * @param layer number of scripts
+   */
+  private static void start(Layers layers, Database database, int layer)
+  {
+    if (layer == 0)
+    {
+      database.start();
+    }
+    else
+    {
+      String key = layers.keys[layer - 1];
+      Template template = template(key);
+
+      while (!restore(key, template, database))
+      {
+        synchronized (template)
+        {
+          if ((template.directory == null)
+            &&!load(layers, template, database, layer))
+          {
+            create(layers, template, database, layer);
+
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the template for the key.
+   *
+   *
+   * @param key template key
+   *
+   * @return template
+   */
+  private static Template template(String key)
+  {
+    Template template = templates.get(key);
+
+    if (template == null)
+    {
+      Template created = new Template();
+
+      template = templates.putIfAbsent(key, created);
+
+      if (template == null)
+      {
+        template = created;
+      }
+    }
+
+    return template;
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Scripts and template keys of a start.
+   */
+  private static class Layers
+  {
+
+    /**
+     * Constructs ...
+     *
+     *
+     * @param contextClass context object is used to obtain the class loader
+     * @param resources paths to the sql scripts
+     * @param keys template keys for every prefix of the scripts
+     * @param encoding encoding of the scripts
+     * @param batchSize maximum number of statements per batch
+     */
+    private Layers(Object contextClass, String[] resources, String[] keys,
+      String encoding, int batchSize)
+    {
+      this.contextClass = contextClass;
+      this.resources = resources;
+      this.keys = keys;
+      this.encoding = encoding;
+      this.batchSize = batchSize;
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** maximum number of statements per batch */
+    private final int batchSize;
+
+    /** context object is used to obtain the class loader */
+    private final Object contextClass;
+
+    /** encoding of the scripts */
+    private final String encoding;
+
+    /** template keys for every prefix of the scripts */
+    private final String[] keys;
+
+    /** paths to the sql scripts */
+    private final String[] resources;
+  }
+
+
+  /**
+   * Snapshot of executed sql scripts.
+   */
+  private static class Template
+  {
+
+    /** guards the snapshot against eviction during a restore */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** directory of the snapshot */
+    private volatile File directory;
+
+    /** snapshot is part of the disk cache and must not be deleted */
+    private volatile boolean persistent;
+
+    /** time which was needed to create the database and run the scripts */
+    private volatile long setupNanos;
+
+    /** size of the snapshot in bytes */
+    private volatile long size;
+  }
+}
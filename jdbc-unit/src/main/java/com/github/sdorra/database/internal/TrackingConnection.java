@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Wraps a jdbc connection and reports the sql of every statement, which is
+ * executed or prepared with the connection, to the
+ * {@link ChangeTrackingResetStrategy}. Statements which are created by the
+ * connection are wrapped too.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class TrackingConnection implements InvocationHandler
+{
+
+  /**
+   * Constructs a new tracking connection.
+   *
+   *
+   * @param connection jdbc connection
+   * @param strategy strategy which receives the sql
+   */
+  public TrackingConnection(Connection connection,
+    ChangeTrackingResetStrategy strategy)
+  {
+    this.connection = connection;
+    this.strategy = strategy;
+    this.proxy = (Connection) Proxy.newProxyInstance(
+      TrackingConnection.class.getClassLoader(),
+      new Class<?>[] { Connection.class }, this);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args)
+    throws Throwable
+  {
+    String name = method.getName();
+
+    if ((args != null) && (args.length > 0) && (args[0] instanceof String)
+      && ("prepareStatement".equals(name) || "prepareCall".equals(name)))
+    {
+
+      // prepared statements are tracked, even if they are never executed
+      strategy.track((String) args[0]);
+    }
+
+    if (isUpdatable(name, args))
+    {
+
+      // rows can be changed with the result set of any query
+      strategy.trackAll("updatable result set");
+    }
+
+    Object result = delegate(connection, method, args);
+
+    if (result instanceof Statement)
+    {
+      result = wrap((Statement) result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Invokes the method on the target and unwraps invocation exceptions.
+   *
+   *
+   * @param target target object
+   * @param method method
+   * @param args arguments of the method
+   *
+   * @return result of the method
+   *
+   * @throws Throwable
+   */
+  private static Object delegate(Object target, Method method,
+    Object[] args)
+    throws Throwable
+  {
+    try
+    {
+      return method.invoke(target, args);
+    }
+    catch (InvocationTargetException ex)
+    {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * Returns {@code true} if the method creates a statement with updatable
+   * result sets.
+   *
+   *
+   * @param name name of the connection method
+   * @param args arguments of the method
+   *
+   * @return {@code true} for updatable result sets
+   */
+  private static boolean isUpdatable(String name, Object[] args)
+  {
+    int index = -1;
+
+    if ("createStatement".equals(name))
+    {
+      index = 1;
+    }
+    else if ("prepareStatement".equals(name) || "prepareCall".equals(name))
+    {
+      index = 2;
+    }
+
+    // the concurrency follows the result set type
+    return (index > 0) && (args != null) && (args.length > index)
+      && (args[index - 1] instanceof Integer)
+      && Integer.valueOf(ResultSet.CONCUR_UPDATABLE).equals(args[index]);
+  }
+
+  /**
+   * Wraps the statement, to track the sql of execute and addBatch calls.
+   *
+   *
+   * @param statement jdbc statement
+   *
+   * @return wrapped statement
+   */
+  private Statement wrap(final Statement statement)
+  {
+    Class<?> type = Statement.class;
+
+    if (statement instanceof CallableStatement)
+    {
+      type = CallableStatement.class;
+    }
+    else if (statement instanceof PreparedStatement)
+    {
+      type = PreparedStatement.class;
+    }
+
+    return (Statement) Proxy.newProxyInstance(
+      TrackingConnection.class.getClassLoader(), new Class<?>[] { type },
+      new InvocationHandler()
+    {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable
+      {
+        String name = method.getName();
+
+        if ("getConnection".equals(name))
+        {
+          return TrackingConnection.this.proxy;
+        }
+
+        if ((args != null) && (args.length > 0)
+          && (args[0] instanceof String)
+          && (name.startsWith("execute") || "addBatch".equals(name)))
+        {
+          strategy.track((String) args[0]);
+        }
+
+        return delegate(statement, method, args);
+      }
+    });
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the wrapped connection.
+   *
+   *
+   * @return wrapped connection
+   */
+  public Connection getConnection()
+  {
+    return proxy;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** jdbc connection */
+  private final Connection connection;
+
+  /** wrapped connection */
+  private final Connection proxy;
+
+  /** strategy which receives the sql */
+  private final ChangeTrackingResetStrategy strategy;
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.ResetStrategy;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.Connection;
+
+/**
+ * Reset strategy which runs all connections of a test in one transaction. The
+ * first wrapped connection is turned into a {@link TransactionalConnection},
+ * every further connection is closed and replaced by the same transaction.
+ * Therefore all connections of a test see the changes of each other and can
+ * not block each other. The transaction is rolled back on reset.
+ *
+ * @author Sebastian Sdorra
+ */
+public class TransactionResetStrategy implements ResetStrategy
+{
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void prepare(Database database)
+  {
+
+    // do nothing
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void release(Database database)
+  {
+    reset(database);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset(Database database)
+  {
+    TransactionalConnection current;
+
+    synchronized (this)
+    {
+      current = transaction;
+      transaction = null;
+    }
+
+    if (current != null)
+    {
+      current.rollback();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Connection wrap(Connection connection)
+  {
+    Connection shared;
+
+    synchronized (this)
+    {
+      if (transaction == null)
+      {
+        transaction = new TransactionalConnection(connection);
+
+        return transaction.getConnection();
+      }
+
+      shared = transaction.getConnection();
+    }
+
+    // a second physical connection would run in its own transaction
+    Closeables.close(connection);
+
+    return shared;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** transaction of the current test */
+  private TransactionalConnection transaction;
+}
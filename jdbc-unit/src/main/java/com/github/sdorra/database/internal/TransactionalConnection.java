@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.DatabaseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * Wraps a jdbc connection, so that all changes can be rolled back after the
+ * test. Auto commit is always disabled, commits are turned into savepoints and
+ * rollbacks return to the last savepoint. Closing the wrapped connection has
+ * no effect, the connection is closed by {@link #rollback()}.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class TransactionalConnection implements InvocationHandler
+{
+
+  /** logger */
+  private static final Logger logger =
+    LoggerFactory.getLogger(TransactionalConnection.class);
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new transactional connection.
+   *
+   *
+   * @param connection jdbc connection
+   */
+  public TransactionalConnection(Connection connection)
+  {
+    this.connection = connection;
+
+    try
+    {
+      connection.setAutoCommit(false);
+    }
+    catch (SQLException ex)
+    {
+      Closeables.close(connection);
+
+      throw new DatabaseException("could not disable auto commit", ex);
+    }
+
+    this.proxy = (Connection) Proxy.newProxyInstance(
+      TransactionalConnection.class.getClassLoader(),
+      new Class<?>[] { Connection.class }, this);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args)
+    throws Throwable
+  {
+    String name = method.getName();
+    Object result = null;
+
+    if ("commit".equals(name))
+    {
+      savepoint = connection.setSavepoint();
+    }
+    else if ("rollback".equals(name) && (args == null))
+    {
+      if (savepoint != null)
+      {
+        connection.rollback(savepoint);
+      }
+      else
+      {
+        connection.rollback();
+      }
+    }
+    else if ("setAutoCommit".equals(name) || "close".equals(name))
+    {
+
+      // auto commit stays disabled and the connection is closed by the rule
+    }
+    else if ("getAutoCommit".equals(name))
+    {
+      result = Boolean.FALSE;
+    }
+    else
+    {
+      try
+      {
+        result = method.invoke(connection, args);
+      }
+      catch (InvocationTargetException ex)
+      {
+        throw ex.getCause();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Rolls back all changes and closes the wrapped connection.
+   *
+   */
+  public void rollback()
+  {
+    try
+    {
+      connection.rollback();
+    }
+    catch (SQLException ex)
+    {
+      logger.warn("could not rollback transaction", ex);
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the wrapped connection.
+   *
+   *
+   * @return wrapped connection
+   */
+  public Connection getConnection()
+  {
+    return proxy;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** jdbc connection */
+  private final Connection connection;
+
+  /** wrapped connection */
+  private final Connection proxy;
+
+  /** last savepoint */
+  private Savepoint savepoint;
+}
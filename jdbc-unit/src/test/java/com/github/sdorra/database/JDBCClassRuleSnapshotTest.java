@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+@JDBC(sql = "/com/github/sdorra/database/test-001.sql")
+public class JDBCClassRuleSnapshotTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testModifyFirst() throws SQLException
+  {
+    insertAndCount("arthur");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testModifySecond() throws SQLException
+  {
+    insertAndCount("zaphod");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testShutdownOnSeedFailure() throws Throwable
+  {
+    JDBCClassRule rule = new JDBCClassRule();
+
+    try
+    {
+      rule.apply(new org.junit.runners.model.Statement()
+      {
+        @Override
+        public void evaluate()
+        {
+          fail("the test must not run");
+        }
+      }, Description.createSuiteDescription(BrokenDataset.class)).evaluate();
+      fail("the dataset should not be found");
+    }
+    catch (DatabaseException ex)
+    {
+
+      // expected
+    }
+
+    assertFalse(rule.getDatabase().isRunning());
+  }
+
+  /**
+   * Inserts a user and checks that the changes of other tests are reset.
+   *
+   *
+   * @param username name of the user
+   *
+   * @throws SQLException
+   */
+  private void insertAndCount(String username) throws SQLException
+  {
+    Statement statement = jdbc.getConnection().createStatement();
+
+    statement.executeUpdate("INSERT INTO users VALUES ( '" + username
+      + "', '" + username + "@hitchhiker.com' )");
+
+    ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users");
+
+    result.next();
+    assertEquals(2, result.getInt(1));
+    result.close();
+    statement.close();
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Test class with a missing dataset.
+   */
+  @JDBC(
+    sql = "/com/github/sdorra/database/test-001.sql",
+    datasets = @Dataset(
+      table = "users",
+      value = "/com/github/sdorra/database/missing.csv"
+    )
+  )
+  public static class BrokenDataset {}
+
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @ClassRule
+  public static JDBCClassRule jdbc =
+    new JDBCClassRule(ResetStrategies.snapshot());
+
+  /** Field description */
+  @Rule
+  public TestRule reset = jdbc.reset();
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+@JDBC(
+  sql = "/com/github/sdorra/database/test-dataset.sql",
+  datasets =
+  {
+    @Dataset(table = "users", value = "/com/github/sdorra/database/users.csv"),
+    @Dataset(
+      table = "planets",
+      value = "/com/github/sdorra/database/planets.tsv",
+      separator = '\t'
+    )
+  }
+)
+public class JDBCRuleAssertTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testMismatches() throws SQLException
+  {
+    Statement statement = jdbc.getConnection().createStatement();
+
+    statement.executeUpdate(
+      "UPDATE users SET mail = 'marvin@hitchhiker.com' WHERE username = 'marvin'");
+    statement.executeUpdate(
+      "INSERT INTO users VALUES ('zaphod', 'zaphod@hitchhiker.com')");
+    statement.executeUpdate("DELETE FROM users WHERE username = 'tricia'");
+    statement.close();
+
+    try
+    {
+      jdbc.assertTable("users", "users-expected.csv");
+      fail("table should not match");
+    }
+    catch (AssertionError error)
+    {
+      String message = error.getMessage();
+
+      assertTrue(message, message.contains("3 mismatches in 3 expected rows"));
+      assertTrue(message,
+        message.contains(
+          "changed    [USERNAME=marvin] MAIL: expected <null> but was "
+          + "<marvin@hitchhiker.com>"));
+      assertTrue(message,
+        message.contains("missing    [tricia, tricia@hitchhiker.com]"));
+      assertTrue(message,
+        message.contains("unexpected [zaphod, zaphod@hitchhiker.com]"));
+    }
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testQuery()
+  {
+    jdbc.assertQuery("SELECT mail, username FROM users", "users-expected.csv");
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testSqlDataset()
+  {
+    jdbc.assertTable("planets", "planets-expected.sql");
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testTable()
+  {
+    jdbc.assertTable("users", "users-expected.csv");
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public JDBCRule jdbc = new JDBCRule();
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+@JDBC(
+  sql = "/com/github/sdorra/database/test-dataset.sql",
+  datasets =
+  {
+    @Dataset(table = "users", value = "/com/github/sdorra/database/users.csv"),
+    @Dataset(
+      table = "planets",
+      value = "/com/github/sdorra/database/planets.tsv",
+      separator = '\t'
+    )
+  }
+)
+public class JDBCRuleDatasetTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testCsv() throws SQLException
+  {
+    Statement statement = jdbc.getConnection().createStatement();
+    ResultSet result = statement.executeQuery(
+                         "SELECT username, mail FROM users ORDER BY username");
+
+    assertTrue(result.next());
+    assertEquals("dent, arthur", result.getString(1));
+    assertEquals("arthur@hitchhiker.com", result.getString(2));
+    assertTrue(result.next());
+    assertEquals("marvin", result.getString(1));
+    assertNull(result.getString(2));
+    assertTrue(result.next());
+    assertEquals("tricia", result.getString(1));
+    assertFalse(result.next());
+    result.close();
+    statement.close();
+    assertEquals(2, statistics.getCount(LifecyclePhase.DATASET));
+    assertTrue(statistics.getThroughput(LifecyclePhase.DATASET) > 0);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  @JDBC(
+    sql = "/com/github/sdorra/database/test-dataset.sql",
+    isolation = Isolation.TRANSACTION,
+    datasets = @Dataset(
+      table = "planets",
+      value = "/com/github/sdorra/database/planets.tsv",
+      separator = '\t'
+    )
+  )
+  public void testTransaction() throws SQLException
+  {
+    checkPlanets();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testTsv() throws SQLException
+  {
+    checkPlanets();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  private void checkPlanets() throws SQLException
+  {
+    Statement statement = jdbc.getConnection().createStatement();
+    ResultSet result = statement.executeQuery(
+                         "SELECT name, diameter FROM planets ORDER BY name");
+
+    assertTrue(result.next());
+    assertEquals("earth", result.getString(1));
+    assertEquals(12742, result.getInt(2));
+    assertTrue(result.next());
+    assertEquals("magrathea", result.getString(1));
+    result.getInt(2);
+    assertTrue(result.wasNull());
+    assertFalse(result.next());
+    result.close();
+    statement.close();
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private final LifecycleStatistics statistics = new LifecycleStatistics();
+
+  /** Field description */
+  @Rule
+  public JDBCRule jdbc = new JDBCRule().addListener(statistics);
+}
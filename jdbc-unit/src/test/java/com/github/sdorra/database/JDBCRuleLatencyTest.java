@@ -0,0 +1,278 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.internal.Directories;
+import com.github.sdorra.database.internal.LatencyRecorder;
+
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JDBCRuleLatencyTest
+{
+
+  /** Field description */
+  private static final String SELECT =
+    "SELECT mail FROM users WHERE username = ?";
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   */
+  @JDBC(sql = "/com/github/sdorra/database/test-001.sql")
+  public void annotated() {}
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testDisabled() throws Throwable
+  {
+    JDBCRule rule = new JDBCRule().withStatementLatencies(false);
+
+    evaluate(rule);
+    assertTrue(rule.getStatementLatencies().isEmpty());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testLatencies() throws Throwable
+  {
+    JDBCRule rule = new JDBCRule().withStatementLatencies(true);
+
+    evaluate(rule);
+
+    List<StatementLatency> latencies = rule.getStatementLatencies();
+
+    assertEquals(2, latencies.size());
+
+    StatementLatency select = find(latencies, SELECT);
+
+    assertEquals(5, select.getExecute().getCount());
+    assertEquals(5, select.getFetch().getCount());
+    assertTrue(select.getExecute().getP50(TimeUnit.NANOSECONDS) > 0);
+    assertTrue(select.getExecute().getP50(TimeUnit.NANOSECONDS)
+      <= select.getExecute().getP99(TimeUnit.NANOSECONDS));
+    assertTrue(select.getExecute().getP99(TimeUnit.NANOSECONDS)
+      <= select.getExecute().getMax(TimeUnit.NANOSECONDS));
+
+    StatementLatency update = find(latencies,
+                                "UPDATE users SET mail = ? WHERE username = ?");
+
+    assertEquals(1, update.getExecute().getCount());
+    assertEquals(0, update.getFetch().getCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testReport() throws Throwable
+  {
+    File previous = LatencyRecorder.getDirectory();
+    File directory = Directories.createTemporary("database-unit-latency");
+
+    LatencyRecorder.setDirectory(directory);
+
+    try
+    {
+      evaluate(new JDBCRule().withStatementLatencies(true));
+
+      File report = new File(directory,
+                      getClass().getName().concat(".annotated.json"));
+
+      assertTrue(report.exists());
+
+      String json = read(report);
+
+      assertTrue(json, json.contains("\"test\": \"" + getClass().getName()
+        + ".annotated\""));
+      assertTrue(json, json.contains("\"sql\": \"" + SELECT + "\""));
+      assertTrue(json, json.contains("\"execute\": {\"count\": 5, \"p50\": "));
+    }
+    finally
+    {
+      LatencyRecorder.setDirectory(previous);
+      Directories.delete(directory);
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param rule
+   *
+   * @throws Throwable
+   */
+  private void evaluate(final JDBCRule rule) throws Throwable
+  {
+    Statement test = new Statement()
+    {
+      @Override
+      public void evaluate() throws Throwable
+      {
+        Connection connection = rule.getConnection();
+        PreparedStatement select = connection.prepareStatement(SELECT);
+
+        for (int i = 0; i < 5; i++)
+        {
+          select.setString(1, "tricia");
+
+          ResultSet result = select.executeQuery();
+
+          while (result.next())
+          {
+            result.getString(1);
+          }
+
+          result.close();
+        }
+
+        select.close();
+        update(rule.createConnection());
+      }
+    };
+
+    rule.apply(test, new FrameworkMethod(getClass().getMethod("annotated")),
+      this).evaluate();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param latencies
+   * @param sql
+   *
+   * @return
+   */
+  private StatementLatency find(List<StatementLatency> latencies, String sql)
+  {
+    StatementLatency result = null;
+
+    for (StatementLatency latency : latencies)
+    {
+      if (sql.equals(latency.getSql()))
+      {
+        result = latency;
+      }
+    }
+
+    assertTrue(sql + " not found in " + latencies, result != null);
+
+    return result;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param file
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private String read(File file) throws IOException
+  {
+    Scanner scanner = new Scanner(new FileInputStream(file), "UTF-8");
+
+    try
+    {
+      return scanner.useDelimiter("\\A").next();
+    }
+    finally
+    {
+      scanner.close();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param connection
+   *
+   * @throws SQLException
+   */
+  private void update(Connection connection) throws SQLException
+  {
+    try
+    {
+      PreparedStatement update = connection.prepareStatement(
+                                   "UPDATE users SET mail = ? WHERE username = ?");
+
+      update.setString(1, "trillian@hitchhiker.com");
+      update.setString(2, "tricia");
+      update.executeUpdate();
+      update.close();
+    }
+    finally
+    {
+      connection.close();
+    }
+  }
+}
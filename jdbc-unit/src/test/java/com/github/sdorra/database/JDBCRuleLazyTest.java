@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.internal.LazyStart;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JDBCRuleLazyTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @JDBC(sql = "/com/github/sdorra/database/test-001.sql")
+  public void annotated() {}
+
+  /**
+   * Method description
+   *
+   */
+  @JDBC(
+    sql = "/com/github/sdorra/database/test-001.sql",
+    isolation = Isolation.TRANSACTION
+  )
+  public void annotatedWithTransaction() {}
+
+  /**
+   * Method description
+   *
+   */
+  public void plain() {}
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testRuleDatabaseRestored() throws Throwable
+  {
+    final JDBCRule rule = new JDBCRule();
+    final Database[] databases = new Database[2];
+
+    rule.apply(new Statement()
+    {
+      @Override
+      public void evaluate()
+      {
+        databases[0] = rule.getDatabase();
+        rule.getConnection();
+      }
+    }, new FrameworkMethod(getClass().getMethod("annotated")), this)
+      .evaluate();
+    rule.apply(new Statement()
+    {
+      @Override
+      public void evaluate()
+      {
+        databases[1] = rule.getDatabase();
+      }
+    }, new FrameworkMethod(getClass().getMethod("plain")), this).evaluate();
+
+    // the database of the annotated test must not leak into the next test
+    assertNotSame(databases[0], databases[1]);
+    assertFalse(databases[0].isRunning());
+    assertFalse(databases[1].isRunning());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testSkipped() throws Throwable
+  {
+    assertSkipped("annotated");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testSkippedTransaction() throws Throwable
+  {
+    assertSkipped("annotatedWithTransaction");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  @JDBC(sql = "/com/github/sdorra/database/test-001.sql")
+  public void testStartedOnFirstUse() throws SQLException
+  {
+    assertEquals(0, statistics.getCount(LifecyclePhase.SCRIPT_EXECUTE));
+
+    ResultSet result = jdbc.getConnection().createStatement().executeQuery(
+                         "SELECT COUNT(*) FROM users");
+
+    result.next();
+    assertEquals(1, result.getInt(1));
+    assertEquals(1, statistics.getCount(LifecyclePhase.SCRIPT_EXECUTE));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param method
+   *
+   * @throws Throwable
+   */
+  private void assertSkipped(String method) throws Throwable
+  {
+    LifecycleStatistics stats = new LifecycleStatistics();
+    JDBCRule rule = new JDBCRule().addListener(stats);
+    long skipped = LazyStart.getSkipCount();
+    Statement test = new Statement()
+    {
+      @Override
+      public void evaluate() {}
+    };
+
+    rule.apply(test, new FrameworkMethod(getClass().getMethod(method)),
+      this).evaluate();
+    assertEquals(skipped + 1, LazyStart.getSkipCount());
+    assertEquals(1, stats.getCount(LifecyclePhase.SKIP));
+    assertEquals(0, stats.getCount(LifecyclePhase.ENGINE_BOOT)
+      + stats.getCount(LifecyclePhase.CREATE));
+    assertEquals(0, stats.getCount(LifecyclePhase.SCRIPT_EXECUTE));
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private final LifecycleStatistics statistics = new LifecycleStatistics();
+
+  /** Field description */
+  @Rule
+  public JDBCRule jdbc = new JDBCRule().addListener(statistics);
+}
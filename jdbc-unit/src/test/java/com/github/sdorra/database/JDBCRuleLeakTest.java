@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.internal.LeakDetector;
+
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.Connection;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JDBCRuleLeakTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @JDBC(sql = "/com/github/sdorra/database/test-001.sql")
+  public void annotated() {}
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testClosedConnection() throws Throwable
+  {
+    final JDBCRule rule = new JDBCRule();
+    long leaks = LeakDetector.getLeakCount();
+
+    evaluate(rule, new Statement()
+    {
+      @Override
+      public void evaluate() throws Throwable
+      {
+        rule.createConnection().close();
+      }
+    });
+    assertEquals(leaks, LeakDetector.getLeakCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testFail() throws Throwable
+  {
+    final JDBCRule rule = new JDBCRule().withLeakDetection(LeakDetection.FAIL);
+
+    try
+    {
+      evaluate(rule, new Statement()
+      {
+        @Override
+        public void evaluate()
+        {
+          rule.createConnection();
+        }
+      });
+      fail("leaked connection was not reported");
+    }
+    catch (AssertionError error)
+    {
+      assertTrue(error.getMessage().contains("Connection"));
+      assertNotNull(error.getCause());
+      assertTrue(error.getCause().getMessage().contains("was created here"));
+    }
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testInvalidDefaultMode()
+  {
+    String property = "database-unit.leak-detection";
+
+    System.setProperty(property, "ignore");
+
+    try
+    {
+      LeakDetector.getDefaultMode();
+      fail("invalid mode was accepted");
+    }
+    catch (DatabaseException ex)
+    {
+      assertTrue(ex.getMessage().contains(property));
+      assertTrue(ex.getMessage().contains("[CLOSE, WARN, FAIL]"));
+    }
+    finally
+    {
+      System.clearProperty(property);
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testReclaim() throws Throwable
+  {
+    final JDBCRule rule = new JDBCRule();
+    final Connection[] leaked = new Connection[1];
+    long leaks = LeakDetector.getLeakCount();
+
+    evaluate(rule, new Statement()
+    {
+      @Override
+      public void evaluate()
+      {
+        leaked[0] = rule.createConnection();
+      }
+    });
+    assertTrue(leaked[0].isClosed());
+    assertTrue(leaked[0].equals(leaked[0]));
+    leaked[0].close();
+    assertEquals(leaks + 1, LeakDetector.getLeakCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testRuleConnectionIsNotTracked() throws Throwable
+  {
+    final JDBCRule rule = new JDBCRule().withLeakDetection(LeakDetection.FAIL);
+    final Connection[] connection = new Connection[1];
+
+    evaluate(rule, new Statement()
+    {
+      @Override
+      public void evaluate()
+      {
+        connection[0] = rule.getConnection();
+      }
+    });
+    assertFalse(connection[0] == null);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param rule
+   * @param test
+   *
+   * @throws Throwable
+   */
+  private void evaluate(JDBCRule rule, Statement test) throws Throwable
+  {
+    rule.apply(test, new FrameworkMethod(getClass().getMethod("annotated")),
+      this).evaluate();
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.SQLException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JDBCRuleListenerTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  @JDBC(sql = "/com/github/sdorra/database/test-001.sql", batchSize = 10)
+  public void testBatchStatementEvents()
+  {
+    // the database is created on first use
+    jdbc.getDatabase();
+    assertEquals(2, statistics.getCount(LifecyclePhase.STATEMENT));
+    assertEquals(1, statistics.getCount(LifecyclePhase.SCRIPT_EXECUTE));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  @JDBC(sql = "/com/github/sdorra/database/test-002.sql")
+  public void testEvents() throws SQLException
+  {
+    jdbc.getDatabase();
+
+    int created = statistics.getCount(LifecyclePhase.ENGINE_BOOT)
+      + statistics.getCount(LifecyclePhase.CREATE);
+
+    assertEquals(1, created);
+    assertEquals(1, statistics.getCount(LifecyclePhase.SCRIPT_EXECUTE));
+    assertTrue(statistics.getCount(LifecyclePhase.STATEMENT) > 1);
+    assertEquals(0, statistics.getCount(LifecyclePhase.DROP));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testStatistics()
+  {
+    LifecycleStatistics stats = new LifecycleStatistics();
+
+    for (int i = 1; i <= 100; i++)
+    {
+      stats.onEvent(new LifecycleEvent(LifecyclePhase.STATEMENT, 0l,
+        TimeUnit.MILLISECONDS.toNanos(i), "select", 1));
+    }
+
+    assertEquals(100, stats.getCount(LifecyclePhase.STATEMENT));
+    assertEquals(5050,
+      stats.getTotal(LifecyclePhase.STATEMENT, TimeUnit.MILLISECONDS));
+
+    // the percentiles of the histogram are accurate to 1/16 of the value
+    assertEquals(50d,
+      stats.getP50(LifecyclePhase.STATEMENT, TimeUnit.MILLISECONDS), 50d / 16);
+    assertEquals(99d,
+      stats.getP99(LifecyclePhase.STATEMENT, TimeUnit.MILLISECONDS), 99d / 16);
+    assertEquals(100,
+      stats.getMax(LifecyclePhase.STATEMENT, TimeUnit.MILLISECONDS));
+    assertEquals(0, stats.getCount(LifecyclePhase.DROP));
+    assertEquals(0, stats.getMax(LifecyclePhase.DROP, TimeUnit.MILLISECONDS));
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private final LifecycleStatistics statistics = new LifecycleStatistics();
+
+  /** Field description */
+  @Rule
+  public JDBCRule jdbc = new JDBCRule().addListener(statistics);
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JDBCRuleMaxQueriesTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @MaxQueries(select = 1)
+  @JDBC(sql = "/com/github/sdorra/database/test-001.sql")
+  public void annotated() {}
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testExceeded() throws Throwable
+  {
+    final JDBCRule rule = new JDBCRule();
+    Statement test = new Statement()
+    {
+      @Override
+      public void evaluate() throws Throwable
+      {
+        findMail(rule.getConnection(), "tricia");
+
+        Connection connection = rule.createConnection();
+
+        try
+        {
+          findMail(connection, "dent");
+        }
+        finally
+        {
+          connection.close();
+        }
+      }
+    };
+
+    try
+    {
+      rule.apply(test, new FrameworkMethod(getClass().getMethod("annotated")),
+        this).evaluate();
+      fail("query budget was not verified");
+    }
+    catch (AssertionError error)
+    {
+      String msg = error.getMessage();
+
+      assertTrue(msg, msg.contains("select: 2 statements, at most 1"));
+      assertTrue(msg,
+        msg.contains("2x SELECT mail FROM users WHERE username = ?"));
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  @MaxQueries(select = 1, insert = 0)
+  @JDBC(sql = "/com/github/sdorra/database/test-001.sql")
+  public void testWithinBudget() throws SQLException
+  {
+    findMail(jdbc.getConnection(), "tricia");
+
+    // assertions are not counted
+    jdbc.assertQuery("SELECT username FROM users", "users-tricia.csv");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param connection
+   * @param username
+   *
+   * @throws SQLException
+   */
+  private void findMail(Connection connection, String username)
+    throws SQLException
+  {
+    PreparedStatement statement = connection.prepareStatement(
+                                    "SELECT mail FROM users WHERE username = ?");
+
+    statement.setString(1, username);
+
+    ResultSet result = statement.executeQuery();
+
+    result.close();
+    statement.close();
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public JDBCRule jdbc = new JDBCRule();
+}
@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.ParallelComputer;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JDBCRuleParallelTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testParallelMethods()
+  {
+    Result result = JUnitCore.runClasses(new ParallelComputer(true, true),
+                      ScriptCases.class, TemplateCases.class);
+
+    assertTrue(result.getFailures().toString(), result.wasSuccessful());
+    assertEquals(12, result.getRunCount());
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Test cases which are modifying the database.
+   */
+  public abstract static class Cases
+  {
+
+    /**
+     * Method description
+     *
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testFifth() throws SQLException
+    {
+      insertAndCount("trillian");
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testFirst() throws SQLException
+    {
+      insertAndCount("arthur");
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testFourth() throws SQLException
+    {
+      insertAndCount("marvin");
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testSecond() throws SQLException
+    {
+      insertAndCount("zaphod");
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testSixth() throws SQLException
+    {
+      insertAndCount("slartibartfast");
+    }
+
+    /**
+     * Method description
+     *
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testThird() throws SQLException
+    {
+      insertAndCount("ford");
+    }
+
+    /**
+     * Inserts a user and checks that no other test has modified the
+     * database.
+     *
+     *
+     * @param username name of the user
+     *
+     * @throws SQLException
+     */
+    private void insertAndCount(String username) throws SQLException
+    {
+      Statement statement = jdbc.getConnection().createStatement();
+
+      statement.executeUpdate("INSERT INTO users VALUES ( '" + username
+        + "', '" + username + "@hitchhiker.com' )");
+
+      ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users");
+
+      result.next();
+      assertEquals(2, result.getInt(1));
+      result.close();
+      statement.close();
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    @Rule
+    public JDBCRule jdbc = new JDBCRule();
+  }
+
+
+  /**
+   * Test cases which are executing the script for each test.
+   */
+  @JDBC(sql = "/com/github/sdorra/database/test-001.sql")
+  public static class ScriptCases extends Cases {}
+
+
+  /**
+   * Test cases which are using a template.
+   */
+  @JDBC(sql = "/com/github/sdorra/database/test-001.sql", template = true)
+  public static class TemplateCases extends Cases {}
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+@JDBC(
+  sql = "/com/github/sdorra/database/test-001.sql",
+  isolation = Isolation.TRANSACTION
+)
+public class JDBCRuleTransactionTest extends JDBCRuleTestBase
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testCommit() throws SQLException
+  {
+    Connection connection = jdbc.getConnection();
+
+    insert(connection, "arthur");
+    connection.commit();
+    assertEquals(2, count(connection));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testLoadSQL() throws SQLException
+  {
+    checkTest001();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testRollbackToCommit() throws SQLException
+  {
+    Connection connection = jdbc.getConnection();
+
+    assertFalse(connection.getAutoCommit());
+    insert(connection, "zaphod");
+    connection.commit();
+    insert(connection, "marvin");
+    connection.rollback();
+    assertEquals(2, count(connection));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testSecondConnection() throws SQLException
+  {
+    Connection connection = jdbc.createConnection();
+
+    connection.setAutoCommit(true);
+    insert(connection, "ford");
+    connection.close();
+    assertEquals(2, count(connection));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testSharedTransaction() throws SQLException
+  {
+    Connection second = jdbc.createConnection();
+
+    insert(second, "trillian");
+    assertEquals(2, count(jdbc.getConnection()));
+    insert(jdbc.getConnection(), "zaphod");
+    assertEquals(3, count(second));
+    second.close();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param connection
+   *
+   * @return
+   *
+   * @throws SQLException
+   */
+  private int count(Connection connection) throws SQLException
+  {
+    Statement statement = connection.createStatement();
+    ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users");
+
+    result.next();
+
+    int count = result.getInt(1);
+
+    result.close();
+    statement.close();
+
+    return count;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param connection
+   * @param username
+   *
+   * @throws SQLException
+   */
+  private void insert(Connection connection, String username)
+    throws SQLException
+  {
+    Statement statement = connection.createStatement();
+
+    statement.executeUpdate("INSERT INTO users VALUES ( '" + username
+      + "', '" + username + "@hitchhiker.com' )");
+    statement.close();
+  }
+}
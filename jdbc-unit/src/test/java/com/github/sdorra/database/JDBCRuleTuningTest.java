@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.apache.derby.iapi.services.monitor.Monitor;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.lang.reflect.Field;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+@JDBC(
+  sql = "/com/github/sdorra/database/test-001.sql",
+  tuning = @Tuning(lockWaitTimeout = 7)
+)
+public class JDBCRuleTuningTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  @JDBC(
+    sql = "/com/github/sdorra/database/test-001.sql",
+    tuning = @Tuning(fastest = true)
+  )
+  public void testFastest() throws Exception
+  {
+    assertTrue(jdbc.getDatabase().getOptions().isAsynchronousDrop());
+    assertEquals(1, countUsers());
+
+    // the settings of the running engine, not only the configured options
+    assertTrue(isDurabilityTest());
+    assertEquals(100, getPageCacheSize());
+    assertEquals(20, countCachedStatements());
+    assertEquals("5", getProperty("derby.locks.waitTimeout"));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testLockWaitTimeout() throws SQLException
+  {
+    assertEquals("7", getProperty("derby.locks.waitTimeout"));
+    assertEquals("7", getProperty("derby.locks.deadlockTimeout"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testRuleOptions() throws Exception
+  {
+    assertEquals(1, countUsers());
+
+    // the settings of the running engine, not only the configured options
+    assertFalse(isDurabilityTest());
+    assertEquals(200, getPageCacheSize());
+    assertEquals(100, countCachedStatements());
+    assertEquals("7", getProperty("derby.locks.waitTimeout"));
+  }
+
+  /**
+   * Prepares more distinct statements than the default statement cache can
+   * hold and counts the statements in the cache of the engine.
+   *
+   *
+   * @return number of cached statements
+   *
+   * @throws SQLException
+   */
+  private int countCachedStatements() throws SQLException
+  {
+    Connection connection = jdbc.getConnection();
+
+    for (int i = 0; i < 150; i++)
+    {
+      PreparedStatement statement = connection.prepareStatement("VALUES "
+                                      + i);
+
+      statement.executeQuery().close();
+      statement.close();
+    }
+
+    Statement statement = connection.createStatement();
+    ResultSet result = statement.executeQuery(
+                         "SELECT COUNT(*) FROM SYSCS_DIAG.STATEMENT_CACHE");
+
+    assertTrue(result.next());
+
+    int count = result.getInt(1);
+
+    result.close();
+    statement.close();
+
+    return count;
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private int countUsers()
+  {
+    try
+    {
+      Statement statement = jdbc.getConnection().createStatement();
+      ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users");
+
+      assertTrue(result.next());
+
+      int count = result.getInt(1);
+
+      result.close();
+      statement.close();
+
+      return count;
+    }
+    catch (SQLException ex)
+    {
+      throw new DatabaseException("could not count users", ex);
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns {@code true} if the log of the running database is not synced.
+   * Derby does not expose the static boot properties through sql, so the
+   * value is read from the log module of the engine.
+   *
+   *
+   * @return {@code true} for durability test
+   *
+   * @throws Exception
+   */
+  private boolean isDurabilityTest() throws Exception
+  {
+    return (Boolean) getField(getModule(
+      "org.apache.derby.iapi.store.raw.log.LogFactory"), "logNotSynced");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param object
+   * @param name
+   *
+   * @return
+   *
+   * @throws Exception
+   */
+  private Object getField(Object object, String name) throws Exception
+  {
+    for (Class<?> c = object.getClass(); c != null; c = c.getSuperclass())
+    {
+      try
+      {
+        Field field = c.getDeclaredField(name);
+
+        field.setAccessible(true);
+
+        return field.get(object);
+      }
+      catch (NoSuchFieldException ex)
+      {
+
+        // try the super class
+      }
+    }
+
+    throw new NoSuchFieldException(name);
+  }
+
+  /**
+   * Returns a module of the running database from the monitor of derby.
+   *
+   *
+   * @param factory factory interface of the module
+   *
+   * @return module
+   *
+   * @throws Exception
+   */
+  private Object getModule(String factory) throws Exception
+  {
+    String service = jdbc.getDatabase().getUrl().substring(
+                       "jdbc:derby:".length());
+    Object database = Monitor.findService("org.apache.derby.database.Database",
+                        service);
+
+    assertNotNull(database);
+
+    return Monitor.findServiceModule(database, factory);
+  }
+
+  /**
+   * Returns the maximum size of the page cache of the running database.
+   * Derby does not expose the static boot properties through sql, so the
+   * value is read from the data module of the engine.
+   *
+   *
+   * @return size of the page cache
+   *
+   * @throws Exception
+   */
+  private int getPageCacheSize() throws Exception
+  {
+    Object dataFactory =
+      getModule("org.apache.derby.iapi.store.raw.data.DataFactory");
+
+    return ((Number) getField(getField(dataFactory, "pageCache"), "maxSize"))
+      .intValue();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param name
+   *
+   * @return
+   *
+   * @throws SQLException
+   */
+  private String getProperty(String name) throws SQLException
+  {
+    Statement statement = jdbc.getConnection().createStatement();
+    ResultSet result = statement.executeQuery(
+                         "VALUES SYSCS_UTIL.SYSCS_GET_DATABASE_PROPERTY('"
+                         + name + "')");
+
+    assertTrue(result.next());
+
+    String value = result.getString(1);
+
+    result.close();
+    statement.close();
+
+    return value;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public JDBCRule jdbc = new JDBCRule().withOptions(
+                           DatabaseOptions.builder().pageCacheSize(200).build());
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class CSVReaderTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testBlankLines() throws IOException
+  {
+    CSVReader reader = reader("a,b\n\n\r\nc,d\n\n", ',');
+
+    assertArrayEquals(new String[] { "a", "b" }, reader.next());
+    assertArrayEquals(new String[] { "c", "d" }, reader.next());
+    assertNull(reader.next());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testNullValues() throws IOException
+  {
+    CSVReader reader = reader("a,,\"\",d", ',');
+
+    assertArrayEquals(new String[] { "a", null, "", "d" }, reader.next());
+    assertNull(reader.next());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testQuotedValues() throws IOException
+  {
+    CSVReader reader = reader("\"a,b\",\"say \"\"hello\"\"\",\"x\ny\"\r\nz",
+                         ',');
+
+    assertArrayEquals(new String[] { "a,b", "say \"hello\"", "x\ny" },
+      reader.next());
+    assertArrayEquals(new String[] { "z" }, reader.next());
+    assertNull(reader.next());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testTabSeparator() throws IOException
+  {
+    CSVReader reader = reader("a\tb,c\r\nd\te", '\t');
+
+    assertArrayEquals(new String[] { "a", "b,c" }, reader.next());
+    assertArrayEquals(new String[] { "d", "e" }, reader.next());
+    assertNull(reader.next());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param content
+   * @param separator
+   *
+   * @return
+   */
+  private CSVReader reader(String content, char separator)
+  {
+    return new CSVReader(new StringReader(content), separator);
+  }
+}
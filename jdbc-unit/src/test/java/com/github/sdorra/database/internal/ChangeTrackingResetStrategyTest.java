@@ -0,0 +1,332 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.StringReader;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class ChangeTrackingResetStrategyTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Before
+  public void setUp()
+  {
+    database = new DerbyDatabase(Databases.createName("change-tracking"));
+    database.start();
+
+    Connection connection = database.createConnection();
+
+    try
+    {
+      new SQLScriptRunner(connection, true).runScript(new StringReader(
+        "CREATE TABLE planets (id INT GENERATED BY DEFAULT AS IDENTITY, "
+        + "name VARCHAR(255), PRIMARY KEY (id));\n"
+        + "CREATE TABLE moons (name VARCHAR(255), planet INT, "
+        + "FOREIGN KEY (planet) REFERENCES planets (id));\n"
+        + "CREATE TABLE ships (name VARCHAR(255));\n"
+        + "CREATE TABLE crew (id INT GENERATED ALWAYS AS IDENTITY, "
+        + "name VARCHAR(255));\n"
+        + "INSERT INTO planets (name) VALUES ('earth');\n"
+        + "INSERT INTO planets (name) VALUES ('magrathea');\n"
+        + "INSERT INTO moons VALUES ('moon', 1);\n"
+        + "INSERT INTO ships VALUES ('heart of gold');\n"
+        + "INSERT INTO crew (name) VALUES ('arthur');\n"
+        + "INSERT INTO crew (name) VALUES ('ford');\n"));
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
+
+    strategy = new ChangeTrackingResetStrategy();
+    strategy.prepare(database);
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void tearDown()
+  {
+    strategy.release(database);
+    database.shutdown();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testResetReferencingTables() throws SQLException
+  {
+    Connection connection = strategy.wrap(database.createConnection());
+    PreparedStatement statement = connection.prepareStatement(
+                                    "INSERT INTO planets (name) VALUES (?)");
+
+    statement.setString(1, "vogsphere");
+    statement.executeUpdate();
+    statement.close();
+    connection.close();
+
+    strategy.reset(database);
+    assertEquals(Arrays.asList("PLANETS", "MOONS"), strategy.getLastReset());
+    assertEquals(2, count("planets"));
+    assertEquals(1, count("moons"));
+
+    // the identity restarts after the seed
+    connection = database.createConnection();
+
+    Statement insert = connection.createStatement();
+
+    insert.executeUpdate("INSERT INTO planets (name) VALUES ('vogsphere')");
+
+    ResultSet result = insert.executeQuery("SELECT MAX(id) FROM planets");
+
+    assertTrue(result.next());
+    assertEquals(3, result.getInt(1));
+    result.close();
+    insert.close();
+    connection.close();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testResetAllOnDdl() throws SQLException
+  {
+    execute("CREATE INDEX ship_name ON ships (name)");
+    strategy.reset(database);
+    assertEquals(4, strategy.getLastReset().size());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testResetGeneratedAlways() throws SQLException
+  {
+    execute("DELETE FROM crew WHERE name = 'arthur'");
+    execute("INSERT INTO crew (name) VALUES ('zaphod')");
+    execute("INSERT INTO ships VALUES ('vogon constructor fleet')");
+    strategy.reset(database);
+    assertEquals(4, strategy.getLastReset().size());
+    assertEquals(2, count("crew"));
+    assertEquals(1, count("ships"));
+
+    Connection connection = database.createConnection();
+
+    try
+    {
+      Statement statement = connection.createStatement();
+      ResultSet result = statement.executeQuery(
+                           "SELECT id FROM crew WHERE name = 'arthur'");
+
+      assertTrue(result.next());
+      assertEquals(1, result.getInt(1));
+      result.close();
+
+      // the identity continues after the seed
+      statement.executeUpdate("INSERT INTO crew (name) VALUES ('zaphod')");
+      result = statement.executeQuery("SELECT MAX(id) FROM crew");
+      assertTrue(result.next());
+      assertEquals(3, result.getInt(1));
+      result.close();
+      statement.close();
+    }
+    finally
+    {
+      connection.close();
+    }
+
+    // tables without generated identity are still reset alone
+    execute("DELETE FROM ships");
+    strategy.reset(database);
+    assertEquals(Arrays.asList("SHIPS"), strategy.getLastReset());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testResetAllOnUpdatableResultSet() throws SQLException
+  {
+    Connection connection = strategy.wrap(database.createConnection());
+
+    try
+    {
+      Statement statement =
+        connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+          ResultSet.CONCUR_UPDATABLE);
+      ResultSet result =
+        statement.executeQuery("SELECT name FROM ships FOR UPDATE");
+
+      assertTrue(result.next());
+      result.deleteRow();
+      result.close();
+      statement.close();
+    }
+    finally
+    {
+      connection.close();
+    }
+
+    assertEquals(0, count("ships"));
+    strategy.reset(database);
+    assertEquals(4, strategy.getLastReset().size());
+    assertEquals(1, count("ships"));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testResetTouchedTable() throws SQLException
+  {
+    execute("/* cleanup */ DELETE FROM \"APP\".ships");
+    assertEquals(0, count("ships"));
+    strategy.reset(database);
+    assertEquals(Arrays.asList("SHIPS"), strategy.getLastReset());
+    assertEquals(1, count("ships"));
+
+    // nothing was changed since the last reset
+    execute("SELECT * FROM planets");
+    strategy.reset(database);
+    assertTrue(strategy.getLastReset().isEmpty());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param table
+   *
+   * @return
+   *
+   * @throws SQLException
+   */
+  private int count(String table) throws SQLException
+  {
+    Connection connection = database.createConnection();
+
+    try
+    {
+      Statement statement = connection.createStatement();
+      ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM "
+                           + table);
+
+      assertTrue(result.next());
+
+      int count = result.getInt(1);
+
+      result.close();
+      statement.close();
+
+      return count;
+    }
+    finally
+    {
+      connection.close();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param sql
+   *
+   * @throws SQLException
+   */
+  private void execute(String sql) throws SQLException
+  {
+    Connection connection = strategy.wrap(database.createConnection());
+
+    try
+    {
+      Statement statement = connection.createStatement();
+
+      statement.execute(sql);
+      statement.close();
+    }
+    finally
+    {
+      connection.close();
+    }
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private Database database;
+
+  /** Field description */
+  private ChangeTrackingResetStrategy strategy;
+}
@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class ConnectionPoolTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Before
+  public void setUp()
+  {
+    database = new DerbyDatabase("jdbc-unit-pool");
+    database.start();
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void tearDown()
+  {
+    database.shutdown();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testClear() throws SQLException
+  {
+    ConnectionPool pool = pool(2, 60000l);
+    Connection connection = pool.getConnection();
+
+    pool.getConnection().close();
+    assertEquals(1, pool.getIdleCount());
+    pool.clear();
+    assertEquals(0, pool.getIdleCount());
+
+    // connections of an old generation are not returned to the pool
+    connection.close();
+    assertEquals(0, pool.getIdleCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testChangedSettings() throws SQLException
+  {
+    ConnectionPool pool = pool(2, 60000l);
+    Connection connection = pool.getConnection();
+
+    connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+    connection.close();
+    connection = pool.getConnection();
+
+    // connections with changed settings are not reused
+    assertEquals(2, pool.getCreateCount());
+    assertEquals(Connection.TRANSACTION_READ_COMMITTED,
+      connection.getTransactionIsolation());
+    connection.setReadOnly(true);
+    connection.close();
+    connection = pool.getConnection();
+    assertEquals(3, pool.getCreateCount());
+    assertFalse(connection.isReadOnly());
+    connection.close();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test(expected = SQLException.class)
+  public void testClosedConnection() throws SQLException
+  {
+    Connection connection = pool(2, 60000l).getConnection();
+
+    connection.close();
+    assertTrue(connection.isClosed());
+    connection.createStatement();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testIdleTimeout() throws SQLException
+  {
+    ConnectionPool pool = pool(2, 0l);
+
+    pool.getConnection().close();
+    pool.getConnection().close();
+    assertEquals(2, pool.getCreateCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testMaxIdle() throws SQLException
+  {
+    ConnectionPool pool = pool(1, 60000l);
+    Connection c1 = pool.getConnection();
+    Connection c2 = pool.getConnection();
+
+    c1.close();
+    c2.close();
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testObjectMethods() throws SQLException
+  {
+    Connection connection = pool(2, 60000l).getConnection();
+
+    assertTrue(connection.equals(connection));
+    connection.close();
+
+    // object methods do not fail on a closed connection
+    assertTrue(connection.equals(connection));
+    assertEquals(System.identityHashCode(connection), connection.hashCode());
+    assertNotNull(connection.toString());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testOpenStatements() throws SQLException
+  {
+    ConnectionPool pool = pool(2, 60000l);
+    Connection connection = pool.getConnection();
+    Statement statement = connection.createStatement();
+
+    connection.close();
+
+    // open statements are closed, before the connection is reused
+    assertTrue(statement.isClosed());
+    pool.getConnection().close();
+    assertEquals(1, pool.getCreateCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testReuse() throws SQLException
+  {
+    ConnectionPool pool = pool(2, 60000l);
+    Connection connection = pool.getConnection();
+
+    connection.setAutoCommit(false);
+    connection.close();
+
+    connection = pool.getConnection();
+
+    // the state of the connection is reset, before it is returned
+    assertTrue(connection.getAutoCommit());
+    assertFalse(connection.isClosed());
+    connection.close();
+
+    assertEquals(1, pool.getCreateCount());
+    assertEquals(2, pool.getAcquireCount());
+    assertTrue(pool.getMaxAcquireTime(TimeUnit.NANOSECONDS) > 0);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param maxIdle
+   * @param idleTimeout
+   *
+   * @return
+   */
+  private ConnectionPool pool(int maxIdle, long idleTimeout)
+  {
+    return new ConnectionPool(database.getDriver(), database.getUrl(), maxIdle,
+      true, idleTimeout);
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private DerbyDatabase database;
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseException;
+import com.github.sdorra.database.DatabaseOptions;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class DatabaseEnginesTest
+{
+
+  /** Field description */
+  private static final String SCRIPT =
+    "/com/github/sdorra/database/test-001.sql";
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testDerbySnapshot() throws SQLException
+  {
+    snapshotAndRestore("derby");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testDerbyNetworkSnapshot() throws SQLException
+  {
+    snapshotAndRestore("derby-network");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testH2Snapshot() throws SQLException
+  {
+    snapshotAndRestore("h2");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testHSQLDBSnapshot() throws SQLException
+  {
+    snapshotAndRestore("hsqldb");
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test(expected = DatabaseException.class)
+  public void testUnknownEngine()
+  {
+    DatabaseEngines.get("unknown");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param database
+   *
+   * @return
+   *
+   * @throws SQLException
+   */
+  private int count(Database database) throws SQLException
+  {
+    Connection connection = database.createConnection();
+
+    try
+    {
+      Statement statement = connection.createStatement();
+      ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users");
+
+      result.next();
+
+      return result.getInt(1);
+    }
+    finally
+    {
+      connection.close();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param engine
+   *
+   * @throws SQLException
+   */
+  private void snapshotAndRestore(String engine) throws SQLException
+  {
+    Database source = Databases.create(engine, "jdbc-unit-engine",
+                      DatabaseOptions.DEFAULT);
+    File directory = Directories.createTemporary("jdbc-unit-engine");
+
+    try
+    {
+      source.start();
+      source.execute(this, SCRIPT, "UTF-8");
+      source.snapshot(directory);
+      source.shutdown();
+
+      Database copy = Databases.create(engine, "jdbc-unit-engine",
+                      DatabaseOptions.DEFAULT);
+
+      copy.start(directory);
+
+      try
+      {
+        assertEquals(1, count(copy));
+      }
+      finally
+      {
+        copy.shutdown();
+      }
+    }
+    finally
+    {
+      Directories.delete(directory);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class DerbyNetworkServerTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testClientVersion()
+  {
+    assertTrue(DerbyNetworkServer.clientVersion().matches("\\d+(\\.\\d+)+"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testServerVersion()
+  {
+    assertEquals("10.7.1.1",
+      DerbyNetworkServer.serverVersion(
+        "--------- Derby Network Server Information --------\n"
+        + "Version: CSS10070/10.7.1.1 - (1040133)  Build: 1040133  "
+        + "DRDA Product Id: CSS10070\n"));
+    assertEquals("unknown", DerbyNetworkServer.serverVersion(""));
+  }
+}
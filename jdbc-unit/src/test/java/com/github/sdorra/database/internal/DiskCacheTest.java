@@ -0,0 +1,252 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseOptions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class DiskCacheTest
+{
+
+  /** Field description */
+  private static final String[] SCRIPTS = {
+    "/com/github/sdorra/database/test-001.sql",
+    "/com/github/sdorra/database/test-003.sql" };
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   */
+  @Before
+  public void setUp()
+  {
+    previous = DiskCache.getDirectory();
+    directory = Directories.createTemporary("database-unit-disk-cache");
+    DiskCache.setDirectory(directory);
+    Templates.clear();
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void tearDown()
+  {
+    Templates.clear();
+    DiskCache.setDirectory(previous);
+    Directories.delete(directory);
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testKey()
+  {
+    Database database = Databases.create("derby", "disk-cache-test",
+                          DatabaseOptions.DEFAULT);
+    Database fastest = Databases.create("derby", "disk-cache-test",
+                         DatabaseOptions.FASTEST);
+    String key = DiskCache.key(database, this, SCRIPTS, 2, "UTF-8");
+
+    assertEquals(key, DiskCache.key(database, this, SCRIPTS, 2, "UTF-8"));
+    assertFalse(key.equals(DiskCache.key(database, this, SCRIPTS, 1,
+      "UTF-8")));
+    assertFalse(key.equals(DiskCache.key(fastest, this, SCRIPTS, 2,
+      "UTF-8")));
+    assertFalse(key.equals(DiskCache.key(database, this, SCRIPTS, 2,
+      "ISO-8859-1")));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testRemovedEntry() throws SQLException
+  {
+    assertUsers(start(), 2);
+
+    // simulates the trim of another jvm
+    DiskCache.trim(0, 0);
+    assertEquals(0, directory.list().length);
+
+    long stores = DiskCache.getStoreCount();
+
+    assertUsers(start(), 2);
+    assertEquals(stores + 2, DiskCache.getStoreCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testReuse() throws SQLException
+  {
+    long stores = DiskCache.getStoreCount();
+
+    assertUsers(start(), 2);
+    assertEquals(stores + 2, DiskCache.getStoreCount());
+    assertEquals(2, directory.list().length);
+
+    // simulates a new jvm
+    Templates.clear();
+
+    long hits = DiskCache.getHitCount();
+
+    assertUsers(start(), 2);
+    assertEquals(hits + 1, DiskCache.getHitCount());
+    assertEquals(stores + 2, DiskCache.getStoreCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testTrim() throws SQLException
+  {
+    assertUsers(start(), 2);
+    DiskCache.trim(Long.MAX_VALUE, 0);
+    assertEquals(2, directory.list().length);
+
+    // entries within the grace period are kept
+    DiskCache.trim(0, Long.MAX_VALUE / 2);
+    assertEquals(2, directory.list().length);
+    DiskCache.trim(0, 0);
+    assertEquals(0, directory.list().length);
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testTrimTemporary()
+  {
+    File aborted = new File(directory, "abc.tmp-aborted");
+    File running = new File(directory, "abc.tmp-running");
+
+    assertTrue(new File(aborted, "snapshot").mkdirs());
+    assertTrue(new File(running, "snapshot").mkdirs());
+    assertTrue(aborted.setLastModified(System.currentTimeMillis() - 60000));
+
+    // the cache is below the limit, but the aborted store is expired
+    DiskCache.trim(Long.MAX_VALUE, 30000);
+    assertFalse(aborted.exists());
+    assertTrue(running.exists());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param database
+   * @param expected
+   *
+   * @throws SQLException
+   */
+  private void assertUsers(Database database, int expected)
+    throws SQLException
+  {
+    Connection connection = database.createConnection();
+
+    try
+    {
+      Statement statement = connection.createStatement();
+      ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users");
+
+      result.next();
+      assertEquals(expected, result.getInt(1));
+      result.close();
+      statement.close();
+    }
+    finally
+    {
+      connection.close();
+      database.shutdown();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private Database start()
+  {
+    Database database = Databases.create("derby", "disk-cache-test",
+                          DatabaseOptions.DEFAULT);
+
+    Templates.start(database, this, SCRIPTS, "UTF-8", 0);
+
+    return database;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private File directory;
+
+  /** Field description */
+  private File previous;
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class LatencyHistogramTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testEmpty()
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(99d));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testLongDuration()
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+    long day = TimeUnit.DAYS.toNanos(1);
+
+    histogram.record(day);
+    assertEquals(day, histogram.getMax());
+    assertEquals(day, histogram.getPercentile(50d));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testPercentiles()
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    for (long i = 1; i <= 1000; i++)
+    {
+      histogram.record(i * 1000);
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000000, histogram.getMax());
+    assertPercentile(500000, histogram.getPercentile(50d));
+    assertPercentile(950000, histogram.getPercentile(95d));
+    assertPercentile(990000, histogram.getPercentile(99d));
+    assertEquals(1000000, histogram.getPercentile(100d));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testSmallValues()
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    for (long i = 0; i < 32; i++)
+    {
+      histogram.record(i);
+    }
+
+    // values below 32 are recorded exactly
+    assertEquals(15, histogram.getPercentile(50d));
+    assertEquals(31, histogram.getPercentile(100d));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param expected
+   * @param actual
+   */
+  private void assertPercentile(long expected, long actual)
+  {
+    assertTrue(actual + " is lower than " + expected, actual >= expected);
+    assertTrue(actual + " is too far from " + expected,
+      actual <= (expected + (expected / 16)));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseOptions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class PreparedDatabasesTest
+{
+
+  /** Field description */
+  private static final String[] SCRIPTS = {
+    "/com/github/sdorra/database/test-001.sql" };
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   */
+  @Before
+  public void setUp()
+  {
+    maxQueues = PreparedDatabases.getMaxQueues();
+    PreparedDatabases.closeIdle(0);
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void tearDown()
+  {
+    PreparedDatabases.setMaxQueues(maxQueues);
+    PreparedDatabases.closeIdle(0);
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testCloseIdle()
+  {
+    takeAndRelease("derby");
+    assertEquals(1, PreparedDatabases.getQueueCount());
+
+    // the queue was used right now
+    PreparedDatabases.closeIdle(60000);
+    assertEquals(1, PreparedDatabases.getQueueCount());
+    PreparedDatabases.closeIdle(0);
+    assertEquals(0, PreparedDatabases.getQueueCount());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testEvictLeastRecentlyUsed()
+  {
+    PreparedDatabases.setMaxQueues(1);
+    takeAndRelease("derby");
+    takeAndRelease("h2");
+    assertEquals(1, PreparedDatabases.getQueueCount());
+
+    // the evicted script is prepared again
+    takeAndRelease("derby");
+    assertEquals(1, PreparedDatabases.getQueueCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param engine
+   */
+  private void takeAndRelease(String engine)
+  {
+    Database database = PreparedDatabases.take(engine,
+                          DatabaseOptions.DEFAULT, getClass(), SCRIPTS,
+                          "UTF-8", 0, false);
+
+    assertTrue(database.isRunning());
+    PreparedDatabases.release(database);
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private int maxQueues;
+}
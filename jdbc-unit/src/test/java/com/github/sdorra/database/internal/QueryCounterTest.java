@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.MaxQueries;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class QueryCounterTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @MaxQueries(select = 1, insert = 0)
+  public void limited() {}
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testNormalize()
+  {
+    assertEquals("SELECT * FROM users WHERE name = ? AND age > ?",
+      QueryCounter.normalize(
+        "SELECT *\n  FROM users WHERE name = 'it''s' AND age > 42"));
+    assertEquals("select user0_.id from JU_USER user0_ where user0_.id=?",
+      QueryCounter.normalize(
+        "select user0_.id from JU_USER user0_ where user0_.id=?"));
+    assertEquals("SELECT \"a 1\" FROM t WHERE id IN (?, ...)",
+      QueryCounter.normalize(
+        "SELECT \"a 1\" /* comment */ FROM t WHERE id IN (1, 2.5, ?) -- x"));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws NoSuchMethodException
+   */
+  @Test
+  public void testVerify() throws NoSuchMethodException
+  {
+    QueryCounter counter = new QueryCounter("test");
+
+    counter.count("CREATE TABLE t (id INT)");
+    counter.count("SELECT * FROM t WHERE id = 1");
+    counter.verify(limits());
+    counter.count("SELECT * FROM t WHERE id = 2");
+    counter.count("SELECT * FROM t WHERE id = 3");
+    counter.count("UPDATE t SET id = 4");
+
+    try
+    {
+      counter.verify(limits());
+      fail("query budget was not verified");
+    }
+    catch (AssertionError error)
+    {
+      String msg = error.getMessage();
+
+      assertTrue(msg, msg.contains("select: 3 statements, at most 1"));
+      assertTrue(msg, msg.contains("3x SELECT * FROM t WHERE id = ?"));
+      assertTrue(msg, !msg.contains("UPDATE"));
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   *
+   * @throws NoSuchMethodException
+   */
+  private MaxQueries limits() throws NoSuchMethodException
+  {
+    return getClass().getMethod("limited").getAnnotation(MaxQueries.class);
+  }
+}
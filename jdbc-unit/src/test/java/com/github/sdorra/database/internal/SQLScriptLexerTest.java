@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class SQLScriptLexerTest
+{
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testBlockComment() throws IOException
+  {
+    assertStatements("SELECT /* ; */ 1 FROM a;/* x */",
+      "SELECT   1 FROM a");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCustomDelimiter() throws IOException
+  {
+    List<String> statements = parse(new SQLScriptLexer(
+                                new StringReader("SELECT ';' FROM a$$ "
+                                  + "SELECT 2 FROM b$$"), "$$", false));
+
+    assertEquals(Arrays.asList("SELECT ';' FROM a", "SELECT 2 FROM b"),
+      statements);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testFullLineDelimiter() throws IOException
+  {
+    List<String> statements = parse(new SQLScriptLexer(
+                                new StringReader("CREATE TABLE a (id INT);\n"
+                                  + "GO\nINSERT INTO a VALUES (1);\n  GO  \n"
+                                  + "INSERT INTO a VALUES (2);\nGO"), "GO",
+                                    true));
+
+    assertEquals(Arrays.asList("CREATE TABLE a (id INT);",
+      "INSERT INTO a VALUES (1);", "INSERT INTO a VALUES (2);"), statements);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testLineComments() throws IOException
+  {
+    assertStatements(
+      "-- first line\n// second line\nSELECT 1 FROM a; -- ;\n"
+      + "SELECT 'a--b' FROM b;", "SELECT 1 FROM a", "SELECT 'a--b' FROM b");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testMultiLineStatement() throws IOException
+  {
+    assertStatements("CREATE TABLE a (\n  id INT\n);\n\n",
+      "CREATE TABLE a (\n  id INT\n)");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testMultipleStatementsPerLine() throws IOException
+  {
+    assertStatements("SELECT 1 FROM a; SELECT 2 FROM b;SELECT 3 FROM c;",
+      "SELECT 1 FROM a", "SELECT 2 FROM b", "SELECT 3 FROM c");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testQuotes() throws IOException
+  {
+    assertStatements(
+      "INSERT INTO a VALUES ('a;b', 'it''s;');\n"
+      + "SELECT \"c;d\" FROM a;", "INSERT INTO a VALUES ('a;b', 'it''s;')",
+        "SELECT \"c;d\" FROM a");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testSmallBuffer() throws IOException
+  {
+    List<String> statements = parse(new SQLScriptLexer(
+                                new StringReader("SELECT '--' FROM a;-- ;\n"
+                                  + "SELECT 2 /* ; */ FROM b;"), ";", false,
+                                    2));
+
+    assertEquals(Arrays.asList("SELECT '--' FROM a", "SELECT 2   FROM b"),
+      statements);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testStatementWithoutDelimiter() throws IOException
+  {
+    assertStatements("SELECT 1 FROM a;\nSELECT 2 FROM b\n", "SELECT 1 FROM a",
+      "SELECT 2 FROM b");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param script
+   * @param expected
+   *
+   * @throws IOException
+   */
+  private void assertStatements(String script, String... expected)
+    throws IOException
+  {
+    List<String> statements = parse(new SQLScriptLexer(new StringReader(script),
+                                ";", false));
+
+    assertEquals(Arrays.asList(expected), statements);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param lexer
+   *
+   * @return
+   *
+   * @throws IOException
+   */
+  private List<String> parse(SQLScriptLexer lexer) throws IOException
+  {
+    List<String> statements = new ArrayList<String>();
+    String statement;
+
+    while ((statement = lexer.next()) != null)
+    {
+      statements.add(statement);
+    }
+
+    return statements;
+  }
+}
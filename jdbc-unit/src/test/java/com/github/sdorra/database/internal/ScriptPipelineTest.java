@@ -0,0 +1,238 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class ScriptPipelineTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testBackpressure()
+  {
+    ScriptPipeline pipeline = pipeline(new StringReader(script(100)), 2);
+
+    pipeline.start();
+
+    try
+    {
+      int count = 0;
+
+      while (pipeline.hasNext())
+      {
+        assertEquals("INSERT INTO t VALUES (" + count + ")", pipeline.next());
+        count++;
+      }
+
+      assertEquals(100, count);
+      assertEquals(100, pipeline.getStatementCount());
+    }
+    finally
+    {
+      pipeline.close();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testCloseStopsParser()
+  {
+    ScriptPipeline pipeline = pipeline(new StringReader(script(10000)), 1);
+
+    pipeline.start();
+    assertTrue(pipeline.hasNext());
+    pipeline.next();
+
+    // must not block, although the parser waits for free space
+    pipeline.close();
+    assertEquals(1, pipeline.getStatementCount());
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test(expected = OutOfMemoryError.class)
+  public void testParseError()
+  {
+    Reader reader = new StringReader("SELECT 1;")
+    {
+      @Override
+      public int read(char[] buffer, int off, int len)
+      {
+        throw new OutOfMemoryError("broken script");
+      }
+    };
+    ScriptPipeline pipeline = pipeline(reader, 2);
+
+    pipeline.start();
+
+    try
+    {
+      pipeline.hasNext();
+    }
+    finally
+    {
+      pipeline.close();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test(expected = DatabaseException.class)
+  public void testParseFailure()
+  {
+    Reader reader = new StringReader("SELECT 1;")
+    {
+      @Override
+      public int read(char[] buffer, int off, int len) throws IOException
+      {
+        throw new IOException("broken script");
+      }
+    };
+    ScriptPipeline pipeline = pipeline(reader, 2);
+
+    pipeline.start();
+
+    try
+    {
+      pipeline.hasNext();
+    }
+    finally
+    {
+      pipeline.close();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testRunScript() throws SQLException
+  {
+    Database database = new DerbyDatabase(Databases.createName("pipeline"));
+
+    database.start();
+
+    Connection connection = database.createConnection();
+
+    try
+    {
+      SQLScriptRunner runner = new SQLScriptRunner(connection, true);
+
+      runner.setPipelineCapacity(4);
+      runner.setBatchSize(10);
+      runner.runScript(new StringReader("CREATE TABLE t (id INT);\n"
+        + script(250)));
+
+      Statement statement = connection.createStatement();
+      ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM t");
+
+      assertTrue(result.next());
+      assertEquals(250, result.getInt(1));
+      assertFalse(result.next());
+      result.close();
+      statement.close();
+    }
+    finally
+    {
+      connection.close();
+      database.shutdown();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param reader
+   * @param capacity
+   *
+   * @return
+   */
+  private ScriptPipeline pipeline(Reader reader, int capacity)
+  {
+    return new ScriptPipeline(new SQLScriptLexer(reader, ";", false),
+      capacity);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param statements
+   *
+   * @return
+   */
+  private String script(int statements)
+  {
+    StringBuilder script = new StringBuilder();
+
+    for (int i = 0; i < statements; i++)
+    {
+      script.append("INSERT INTO t VALUES (").append(i).append(");\n");
+    }
+
+    return script.toString();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class StatementCacheTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testEviction()
+  {
+    StatementCache cache = new StatementCache(2);
+
+    cache.put("a", statements());
+    cache.put("b", statements());
+
+    // access a, to mark b as least recently used
+    assertNotNull(cache.get("a"));
+    cache.put("c", statements());
+
+    assertEquals(2, cache.getSize());
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testHitsAndMisses()
+  {
+    StatementCache cache = new StatementCache(2);
+
+    assertNull(cache.get("a"));
+    cache.put("a", statements());
+    assertEquals(statements(), cache.get("a"));
+    assertNotNull(cache.get("a"));
+    assertEquals(2, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @return
+   */
+  private List<String> statements()
+  {
+    return Arrays.asList("CREATE TABLE a (id INT)", "INSERT INTO a VALUES (1)");
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseOptions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class TemplatesTest
+{
+
+  /** Field description */
+  private static final String[] SCRIPTS = {
+    "/com/github/sdorra/database/test-001.sql",
+    "/com/github/sdorra/database/test-003.sql",
+    "/com/github/sdorra/database/test-004.sql" };
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Method description
+   *
+   */
+  @Before
+  public void setUp()
+  {
+    maxSize = Templates.getMaxSize();
+    diskCache = DiskCache.getDirectory();
+    DiskCache.setDirectory(null);
+    Templates.clear();
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @After
+  public void tearDown()
+  {
+    Templates.setMaxSize(maxSize);
+    DiskCache.setDirectory(diskCache);
+    Templates.clear();
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testEviction() throws SQLException
+  {
+    Templates.setMaxSize(1);
+
+    long evictions = Templates.getEvictionCount();
+
+    assertUsers(start(SCRIPTS), 3);
+    assertTrue(Templates.getEvictionCount() - evictions >= 2);
+    assertTrue(Templates.getSize() > 1);
+
+    // the evicted prefix is created again
+    assertUsers(start(SCRIPTS[0], SCRIPTS[1]), 2);
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testLayers() throws SQLException
+  {
+    assertUsers(start(SCRIPTS[0], SCRIPTS[1]), 2);
+
+    long restores = Templates.getRestoreCount();
+
+    // restores [001, 003] and executes only 004
+    assertUsers(start(SCRIPTS), 3);
+    assertEquals(restores + 1, Templates.getRestoreCount());
+
+    // restores the snapshot of 001
+    assertUsers(start(SCRIPTS[0]), 1);
+    assertEquals(restores + 2, Templates.getRestoreCount());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testLayeredSetupTime() throws SQLException
+  {
+    Database database = start(SCRIPTS);
+    String suffix = "#".concat(database.getDriver()).concat("#").concat(
+                      database.getOptions().toString());
+    String[] keys = Templates.keys(this, SCRIPTS, "UTF-8");
+
+    assertUsers(database, 3);
+
+    // every layer includes the setup time of its parents
+    long parentNanos = 0;
+
+    for (String key : keys)
+    {
+      long setupNanos = Templates.getSetupNanos(key.concat(suffix));
+
+      assertTrue(setupNanos > parentNanos);
+      parentNanos = setupNanos;
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param database
+   * @param expected
+   *
+   * @throws SQLException
+   */
+  private void assertUsers(Database database, int expected)
+    throws SQLException
+  {
+    Connection connection = database.createConnection();
+
+    try
+    {
+      Statement statement = connection.createStatement();
+      ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users");
+
+      result.next();
+      assertEquals(expected, result.getInt(1));
+      result.close();
+      statement.close();
+    }
+    finally
+    {
+      connection.close();
+      database.shutdown();
+    }
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param scripts
+   *
+   * @return
+   */
+  private Database start(String... scripts)
+  {
+    Database database = Databases.create("h2", "templates-test",
+      DatabaseOptions.DEFAULT);
+
+    Templates.start(database, this, scripts, "UTF-8", 0);
+
+    return database;
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  private File diskCache;
+
+  /** Field description */
+  private long maxSize;
+}
@@ -0,0 +1,2 @@
+VALUES (CAST('earth' AS VARCHAR(255)), 12742),
+  (CAST('magrathea' AS VARCHAR(255)), CAST(NULL AS INTEGER));
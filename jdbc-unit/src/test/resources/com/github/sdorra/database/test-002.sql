@@ -0,0 +1,12 @@
+CREATE TABLE users (username VARCHAR(255) NOT NULL, mail VARCHAR(255) NOT NULL, PRIMARY KEY (username));
+INSERT INTO users VALUES ( 'tricia', 'tricia@hitchhiker.com' );
+INSERT INTO users VALUES ( 'arthur', 'arthur@hitchhiker.com' );
+INSERT INTO users VALUES ( 'zaphod', 'zaphod@hitchhiker.com' );
+INSERT INTO users VALUES ( 'ford', 'ford@hitchhiker.com' );
+INSERT INTO users VALUES ( 'marvin', 'marvin@hitchhiker.com' );
+SELECT username FROM users;
+UPDATE users SET mail = 'trillian@hitchhiker.com' WHERE username = 'tricia';
+DELETE FROM users WHERE username = 'marvin';
+CREATE TABLE planets (name VARCHAR(255) NOT NULL, PRIMARY KEY (name));
+INSERT INTO planets VALUES ( 'earth' );
+INSERT INTO planets VALUES ( 'magrathea' );
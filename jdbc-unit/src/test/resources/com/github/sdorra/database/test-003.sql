@@ -0,0 +1 @@
+INSERT INTO users VALUES ( 'arthur', 'arthur@hitchhiker.com' );
@@ -0,0 +1 @@
+INSERT INTO users VALUES ( 'zaphod', 'zaphod@hitchhiker.com' );
@@ -0,0 +1,2 @@
+CREATE TABLE users (username VARCHAR(255) NOT NULL, mail VARCHAR(255), PRIMARY KEY (username));
+CREATE TABLE planets (name VARCHAR(255) NOT NULL, diameter INTEGER, PRIMARY KEY (name));
@@ -54,12 +54,15 @@ public @interface JPA
   String value();
 
   /**
-   * Path to a sql file in the classpath. This sql file is loaded on database
-   * start.
+   * Paths to sql files in the classpath. The sql files are loaded in the
+   * given order on database start. In the template mode a snapshot is kept
+   * for every prefix of the list, tests which share the first scripts
+   * restore the snapshot of the shared scripts and execute only the
+   * remaining ones.
    *
-   * @return path to sql file
+   * @return paths to sql files
    */
-  String sql() default "";
+  String[] sql() default {};
 
   /**
    * Encoding of the sql file.
@@ -69,10 +72,72 @@ public @interface JPA
   String encoding() default "UTF-8";
 
   /**
-   * Set to {@code true} to start a transaction before the test begins and
-   * commit it after the tests ends.
+   * Set to {@code true} to start a transaction with the entity manager of the
+   * rule and commit it after the tests ends. The transaction is started, when
+   * the test requests the entity manager for the first time.
    *
    * @return {@code true} if auto transactions are enabled
    */
   boolean autoTransaction() default false;
+
+  /**
+   * Set to {@code true} to execute the sql script only once. The result is
+   * kept as snapshot and every test gets a fresh copy of the snapshot.
+   *
+   * @return {@code true} if the template mode is enabled
+   */
+  boolean template() default false;
+
+  /**
+   * Maximum number of consecutive dml statements of the sql file, which are
+   * executed as one jdbc batch. Ddl statements and queries are always
+   * executed one by one. A value lower than 2 disables batching.
+   *
+   * @return maximum number of statements per batch
+   */
+  int batchSize() default 0;
+
+  /**
+   * Set to {@code true} to reuse the {@link javax.persistence.EntityManagerFactory}
+   * of previous tests with the same persistence unit. The schema which was
+   * generated during the bootstrap of the factory is replayed on the new
+   * database, instead of bootstrapping a new factory for every test.
+   *
+   * @return {@code true} if the factory should be shared
+   */
+  boolean sharedEntityManagerFactory() default false;
+
+  /**
+   * Set to {@code true} to take an already started and seeded database from
+   * a pool, which is filled by background workers. The database is dropped
+   * asynchronously after the test.
+   *
+   * @return {@code true} if a prepared database should be used
+   */
+  boolean prepared() default false;
+
+  /**
+   * Name of the in-memory database engine. The engines derby, h2 and hsqldb
+   * are supported out of the box, the jdbc driver of the engine must be on
+   * the classpath. The hibernate dialect is selected by the engine.
+   *
+   * @return name of the engine
+   */
+  String engine() default "derby";
+
+  /**
+   * Csv or tsv datasets, which are loaded into tables after the sql script
+   * was executed. The tables must be created by the sql script.
+   *
+   * @return datasets
+   */
+  Dataset[] datasets() default {};
+
+  /**
+   * Tuning options for the in-memory database, e.g. relaxed durability or a
+   * smaller page cache. The options override the options of the rule.
+   *
+   * @return tuning options
+   */
+  Tuning tuning() default @Tuning;
 }
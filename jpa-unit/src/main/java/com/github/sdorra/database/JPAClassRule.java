@@ -0,0 +1,332 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.internal.DatabaseEngines;
+import com.github.sdorra.database.internal.Databases;
+import com.github.sdorra.database.internal.Datasets;
+import com.github.sdorra.database.internal.DerbyDatabase;
+import com.github.sdorra.database.internal.EntityManagerFactories;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+
+/**
+ * The JPAClassRule starts an in-memory sql database (namely apache derby) and
+ * the {@link EntityManagerFactory} once for a whole test class or suite. The
+ * rule must be used as {@link org.junit.ClassRule} and reads the {@link JPA}
+ * annotation of the test or suite class. The rule returned by
+ * {@link #reset()} can be used as {@link org.junit.Rule}, to give each test
+ * method its own {@link EntityManager} with a transaction, which is rolled
+ * back after the test method:
+ *
+ * <pre>
+ * &#64;ClassRule
+ * public static JPAClassRule db = new JPAClassRule();
+ *
+ * &#64;Rule
+ * public TestRule reset = db.reset();
+ * </pre>
+ *
+ * @author Sebastian Sdorra
+ */
+public class JPAClassRule implements TestRule
+{
+
+  /** prefix for the database name */
+  private static final String PREFIX = "jpa-unit-class";
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs a new JPAClassRule.
+   *
+   */
+  public JPAClassRule()
+  {
+    this.database = new DerbyDatabase(Databases.createName(PREFIX));
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Statement apply(final Statement base, final Description description)
+  {
+    final JPA jpa = description.getAnnotation(JPA.class);
+    final Object context = (description.getTestClass() != null)
+      ? description.getTestClass()
+      : this;
+
+    return new Statement()
+    {
+
+      @Override
+      public void evaluate() throws Throwable
+      {
+        if (jpa != null)
+        {
+          persistenceUnit = jpa.value();
+          sharedEntityManagerFactory = jpa.sharedEntityManagerFactory();
+
+          DatabaseEngine engine = DatabaseEngines.get(jpa.engine());
+
+          dialect = engine.getDialect();
+          database = engine.createDatabase(Databases.createName(PREFIX),
+            Databases.options(jpa.tuning(), DatabaseOptions.DEFAULT));
+          Databases.start(database, context, Databases.getScripts(jpa.sql()),
+            jpa.encoding(), jpa.batchSize(), jpa.template());
+          Datasets.load(database, context, jpa.datasets());
+
+          try
+          {
+            base.evaluate();
+          }
+          finally
+          {
+            close();
+          }
+        }
+        else
+        {
+          base.evaluate();
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns a new {@link EntityManager} for the specified persistence unit.
+   * Note this {@link EntityManager} must be closed manually.
+   *
+   * @return new {@link EntityManager}
+   */
+  public EntityManager createEntityManager()
+  {
+    return getEntityManagerFactory().createEntityManager();
+  }
+
+  /**
+   * Returns a rule which gives each test method its own {@link EntityManager}.
+   * A transaction is started on the {@link EntityManager} before the test
+   * method and it is rolled back after the test method, if it is still
+   * active. The returned rule must be used as {@link org.junit.Rule}.
+   *
+   *
+   * @return rule which resets the {@link EntityManager}
+   */
+  public TestRule reset()
+  {
+    return new TestRule()
+    {
+      @Override
+      public Statement apply(final Statement base, Description description)
+      {
+        return new Statement()
+        {
+          @Override
+          public void evaluate() throws Throwable
+          {
+            getEntityManager().getTransaction().begin();
+
+            try
+            {
+              base.evaluate();
+            }
+            finally
+            {
+              closeEntityManager();
+              getEntityManagerFactory().getCache().evictAll();
+            }
+          }
+        };
+      }
+    };
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the in-memory database.
+   *
+   *
+   * @return in-memory database
+   */
+  public Database getDatabase()
+  {
+    return database;
+  }
+
+  /**
+   * Returns an in-memory {@link EntityManager} which is automatically closed
+   * after the test method, if the rule of {@link #reset()} is used, or after
+   * the test class.
+   *
+   * @return {@link EntityManager}
+   */
+  public EntityManager getEntityManager()
+  {
+    if (entityManager == null)
+    {
+      entityManager = createEntityManager();
+    }
+
+    return entityManager;
+  }
+
+  /**
+   * Returns the {@link EntityManagerFactory} which is created for the specified
+   * persistence unit. The factory is shared between all test methods.
+   *
+   * @return {@link EntityManagerFactory} for persistence unit
+   */
+  public EntityManagerFactory getEntityManagerFactory()
+  {
+    if (entityManagerFactory == null)
+    {
+      if (!database.isRunning())
+      {
+        throw new DatabaseNotStartedException(
+          "the database is not started. Perhaps you have forgotten to add "
+          + "the JPA annotation to the class or to use the rule as ClassRule.");
+      }
+
+      if (sharedEntityManagerFactory)
+      {
+        entityManagerFactory = EntityManagerFactories.acquire(database,
+          persistenceUnit, dialect);
+      }
+      else
+      {
+        entityManagerFactory = EntityManagerFactories.create(database,
+          persistenceUnit, dialect);
+      }
+    }
+
+    return entityManagerFactory;
+  }
+
+  /**
+   * Returns the persistence unit which was specified with the {@link JPA}
+   * annotation.
+   *
+   *
+   * @return persistence unit
+   */
+  public String getPersistenceUnit()
+  {
+    return persistenceUnit;
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Close opened resources.
+   *
+   */
+  private void close()
+  {
+    try
+    {
+      closeEntityManager();
+
+      if (entityManagerFactory != null)
+      {
+        if (sharedEntityManagerFactory)
+        {
+          EntityManagerFactories.release(entityManagerFactory);
+        }
+        else
+        {
+          entityManagerFactory.close();
+        }
+
+        entityManagerFactory = null;
+      }
+    }
+    finally
+    {
+      database.shutdown();
+    }
+  }
+
+  /**
+   * Rolls back the active transaction and closes the {@link EntityManager}.
+   *
+   */
+  private void closeEntityManager()
+  {
+    if (entityManager != null)
+    {
+      try
+      {
+        EntityTransaction transaction = entityManager.getTransaction();
+
+        if (transaction.isActive())
+        {
+          transaction.rollback();
+        }
+      }
+      finally
+      {
+        entityManager.close();
+        entityManager = null;
+      }
+    }
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** database */
+  private Database database;
+
+  /** hibernate dialect of the database engine */
+  private String dialect;
+
+  /** entity manager */
+  private EntityManager entityManager;
+
+  /** entity manager factory */
+  private EntityManagerFactory entityManagerFactory;
+
+  /** persistence unit */
+  private String persistenceUnit;
+
+  /** use a shared entity manager factory */
+  private boolean sharedEntityManagerFactory;
+}
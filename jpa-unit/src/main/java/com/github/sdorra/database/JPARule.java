@@ -29,7 +29,21 @@ package com.github.sdorra.database;
 //~--- non-JDK imports --------------------------------------------------------
 
 import com.github.sdorra.database.internal.Annotations;
+import com.github.sdorra.database.internal.Closeables;
+import com.github.sdorra.database.internal.DatabaseEngines;
+import com.github.sdorra.database.internal.Databases;
+import com.github.sdorra.database.internal.Datasets;
 import com.github.sdorra.database.internal.DerbyDatabase;
+import com.github.sdorra.database.internal.EntityManagerFactories;
+import com.github.sdorra.database.internal.LatencyRecorder;
+import com.github.sdorra.database.internal.LazyStart;
+import com.github.sdorra.database.internal.LeakDetector;
+import com.github.sdorra.database.internal.Lifecycle;
+import com.github.sdorra.database.internal.PreparedDatabases;
+import com.github.sdorra.database.internal.QueryCounter;
+import com.github.sdorra.database.internal.StatementListener;
+import com.github.sdorra.database.internal.StatementListeners;
+import com.github.sdorra.database.internal.TableAssertions;
 
 import org.junit.rules.MethodRule;
 import org.junit.runners.model.FrameworkMethod;
@@ -37,145 +51,321 @@ import org.junit.runners.model.Statement;
 
 //~--- JDK imports ------------------------------------------------------------
 
-import java.util.HashMap;
-import java.util.Map;
+import java.sql.Connection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
 
 /**
  * The JPARule starts an in-memory sql database (namely apache derby). The
- * database is started before each test method is executed and the database is
- * shutdown after the method execution. The JPARule starts the in-memory 
- * database only if the method or the class is annotated with the {@link JPA} 
- * annotation.
+ * database is started when a test method uses it for the first time and the
+ * database is shutdown after the method execution. The JPARule starts the
+ * in-memory database only if the method or the class is annotated with the
+ * {@link JPA} annotation and the test uses the database.
  *
  * @author Sebastian Sdorra 
  */
 public class JPARule implements MethodRule
 {
 
-  /** empty string */
-  private static final String EMPTY = "";
-
-  /** jpa create properties */
-  private static final String PROPERTY_CREATE =
-    "javax.persistence.schema-generation.database.action";
-
-  /** jpa direver property */
-  private static final String PROPERTY_DRIVER = "javax.persistence.jdbc.driver";
-
-  /** hibernate dialect property */
-  private static final String PROPERTY_HIBERNATE_DIALECT = "hibernate.dialect";
-
-  /** jpa password property */
-  private static final String PROPERTY_PASSWORD =
-    "javax.persistence.jdbc.password";
-
-  /** jpa url property */
-  private static final String PROPERTY_URL = "javax.persistence.jdbc.url";
+  /** prefix for the database name */
+  private static final String PREFIX = "jpa-unit";
 
-  /** jpa user property */
-  private static final String PROPERTY_USER = "javax.persistence.jdbc.user";
-
-  /** value for the jpa create property */
-  private static final String VALUE_CREATE = "create";
+  //~--- methods --------------------------------------------------------------
 
-  /** value for the hibernate dialect property */
-  private static final String VALUE_HIBERNATE_DIALECT =
-    "org.hibernate.dialect.DerbyTenSevenDialect";
+  /**
+   * Adds a listener, which receives the {@link LifecycleEvent}s of the tests
+   * executed by this rule. Listeners for all rules can be registered in
+   * {@code META-INF/services/com.github.sdorra.database.LifecycleListener}.
+   *
+   *
+   * @param listener lifecycle listener
+   *
+   * @return {@code this}
+   */
+  public JPARule addListener(LifecycleListener listener)
+  {
+    listeners.add(listener);
 
-  //~--- methods --------------------------------------------------------------
+    return this;
+  }
 
   /**
    * {@inheritDoc}
    */
   @Override
-  public Statement apply(final Statement base, final FrameworkMethod method,
+  public Statement apply(Statement base, final FrameworkMethod method,
     final Object target)
   {
     final JPA jpa = Annotations.find(method, target, JPA.class);
-
-    return new Statement()
+    final MaxQueries maxQueries = Annotations.find(method, target,
+                                    MaxQueries.class);
+    final Statement test = Lifecycle.measure(base, method.getName());
+    Statement statement = new Statement()
     {
 
       @Override
       public void evaluate() throws Throwable
       {
+        context = target;
+
         if (jpa != null)
         {
-          database.start();
-
           persistenceUnit = jpa.value();
+          sharedEntityManagerFactory = jpa.sharedEntityManagerFactory();
+          autoTransaction = jpa.autoTransaction();
+          prepared = jpa.prepared();
 
-          String sql = jpa.sql();
+          final DatabaseEngine engine = DatabaseEngines.get(jpa.engine());
+          final String[] scripts = Databases.getScripts(jpa.sql());
+          final DatabaseOptions tuned = Databases.options(jpa.tuning(),
+                                          options);
 
-          if (sql.trim().length() > 0)
+          final Database local = database;
+
+          dialect = engine.getDialect();
+          lazyStart = new LazyStart(method.getName())
           {
-            database.execute(target, sql, jpa.encoding());
+            @Override
+            protected void start()
+            {
+              if (prepared)
+              {
+                database = PreparedDatabases.take(jpa.engine(), tuned, target,
+                  scripts, jpa.encoding(), jpa.batchSize(), jpa.template());
+              }
+              else
+              {
+                database =
+                  engine.createDatabase(Databases.createName(PREFIX), tuned);
+                Databases.start(database, target, scripts, jpa.encoding(),
+                  jpa.batchSize(), jpa.template());
+              }
+
+              Datasets.load(database, target, jpa.datasets());
+            }
+          };
+
+          leakDetector = new LeakDetector(leakDetection, method.getName());
+
+          if (maxQueries != null)
+          {
+            queryCounter = new QueryCounter(method.getName());
           }
 
-          EntityTransaction transaction = null;
+          latencyRecorder = statementLatencies
+            ? new LatencyRecorder(target.getClass().getName().concat(
+              ".").concat(method.getName()))
+            : null;
+          statementListener = StatementListeners.combine(queryCounter,
+            latencyRecorder);
 
           try
           {
-            if (jpa.autoTransaction())
+            try
+            {
+              test.evaluate();
+
+              if (transaction != null)
+              {
+                transaction.commit();
+              }
+            }
+            finally
             {
-              transaction = getEntityManager().getTransaction();
-              transaction.begin();
+              close();
             }
 
-            base.evaluate();
+            // only reached, if the test itself has not failed
+            leakDetector.verify();
 
-            if (transaction != null)
+            if (queryCounter != null)
             {
-              transaction.commit();
+              queryCounter.verify(maxQueries);
             }
           }
           finally
           {
-            close(transaction);
+            if (latencyRecorder != null)
+            {
+              latencyRecorder.report();
+            }
+
+            leakDetector = null;
+            queryCounter = null;
+            statementListener = null;
+            transaction = null;
+            entityManager = null;
+            entityManagerFactory = null;
+            database = local;
           }
         }
         else
         {
-          base.evaluate();
+          test.evaluate();
         }
       }
     };
+
+    return Lifecycle.bind(statement, listeners);
+  }
+
+  /**
+   * Compares the result of the query with an expected dataset. The dataset is
+   * a csv or tsv file with the column labels in the first line or a sql file
+   * with a query, which returns the expected rows. The query is executed with
+   * a separate jdbc connection, changes of the {@link EntityManager} must be
+   * committed before.
+   *
+   *
+   * @param query sql query
+   * @param expected classpath path of the expected dataset
+   *
+   * @throws AssertionError with the first mismatches
+   */
+  public void assertQuery(String query, String expected)
+  {
+    checkIsRunning();
+
+    Connection connection = database.createConnection();
+
+    try
+    {
+      TableAssertions.assertQuery(connection, context, query, expected);
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
+  }
+
+  /**
+   * Compares the content of the table with an expected dataset. The dataset
+   * is a csv or tsv file with the column names in the first line or a sql
+   * file with a query, which returns all columns of the table. The table is
+   * read with a separate jdbc connection, changes of the
+   * {@link EntityManager} must be committed before.
+   *
+   *
+   * @param table name of the table
+   * @param expected classpath path of the expected dataset
+   *
+   * @throws AssertionError with the first mismatches
+   */
+  public void assertTable(String table, String expected)
+  {
+    checkIsRunning();
+
+    Connection connection = database.createConnection();
+
+    try
+    {
+      TableAssertions.assertTable(connection, context, table, expected);
+    }
+    finally
+    {
+      Closeables.close(connection);
+    }
   }
 
   /**
    * Returns a new {@link EntityManager} for the specified persistence unit. 
-   * Note this {@link EntityManager} must be closed manually.
+   * The {@link EntityManager} should be closed by the test, entity managers
+   * which are still open after the method execution are closed by the rule
+   * and reported according to the {@link LeakDetection} mode.
    *
    * @return new {@link EntityManager}
    */
   public EntityManager createEntityManager()
   {
-    checkIsRunning();
+    EntityManager em = openEntityManager();
 
-    return getEntityManagerFactory().createEntityManager();
+    if (leakDetector != null)
+    {
+      em = leakDetector.track(em, EntityManager.class);
+    }
+
+    return em;
+  }
+
+  /**
+   * Sets the handling of entity managers, which are not closed by a test. The
+   * default is read from the system property
+   * {@code database-unit.leak-detection}.
+   *
+   *
+   * @param leakDetection leak detection mode
+   *
+   * @return {@code this}
+   */
+  public JPARule withLeakDetection(LeakDetection leakDetection)
+  {
+    this.leakDetection = leakDetection;
+
+    return this;
+  }
+
+  /**
+   * Enables the recording of the execute and fetch latencies of the
+   * statements of the {@link EntityManager}s. The latencies are available
+   * with {@link #getStatementLatencies()} and are written as json report, if
+   * the system property {@code database-unit.statement-latency.dir} is set.
+   * The default is read from the system property
+   * {@code database-unit.statement-latency}.
+   *
+   *
+   * @param statementLatencies {@code true} to record the latencies
+   *
+   * @return {@code this}
+   */
+  public JPARule withStatementLatencies(boolean statementLatencies)
+  {
+    this.statementLatencies = statementLatencies;
+
+    return this;
+  }
+
+  /**
+   * Sets the tuning options for the databases of this rule. The options can be
+   * overridden by the {@link JPA#tuning()} attribute of a test.
+   *
+   *
+   * @param options tuning options
+   *
+   * @return {@code this}
+   */
+  public JPARule withOptions(DatabaseOptions options)
+  {
+    this.options = options;
+
+    return this;
   }
 
   //~--- get methods ----------------------------------------------------------
 
   /**
-   * Returns the in-memory database.
+   * Returns the in-memory database. The database is started and seeded on
+   * the first call during a test.
    *
    *
    * @return in-memory database
    */
   public Database getDatabase()
   {
+    ensureStarted();
+
     return database;
   }
 
   /**
    * Returns an in-memory {@link EntityManager} which is automatically closed 
-   * after the execution of the test method.
+   * after the execution of the test method. With {@link JPA#autoTransaction()}
+   * the transaction is started, when the {@link EntityManager} is created.
    *
    * @return {@link EntityManager}
    */
@@ -183,7 +373,13 @@ public class JPARule implements MethodRule
   {
     if (entityManager == null)
     {
-      entityManager = createEntityManager();
+      entityManager = openEntityManager();
+
+      if (autoTransaction)
+      {
+        transaction = entityManager.getTransaction();
+        transaction.begin();
+      }
     }
 
     return entityManager;
@@ -201,25 +397,51 @@ public class JPARule implements MethodRule
     {
       checkIsRunning();
 
-      Map<String, String> props = new HashMap<String, String>();
+      long start = Lifecycle.start();
 
-      props.put(PROPERTY_DRIVER, database.getDriver());
-      props.put(PROPERTY_URL, database.getUrl());
-      props.put(PROPERTY_USER, EMPTY);
-      props.put(PROPERTY_PASSWORD, EMPTY);
-      props.put(PROPERTY_CREATE, VALUE_CREATE);
-
-      // put hibernate specific properties
-      props.put(PROPERTY_HIBERNATE_DIALECT, VALUE_HIBERNATE_DIALECT);
+      if (sharedEntityManagerFactory)
+      {
+        entityManagerFactory = EntityManagerFactories.acquire(database,
+          persistenceUnit, dialect, statementListener);
+      }
+      else
+      {
+        entityManagerFactory = EntityManagerFactories.create(database,
+          persistenceUnit, dialect, statementListener);
+      }
 
-      // create entity manager factory
-      entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnit,
-        props);
+      Lifecycle.fire(LifecyclePhase.ENTITY_MANAGER_FACTORY, start,
+        persistenceUnit, 1);
     }
 
     return entityManagerFactory;
   }
 
+  /**
+   * Returns the latencies of the statements of the current or of the last
+   * test, the statements with the longest execution come first. The list is
+   * empty, if the recording is not enabled with
+   * {@link #withStatementLatencies(boolean)}.
+   *
+   *
+   * @return latencies of the statements
+   */
+  public List<StatementLatency> getStatementLatencies()
+  {
+    List<StatementLatency> latencies;
+
+    if (latencyRecorder != null)
+    {
+      latencies = latencyRecorder.getLatencies();
+    }
+    else
+    {
+      latencies = Collections.emptyList();
+    }
+
+    return latencies;
+  }
+
   /**
    * Returns the persistence unit which was specified with the {@link JPA} 
    * annotation.
@@ -235,11 +457,13 @@ public class JPARule implements MethodRule
   //~--- methods --------------------------------------------------------------
 
   /**
-   * Checks if the database is running.
+   * Starts the database on first use and checks if the database is running.
    *
    */
   private void checkIsRunning()
   {
+    ensureStarted();
+
     if (!database.isRunning())
     {
       String msg =
@@ -253,11 +477,13 @@ public class JPARule implements MethodRule
   /**
    * Close opened resources.
    *
-   *
-   * @param transaction entity transaction or null
    */
-  private void close(EntityTransaction transaction)
+  private void close()
   {
+    leakDetector.reclaim();
+    lazyStart.finish();
+    lazyStart = null;
+
     if ((transaction != null) && transaction.isActive())
     {
       transaction.rollback();
@@ -270,16 +496,69 @@ public class JPARule implements MethodRule
 
     if (entityManagerFactory != null)
     {
-      entityManagerFactory.close();
+      if (sharedEntityManagerFactory)
+      {
+        EntityManagerFactories.release(entityManagerFactory);
+      }
+      else
+      {
+        entityManagerFactory.close();
+      }
     }
 
-    database.shutdown();
+    // the database is not running, if the test has not used it
+    if (database.isRunning())
+    {
+      if (prepared)
+      {
+        PreparedDatabases.release(database);
+      }
+      else
+      {
+        database.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Opens a new {@link EntityManager}, which is not tracked by the leak
+   * detection.
+   *
+   *
+   * @return new {@link EntityManager}
+   */
+  private EntityManager openEntityManager()
+  {
+    checkIsRunning();
+
+    return getEntityManagerFactory().createEntityManager();
+  }
+
+  /**
+   * Starts the database of the current test, if it was not started before.
+   *
+   */
+  private void ensureStarted()
+  {
+    if (lazyStart != null)
+    {
+      lazyStart.ensureStarted();
+    }
   }
 
   //~--- fields ---------------------------------------------------------------
 
+  /** start a transaction with the entity manager of the rule */
+  private boolean autoTransaction;
+
+  /** test object, which is used to load datasets */
+  private Object context = this;
+
   /** database */
-  private final Database database = new DerbyDatabase("jpa-unit");
+  private Database database = new DerbyDatabase(Databases.createName(PREFIX));
+
+  /** hibernate dialect of the database engine */
+  private String dialect;
 
   /** entity manager */
   private EntityManager entityManager;
@@ -287,6 +566,43 @@ public class JPARule implements MethodRule
   /** entity manager */
   private EntityManagerFactory entityManagerFactory;
 
+  /** creates the database of the current test on first use */
+  private LazyStart lazyStart;
+
+  /** handling of leaked entity managers */
+  private LeakDetection leakDetection = LeakDetector.getDefaultMode();
+
+  /** tracks the entity managers of the current test */
+  private LeakDetector leakDetector;
+
+  /** records the statement latencies of the current or last test */
+  private LatencyRecorder latencyRecorder;
+
+  /** counts the statements of a test with a query budget */
+  private QueryCounter queryCounter;
+
+  /** record statement latencies */
+  private boolean statementLatencies = LatencyRecorder.isEnabledByDefault();
+
+  /** receives the statements of the current test or {@code null} */
+  private StatementListener statementListener;
+
+  /** lifecycle listeners of the rule */
+  private final List<LifecycleListener> listeners =
+    new ArrayList<LifecycleListener>();
+
+  /** tuning options of the rule */
+  private DatabaseOptions options = DatabaseOptions.DEFAULT;
+
   /** persistence unit */
   private String persistenceUnit;
+
+  /** the database was taken from the pool of prepared databases */
+  private boolean prepared;
+
+  /** use a shared entity manager factory */
+  private boolean sharedEntityManagerFactory;
+
+  /** transaction of the entity manager, if auto transactions are enabled */
+  private EntityTransaction transaction;
 }
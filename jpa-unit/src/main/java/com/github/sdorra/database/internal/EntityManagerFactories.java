@@ -0,0 +1,581 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.StringWriter;
+
+import java.sql.Connection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import javax.sql.DataSource;
+
+/**
+ * Util class to create {@link EntityManagerFactory} instances for in-memory
+ * databases. The class keeps also a jvm wide cache of shared factories, which
+ * can be reused by tests with different databases. The shared factories are
+ * using the {@link RoutingDataSource} and the schema, which is generated
+ * during the bootstrap of a factory, is replayed on every new database. The
+ * maximum number of shared factories can be configured with the system
+ * property {@code database-unit.emf-cache.size}.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class EntityManagerFactories
+{
+
+  /** default maximum number of shared factories */
+  private static final int DEFAULT_CACHE_SIZE = 8;
+
+  /** system property for the maximum number of shared factories */
+  private static final String PROPERTY_CACHE_SIZE =
+    "database-unit.emf-cache.size";
+
+  /** jpa non jta data source property */
+  private static final String PROPERTY_DATASOURCE =
+    "javax.persistence.nonJtaDataSource";
+
+  /** jpa create properties */
+  private static final String PROPERTY_CREATE =
+    "javax.persistence.schema-generation.database.action";
+
+  /** hibernate dialect property */
+  private static final String PROPERTY_HIBERNATE_DIALECT = "hibernate.dialect";
+
+  /** jpa script create properties */
+  private static final String PROPERTY_SCRIPT_CREATE =
+    "javax.persistence.schema-generation.scripts.action";
+
+  /** jpa script target property */
+  private static final String PROPERTY_SCRIPT_TARGET =
+    "javax.persistence.schema-generation.scripts.create-target";
+
+  /** value for the jpa create property */
+  private static final String VALUE_CREATE = "create";
+
+  /** logger */
+  private static final Logger logger =
+    LoggerFactory.getLogger(EntityManagerFactories.class);
+
+  /** shared factories */
+  private static final Map<String, SharedFactory> cache;
+
+  /** number of reused factories */
+  private static final AtomicLong hits = new AtomicLong();
+
+  /** number of created factories */
+  private static final AtomicLong misses = new AtomicLong();
+
+  /** bootstrap time which was saved by the reuse of factories */
+  private static final AtomicLong savedNanos = new AtomicLong();
+
+  /** all open shared factories, including evicted factories in use */
+  private static final Map<EntityManagerFactory, SharedFactory> factories =
+    Collections.synchronizedMap(new IdentityHashMap<EntityManagerFactory,
+      SharedFactory>());
+
+  static
+  {
+    final int maxSize = Integer.getInteger(PROPERTY_CACHE_SIZE,
+                          DEFAULT_CACHE_SIZE);
+
+    cache = new LinkedHashMap<String, SharedFactory>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = 4946470387298723485L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String,
+        SharedFactory> eldest)
+      {
+        boolean remove = size() > maxSize;
+
+        if (remove)
+        {
+          eldest.getValue().evict();
+        }
+
+        return remove;
+      }
+    };
+
+    Runtime.getRuntime().addShutdownHook(new Thread("database-unit-emf")
+    {
+      @Override
+      public void run()
+      {
+        closeAll();
+      }
+    });
+  }
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private EntityManagerFactories() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Returns a shared {@link EntityManagerFactory} for the persistence unit and
+   * binds the database to the current thread. If the factory was already
+   * created by a previous test, the generated schema is replayed on the
+   * database. The factory must be returned with
+   * {@link #release(javax.persistence.EntityManagerFactory)}.
+   *
+   *
+   * @param database in-memory database
+   * @param persistenceUnit name of the persistence unit
+   * @param dialect hibernate dialect of the database engine
+   *
+   * @return shared {@link EntityManagerFactory}
+   */
+  public static EntityManagerFactory acquire(Database database,
+    String persistenceUnit, String dialect)
+  {
+    return acquire(database, persistenceUnit, dialect, null);
+  }
+
+  /**
+   * Returns a shared {@link EntityManagerFactory} for the persistence unit and
+   * binds the database and the statement listener to the current thread.
+   *
+   *
+   * @param database in-memory database
+   * @param persistenceUnit name of the persistence unit
+   * @param dialect hibernate dialect of the database engine
+   * @param listener receives the statements of the factory or {@code null}
+   *
+   * @return shared {@link EntityManagerFactory}
+   */
+  public static EntityManagerFactory acquire(Database database,
+    String persistenceUnit, String dialect, StatementListener listener)
+  {
+    Map<String, Object> props = new HashMap<String, Object>();
+
+    // put hibernate specific properties
+    props.put(PROPERTY_HIBERNATE_DIALECT, dialect);
+
+    String key = persistenceUnit.concat(new TreeMap<String,
+                   Object>(props).toString());
+    SharedFactory shared;
+
+    synchronized (cache)
+    {
+      shared = cache.get(key);
+
+      if (shared == null)
+      {
+        shared = new SharedFactory(persistenceUnit, props);
+        cache.put(key, shared);
+      }
+
+      shared.users++;
+    }
+
+    RoutingDataSource.getInstance().bind(database, listener);
+
+    try
+    {
+      return shared.acquire(database);
+    }
+    catch (RuntimeException ex)
+    {
+      release(shared);
+
+      throw ex;
+    }
+  }
+
+  /**
+   * Creates a new {@link EntityManagerFactory} for the persistence unit, which
+   * uses the given database.
+   *
+   *
+   * @param database in-memory database
+   * @param persistenceUnit name of the persistence unit
+   * @param dialect hibernate dialect of the database engine
+   *
+   * @return new {@link EntityManagerFactory}
+   */
+  public static EntityManagerFactory create(Database database,
+    String persistenceUnit, String dialect)
+  {
+    return create(database, persistenceUnit, dialect, null);
+  }
+
+  /**
+   * Creates a new {@link EntityManagerFactory} for the persistence unit, which
+   * uses the given database. The statements of the factory are reported to
+   * the listener, if it is not {@code null}.
+   *
+   *
+   * @param database in-memory database
+   * @param persistenceUnit name of the persistence unit
+   * @param dialect hibernate dialect of the database engine
+   * @param listener receives the statements of the factory or {@code null}
+   *
+   * @return new {@link EntityManagerFactory}
+   */
+  public static EntityManagerFactory create(Database database,
+    String persistenceUnit, String dialect, StatementListener listener)
+  {
+    Map<String, Object> props = new HashMap<String, Object>();
+    DataSource dataSource = database.getDataSource();
+
+    if (listener != null)
+    {
+      dataSource = StatementListeners.wrap(dataSource, listener);
+    }
+
+    // connections are drawn from the pool of the database
+    props.put(PROPERTY_DATASOURCE, dataSource);
+    props.put(PROPERTY_CREATE, VALUE_CREATE);
+
+    // put hibernate specific properties
+    props.put(PROPERTY_HIBERNATE_DIALECT, dialect);
+
+    // create entity manager factory
+    return Persistence.createEntityManagerFactory(persistenceUnit, props);
+  }
+
+  /**
+   * Returns a shared {@link EntityManagerFactory}, which was acquired with
+   * {@link #acquire(Database, String)}, and removes the database from the
+   * current thread. The second level cache of the factory is cleared.
+   *
+   *
+   * @param factory shared factory
+   */
+  public static void release(EntityManagerFactory factory)
+  {
+    SharedFactory shared = factories.get(factory);
+
+    if (shared != null)
+    {
+      if (factory.isOpen())
+      {
+        factory.getCache().evictAll();
+      }
+
+      release(shared);
+    }
+    else
+    {
+      RoutingDataSource.getInstance().unbind();
+    }
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the number of tests, which have reused a shared factory.
+   *
+   *
+   * @return number of reused factories
+   */
+  public static long getHitCount()
+  {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of shared factories, which were bootstrapped.
+   *
+   *
+   * @return number of bootstrapped factories
+   */
+  public static long getMissCount()
+  {
+    return misses.get();
+  }
+
+  /**
+   * Returns the bootstrap time, which was saved by the reuse of shared
+   * factories.
+   *
+   *
+   * @param unit time unit of the result
+   *
+   * @return saved bootstrap time
+   */
+  public static long getSavedTime(TimeUnit unit)
+  {
+    return unit.convert(savedNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Closes all shared factories.
+   *
+   */
+  private static void closeAll()
+  {
+    synchronized (cache)
+    {
+      for (SharedFactory shared : cache.values())
+      {
+        shared.close();
+      }
+
+      cache.clear();
+    }
+
+    if (hits.get() > 0)
+    {
+      logger.info("{} tests have reused shared entity manager factories, "
+        + "which saved {} ms of bootstrap time", hits.get(),
+        getSavedTime(TimeUnit.MILLISECONDS));
+    }
+  }
+
+  /**
+   * Decrements the users of the shared factory and unbinds the database from
+   * the current thread.
+   *
+   *
+   * @param shared shared factory
+   */
+  private static void release(SharedFactory shared)
+  {
+    RoutingDataSource.getInstance().unbind();
+
+    boolean close;
+
+    synchronized (cache)
+    {
+      shared.users--;
+      close = shared.evicted && (shared.users <= 0);
+    }
+
+    if (close)
+    {
+      shared.close();
+    }
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Shared factory with the schema, which was generated during bootstrap.
+   */
+  private static class SharedFactory
+  {
+
+    /**
+     * Constructs a new shared factory.
+     *
+     *
+     * @param persistenceUnit name of the persistence unit
+     * @param props properties for the factory
+     */
+    private SharedFactory(String persistenceUnit, Map<String, Object> props)
+    {
+      this.persistenceUnit = persistenceUnit;
+      this.props = props;
+    }
+
+    //~--- methods ------------------------------------------------------------
+
+    /**
+     * Returns the factory. The factory is created on first access, every
+     * following access replays the generated schema on the database.
+     *
+     *
+     * @param database in-memory database
+     *
+     * @return factory
+     */
+    private EntityManagerFactory acquire(Database database)
+    {
+      EntityManagerFactory result;
+      boolean created = false;
+
+      synchronized (this)
+      {
+        if (factory == null)
+        {
+          long start = System.nanoTime();
+          StringWriter writer = new StringWriter();
+          Map<String, Object> bootstrap = new HashMap<String, Object>(props);
+
+          bootstrap.put(PROPERTY_DATASOURCE, RoutingDataSource.getInstance());
+          bootstrap.put(PROPERTY_CREATE, VALUE_CREATE);
+          bootstrap.put(PROPERTY_SCRIPT_CREATE, VALUE_CREATE);
+          bootstrap.put(PROPERTY_SCRIPT_TARGET, writer);
+          factory = Persistence.createEntityManagerFactory(persistenceUnit,
+            bootstrap);
+          factories.put(factory, this);
+          bootstrapNanos = System.nanoTime() - start;
+          schema = parseSchema(writer.toString());
+          misses.incrementAndGet();
+          created = true;
+        }
+
+        result = factory;
+      }
+
+      // the schema is replayed outside of the lock, parallel tests are using
+      // different databases
+      if (!created)
+      {
+        long start = System.nanoTime();
+
+        replaySchema(database);
+        hits.incrementAndGet();
+        savedNanos.addAndGet(bootstrapNanos - (System.nanoTime() - start));
+      }
+
+      return result;
+    }
+
+    /**
+     * Closes the factory.
+     *
+     */
+    private synchronized void close()
+    {
+      if (factory != null)
+      {
+        factories.remove(factory);
+
+        if (factory.isOpen())
+        {
+          factory.close();
+        }
+      }
+    }
+
+    /**
+     * Marks the factory as evicted. The factory is closed immediately if it is
+     * not in use, otherwise it is closed by the last user.
+     *
+     */
+    private void evict()
+    {
+      evicted = true;
+
+      if (users <= 0)
+      {
+        close();
+      }
+    }
+
+    /**
+     * Splits the generated schema script, which contains one statement per
+     * line.
+     *
+     *
+     * @param script generated schema script
+     *
+     * @return list of statements
+     */
+    private List<String> parseSchema(String script)
+    {
+      List<String> statements = new ArrayList<String>();
+
+      for (String line : script.split("\\r?\\n"))
+      {
+        String statement = line.trim();
+
+        if (statement.length() > 0)
+        {
+          statements.add(statement);
+        }
+      }
+
+      return statements;
+    }
+
+    /**
+     * Executes the generated schema on the database.
+     *
+     *
+     * @param database in-memory database
+     */
+    private void replaySchema(Database database)
+    {
+      Connection connection = database.createConnection();
+
+      try
+      {
+        new SQLScriptRunner(connection, true).runStatements(schema);
+      }
+      finally
+      {
+        Closeables.close(connection);
+      }
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** name of the persistence unit */
+    private final String persistenceUnit;
+
+    /** properties of the factory */
+    private final Map<String, Object> props;
+
+    /** time which was needed to bootstrap the factory */
+    private long bootstrapNanos;
+
+    /** factory is evicted from the cache */
+    private boolean evicted = false;
+
+    /** factory */
+    private EntityManagerFactory factory;
+
+    /** generated schema */
+    private List<String> schema;
+
+    /** number of tests which are using the factory */
+    private int users = 0;
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database.internal;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.Database;
+import com.github.sdorra.database.DatabaseNotStartedException;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.PrintWriter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource which creates its connections with the database, which is bound
+ * to the current thread. The data source allows to share one
+ * {@link javax.persistence.EntityManagerFactory} between tests, which are
+ * using different databases.
+ *
+ * @author Sebastian Sdorra
+ */
+public final class RoutingDataSource implements DataSource
+{
+
+  /** shared instance */
+  private static final RoutingDataSource instance = new RoutingDataSource();
+
+  //~--- constructors ---------------------------------------------------------
+
+  /**
+   * Constructs ...
+   *
+   */
+  private RoutingDataSource() {}
+
+  //~--- methods --------------------------------------------------------------
+
+  /**
+   * Binds the database to the current thread.
+   *
+   *
+   * @param database database
+   */
+  public void bind(Database database)
+  {
+    bind(database, null);
+  }
+
+  /**
+   * Binds the database to the current thread. The statements of the
+   * connections are reported to the listener, if it is not {@code null}.
+   *
+   *
+   * @param database database
+   * @param listener statement listener or {@code null}
+   */
+  public void bind(Database database, StatementListener listener)
+  {
+    current.set(database);
+
+    if (listener != null)
+    {
+      listeners.set(listener);
+    }
+    else
+    {
+      listeners.remove();
+    }
+  }
+
+  /**
+   * Removes the database from the current thread.
+   *
+   */
+  public void unbind()
+  {
+    current.remove();
+    listeners.remove();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException
+  {
+    if (iface.isInstance(this))
+    {
+      return iface.cast(this);
+    }
+
+    throw new SQLException("data source is not a wrapper for ".concat(
+      iface.getName()));
+  }
+
+  //~--- get methods ----------------------------------------------------------
+
+  /**
+   * Returns the shared instance.
+   *
+   *
+   * @return shared instance
+   */
+  public static RoutingDataSource getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Connection getConnection() throws SQLException
+  {
+    Database database = current.get();
+
+    if (database == null)
+    {
+      throw new DatabaseNotStartedException(
+        "no database is bound to the current thread");
+    }
+
+    Connection connection = database.createConnection();
+    StatementListener listener = listeners.get();
+
+    if (listener != null)
+    {
+      connection = StatementListeners.wrap(connection, listener);
+    }
+
+    return connection;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Connection getConnection(String username, String password)
+    throws SQLException
+  {
+    return getConnection();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public PrintWriter getLogWriter() throws SQLException
+  {
+    return logWriter;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getLoginTimeout() throws SQLException
+  {
+    return 0;
+  }
+
+  /**
+   * Method is required by jdbc 4.1, but logging is not supported.
+   *
+   *
+   * @return never
+   *
+   * @throws SQLFeatureNotSupportedException
+   */
+  public java.util.logging.Logger getParentLogger()
+    throws SQLFeatureNotSupportedException
+  {
+    throw new SQLFeatureNotSupportedException("logging is not supported");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException
+  {
+    return iface.isInstance(this);
+  }
+
+  //~--- set methods ----------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException
+  {
+    this.logWriter = out;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException
+  {
+
+    // login timeout is not supported
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** statement listener of the current thread */
+  private final ThreadLocal<StatementListener> listeners =
+    new ThreadLocal<StatementListener>();
+
+  /** database of the current thread */
+  private final ThreadLocal<Database> current = new ThreadLocal<Database>();
+
+  /** log writer */
+  private volatile PrintWriter logWriter;
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import javax.persistence.EntityManager;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+@JPA("jpa-unit")
+public class JPAClassRuleTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testPersistFirst()
+  {
+    persistAndCount();
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testPersistSecond()
+  {
+    persistAndCount();
+  }
+
+  /**
+   * Persists a user and checks that the users of other tests are rolled back.
+   *
+   */
+  private void persistAndCount()
+  {
+    EntityManager em = rule.getEntityManager();
+
+    em.persist(new User());
+    em.flush();
+
+    Long count = em.createQuery("SELECT COUNT(u) FROM User u", Long.class)
+                   .getSingleResult();
+
+    assertEquals(Long.valueOf(1), count);
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @ClassRule
+  public static JPAClassRule rule = new JPAClassRule();
+
+  /** Field description */
+  @Rule
+  public TestRule reset = rule.reset();
+}
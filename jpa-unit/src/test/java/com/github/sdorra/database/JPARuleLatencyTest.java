@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import javax.persistence.EntityManager;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JPARuleLatencyTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @JPA(value = "jpa-unit", autoTransaction = true)
+  public void annotated() {}
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testLatencies() throws Throwable
+  {
+    final JPARule rule = new JPARule().withStatementLatencies(true);
+    Statement test = new Statement()
+    {
+      @Override
+      public void evaluate()
+      {
+        EntityManager em = rule.getEntityManager();
+        User user = new User();
+
+        em.persist(user);
+        em.flush();
+        em.clear();
+        em.find(User.class, user.getId());
+      }
+    };
+
+    rule.apply(test, new FrameworkMethod(getClass().getMethod("annotated")),
+      this).evaluate();
+
+    boolean select = false;
+
+    for (StatementLatency latency : rule.getStatementLatencies())
+    {
+      if (latency.getSql().startsWith("select"))
+      {
+        select = true;
+        assertTrue(latency.getExecute().getCount() == 1);
+        assertTrue(latency.getFetch().getCount() == 1);
+      }
+    }
+
+    assertTrue(rule.getStatementLatencies().toString(), select);
+  }
+}
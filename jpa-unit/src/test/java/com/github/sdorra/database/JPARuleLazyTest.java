@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import com.github.sdorra.database.internal.LazyStart;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import javax.persistence.EntityManager;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JPARuleLazyTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @JPA(value = "jpa-unit", autoTransaction = true)
+  public void annotated() {}
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  @JPA(value = "jpa-unit", autoTransaction = true)
+  public void testStartedOnFirstUse()
+  {
+    EntityManager em = rule.getEntityManager();
+    User user = new User();
+
+    em.persist(user);
+    assertNotNull(em.find(User.class, user.getId()));
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testRuleDatabaseRestored() throws Throwable
+  {
+    final JPARule sequence = new JPARule();
+    final Database[] databases = new Database[2];
+
+    for (int i = 0; i < databases.length; i++)
+    {
+      final int index = i;
+
+      sequence.apply(new Statement()
+      {
+        @Override
+        public void evaluate()
+        {
+          EntityManager em = sequence.getEntityManager();
+
+          // every test starts with a new database and entity manager
+          assertEquals(0, em.createQuery("select u from User u")
+            .getResultList().size());
+          em.persist(new User());
+          databases[index] = sequence.getDatabase();
+        }
+      }, new FrameworkMethod(getClass().getMethod("annotated")), this)
+        .evaluate();
+    }
+
+    assertNotSame(databases[0], databases[1]);
+    assertFalse(databases[0].isRunning());
+    assertFalse(databases[1].isRunning());
+    assertFalse(sequence.getDatabase().isRunning());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testSkipped() throws Throwable
+  {
+    LifecycleStatistics stats = new LifecycleStatistics();
+    JPARule skipped = new JPARule().addListener(stats);
+    long count = LazyStart.getSkipCount();
+    Statement test = new Statement()
+    {
+      @Override
+      public void evaluate() {}
+    };
+
+    skipped.apply(test, new FrameworkMethod(getClass().getMethod("annotated")),
+      this).evaluate();
+    assertEquals(count + 1, LazyStart.getSkipCount());
+    assertEquals(1, stats.getCount(LifecyclePhase.SKIP));
+    assertEquals(0, stats.getCount(LifecyclePhase.ENTITY_MANAGER_FACTORY));
+    assertEquals(0, stats.getCount(LifecyclePhase.ENGINE_BOOT)
+      + stats.getCount(LifecyclePhase.CREATE));
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public JPARule rule = new JPARule();
+}
@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JPARuleMaxQueriesTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @MaxQueries(select = 1)
+  @JPA(value = "jpa-unit", autoTransaction = true)
+  public void annotated() {}
+
+  /**
+   * Method description
+   *
+   */
+  @MaxQueries(select = 1)
+  @JPA(
+    value = "jpa-unit",
+    autoTransaction = true,
+    sharedEntityManagerFactory = true
+  )
+  public void annotatedShared() {}
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testExceeded() throws Throwable
+  {
+    assertExceeded("annotated");
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @throws Throwable
+   */
+  @Test
+  public void testExceededShared() throws Throwable
+  {
+    assertExceeded("annotatedShared");
+  }
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  @MaxQueries(select = 0, delete = 0)
+  @JPA(value = "jpa-unit", autoTransaction = true)
+  public void testWithinBudget()
+  {
+    rule.getEntityManager().persist(new User());
+  }
+
+  /**
+   * Method description
+   *
+   *
+   * @param method
+   *
+   * @throws Throwable
+   */
+  private void assertExceeded(String method) throws Throwable
+  {
+    final JPARule budget = new JPARule();
+    Statement test = new Statement()
+    {
+      @Override
+      public void evaluate()
+      {
+        EntityManager em = budget.getEntityManager();
+        List<Long> ids = new ArrayList<Long>();
+
+        for (int i = 0; i < 3; i++)
+        {
+          User user = new User();
+
+          em.persist(user);
+          ids.add(user.getId());
+        }
+
+        em.flush();
+        em.clear();
+
+        // n+1 select
+        for (Long id : ids)
+        {
+          em.find(User.class, id);
+        }
+      }
+    };
+
+    try
+    {
+      budget.apply(test, new FrameworkMethod(getClass().getMethod(method)),
+        this).evaluate();
+      fail("query budget was not verified");
+    }
+    catch (AssertionError error)
+    {
+      String msg = error.getMessage();
+
+      assertTrue(msg, msg.contains("select: 3 statements, at most 1"));
+      assertTrue(msg, msg.contains("3x select"));
+    }
+  }
+
+  //~--- fields ---------------------------------------------------------------
+
+  /** Field description */
+  @Rule
+  public JPARule rule = new JPARule();
+}
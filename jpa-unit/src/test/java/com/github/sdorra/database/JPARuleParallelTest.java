@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015, Sebastian Sdorra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+
+package com.github.sdorra.database;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.ParallelComputer;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import javax.persistence.EntityManager;
+
+/**
+ *
+ * @author Sebastian Sdorra
+ */
+public class JPARuleParallelTest
+{
+
+  /**
+   * Method description
+   *
+   */
+  @Test
+  public void testParallelMethods()
+  {
+    Result result = JUnitCore.runClasses(ParallelComputer.methods(),
+                      Cases.class);
+
+    assertTrue(result.getFailures().toString(), result.wasSuccessful());
+    assertEquals(4, result.getRunCount());
+  }
+
+  //~--- inner classes --------------------------------------------------------
+
+  /**
+   * Test cases which are using a shared factory with different databases.
+   */
+  @JPA(
+    value = "jpa-unit",
+    autoTransaction = true,
+    sharedEntityManagerFactory = true
+  )
+  public static class Cases
+  {
+
+    /**
+     * Method description
+     *
+     */
+    @Test
+    public void testFirst()
+    {
+      persistAndCount();
+    }
+
+    /**
+     * Method description
+     *
+     */
+    @Test
+    public void testFourth()
+    {
+      persistAndCount();
+    }
+
+    /**
+     * Method description
+     *
+     */
+    @Test
+    public void testSecond()
+    {
+      persistAndCount();
+    }
+
+    /**
+     * Method description
+     *
+     */
+    @Test
+    public void testThird()
+    {
+      persistAndCount();
+    }
+
+    /**
+     * Persists a user and checks that no other test has modified the
+     * database.
+     *
+     */
+    private void persistAndCount()
+    {
+      EntityManager em = rule.getEntityManager();
+
+      em.persist(new User());
+      em.flush();
+
+      Long count = em.createQuery("SELECT COUNT(u) FROM User u", Long.class)
+                     .getSingleResult();
+
+      assertEquals(Long.valueOf(1), count);
+    }
+
+    //~--- fields -------------------------------------------------------------
+
+    /** Field description */
+    @Rule
+    public JPARule rule = new JPARule();
+  }
+}